@@ -27,7 +27,10 @@ package gr.auth.ee.lcs;
 
 import gr.auth.ee.lcs.classifiers.Classifier;
 import gr.auth.ee.lcs.classifiers.ClassifierSet;
+import gr.auth.ee.lcs.classifiers.ClassifierSetBinaryFormat;
+import gr.auth.ee.lcs.classifiers.CompiledInferenceModel;
 import gr.auth.ee.lcs.classifiers.Macroclassifier;
+import gr.auth.ee.lcs.classifiers.PopulationWriter;
 import gr.auth.ee.lcs.classifiers.populationcontrol.FixedSizeSetWorstFitnessDeletion;
 import gr.auth.ee.lcs.classifiers.statistics.MeanAttributeSpecificityStatistic;
 import gr.auth.ee.lcs.classifiers.statistics.MeanCoverageStatistic;
@@ -39,18 +42,34 @@ import gr.auth.ee.lcs.classifiers.statistics.WeightedMeanLabelSpecificity;
 import gr.auth.ee.lcs.data.AbstractUpdateStrategy;
 import gr.auth.ee.lcs.data.ClassifierTransformBridge;
 import gr.auth.ee.lcs.data.ILCSMetric;
+import gr.auth.ee.lcs.data.representations.complex.ComplexRepresentation;
 import gr.auth.ee.lcs.evaluators.AccuracyRecallEvaluator;
 import gr.auth.ee.lcs.evaluators.ExactMatchEvalutor;
 import gr.auth.ee.lcs.evaluators.FileLogger;
 import gr.auth.ee.lcs.evaluators.HammingLossEvaluator;
+import gr.auth.ee.lcs.evaluators.MultiLabelEvaluation;
 import gr.auth.ee.lcs.geneticalgorithm.selectors.RouletteWheelSelector;
+import gr.auth.ee.lcs.sampling.HardInstancePrioritizedSamplingSchedule;
+import gr.auth.ee.lcs.sampling.IInstanceSamplingSchedule;
+import gr.auth.ee.lcs.sampling.LabelStratifiedSamplingSchedule;
+import gr.auth.ee.lcs.sampling.SequentialSamplingSchedule;
+import gr.auth.ee.lcs.sampling.ShuffledSamplingSchedule;
 import gr.auth.ee.lcs.utilities.ExtendedBitSet;
+import gr.auth.ee.lcs.utilities.FlatDataset;
+import gr.auth.ee.lcs.utilities.FlightRecorderEvents;
+import gr.auth.ee.lcs.utilities.InstancePrefetcher;
 import gr.auth.ee.lcs.utilities.InstancesUtility;
+import gr.auth.ee.lcs.utilities.OutputWriter;
+import gr.auth.ee.lcs.utilities.ParallelChunkExecutor;
+import gr.auth.ee.lcs.utilities.PhaseProfiler;
+import gr.auth.ee.lcs.utilities.RandomGenerator;
 import gr.auth.ee.lcs.utilities.SettingsLoader;
+import gr.auth.ee.lcs.utilities.SyntheticDatasetGenerator;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.File;
 import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
 import java.util.Vector;
 
 import weka.clusterers.SimpleKMeans;
@@ -87,6 +106,90 @@ public abstract class AbstractLearningClassifierSystem {
 	 * */
 	public static final int UPDATE_MODE_HOLD = 1;
 	
+	/**
+	 * The way to choose the order in which train instances are presented to the LCS in each epoch.
+	 * 
+	 * 0: Sequential, every instance once, in array order
+	 * 1: Shuffled, every instance once, in a random order
+	 * 2: Label-stratified, every instance once, label combinations spread evenly over the epoch
+	 * 3: Hard-instance prioritized, instances with small match sets or covering oversampled
+	 * */
+	public static final int SAMPLING_SCHEDULE_SEQUENTIAL = 0;
+	public static final int SAMPLING_SCHEDULE_SHUFFLED = 1;
+	public static final int SAMPLING_SCHEDULE_LABEL_STRATIFIED = 2;
+	public static final int SAMPLING_SCHEDULE_HARD_INSTANCES = 3;
+	public final int SAMPLING_SCHEDULE = (int) SettingsLoader.getNumericSetting("samplingSchedule", 0);
+	
+	/**
+	 * The schedule deciding the instances presented to the LCS in each epoch. Created on the first call of trainSet(), 
+	 * and again after the train set is replaced.
+	 * */
+	private IInstanceSamplingSchedule samplingSchedule;
+	
+	/**
+	 * True if the sampling schedule was set through setSamplingSchedule(), and is therefore kept when the train set is replaced.
+	 * */
+	private boolean samplingScheduleSetExplicitly = false;
+	
+	/**
+	 * Take a training checkpoint every <checkpointSteps> iterations, at the first callback after them. 0 disables checkpoints.
+	 * */
+	private final int CHECKPOINT_STEPS = (int) SettingsLoader.getNumericSetting("checkpointSteps", 0);
+	
+	/**
+	 * The checkpoints of this run. Created on the first checkpoint.
+	 * */
+	private TrainingCheckpoint checkpoint;
+	
+	/**
+	 * The JMX telemetry of this run, registered while training. Null when the trainingMonitor setting is disabled.
+	 * */
+	private TrainingMonitor monitor;
+	
+	/**
+	 * The phase profile of this run, bound to the training thread while training. Null when the profilePhases setting is disabled.
+	 * */
+	private final PhaseProfiler profiler = PhaseProfiler.ENABLED ? new PhaseProfiler() : null;
+	
+	/**
+	 * The BAM rule families read from the bamRulesFile setting. Empty when it is not set.
+	 * */
+	private String[][] bamRuleFamilies;
+	
+	/**
+	 * The value of totalRepetition at the last checkpoint.
+	 * */
+	private int lastCheckpointRepetition = 0;
+	
+	/**
+	 * The checkpointed state to resume training from, loaded on the first call of trainSet() if the 
+	 * resumeFrom setting names a checkpoint directory. Cleared once applied.
+	 * */
+	private TrainingCheckpoint.State resumeState;
+	
+	private boolean resumeStateLoaded = false;
+	
+	/**
+	 * The index of every train instance in the set it was selected from, in the order presented to the LCS. 
+	 * Null if the train set was set directly instead of by setShuffledTrainSet().
+	 * */
+	private int[] trainOrder;
+	
+	/**
+	 * The random number generator of the evolutionary components of this LCS.
+	 * */
+	private final RandomGenerator randomGenerator;
+	
+	/**
+	 * The serial number of the next classifier of this LCS (start from the lowest & increment).
+	 * */
+	private int nextClassifierSerial = Integer.MIN_VALUE;
+	
+	/**
+	 * The minimum number of instances classified by a single thread in batch classification.
+	 */
+	private static final int MIN_CLASSIFICATION_CHUNK = 64;
+	
 	
 	/**
 	 * The mean correct set numerosity (in miscroclassifiers) of the population.
@@ -98,15 +201,26 @@ public abstract class AbstractLearningClassifierSystem {
 	 * */
 	private int cummulativeCurrentInstanceIndex = 0;
 	
+	/**
+	 * The number of train instances presented in all epochs so far. Epochs may present more or fewer 
+	 * instances than the train set holds, depending on the sampling schedule.
+	 */
+	private int numberOfInstancesPresented = 0;
+	
 	private int storeRulePopulationSteps = -1;
 
 	/**
-	 * The train set.
+	 * The train set. The rows of a memory-mapped train set are null, see setTrainDataset().
 	 * @uml.property  name="instances" multiplicity="(0 -1)" dimension="2"
 	 */
 	public double[][] instances;
 	public double[][] testInstances;
 
+	/**
+	 * The flat copies of the train and test sets, rebuilt when the sets are replaced.
+	 */
+	private volatile FlatDataset trainDataset, testDataset;
+
 	public Instances trainSet;
 	public Instances testSet;
 	
@@ -139,6 +253,11 @@ public abstract class AbstractLearningClassifierSystem {
 	 */
 	protected ClassifierSet rulePopulation;
 
+	/**
+	 * The writer of the population dumps taken at the callbacks.
+	 */
+	private final PopulationWriter populationWriter = new PopulationWriter();
+
 	/**
 	 * A vector of all evaluator hooks.
 	 * @uml.property  name="hooks"
@@ -194,6 +313,7 @@ public abstract class AbstractLearningClassifierSystem {
 		hooks = new Vector<ILCSMetric>();
 		hookCallbackRate = (int) SettingsLoader.getNumericSetting("callbackRate", 100);
 		iterations = (int) SettingsLoader.getNumericSetting("trainIterations",1000);
+		randomGenerator = new RandomGenerator();
 	}
 	
 	
@@ -254,6 +374,7 @@ public abstract class AbstractLearningClassifierSystem {
 								rulePopulation.getMacroclassifiersVector().get(indicesOfDuplicates.elementAt(indexOfSurvivor)).numerosity += 
 									rulePopulation.getMacroclassifiersVector().get(indicesOfDuplicates.elementAt(k)).numerosity;
 								rulePopulation.getMacroclassifiersVector().get(indicesOfDuplicates.elementAt(indexOfSurvivor)).numberOfSubsumptions++;
+								rulePopulation.totalSubsumptions++;
 								rulePopulation.totalNumerosity += rulePopulation.getMacroclassifiersVector().get(indicesOfDuplicates.elementAt(k)).numerosity;
 								rulePopulation.deleteMacroclassifier(indicesOfDuplicates.elementAt(k));
 							}
@@ -280,8 +401,60 @@ public abstract class AbstractLearningClassifierSystem {
 	 * @return the labels the instance is classified in
 	 */
 	public abstract int[] classifyInstance(double[] instance);
+
+	/**
+	 * Classify a batch of instances, splitting the batch in chunks classified in parallel.
+	 * The population must not be trained while the batch is being classified.
+	 * 
+	 * @param instancesToClassify
+	 *            the instances to classify
+	 * @return the labels each instance is classified in, in the order of the instances
+	 */
+	public int[][] classifyInstances(final double[][] instancesToClassify) {
+		final CompiledInferenceModel model = compileForBatchClassification();
+		if (model != null) {
+			final FlatDataset flat = getStandInDataset(instancesToClassify);
+			return (flat != null) ? model.classifyInstances(flat) : model.classifyInstances(instancesToClassify);
+		}
+		
+		final int[][] classifications = new int[instancesToClassify.length][];
+		ParallelChunkExecutor.forEachChunk(instancesToClassify.length, MIN_CLASSIFICATION_CHUNK, new ParallelChunkExecutor.IChunkTask() {
+			@Override
+			public void run(final int from, final int to) {
+				final double[] buffer = newInstanceBuffer(instancesToClassify);
+				for (int i = from; i < to; i++)
+					classifications[i] = classifyInstance(getInstance(instancesToClassify, i, buffer));
+			}
+		});
+		return classifications;
+	}
+	
 	
 
+	/**
+	 * Freezes the current rule population into an immutable, thread-safe inference model, 
+	 * classifying with the representation's current classification strategy.
+	 * The model does not follow later changes of the population.
+	 * 
+	 * @return the compiled model, or null if the representation does not support compilation
+	 */
+	public CompiledInferenceModel compile() {
+		if (transformBridge instanceof ComplexRepresentation)
+			return ((ComplexRepresentation) transformBridge).compile(rulePopulation);
+		return null;
+	}
+	
+	/**
+	 * Returns the compiled model used by classifyInstances(), or null to classify each instance
+	 * through classifyInstance(). Implementations should return compile() only when the compiled
+	 * model decides exactly as their classifyInstance() does.
+	 * 
+	 * @return the model to classify batches with, or null
+	 */
+	protected CompiledInferenceModel compileForBatchClassification() {
+		return null;
+	}
+
 	/**
 	 * Creates a new instance of the actual implementation of the LCS.
 	 * 
@@ -381,19 +554,25 @@ public abstract class AbstractLearningClassifierSystem {
 			double temp2b = ClassifierSet.percentageOfBAMDiscovered(rulePopulation, BAMrules2b);
 			double temp2 = (temp2a > temp2b) ? temp2a : temp2b;
 			
-			try {
-				final FileWriter fstream2 = new FileWriter(hookedMetricsFileDirectory + "/bam.txt", true);
-				final BufferedWriter buffer2 = new BufferedWriter(fstream2);
-				double totalPercentage = (temp1*BAMrules1.length/(BAMrules1.length+BAMrules2b.length)+temp2*BAMrules2b.length/(BAMrules1.length+BAMrules2b.length))*100;
-				String testS = temp1 + "," +  temp2a + "," + temp2b+ "," + totalPercentage + "\n";
-//				System.out.println(testS);
-				buffer2.write(testS);	
-				buffer2.flush();
-				buffer2.close();
-			} 
-			catch (Exception e) {
-				e.printStackTrace();
-			}	
+			double totalPercentage = (temp1*BAMrules1.length/(BAMrules1.length+BAMrules2b.length)+temp2*BAMrules2b.length/(BAMrules1.length+BAMrules2b.length))*100;
+			String testS = temp1 + "," +  temp2a + "," + temp2b+ "," + totalPercentage + "\n";
+//			System.out.println(testS);
+			OutputWriter.append(hookedMetricsFileDirectory + "/bam.txt", testS);
+		}
+		else if (getBamRuleFamilies() != null)
+		{
+			// the families of a bamRulesFile, e.g. planted by SyntheticDatasetGenerator
+			final StringBuilder bam = new StringBuilder();
+			double discovered = 0;
+			int numberOfBAMRules = 0;
+			for (final String[] family : bamRuleFamilies) {
+				final double percentage = ClassifierSet.percentageOfBAMDiscovered(rulePopulation, family);
+				bam.append(percentage).append(',');
+				discovered += percentage * family.length;
+				numberOfBAMRules += family.length;
+			}
+			bam.append(numberOfBAMRules == 0 ? 0 : discovered / numberOfBAMRules * 100).append('\n');
+			OutputWriter.append(hookedMetricsFileDirectory + "/bam.txt", bam.toString());
 		}
 		 
 		if (storeRulePopulationSteps<0)
@@ -401,40 +580,57 @@ public abstract class AbstractLearningClassifierSystem {
 			
 		meanNs /= this.getRulePopulation().getNumberOfMacroclassifiers();
 		
-		if (repetition % storeRulePopulationSteps == 0 || repetitionF >= (int)(iterations*(1+SettingsLoader.getNumericSetting("UpdateOnlyPercentage", .1))))
+		if (repetition % storeRulePopulationSteps == 0 || repetitionF >= (int)(iterations*(1+SettingsLoader.getNumericSetting("UpdateOnlyPercentage", .1)))) {
+			
+			// record the rule population and its metrics in population.txt
+			final String populationFile = this.hookedMetricsFileDirectory + "/population_" + repetitionF;
+			final Writer populationOut = OutputWriter.getWriter(populationFile + ".txt");
 			try {
-	
-				// record the rule population and its metrics in population.txt
-				final FileWriter fstream = new FileWriter(this.hookedMetricsFileDirectory + "/population_" + repetitionF +".txt", true);
-				final BufferedWriter buffer = new BufferedWriter(fstream);
-				buffer.write(					
-						  String.valueOf(this.repetition) + "th repetition:"
-						+ System.getProperty("line.separator")
-						+ System.getProperty("line.separator")
-						+ "Population size: " + rulePopulation.getNumberOfMacroclassifiers()
-						+ System.getProperty("line.separator")
-						+ "Timestamp: " + rulePopulation.totalGAInvocations
-						+ System.getProperty("line.separator")
-						+ "Classifiers in population covered :" + numberOfClassifiersCovered
-						+ System.getProperty("line.separator")
-						+ "Classifiers in population ga-ed :" 	+ numberClassifiersGaed
-						+ System.getProperty("line.separator")
-						+ "Covers occured: " + numberOfCoversOccured
-						+ System.getProperty("line.separator")
-						+ "Subsumptions: " + numberOfSubsumptions
-						+ System.getProperty("line.separator")
-						+ "Mean ns: " + meanNs
-						+ System.getProperty("line.separator")
-						+ "NumRules for full coverage with specific decisions: " +test
-						+ System.getProperty("line.separator")
-						+ rulePopulation
-						+ System.getProperty("line.separator"));
-				buffer.flush();
-				buffer.close();
-			} 
-			catch (Exception e) {
+				populationOut.append(
+					  String.valueOf(this.repetition) + "th repetition:"
+					+ System.getProperty("line.separator")
+					+ System.getProperty("line.separator")
+					+ "Population size: " + rulePopulation.getNumberOfMacroclassifiers()
+					+ System.getProperty("line.separator")
+					+ "Timestamp: " + rulePopulation.totalGAInvocations
+					+ System.getProperty("line.separator")
+					+ "Classifiers in population covered :" + numberOfClassifiersCovered
+					+ System.getProperty("line.separator")
+					+ "Classifiers in population ga-ed :" 	+ numberClassifiersGaed
+					+ System.getProperty("line.separator")
+					+ "Covers occured: " + numberOfCoversOccured
+					+ System.getProperty("line.separator")
+					+ "Subsumptions: " + numberOfSubsumptions
+					+ System.getProperty("line.separator")
+					+ "Mean ns: " + meanNs
+					+ System.getProperty("line.separator")
+					+ "NumRules for full coverage with specific decisions: " +test
+					+ System.getProperty("line.separator"));
+				
+				// stream the rules, in the same file unless a compact format is used
+				switch (PopulationWriter.DUMP_FORMAT) {
+				case PopulationWriter.FORMAT_CSV:
+					final Writer csvOut = OutputWriter.getWriter(populationFile + PopulationWriter.getExtension(PopulationWriter.FORMAT_CSV));
+					populationWriter.writeCsv(rulePopulation, csvOut);
+					csvOut.close();
+					break;
+				case PopulationWriter.FORMAT_BINARY:
+					populationWriter.summarize(rulePopulation);
+					ClassifierSetBinaryFormat.save(rulePopulation, populationFile + PopulationWriter.getExtension(PopulationWriter.FORMAT_BINARY), this);
+					break;
+				default:
+					populationWriter.writeText(rulePopulation, populationOut);
+					populationOut.append(System.getProperty("line.separator"));
+					break;
+				}
+				populationOut.close();
+			} catch (IOException e) {
 				e.printStackTrace();
-			}	
+			}
+		}
+		
+		// make the records of this callback visible in the files
+		OutputWriter.flush();
 		
 		this.numberOfCoversOccured = 0;
 	
@@ -448,11 +644,283 @@ public abstract class AbstractLearningClassifierSystem {
 	public final ClassifierTransformBridge getClassifierTransformBridge() {
 		return transformBridge;
 	}
+
+	/**
+	 * Return the random number generator of the LCS, to be drawn from by its evolutionary components.
+	 *
+	 * @return the lcs's random number generator
+	 */
+	public final RandomGenerator getRandomGenerator() {
+		return randomGenerator;
+	}
+
+	/**
+	 * Returns the serial number of a new classifier of the LCS.
+	 *
+	 * @return the serial number
+	 */
+	public final int getNewClassifierSerial() {
+		return nextClassifierSerial++;
+	}
+
+	/**
+	 * Returns the flat copy of the train set, shared by everyone matching against it.
+	 * 
+	 * @return the train set as a flat dataset
+	 */
+	public final FlatDataset getTrainDataset() {
+		FlatDataset dataset = trainDataset;
+		if (dataset == null || !dataset.isBuiltFrom(instances)) {
+			dataset = getDataset(instances);
+			trainDataset = dataset;
+		}
+		return dataset;
+	}
+
+	/**
+	 * Train on a flat dataset, such as a memory-mapped one (see DatasetCache.map()). The train set 
+	 * becomes the dataset's instance vectors, which are null for mapped sets: the instances are then
+	 * read through getTrainDataset(), or getInstance().
+	 * 
+	 * @param dataset
+	 *            the train set
+	 */
+	public final void setTrainDataset(final FlatDataset dataset) {
+		instances = dataset.getInstanceVectors();
+		trainDataset = dataset;
+		labelCardinality = dataset.getLabelCardinality();
+		trainSetReplaced();
+	}
+
+	/**
+	 * Train on some of the instances of a set, in a random order drawn from the generator of the LCS. 
+	 * The order is saved in the training checkpoints. When resuming (see the resumeFrom setting) from a
+	 * checkpoint taken on the same instances, its order is used instead, so that every instance is at 
+	 * the position the checkpointed match caches and sampling schedule refer to. The train instances 
+	 * are then only kept in the flat copy of the train set: the vectors of the instances array are null, 
+	 * and read through getTrainInstance() or getTrainDataset().
+	 * 
+	 * @param source
+	 *            the instance vectors to select the train set from
+	 * @param trainIndices
+	 *            the indices of the train instances in the source
+	 */
+	public final void setShuffledTrainSet(final double[][] source, final int[] trainIndices) {
+		trainOrder = getTrainOrder(trainIndices);
+		instances = InstancesUtility.selectInstances(source, trainOrder);
+		labelCardinality = InstancesUtility.getLabelCardinality(instances);
+		// the selected array belongs to the LCS: its vectors need not be kept next to the flat copy
+		getTrainDataset().releaseInstanceVectors();
+		trainSetReplaced();
+		checkResumeState();
+	}
+
+	/**
+	 * Drop the state built for the previous train set: the sampling schedule (unless set explicitly) 
+	 * refers to its instance indices.
+	 */
+	private void trainSetReplaced() {
+		if (!samplingScheduleSetExplicitly)
+			samplingSchedule = null;
+	}
+
+	/**
+	 * Train on some of the instances of a flat dataset, such as a memory-mapped one, in a random order 
+	 * drawn from the generator of the LCS. See setShuffledTrainSet(double[][], int[]).
+	 * 
+	 * @param source
+	 *            the dataset to select the train set from
+	 * @param trainIndices
+	 *            the indices of the train instances in the source
+	 */
+	public final void setShuffledTrainSet(final FlatDataset source, final int[] trainIndices) {
+		trainOrder = getTrainOrder(trainIndices);
+		setTrainDataset(source.select(trainOrder));
+		checkResumeState();
+	}
+
+	/**
+	 * Returns the order of the checkpoint to resume from, if it was taken on the given train instances, 
+	 * or else a random order of them.
+	 * 
+	 * @param trainIndices
+	 *            the indices of the train instances
+	 * @return the indices, in the order to present them to the LCS
+	 */
+	private int[] getTrainOrder(final int[] trainIndices) {
+		if (!resumeStateLoaded)
+			loadResumeState(trainIndices);
+		if (resumeState != null && isOrderOf(resumeState.trainOrder, trainIndices))
+			return resumeState.trainOrder.clone();
+		
+		final int[] order = trainIndices.clone();
+		randomGenerator.shuffle(order);
+		return order;
+	}
+
+	/**
+	 * @return true if order holds exactly the given indices, in any order
+	 */
+	private static boolean isOrderOf(final int[] order, final int[] indices) {
+		if (order == null || order.length != indices.length)
+			return false;
+		final int[] a = order.clone();
+		final int[] b = indices.clone();
+		Arrays.sort(a);
+		Arrays.sort(b);
+		return Arrays.equals(a, b);
+	}
+
+	/**
+	 * Returns an instance vector of a set, read from the flat copy if the set is a memory-mapped 
+	 * train set or one whose vectors have been released.
+	 * 
+	 * @param set
+	 *            the instance vectors
+	 * @param index
+	 *            the index of the instance
+	 * @return the instance vector. Must not be modified
+	 */
+	public final double[] getInstance(final double[][] set, final int index) {
+		final double[] vector = set[index];
+		return (vector != null) ? vector : getDataset(set).getInstance(index);
+	}
+
+	/**
+	 * Returns an instance vector of a set, reading it into a buffer if it is not in the heap 
+	 * (see getInstance(double[][], int)). 
+	 * 
+	 * @param set
+	 *            the instance vectors
+	 * @param index
+	 *            the index of the instance
+	 * @param buffer
+	 *            the buffer returned by newInstanceBuffer(set)
+	 * @return the instance vector, or the buffer holding it. Must not be modified
+	 */
+	public final double[] getInstance(final double[][] set, final int index, final double[] buffer) {
+		final double[] vector = set[index];
+		return (vector != null) ? vector : getDataset(set).getInstance(index, buffer);
+	}
+
+	/**
+	 * Allocates a buffer to read the instances of a set into, one per thread.
+	 * 
+	 * @param set
+	 *            the instance vectors
+	 * @return the buffer, or null if the instances of the set are in the heap
+	 */
+	public final double[] newInstanceBuffer(final double[][] set) {
+		final FlatDataset dataset = getStandInDataset(set);
+		return (dataset != null) ? new double[dataset.getNumberOfAttributes()] : null;
+	}
+
+	/**
+	 * Returns a train instance vector, read from the file if the train set is memory-mapped.
+	 * 
+	 * @param index
+	 *            the index of the train instance
+	 * @return the instance vector. Must not be modified
+	 */
+	public final double[] getTrainInstance(final int index) {
+		return getInstance(instances, index);
+	}
+
+	/**
+	 * @param set
+	 *            some instance vectors
+	 * @return the dataset the vectors stand in for, if it is the only storage of the instances 
+	 * 			  (mapped or released), or null if they are in the heap
+	 */
+	private FlatDataset getStandInDataset(final double[][] set) {
+		FlatDataset dataset = trainDataset;
+		if (dataset != null && dataset.isOnlyStorage() && dataset.isBuiltFrom(set))
+			return dataset;
+		dataset = testDataset;
+		return (dataset != null && dataset.isOnlyStorage() && dataset.isBuiltFrom(set)) ? dataset : null;
+	}
+
+	/**
+	 * Returns the flat copy of a set of instances. The train and test sets of the LCS are
+	 * converted once and shared; other sets are converted on every call.
+	 * 
+	 * @param set
+	 *            the instance vectors
+	 * @return the set as a flat dataset
+	 */
+	public final FlatDataset getDataset(final double[][] set) {
+		FlatDataset dataset = trainDataset;
+		if (dataset != null && dataset.isBuiltFrom(set))
+			return dataset;
+		dataset = testDataset;
+		if (dataset != null && dataset.isBuiltFrom(set))
+			return dataset;
+
+		dataset = new FlatDataset(set, (int) SettingsLoader.getNumericSetting("numberOfLabels", 1));
+		if (set == instances)
+			trainDataset = dataset;
+		else if (set == testInstances)
+			testDataset = dataset;
+		return dataset;
+	}
 	
 	
 	public int getCummulativeCurrentInstanceIndex() {
 		return cummulativeCurrentInstanceIndex;
 	}
+	
+	/**
+	 * Returns the normalized voting confidence of each label for a batch of instances,
+	 * computed in parallel over a compiled copy of the population.
+	 * 
+	 * @param instancesToClassify
+	 *            the instances to compute the confidences for
+	 * @return the confidence vectors, in the order of the instances, or null if the
+	 * 			  representation does not support compilation
+	 */
+	public float[][] getConfidences(final double[][] instancesToClassify) {
+		final CompiledInferenceModel model = compile();
+		if (model == null)
+			return null;
+		
+		final float[][] confidences = new float[instancesToClassify.length][model.getNumberOfLabels()];
+		ParallelChunkExecutor.forEachChunk(instancesToClassify.length, MIN_CLASSIFICATION_CHUNK, new ParallelChunkExecutor.IChunkTask() {
+			@Override
+			public void run(final int from, final int to) {
+				final double[] buffer = newInstanceBuffer(instancesToClassify);
+				for (int i = from; i < to; i++)
+					model.getConfidence(getInstance(instancesToClassify, i, buffer), confidences[i]);
+			}
+		});
+		return confidences;
+	}
+	
+	/**
+	 * Returns the sampling schedule used in training.
+	 * 
+	 * @return the sampling schedule, or null if training has not started yet
+	 */
+	public IInstanceSamplingSchedule getSamplingSchedule() {
+		return samplingSchedule;
+	}
+	
+	/**
+	 * Creates the sampling schedule selected by the samplingSchedule setting, for the current train instances.
+	 * 
+	 * @return the new sampling schedule
+	 */
+	private IInstanceSamplingSchedule createSamplingSchedule() {
+		switch (SAMPLING_SCHEDULE) {
+		case SAMPLING_SCHEDULE_SHUFFLED:
+			return new ShuffledSamplingSchedule(instances.length);
+		case SAMPLING_SCHEDULE_LABEL_STRATIFIED:
+			return new LabelStratifiedSamplingSchedule(getTrainDataset());
+		case SAMPLING_SCHEDULE_HARD_INSTANCES:
+			return new HardInstancePrioritizedSamplingSchedule(instances.length);
+		default:
+			return new SequentialSamplingSchedule(instances.length);
+		}
+	}
 
 	/**
 	 * Returns a string array of the names of the evaluation metrics.
@@ -469,6 +937,15 @@ public abstract class AbstractLearningClassifierSystem {
 	 * @return a double array containing the metrics
 	 */
 	public abstract double[] getEvaluations(Instances testSet);
+
+	/**
+	 * Returns the evaluation metrics for the given test instances.
+	 * 
+	 * @param testInstances
+	 *            the test instances on which to calculate the metrics
+	 * @return a double array containing the metrics
+	 */
+	public abstract double[] getEvaluations(double[][] testInstances);
 	
 
 	/**
@@ -605,7 +1082,7 @@ public abstract class AbstractLearningClassifierSystem {
 		ClassifierSet initialClassifiers = new ClassifierSet(
 															new FixedSizeSetWorstFitnessDeletion(this,
 																	 populationSize,
-																	 new RouletteWheelSelector(AbstractUpdateStrategy.COMPARISON_MODE_DELETION, true)));
+																	 new RouletteWheelSelector(AbstractUpdateStrategy.COMPARISON_MODE_DELETION, true, getRandomGenerator())));
 
 		for (int i = 0; i < partitions.length; i++) {
 			
@@ -760,7 +1237,7 @@ public abstract class AbstractLearningClassifierSystem {
 		ClassifierSet initialClassifiers = new ClassifierSet(
 															new FixedSizeSetWorstFitnessDeletion(this,
 																	 populationSize,
-																	 new RouletteWheelSelector(AbstractUpdateStrategy.COMPARISON_MODE_DELETION, true)));
+																	 new RouletteWheelSelector(AbstractUpdateStrategy.COMPARISON_MODE_DELETION, true, getRandomGenerator())));
 
 		for (int i = 0; i < partitions.length; i++) {
 			
@@ -862,18 +1339,21 @@ public abstract class AbstractLearningClassifierSystem {
 	public void registerMultilabelHooks(double[][] instances, int numberOfLabels, int numOfFolds) {
 		
 		new FileLogger(this, numOfFolds);
+		
+		// the four metrics share a single classification pass per callback
+		final MultiLabelEvaluation evaluation = new MultiLabelEvaluation(instances, numberOfLabels);
 				
 		this.registerHook(new FileLogger("accuracy",
-				new AccuracyRecallEvaluator(instances, false, this, AccuracyRecallEvaluator.TYPE_ACCURACY)));
+				new AccuracyRecallEvaluator(evaluation, false, AccuracyRecallEvaluator.TYPE_ACCURACY)));
 		
 		this.registerHook(new FileLogger("recall",
-				new AccuracyRecallEvaluator(instances, false, this, AccuracyRecallEvaluator.TYPE_RECALL)));
+				new AccuracyRecallEvaluator(evaluation, false, AccuracyRecallEvaluator.TYPE_RECALL)));
 		
 		this.registerHook(new FileLogger("exactMatch", 
-				new ExactMatchEvalutor(instances, false, this)));
+				new ExactMatchEvalutor(evaluation, false)));
 		
 		this.registerHook(new FileLogger("hamming", 
-				new HammingLossEvaluator(instances, false, numberOfLabels, this)));
+				new HammingLossEvaluator(evaluation, false)));
 		
 		this.registerHook(new FileLogger("meanFitness",
 				new MeanFitnessStatistic(AbstractUpdateStrategy.COMPARISON_MODE_EXPLOITATION)));
@@ -956,6 +1436,18 @@ public abstract class AbstractLearningClassifierSystem {
 	public final void setRulePopulation(ClassifierSet population) {
 		rulePopulation = population;
 	}
+	
+	/**
+	 * Sets the sampling schedule to be used in training, overriding the samplingSchedule setting.
+	 * The schedule is kept when the train set is replaced, so it must be set again for the new train set.
+	 * 
+	 * @param schedule
+	 *            the new sampling schedule, or null to create one from the samplingSchedule setting
+	 */
+	public final void setSamplingSchedule(IInstanceSamplingSchedule schedule) {
+		samplingSchedule = schedule;
+		samplingScheduleSetExplicitly = (schedule != null);
+	}
 
 	/**
 	 * Run the LCS and train it.
@@ -998,10 +1490,34 @@ public abstract class AbstractLearningClassifierSystem {
 
 		
 		
-		final int numInstances = instances.length;
+		if (samplingSchedule == null)
+			samplingSchedule = createSamplingSchedule();
+
+		if (!resumeStateLoaded) {
+			loadResumeState(null);
+			checkResumeState();
+		}
+		
+		// a checkpoint of the update-only phase means that evolution was complete
+		if (resumeState != null && evolve && !resumeState.evolve)
+			return;
 
 		repetition = 0;
 		
+		if (resumeState != null) {
+			restoreTrainingState(resumeState, population);
+			resumeState = null;
+		}
+		
+		final InstancePrefetcher prefetcher = getTrainDataset().isMapped() ? new InstancePrefetcher(getTrainDataset()) : null;
+		
+		PhaseProfiler.bind(profiler);
+		
+		if (monitor == null && SettingsLoader.getStringSetting("trainingMonitor", "false").equals("true"))
+			monitor = new TrainingMonitor(this);
+		if (monitor != null)
+			monitor.register();
+		
 		int trainsBeforeHook = 0;
 		while (repetition < iterations) { 		
 			System.out.print("[");
@@ -1009,10 +1525,22 @@ public abstract class AbstractLearningClassifierSystem {
 			while ((trainsBeforeHook < hookCallbackRate) && (repetition < iterations)) { 
 				System.out.print('/');													
 				
-				for (int i = 0; i < numInstances; i++) {
-					cummulativeCurrentInstanceIndex = totalRepetition * instances.length + i;
-					trainWithInstance(population, i, evolve);
+				final int[] epochOrder = samplingSchedule.getEpochOrder(randomGenerator);
+				if (prefetcher != null)
+					prefetcher.startEpoch(epochOrder);
+				
+				final Object epochEvent = FlightRecorderEvents.begin(FlightRecorderEvents.EPOCH);
+				final int coversBefore = numberOfCoversOccured;
+				if (monitor != null)
+					monitor.startEpoch(evolve);
+				
+				for (int i = 0; i < epochOrder.length; i++) {
+					if (prefetcher != null)
+						prefetcher.advance(i);
+					cummulativeCurrentInstanceIndex = numberOfInstancesPresented + i;
+					trainWithInstance(population, epochOrder[i], evolve);
 				}
+				numberOfInstancesPresented += epochOrder.length;
 
 				repetition++;
 				totalRepetition++;
@@ -1022,6 +1550,16 @@ public abstract class AbstractLearningClassifierSystem {
 				if (!thoroughlyCheckWIthPopulation) {
 					assimilateDuplicateClassifiers(rulePopulation, evolve);
 				}
+				
+				if (monitor != null)
+					monitor.endEpoch(population);
+				if (epochEvent != null)
+					FlightRecorderEvents.commit(epochEvent, totalRepetition, evolve, epochOrder.length, 
+							population.getNumberOfMacroclassifiers(), population.getTotalNumerosity(), numberOfCoversOccured - coversBefore);
+				
+				// the last epoch before the callbacks is closed after them
+				if ((trainsBeforeHook < hookCallbackRate) && (repetition < iterations))
+					PhaseProfiler.endEpoch(hookedMetricsFileDirectory, totalRepetition);
 			}
 
 			if (hookCallbackRate < iterations) {
@@ -1029,9 +1567,174 @@ public abstract class AbstractLearningClassifierSystem {
 				System.out.print("(" + repetition + "/" + iterations + ")");
 				System.out.println();
 			}
+			PhaseProfiler.start();
 			executeCallbacks(population, repetition, evolve); 
+			PhaseProfiler.stop(PhaseProfiler.CALLBACKS);
+			PhaseProfiler.endEpoch(hookedMetricsFileDirectory, totalRepetition);
 			trainsBeforeHook = 0;
+			
+			if (CHECKPOINT_STEPS > 0 && totalRepetition - lastCheckpointRepetition >= CHECKPOINT_STEPS) {
+				saveCheckpoint(population, evolve);
+				lastCheckpointRepetition = totalRepetition;
+			}
 		}
+		
+		if (prefetcher != null)
+			prefetcher.stop();
+		
+		PhaseProfiler.writeJson(hookedMetricsFileDirectory);
+		PhaseProfiler.bind(null);
+		
+		if (monitor != null)
+			monitor.unregister();
+		
+		if (checkpoint != null)
+			checkpoint.finish();
+	}
+	
+	/**
+	 * Get the BAM rule families of the bamRulesFile setting, reading them on the first call.
+	 * 
+	 * @return the rule families, or null if the setting is not set or the file cannot be read
+	 */
+	private String[][] getBamRuleFamilies() {
+		if (bamRuleFamilies == null) {
+			bamRuleFamilies = new String[0][];
+			final String bamRulesFile = SettingsLoader.getStringSetting("bamRulesFile", "");
+			if (bamRulesFile.length() > 0) {
+				try {
+					bamRuleFamilies = SyntheticDatasetGenerator.readBamRules(bamRulesFile);
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		}
+		return (bamRuleFamilies.length == 0) ? null : bamRuleFamilies;
+	}
+	
+	/**
+	 * Save a training checkpoint in the checkpoints directory of the run.
+	 * 
+	 * @param population
+	 *            the population being trained
+	 * @param evolve
+	 *            whether the population is being evolved or just updated
+	 */
+	private void saveCheckpoint(final ClassifierSet population, final boolean evolve) {
+		if (checkpoint == null) {
+			final String directory = (hookedMetricsFileDirectory == null) ? "checkpoints" : hookedMetricsFileDirectory + "/checkpoints";
+			checkpoint = new TrainingCheckpoint(new File(directory), 
+					(int) SettingsLoader.getNumericSetting("checkpointFullInterval", 10));
+		}
+		
+		final TrainingCheckpoint.State state = new TrainingCheckpoint.State();
+		state.trainSetFingerprint = TrainingCheckpoint.getFingerprint(getTrainDataset());
+		state.trainOrder = trainOrder;
+		state.evolve = evolve;
+		state.repetition = repetition;
+		state.totalRepetition = totalRepetition;
+		state.cummulativeCurrentInstanceIndex = cummulativeCurrentInstanceIndex;
+		state.numberOfInstancesPresented = numberOfInstancesPresented;
+		state.numberOfCoversOccured = numberOfCoversOccured;
+		state.meanCorrectSetNumerosity = meanCorrectSetNumerosity;
+		state.numberOfClassifiersDeletedInMatchSets = numberOfClassifiersDeletedInMatchSets;
+		state.qualityIndexOfDeleted = qualityIndexOfDeleted;
+		state.qualityIndexOfClassifiersCoveredDeleted = qualityIndexOfClassifiersCoveredDeleted;
+		state.qualityIndexOfClassifiersGaedDeleted = qualityIndexOfClassifiersGaedDeleted;
+		state.accuracyOfDeleted = accuracyOfDeleted;
+		state.accuracyOfCoveredDeletion = accuracyOfCoveredDeletion;
+		state.accuracyOfGaedDeletion = accuracyOfGaedDeletion;
+		state.iteration = iteration;
+		state.originOfDeleted = originOfDeleted;
+		state.populationCounters = population.copyCounters();
+		state.samplingSchedule = samplingSchedule;
+		state.random = randomGenerator;
+		state.nextClassifierSerial = nextClassifierSerial;
+		state.updateStrategyState = getUpdateStrategy().getTrainingState();
+		
+		checkpoint.save(state, population);
+	}
+	
+	/**
+	 * Load the state named by the resumeFrom setting, if any. The setting may list several checkpoint 
+	 * directories (separated by commas), e.g. one per fold; the first one taken on the given train 
+	 * instances is used.
+	 * 
+	 * @param trainIndices
+	 *            the indices of the train instances in the set they are selected from, or null if 
+	 *            the train set is set directly
+	 */
+	private void loadResumeState(final int[] trainIndices) {
+		resumeStateLoaded = true;
+		
+		final String directories = SettingsLoader.getStringSetting("resumeFrom", "").trim();
+		if (directories.length() == 0)
+			return;
+		
+		for (final String directory : directories.split("\\s*,\\s*")) {
+			final TrainingCheckpoint.State state = TrainingCheckpoint.load(new File(directory));
+			if (state == null) {
+				System.out.println("Cannot resume from " + directory);
+			} else if (trainIndices == null || isOrderOf(state.trainOrder, trainIndices)) {
+				resumeState = state;
+				return;
+			}
+		}
+		System.out.println("No checkpoint in " + directories + " was taken with this train set, training from the start");
+	}
+
+	/**
+	 * Check that the state to resume from, if any, was taken with the current train set, in the same order, 
+	 * and read its macroclassifiers. Otherwise the state is dropped and training starts from the beginning.
+	 */
+	private void checkResumeState() {
+		if (resumeState == null)
+			return;
+		
+		final File directory = resumeState.directory;
+		if (!Arrays.equals(resumeState.trainOrder, trainOrder) 
+				|| resumeState.trainSetFingerprint != TrainingCheckpoint.getFingerprint(getTrainDataset())) {
+			System.out.println("The checkpoint in " + directory + " was taken with a different train set, training from the start");
+			resumeState = null;
+		} else if (!TrainingCheckpoint.readMacroclassifiers(resumeState, this)) {
+			System.out.println("Cannot read the classifiers of the checkpoint in " + directory + ", training from the start");
+			resumeState = null;
+		} else {
+			System.out.println("Resuming from " + directory + " at iteration " + resumeState.totalRepetition);
+		}
+	}
+	
+	/**
+	 * Restore a checkpointed training state.
+	 * 
+	 * @param state
+	 *            the state
+	 * @param population
+	 *            the population to restore the macroclassifiers into
+	 */
+	private void restoreTrainingState(final TrainingCheckpoint.State state, final ClassifierSet population) {
+		repetition = state.repetition;
+		totalRepetition = state.totalRepetition;
+		lastCheckpointRepetition = state.totalRepetition;
+		cummulativeCurrentInstanceIndex = state.cummulativeCurrentInstanceIndex;
+		numberOfInstancesPresented = state.numberOfInstancesPresented;
+		numberOfCoversOccured = state.numberOfCoversOccured;
+		meanCorrectSetNumerosity = state.meanCorrectSetNumerosity;
+		numberOfClassifiersDeletedInMatchSets = state.numberOfClassifiersDeletedInMatchSets;
+		qualityIndexOfDeleted = state.qualityIndexOfDeleted;
+		qualityIndexOfClassifiersCoveredDeleted = state.qualityIndexOfClassifiersCoveredDeleted;
+		qualityIndexOfClassifiersGaedDeleted = state.qualityIndexOfClassifiersGaedDeleted;
+		accuracyOfDeleted = state.accuracyOfDeleted;
+		accuracyOfCoveredDeletion = state.accuracyOfCoveredDeletion;
+		accuracyOfGaedDeletion = state.accuracyOfGaedDeletion;
+		iteration = state.iteration;
+		originOfDeleted = state.originOfDeleted;
+		population.restore(state.populationCounters, state.macroclassifiers);
+		samplingSchedule = state.samplingSchedule;
+		randomGenerator.restore(state.random);
+		nextClassifierSerial = state.nextClassifierSerial;
+		if (state.updateStrategyState != null)
+			getUpdateStrategy().setTrainingState(state.updateStrategyState);
 	}
 
 	/**
@@ -1049,13 +1752,23 @@ public abstract class AbstractLearningClassifierSystem {
 			
 //		int index = totalRepetition * instances.length + dataInstanceIndex;
 		
+		PhaseProfiler.start();
 		final ClassifierSet matchSet = population.generateMatchSetNew(dataInstanceIndex);
+		PhaseProfiler.stop(PhaseProfiler.MATCH_SET);
+		
+		final int coversBefore = numberOfCoversOccured;
 		
 		if (UPDATE_MODE == UPDATE_MODE_IMMEDIATE) 
 			getUpdateStrategy().updateSet(population, matchSet, dataInstanceIndex, evolve);
 		else if (UPDATE_MODE == UPDATE_MODE_HOLD) 
 			getUpdateStrategy().updateSetNew(population, matchSet, dataInstanceIndex, evolve);
 		
+		if (monitor != null)
+			monitor.recordInstance(matchSet.getNumberOfMacroclassifiers());
+		
+		if (samplingSchedule != null)
+			samplingSchedule.recordOutcome(dataInstanceIndex, matchSet.getNumberOfMacroclassifiers(), numberOfCoversOccured - coversBefore);
+		
 		
 //		recordInTimeMeasurements(population, index);
 	}
@@ -25,6 +25,9 @@ import gr.auth.ee.lcs.classifiers.ClassifierSet;
 import gr.auth.ee.lcs.classifiers.statistics.bundles.SetStatisticsBundle;
 import gr.auth.ee.lcs.evaluators.TestFileClassification;
 import gr.auth.ee.lcs.implementations.global.RepetitiveExec;
+import gr.auth.ee.lcs.utilities.ArffDataset;
+import gr.auth.ee.lcs.utilities.DatasetCache;
+import gr.auth.ee.lcs.utilities.FlatDataset;
 import gr.auth.ee.lcs.utilities.InstancesUtility;
 import gr.auth.ee.lcs.utilities.SettingsLoader;
 
@@ -32,6 +35,7 @@ import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Random;
 
@@ -55,6 +59,11 @@ public class ArffTrainTestLoader {
 	 */
 	public Instances trainSet;
 
+	/**
+	 * The test instances.
+	 */
+	private double[][] testInstances;
+
 	/**
 	 * The LCS instance.
 	 */
@@ -96,7 +105,7 @@ public class ArffTrainTestLoader {
 		 * The following two arrays have the same number of positions (12).
 		 * Each evaluation name (names[i]) corresponds, in sequence, to an evaluation, evals[i] 
 		 * */
-		final double[] evals = myLcs.getEvaluations(testSet);
+		final double[] evals = myLcs.getEvaluations(testInstances);
 		final String[] names = myLcs.getEvaluationNames();
 		
 //		System.out.println(myLcs.rulePopulation);
@@ -107,7 +116,7 @@ public class ArffTrainTestLoader {
 		if (!classificationFile.equals("")) {
 			try {
 				final TestFileClassification classificationModule = new TestFileClassification(
-						InstancesUtility.convertIntancesToDouble(testSet),
+						testInstances,
 						classificationFile, 
 						myLcs,
 						(int) SettingsLoader.getNumericSetting("numberOfLabels", 1));
@@ -198,25 +207,85 @@ public class ArffTrainTestLoader {
 	 */
 	public final void loadInstances(final String filename,
 			final boolean generateTestSet) throws IOException {
+		if (DatasetCache.isMappingEnabled()) {
+			loadMappedInstances(filename, generateTestSet);
+			return;
+		}
+		
 		// Open .arff
 		final Instances set = InstancesUtility.openInstance(filename);
 		if (set.classIndex() < 0) {
 			set.setClassIndex(set.numAttributes() - 1);
 		}
-		set.randomize(new Random());
 
 		if (generateTestSet) {
+			// the test fold is drawn from the generator of the LCS, so a run is only resumed with a randomSeed
+			final Random random = myLcs.getRandomGenerator().getRandom();
+			set.randomize(random);
 			final int numOfFolds = (int) SettingsLoader.getNumericSetting("NumberOfFolds", 10);
-			final int fold = (int) Math.floor(Math.random() * numOfFolds);
+			final int fold = random.nextInt(numOfFolds);
 			trainSet = set.trainCV(numOfFolds, fold);
 			testSet = set.testCV(numOfFolds, fold);
+			testInstances = InstancesUtility.convertIntancesToDouble(testSet);
 		} else {
 			trainSet = set;
 		}
 
-		myLcs.instances = InstancesUtility.convertIntancesToDouble(trainSet);
-		myLcs.labelCardinality = InstancesUtility.getLabelCardinality(trainSet);
+		final double[][] train = InstancesUtility.convertIntancesToDouble(trainSet);
+		myLcs.setShuffledTrainSet(train, getIndices(train.length));
+
+	}
+
+	/**
+	 * Memory-map the cached instances of an .arff file as the train set, building the cache entry 
+	 * if needed, and create a test set. Only the test instances are loaded in the heap.
+	 * 
+	 * @param filename
+	 *            the .arff filename to be used
+	 * @param generateTestSet
+	 *            true if a test set is going to be generated
+	 * @throws IOException
+	 *             if the input file cannot be read or cached
+	 */
+	private void loadMappedInstances(final String filename,
+									 final boolean generateTestSet) throws IOException {
+		final int numberOfLabels = (int) SettingsLoader.getNumericSetting("numberOfLabels", 1);
+		final String key = DatasetCache.getKey(filename);
+		FlatDataset mapped = DatasetCache.map(key, numberOfLabels);
+		if (mapped == null) {
+			DatasetCache.build(filename, key);
+			mapped = DatasetCache.map(key, numberOfLabels);
+		}
+		if (mapped == null)
+			throw new IOException("Could not map the cached instances of " + filename);
+
+		final int[] order = getIndices(mapped.getNumberOfInstances());
 
+		int trainSize = order.length;
+		if (generateTestSet) {
+			// the test instances are drawn from the generator of the LCS, so a run is only resumed with a randomSeed
+			myLcs.getRandomGenerator().shuffle(order);
+			final int numOfFolds = (int) SettingsLoader.getNumericSetting("NumberOfFolds", 10);
+			final int testSize = order.length / numOfFolds;
+			trainSize = order.length - testSize;
+			testInstances = new double[testSize][];
+			for (int i = 0; i < testSize; i++)
+				testInstances[i] = mapped.getInstance(order[trainSize + i]);
+		}
+
+		myLcs.setShuffledTrainSet(mapped, Arrays.copyOf(order, trainSize));
+		
+		System.out.println("Memory-mapped " + trainSize + " train instances");
+	}
+
+	/**
+	 * @return the indices 0 to size - 1
+	 */
+	private static int[] getIndices(final int size) {
+		final int[] indices = new int[size];
+		for (int i = 0; i < size; i++)
+			indices[i] = i;
+		return indices;
 	}
 
 	/**
@@ -232,23 +301,19 @@ public class ArffTrainTestLoader {
 	public final void loadInstancesWithTest(final String filename,
 											  final String testFile) throws IOException {
 		
-		// Open .arff
-		final Instances set = InstancesUtility.openInstance(filename);
-
-		if (set.classIndex() < 0)
-			set.setClassIndex(set.numAttributes() - 1);
-		set.randomize(new Random());
-		trainSet = set;
-
-		myLcs.instances = InstancesUtility.convertIntancesToDouble(trainSet); 
-		myLcs.labelCardinality = InstancesUtility.getLabelCardinality(trainSet);
-		testSet = InstancesUtility.openInstance(testFile);
-
-
-		myLcs.trainSet = trainSet;
-		myLcs.testSet = testSet;
+		if (DatasetCache.isMappingEnabled()) {
+			loadMappedInstances(filename, false);
+			testInstances = ArffDataset.load(testFile).getInstances();
+			myLcs.testInstances = testInstances;
+			return;
+		}
 		
-		myLcs.testInstances = InstancesUtility.convertIntancesToDouble(testSet);
+		// Stream the .arff files; the representation has already loaded the train file, so it is shared
+		final double[][] train = ArffDataset.load(filename).getInstances();
+		myLcs.setShuffledTrainSet(train, getIndices(train.length));
+
+		testInstances = ArffDataset.load(testFile).getInstances();
+		myLcs.testInstances = testInstances;
 		
 		System.out.println("Label cardinality: " + myLcs.labelCardinality);
 
@@ -30,6 +30,8 @@
  */
 package gr.auth.ee.lcs;
 
+import gr.auth.ee.lcs.utilities.ArffDataset;
+import gr.auth.ee.lcs.utilities.DatasetCache;
 import gr.auth.ee.lcs.utilities.InstancesUtility;
 import gr.auth.ee.lcs.utilities.SettingsLoader;
 
@@ -40,7 +42,9 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Properties;
 import java.util.Random;
 import java.util.Vector;
@@ -80,15 +84,10 @@ public class FoldEvaluator {
 		private final int i;
 		private final int numOfFoldRepetitions;
 
-		/**
-		 * The train set.
-		 */
-		private Instances trainSet;
-
 		/**
 		 * The test set.
 		 */
-		private Instances testSet;
+		private double[][] testSet;
 
 		/**
 		 * Constructor
@@ -102,7 +101,6 @@ public class FoldEvaluator {
 				int numOfFoldRepetitions) {
 			this.i = nFold;
 			this.numOfFoldRepetitions = numOfFoldRepetitions;
-			createStaticFolds();
 		}
 
 		@Override
@@ -128,17 +126,13 @@ public class FoldEvaluator {
 				
 				System.out.println("Training Fold " + i);
 				
-				try {
-					loadStaticMlStratifiedFold(i, foldLCS);
-				} catch (IOException e1) {
-					e1.printStackTrace();
-				}
+				loadFold(i, foldLCS);
 				
-				foldLCS.registerMultilabelHooks(InstancesUtility.convertIntancesToDouble(testSet), numberOfLabels, i);
+				foldLCS.registerMultilabelHooks(testSet, numberOfLabels, i);
 				
 				if (initializePopulation) {
 					try {
-						foldLCS.setRulePopulation(foldLCS.initializePopulation(trainSet));
+						foldLCS.setRulePopulation(foldLCS.initializePopulation(getTrainInstances(i, foldLCS.getRandomGenerator().getRandom())));
 						System.out.println("Population initialized.");
 					} catch (Exception e) {
 						e.printStackTrace();
@@ -213,153 +207,23 @@ public class FoldEvaluator {
 		}
 
 		/**
-		 * Load a fold into the evaluator.
-		 * 
-		 * @param foldNumber
-		 *            the fold's index
-		 * @param lcs
-		 *            the LCS that will be used to evaluate this fold
-		 */
-		@SuppressWarnings("unused")
-		private void loadFold(int foldNumber,
-				AbstractLearningClassifierSystem lcs) {
-
-			trainSet = instances.trainCV(numOfFolds, foldNumber);
-			lcs.instances = InstancesUtility.convertIntancesToDouble(trainSet);
-			testSet = instances.testCV(numOfFolds, foldNumber);
-			lcs.labelCardinality = InstancesUtility.getLabelCardinality(trainSet);
-		}
-		
-		/**
-		 * Load a multilabel stratified fold into the evaluator.
+		 * Load a fold into the evaluator. The train and test sets are views over the shared instances, 
+		 * selected by the fold assignments and shuffled by the generator of the LCS.
 		 * 
 		 * @param foldNumber
 		 *            the fold's index
 		 * @param lcs
 		 *            the LCS that will be used to evaluate this fold
 		 */
-		@SuppressWarnings("unused")
-		private void loadMlStratifiedFold(int foldNumber,
-											AbstractLearningClassifierSystem lcs) {
+		private void loadFold(int foldNumber, AbstractLearningClassifierSystem lcs) {
 			
-			Instances trainInstances = new Instances (instances, 0);
-			Instances testInstances = new Instances (instances, 0);
-			
-			int numberOfPartitions = InstancesUtility.testInstances.size() / 2;
-			
-			for (int i = 0; i < numberOfPartitions; i++) {
-				for (int j = 0; j < InstancesUtility.testInstances.elementAt(i)[foldNumber].numInstances(); j++) {
-					testInstances.add(InstancesUtility.testInstances.elementAt(i)[foldNumber].instance(j));
-					
-				}
-				for (int j = 0; j < InstancesUtility.trainInstances.elementAt(i)[foldNumber].numInstances(); j++) {
-					trainInstances.add(InstancesUtility.trainInstances.elementAt(i)[foldNumber].instance(j));
-					
-				}
-				
-			}
+			lcs.setShuffledTrainSet(instances, InstancesUtility.getFoldIndices(folds, foldNumber, false));
 			
-			trainSet = trainInstances;
-			trainSet.randomize(new Random());
+			testSet = InstancesUtility.selectInstances(instances, 
+												InstancesUtility.getFoldIndices(folds, foldNumber, true));
+			Collections.shuffle(Arrays.asList(testSet), lcs.getRandomGenerator().getRandom());
 			
-			testSet = testInstances;
-			testSet.randomize(new Random());
-
-			lcs.instances = InstancesUtility.convertIntancesToDouble(trainSet);
-			lcs.testInstances = InstancesUtility.convertIntancesToDouble(testSet);
-			
-
-			lcs.trainSet = trainSet;
-			lcs.testSet = testSet;
-
-			lcs.labelCardinality = InstancesUtility.getLabelCardinality(trainSet);
-			
-
-		}
-		
-		
-		/**
-		 * Creates the folds when using n-cross validation and stores them in a directory from where they will be used in the future.
-		 * Each run tests whether this directory exists or not. If yes, it exits.
-		 * 
-		 * This method is used to provide concrete folds that do not change over time,
-		 * in order to attain a firm base for analysing the behaviour of the LCS.
-		 * 
-		 * */
-		private void createStaticFolds() {
-			
-			// create directory dataset.arff without the .arff
-			File dir = new File(file.substring(0, (file.length() - 5))); 
-			if (!dir.exists()) {
-			  dir.mkdirs();
-			
-			
-				for (int foldNumber = 0; foldNumber < numOfFolds; foldNumber++) {
-					Instances trainInstances = new Instances (instances, 0);
-					Instances testInstances = new Instances (instances, 0);
-
-					int numberOfPartitions = InstancesUtility.testInstances.size() / 2;
-										
-					for (int i = 0; i < numberOfPartitions; i++) {
-						for (int j = 0; j < InstancesUtility.testInstances.elementAt(i)[foldNumber].numInstances(); j++) {
-							testInstances.add(InstancesUtility.testInstances.elementAt(i)[foldNumber].instance(j));
-							
-						}
-						for (int j = 0; j < InstancesUtility.trainInstances.elementAt(i)[foldNumber].numInstances(); j++) {
-							trainInstances.add(InstancesUtility.trainInstances.elementAt(i)[foldNumber].instance(j));
-							
-						}
-						
-					}
-					
-					trainInstances.randomize(new Random());
-					testInstances.randomize(new Random());
-					
-					try{	
-						final FileWriter fstream_train = new FileWriter(dir + "/train_" + foldNumber + ".arff", false);
-						final BufferedWriter buffer_train = new BufferedWriter(fstream_train);
-						buffer_train.write(trainInstances.toString());				
-
-						buffer_train.write("");
-						buffer_train.flush();
-						buffer_train.close();
-					} 
-					catch (Exception e) {
-						e.printStackTrace();
-					}
-					
-					try {
-						final FileWriter fstream_test = new FileWriter(dir + "/test_" + foldNumber + ".arff", true);
-						final BufferedWriter buffer_test = new BufferedWriter(fstream_test);
-						buffer_test.write(testInstances.toString());				
-						buffer_test.flush();
-						buffer_test.close();
-					} catch (Exception e) {
-						e.printStackTrace();
-					}
-				}
-			}
-		}
-		
-		
-		/**
-		 * Load the stored sub-datasets.
-		 */
-		private void loadStaticMlStratifiedFold(int foldNumber, AbstractLearningClassifierSystem lcs) throws IOException {
-			
-			final String staticFoldsDirectory = file.substring(0, (file.length() - 5)); // 5 = . a r f f
-			
-			trainSet = InstancesUtility.openInstance(staticFoldsDirectory + "/train_" + foldNumber + ".arff");;
-			testSet = InstancesUtility.openInstance(staticFoldsDirectory + "/test_" + foldNumber + ".arff");;
-
-
-			lcs.instances = InstancesUtility.convertIntancesToDouble(trainSet);
-			lcs.testInstances = InstancesUtility.convertIntancesToDouble(testSet);	
-			
-			lcs.trainSet = trainSet;
-			lcs.testSet = testSet;
-
-			lcs.labelCardinality = InstancesUtility.getLabelCardinality(trainSet);
+			lcs.testInstances = testSet;
 		}
 		
 	}
@@ -377,9 +241,19 @@ public class FoldEvaluator {
 	private final AbstractLearningClassifierSystem prototype;
 
 	/**
-	 * The instances that the LCS will be evaluated on.
+	 * The instances that the LCS will be evaluated on, shared by all folds.
+	 */
+	private final double[][] instances;
+	
+	/**
+	 * The test fold of every instance.
+	 */
+	private final int[] folds;
+	
+	/**
+	 * The instances in weka format, opened only when a population needs to be initialized.
 	 */
-	private final Instances instances;
+	private Instances wekaInstances;
 
 	/**
 	 * The evaluations.
@@ -419,18 +293,15 @@ public class FoldEvaluator {
 		numOfFolds = folds;
 		prototype = myLcs; 
 
-		instances = InstancesUtility.openInstance(filename);
+		final ArffDataset dataset = ArffDataset.load(filename);
+		if (dataset == null)
+			throw new IOException("Cannot load " + filename);
+		instances = dataset.getInstances();
+		this.folds = loadFolds(filename);
+		
 		runs = (int) SettingsLoader.getNumericSetting("foldsToRun", numOfFolds);
-		instances.randomize(new Random());
 		int numOfThreads = (int) SettingsLoader.getNumericSetting("numOfThreads", 1);
 		threadPool = Executors.newFixedThreadPool(numOfThreads);
-		
-		try {
-			InstancesUtility.splitDatasetIntoFolds(myLcs, instances, numOfFolds);
-		} catch (Exception e1) {
-			e1.printStackTrace();
-		}
-
 	}
 
 	/**
@@ -449,7 +320,9 @@ public class FoldEvaluator {
 			AbstractLearningClassifierSystem myLcs, Instances inputInstances) {
 		numOfFolds = folds;
 		prototype = myLcs;
-		instances = inputInstances;
+		instances = InstancesUtility.convertIntancesToDouble(inputInstances);
+		this.folds = InstancesUtility.assignStratifiedFolds(instances, numberOfLabels, numOfFolds, prototype.getRandomGenerator().getRandom());
+		wekaInstances = inputInstances;
 		runs = numberOfRuns;
 
 		int numOfThreads = (int) SettingsLoader.getNumericSetting(
@@ -457,6 +330,56 @@ public class FoldEvaluator {
 		threadPool = Executors.newFixedThreadPool(numOfThreads);
 	}
 
+	/**
+	 * Loads the fold assignments of a dataset, so that the folds do not change over time and provide a
+	 * firm base for analysing the behaviour of the LCS. The assignments are stored in the dataset cache 
+	 * if it is enabled, or else next to the dataset as dataset.<numOfFolds>.folds. If no (matching) 
+	 * assignments are found, new ones are created and stored.
+	 * 
+	 * @param filename
+	 *            the filename of the .arff containing the instances
+	 * @return the test fold of every instance
+	 */
+	private int[] loadFolds(final String filename) {
+		final String key = DatasetCache.getKey(filename);
+		final File foldsFile = new File(filename.substring(0, filename.length() - 5) // 5 = . a r f f 
+										+ "." + numOfFolds + ".folds");
+		
+		int[] assignments = (key != null) ? DatasetCache.openFolds(key, numOfFolds) 
+										  : DatasetCache.readFolds(foldsFile, numOfFolds);
+		if (assignments != null && assignments.length == instances.length)
+			return assignments;
+		
+		assignments = InstancesUtility.assignStratifiedFolds(instances, numberOfLabels, numOfFolds, prototype.getRandomGenerator().getRandom());
+		if (key != null)
+			DatasetCache.saveFolds(key, numOfFolds, assignments);
+		else
+			DatasetCache.writeFolds(foldsFile, numOfFolds, assignments);
+		return assignments;
+	}
+	
+	/**
+	 * Returns the train set of a fold in weka format, as needed to initialize a population.
+	 * 
+	 * @param foldNumber
+	 *            the fold's index
+	 * @param random
+	 *            the generator to shuffle the instances with
+	 * @return the train instances
+	 * @throws IOException
+	 *             if the file is not found
+	 */
+	private synchronized Instances getTrainInstances(final int foldNumber, final Random random) throws IOException {
+		if (wekaInstances == null)
+			wekaInstances = InstancesUtility.openInstance(file);
+		
+		final Instances trainInstances = new Instances(wekaInstances, 0);
+		for (final int index : InstancesUtility.getFoldIndices(folds, foldNumber, false))
+			trainInstances.add(wekaInstances.instance(index));
+		trainInstances.randomize(random);
+		return trainInstances;
+	}
+
 	/**
 	 * Calculate the mean of all fold metrics.
 	 * 
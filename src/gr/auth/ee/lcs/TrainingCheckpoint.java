@@ -0,0 +1,772 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs;
+
+import gr.auth.ee.lcs.classifiers.Classifier;
+import gr.auth.ee.lcs.classifiers.ClassifierSet;
+import gr.auth.ee.lcs.classifiers.Macroclassifier;
+import gr.auth.ee.lcs.sampling.IInstanceSamplingSchedule;
+import gr.auth.ee.lcs.utilities.FlatDataset;
+import gr.auth.ee.lcs.utilities.RandomGenerator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+
+/**
+ * Periodic checkpoints of a training run, from which training can be resumed exactly where it stopped.
+ * 
+ * A checkpoint holds the training state of the LCS (iteration counters, deletion logs, sampling schedule, 
+ * random generator, update strategy state) and one record per macroclassifier (the classifier with its 
+ * update data and timestamps, and a summary of its match cache). Checkpoints are files 
+ * checkpoint-<sequence>.ckpt in a directory. The first one, and every checkpointFullInterval-th one, 
+ * is full; the others are deltas holding only the records that changed since the previous checkpoint. 
+ * Every file is tagged with the id of the full checkpoint it builds on, so that deltas left over by an 
+ * earlier run in the same directory are never applied to a full checkpoint of this one. 
+ * A file is written under a temporary name and renamed when complete, so an interrupted write never 
+ * damages the checkpoints already written.
+ * 
+ * The records are serialized on the training thread, so that they are consistent; the files are 
+ * written by a background thread.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public final class TrainingCheckpoint {
+
+	/**
+	 * The training state of an LCS, apart from its macroclassifiers.
+	 * 
+	 * @author F. Tzima and M. Allamanis
+	 * 
+	 */
+	static final class State implements Serializable {
+
+		/**
+		 * Serialization id for versioning.
+		 */
+		private static final long serialVersionUID = 4213008533465671190L;
+
+		/**
+		 * A fingerprint of the train set, so that training is not resumed on different instances.
+		 */
+		int trainSetFingerprint;
+
+		/**
+		 * The order of the train set (see AbstractLearningClassifierSystem.setShuffledTrainSet()), or null 
+		 * if the train set was set directly.
+		 */
+		int[] trainOrder;
+
+		/**
+		 * True if the checkpoint was taken while evolving, false while only updating the population.
+		 */
+		boolean evolve;
+
+		/**
+		 * The iterations completed in the current trainSet() call.
+		 */
+		int repetition;
+
+		/**
+		 * The iterations completed in all trainSet() calls.
+		 */
+		int totalRepetition;
+
+		/**
+		 * The creation stamp of the instance being presented at the checkpoint.
+		 */
+		int cummulativeCurrentInstanceIndex;
+
+		/**
+		 * The number of instances presented in the completed epochs.
+		 */
+		int numberOfInstancesPresented;
+
+		/**
+		 * The number of covering operations so far.
+		 */
+		int numberOfCoversOccured;
+
+		/**
+		 * The running mean numerosity of the correct sets.
+		 */
+		double meanCorrectSetNumerosity;
+
+		/**
+		 * The number of classifiers deleted from the match sets so far.
+		 */
+		int numberOfClassifiersDeletedInMatchSets;
+
+		/**
+		 * The quality of each deleted classifier.
+		 */
+		Vector<Float> qualityIndexOfDeleted;
+
+		/**
+		 * The quality of each deleted classifier created by covering, -0.2 for the others.
+		 */
+		Vector<Float> qualityIndexOfClassifiersCoveredDeleted;
+
+		/**
+		 * The quality of each deleted classifier created by the GA, -0.2 for the others.
+		 */
+		Vector<Float> qualityIndexOfClassifiersGaedDeleted;
+
+		/**
+		 * The accuracy of each deleted classifier.
+		 */
+		Vector<Float> accuracyOfDeleted;
+
+		/**
+		 * The accuracy of each deleted classifier created by covering, -0.1 for the others.
+		 */
+		Vector<Float> accuracyOfCoveredDeletion;
+
+		/**
+		 * The accuracy of each deleted classifier created by the GA, -0.1 for the others.
+		 */
+		Vector<Float> accuracyOfGaedDeletion;
+
+		/**
+		 * The value of totalRepetition at each deletion.
+		 */
+		Vector<Integer> iteration;
+
+		/**
+		 * The origin of each deleted classifier, 0 for covering and 1 for the GA.
+		 */
+		Vector<Integer> originOfDeleted;
+
+		/**
+		 * The counters of the population, without its macroclassifiers.
+		 */
+		ClassifierSet populationCounters;
+
+		/**
+		 * The sampling schedule, with the state of its current epoch.
+		 */
+		IInstanceSamplingSchedule samplingSchedule;
+
+		/**
+		 * The random generator of the LCS.
+		 */
+		RandomGenerator random;
+
+		/**
+		 * The serial number of the next classifier created.
+		 */
+		int nextClassifierSerial;
+
+		/**
+		 * The state returned by AbstractUpdateStrategy.getTrainingState().
+		 */
+		Serializable updateStrategyState;
+
+		/**
+		 * The directory the checkpoint was loaded from.
+		 */
+		transient File directory;
+
+		/**
+		 * The records of the macroclassifiers of the population, in order, filled in when a checkpoint is loaded.
+		 */
+		transient byte[][] records;
+
+		/**
+		 * The macroclassifiers of the population, filled in by readMacroclassifiers().
+		 */
+		transient ArrayList<Macroclassifier> macroclassifiers;
+	}
+
+	/**
+	 * The magic number at the start of every checkpoint file ("LCSC").
+	 */
+	private static final int MAGIC = 0x4C435343;
+
+	/**
+	 * The version of the file format.
+	 */
+	private static final int VERSION = 4;
+
+	private static final String PREFIX = "checkpoint-";
+
+	private static final String SUFFIX = ".ckpt";
+
+	/**
+	 * The directory of the checkpoint files.
+	 */
+	private final File directory;
+
+	/**
+	 * The number of checkpoints per full checkpoint.
+	 */
+	private final int fullInterval;
+
+	/**
+	 * The ids of the macroclassifiers saved so far.
+	 */
+	private IdentityHashMap<Macroclassifier, Integer> ids = new IdentityHashMap<Macroclassifier, Integer>();
+
+	/**
+	 * The hashes of the records saved last, by macroclassifier id.
+	 */
+	private HashMap<Integer, Long> hashes = new HashMap<Integer, Long>();
+
+	/**
+	 * The next macroclassifier id.
+	 */
+	private int nextId = 0;
+
+	/**
+	 * The sequence number of the next checkpoint.
+	 */
+	private int sequence = 0;
+
+	/**
+	 * The id of the last full checkpoint, which the deltas following it are tagged with.
+	 */
+	private long baseId;
+
+	/**
+	 * The generator of the full checkpoint ids. Separate from the generator of the LCS, 
+	 * so that checkpointing does not change the training.
+	 */
+	private final Random idGenerator = new Random();
+
+	/**
+	 * Set by the writer when a file could not be written, so that the next checkpoint is full.
+	 */
+	private volatile boolean writeFailed = false;
+
+	/**
+	 * The thread writing the files.
+	 */
+	private final ExecutorService writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(final Runnable target) {
+			final Thread thread = new Thread(target, "lcs-checkpoint-writer");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/**
+	 * The file being written, if any.
+	 */
+	private Future<?> pending;
+
+	/**
+	 * Constructor. Existing checkpoints in the directory are removed once the first new checkpoint is written.
+	 * 
+	 * @param directory
+	 *            the directory of the checkpoint files
+	 * @param fullInterval
+	 *            the number of checkpoints per full checkpoint
+	 */
+	TrainingCheckpoint(final File directory, final int fullInterval) {
+		this.directory = directory;
+		this.fullInterval = Math.max(1, fullInterval);
+	}
+
+	/**
+	 * Save a checkpoint. The population is serialized before returning, the file is written in the background.
+	 * A checkpoint still being written is waited for first.
+	 * 
+	 * @param state
+	 *            the training state
+	 * @param population
+	 *            the population
+	 */
+	void save(final State state, final ClassifierSet population) {
+		finish();
+		
+		final boolean full = (sequence % fullInterval == 0) || writeFailed;
+		writeFailed = false;
+		if (full)
+			baseId = idGenerator.nextLong();
+		final long fileBaseId = baseId;
+		
+		try {
+			final byte[] stateBytes = serialize(state);
+			
+			final int size = population.getNumberOfMacroclassifiers();
+			final int[] order = new int[size];
+			final Vector<Integer> changedIds = new Vector<Integer>();
+			final Vector<byte[]> changedRecords = new Vector<byte[]>();
+			
+			final IdentityHashMap<Macroclassifier, Integer> newIds = new IdentityHashMap<Macroclassifier, Integer>(2 * size);
+			final HashMap<Integer, Long> newHashes = new HashMap<Integer, Long>(2 * size);
+			final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			
+			for (int i = 0; i < size; i++) {
+				final Macroclassifier macro = population.getMacroclassifier(i);
+				Integer id = ids.get(macro);
+				if (id == null)
+					id = nextId++;
+				newIds.put(macro, id);
+				order[i] = id;
+				
+				final byte[] record = writeRecord(macro, buffer);
+				final long hash = hash(record);
+				newHashes.put(id, hash);
+				
+				final Long previousHash = hashes.get(id);
+				if (full || previousHash == null || previousHash.longValue() != hash) {
+					changedIds.add(id);
+					changedRecords.add(record);
+				}
+			}
+			ids = newIds;
+			hashes = newHashes;
+			
+			final int fileSequence = sequence++;
+			pending = writer.submit(new Runnable() {
+				@Override
+				public void run() {
+					if (!writeFile(fileSequence, full, fileBaseId, stateBytes, order, changedIds, changedRecords))
+						writeFailed = true;
+				}
+			});
+		} catch (IOException e) {
+			e.printStackTrace();
+			writeFailed = true;
+		}
+	}
+
+	/**
+	 * Wait until the checkpoint being written, if any, is complete.
+	 */
+	void finish() {
+		if (pending == null)
+			return;
+		try {
+			pending.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			e.printStackTrace();
+			writeFailed = true;
+		}
+		pending = null;
+	}
+
+	/**
+	 * Write a checkpoint file. Runs on the writer thread.
+	 * 
+	 * @return true if the file was written
+	 */
+	private boolean writeFile(final int fileSequence, 
+							  final boolean full, 
+							  final long fileBaseId,
+							  final byte[] stateBytes, 
+							  final int[] order,
+							  final Vector<Integer> changedIds, 
+							  final Vector<byte[]> changedRecords) {
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			System.out.println("Cannot create the checkpoint directory " + directory);
+			return false;
+		}
+		
+		final File file = getFile(directory, fileSequence);
+		final File temporary = new File(directory, file.getName() + ".tmp");
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary), 1 << 16));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(fileSequence);
+			out.writeBoolean(full);
+			out.writeLong(fileBaseId);
+			out.writeInt(stateBytes.length);
+			out.write(stateBytes);
+			out.writeInt(order.length);
+			for (int i = 0; i < order.length; i++)
+				out.writeInt(order[i]);
+			out.writeInt(changedIds.size());
+			for (int i = 0; i < changedIds.size(); i++) {
+				out.writeInt(changedIds.get(i));
+				out.writeInt(changedRecords.get(i).length);
+				out.write(changedRecords.get(i));
+			}
+			out.close();
+			out = null;
+			
+			if (!temporary.renameTo(file)) {
+				file.delete();
+				if (!temporary.renameTo(file)) {
+					System.out.println("Cannot rename " + temporary + " to " + file);
+					return false;
+				}
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+				temporary.delete();
+			}
+		}
+		
+		// a full checkpoint makes all the previous files redundant
+		if (full) {
+			for (final File old : listFiles(directory)) {
+				if (getSequence(old) != fileSequence)
+					old.delete();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Load the latest checkpoint of a directory: the latest full checkpoint and the deltas following it.
+	 * The macroclassifiers are only read by readMacroclassifiers(), once the state is known to fit.
+	 * 
+	 * @param directory
+	 *            the directory of the checkpoint files
+	 * @return the state, with the records of its macroclassifiers, or null if no checkpoint could be loaded
+	 */
+	static State load(final File directory) {
+		final File[] files = listFiles(directory);
+		Arrays.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(final File a, final File b) {
+				final int sa = getSequence(a);
+				final int sb = getSequence(b);
+				return (sa < sb) ? -1 : ((sa == sb) ? 0 : 1);
+			}
+		});
+		
+		// find the latest full checkpoint
+		int first = -1;
+		for (int i = files.length - 1; i >= 0 && first < 0; i--) {
+			final Boolean full = isFull(files[i]);
+			if (full != null && full)
+				first = i;
+		}
+		if (first < 0) {
+			System.out.println("No complete checkpoint found in " + directory);
+			return null;
+		}
+		
+		final HashMap<Integer, byte[]> records = new HashMap<Integer, byte[]>();
+		byte[] stateBytes = null;
+		int[] order = null;
+		long firstBaseId = 0;
+		for (int i = first; i < files.length; i++) {
+			if (i > first && getSequence(files[i]) != getSequence(files[i - 1]) + 1)
+				break;
+			
+			DataInputStream in = null;
+			try {
+				in = new DataInputStream(new BufferedInputStream(new FileInputStream(files[i]), 1 << 16));
+				if (in.readInt() != MAGIC || in.readInt() != VERSION)
+					break;
+				in.readInt();
+				in.readBoolean();
+				final long fileBaseId = in.readLong();
+				if (i == first) {
+					firstBaseId = fileBaseId;
+				} else if (fileBaseId != firstBaseId) {
+					System.out.println("Ignoring " + files[i] + " and the checkpoints after it, left over by another run");
+					break;
+				}
+				final byte[] fileState = new byte[in.readInt()];
+				in.readFully(fileState);
+				final int[] fileOrder = new int[in.readInt()];
+				for (int j = 0; j < fileOrder.length; j++)
+					fileOrder[j] = in.readInt();
+				final int numberOfRecords = in.readInt();
+				for (int j = 0; j < numberOfRecords; j++) {
+					final int id = in.readInt();
+					final byte[] record = new byte[in.readInt()];
+					in.readFully(record);
+					records.put(id, record);
+				}
+				stateBytes = fileState;
+				order = fileOrder;
+			} catch (IOException e) {
+				// a damaged delta ends the chain; resume from the ones before it
+				e.printStackTrace();
+				break;
+			} finally {
+				close(in);
+			}
+		}
+		
+		try {
+			final State state = (State) new ObjectInputStream(new ByteArrayInputStream(stateBytes)).readObject();
+			state.directory = directory;
+			state.records = new byte[order.length][];
+			for (int i = 0; i < order.length; i++) {
+				state.records[i] = records.get(order[i]);
+				if (state.records[i] == null) {
+					System.out.println("Checkpoint in " + directory + " is missing classifier " + order[i]);
+					return null;
+				}
+			}
+			return state;
+		} catch (IOException e) {
+			e.printStackTrace();
+		} catch (ClassNotFoundException e) {
+			e.printStackTrace();
+		}
+		return null;
+	}
+
+	/**
+	 * Restores the macroclassifiers of a loaded checkpoint into its state.
+	 * 
+	 * @param state
+	 *            the state, as returned by load()
+	 * @param lcs
+	 *            the LCS the macroclassifiers will belong to
+	 * @return true if the macroclassifiers were read
+	 */
+	static boolean readMacroclassifiers(final State state, final AbstractLearningClassifierSystem lcs) {
+		final ArrayList<Macroclassifier> macroclassifiers = new ArrayList<Macroclassifier>(state.records.length);
+		try {
+			for (int i = 0; i < state.records.length; i++)
+				macroclassifiers.add(readRecord(state.records[i], lcs));
+			state.macroclassifiers = macroclassifiers;
+			state.records = null;
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+		} catch (ClassNotFoundException e) {
+			e.printStackTrace();
+		}
+		return false;
+	}
+
+	/**
+	 * Computes a fingerprint of a train set.
+	 * 
+	 * @param instances
+	 *            the train set
+	 * @return the fingerprint
+	 */
+	static int getFingerprint(final FlatDataset instances) {
+		return instances.getInstancesHashCode();
+	}
+
+	/**
+	 * Serializes a macroclassifier and the summary of its match cache (which instances have been 
+	 * checked and which of them matched).
+	 * 
+	 * @param macro
+	 *            the macroclassifier
+	 * @param buffer
+	 *            a buffer to reuse
+	 * @return the record
+	 */
+	private static byte[] writeRecord(final Macroclassifier macro, final ByteArrayOutputStream buffer) throws IOException {
+		buffer.reset();
+		final ObjectOutputStream out = new ObjectOutputStream(buffer);
+		out.writeObject(macro);
+		
+		final Classifier cl = macro.myClassifier;
+		out.writeInt(cl.covered);
+		out.writeInt(cl.checked);
+		
+		final byte[] cache = cl.matchInstances;
+		if (cache == null) {
+			out.writeInt(-1);
+		} else {
+			out.writeInt(cache.length);
+			final int words = (cache.length + 63) >>> 6;
+			final long[] known = new long[words];
+			final long[] matched = new long[words];
+			for (int i = 0; i < cache.length; i++) {
+				if (cache[i] != -1)
+					known[i >>> 6] |= 1L << i;
+				if (cache[i] == 1)
+					matched[i >>> 6] |= 1L << i;
+			}
+			for (int w = 0; w < words; w++) {
+				out.writeLong(known[w]);
+				out.writeLong(matched[w]);
+			}
+		}
+		out.close();
+		return buffer.toByteArray();
+	}
+
+	/**
+	 * Restores a macroclassifier from its record.
+	 * 
+	 * @param record
+	 *            the record
+	 * @param lcs
+	 *            the LCS the classifier belongs to
+	 * @return the macroclassifier
+	 */
+	private static Macroclassifier readRecord(final byte[] record, final AbstractLearningClassifierSystem lcs) 
+			throws IOException, ClassNotFoundException {
+		final ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(record));
+		final Macroclassifier macro = (Macroclassifier) in.readObject();
+		
+		final Classifier cl = macro.myClassifier;
+		cl.setLCS(lcs);
+		cl.covered = in.readInt();
+		cl.checked = in.readInt();
+		
+		final int length = in.readInt();
+		if (length >= 0) {
+			final byte[] cache = new byte[length];
+			Arrays.fill(cache, (byte) -1);
+			final int words = (length + 63) >>> 6;
+			for (int w = 0; w < words; w++) {
+				final long known = in.readLong();
+				final long matched = in.readLong();
+				for (int b = 0; b < 64 && (w << 6) + b < length; b++) {
+					if ((known & (1L << b)) != 0)
+						cache[(w << 6) + b] = (byte) (((matched & (1L << b)) != 0) ? 1 : 0);
+				}
+			}
+			cl.matchInstances = cache;
+		}
+		return macro;
+	}
+
+	/**
+	 * Serializes an object.
+	 */
+	private static byte[] serialize(final Serializable object) throws IOException {
+		final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		final ObjectOutputStream out = new ObjectOutputStream(buffer);
+		out.writeObject(object);
+		out.close();
+		return buffer.toByteArray();
+	}
+
+	/**
+	 * Hashes a record, to detect changed records between checkpoints.
+	 */
+	private static long hash(final byte[] record) {
+		final CRC32 crc = new CRC32();
+		crc.update(record);
+		return (crc.getValue() << 32) ^ (Arrays.hashCode(record) & 0xFFFFFFFFL) ^ record.length;
+	}
+
+	/**
+	 * Reads whether a checkpoint file is full.
+	 * 
+	 * @return true if full, false if a delta, null if not a checkpoint file of this version
+	 */
+	private static Boolean isFull(final File file) {
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new FileInputStream(file));
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				System.out.println(file + " is not a checkpoint file of version " + VERSION);
+				return null;
+			}
+			in.readInt();
+			return in.readBoolean();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		} finally {
+			close(in);
+		}
+	}
+
+	/**
+	 * @return the checkpoint files of a directory, in no particular order
+	 */
+	private static File[] listFiles(final File directory) {
+		final File[] files = directory.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(final File file) {
+				return getSequence(file) >= 0;
+			}
+		});
+		return (files == null) ? new File[0] : files;
+	}
+
+	/**
+	 * @return the checkpoint file with the given sequence number
+	 */
+	private static File getFile(final File directory, final int fileSequence) {
+		return new File(directory, PREFIX + fileSequence + SUFFIX);
+	}
+
+	/**
+	 * @return the sequence number of a checkpoint file, or -1 if the file is not a checkpoint file
+	 */
+	private static int getSequence(final File file) {
+		final String name = file.getName();
+		if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX))
+			return -1;
+		try {
+			return Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Close a stream, ignoring null ones.
+	 */
+	private static void close(final DataInputStream in) {
+		if (in == null)
+			return;
+		try {
+			in.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,429 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs;
+
+import gr.auth.ee.lcs.classifiers.Classifier;
+import gr.auth.ee.lcs.classifiers.ClassifierSet;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.ObjectName;
+
+/**
+ * Live telemetry of a training run, registered as a JMX MBean (gr.auth.ee.lcs:type=TrainingMonitor,name=lcs-N) 
+ * while the LCS trains, so that it can be followed with JConsole or any JMX client.
+ * 
+ * The training thread records every instance and publishes the population gauges at the end of each epoch; 
+ * the JMX threads only read the published values, never the population itself.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public final class TrainingMonitor implements TrainingMonitorMBean {
+
+	/**
+	 * The number of monitors created, naming them.
+	 */
+	private static int monitorsCreated = 0;
+
+	/**
+	 * The JMX name of the monitor.
+	 */
+	private final ObjectName name;
+
+	/**
+	 * The LCS monitored.
+	 */
+	private final AbstractLearningClassifierSystem myLcs;
+
+	/**
+	 * The name of the training thread.
+	 */
+	private volatile String trainingThread = "";
+
+	/**
+	 * Whether the population is evolved in the current epoch.
+	 */
+	private volatile boolean evolving;
+
+	/**
+	 * The number of the current epoch.
+	 */
+	private volatile int currentEpoch;
+
+	/**
+	 * The number of instances trained with.
+	 */
+	private volatile long instancesTrained;
+
+	/**
+	 * The throughput of the last epoch.
+	 */
+	private volatile double lastInstancesPerSecond;
+
+	/**
+	 * The number of macroclassifiers at the end of the last epoch.
+	 */
+	private volatile int macroclassifiers;
+
+	/**
+	 * The number of microclassifiers at the end of the last epoch.
+	 */
+	private volatile int numerosity;
+
+	/**
+	 * The mean match set size of the last epoch.
+	 */
+	private volatile double meanMatchSetSize;
+
+	/**
+	 * The mean correct set size of the last epoch.
+	 */
+	private volatile double meanCorrectSetSize;
+
+	/**
+	 * The covers of the last epoch.
+	 */
+	private volatile int coversPerEpoch;
+
+	/**
+	 * The GA invocations so far.
+	 */
+	private volatile int gaInvocations;
+
+	/**
+	 * The subsumptions into the population so far.
+	 */
+	private volatile int subsumptions;
+
+	/**
+	 * The deletions so far.
+	 */
+	private volatile int deletions;
+
+	/**
+	 * The zero-coverage deletions so far.
+	 */
+	private volatile int zeroCoverageDeletions;
+
+	/**
+	 * The estimated heap of the match caches, in bytes.
+	 */
+	private volatile long matchCacheHeapEstimate;
+
+	/**
+	 * The System.nanoTime() at the start of the current epoch.
+	 */
+	private volatile long epochStartNanos;
+
+	/**
+	 * The instances trained with before the current epoch.
+	 */
+	private volatile long epochStartInstances;
+
+	/**
+	 * The sum of the match set sizes of the current epoch, only accessed by the training thread.
+	 */
+	private long matchSetSizes;
+
+	/**
+	 * The sum of the mean correct set sizes of the current epoch, only accessed by the training thread.
+	 */
+	private double correctSetSizes;
+
+	/**
+	 * The covers occurred before the current epoch, only accessed by the training thread.
+	 */
+	private int epochStartCovers;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param lcs
+	 *            the LCS to monitor
+	 */
+	public TrainingMonitor(final AbstractLearningClassifierSystem lcs) {
+		myLcs = lcs;
+		ObjectName objectName = null;
+		try {
+			synchronized (TrainingMonitor.class) {
+				objectName = new ObjectName("gr.auth.ee.lcs:type=TrainingMonitor,name=lcs-" + (++monitorsCreated));
+			}
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		name = objectName;
+	}
+
+	/**
+	 * Register the monitor with the platform MBean server.
+	 */
+	public void register() {
+		trainingThread = Thread.currentThread().getName();
+		try {
+			if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name))
+				ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+		} catch (Exception e) {
+			System.out.println("Cannot register the training monitor " + name + ": " + e);
+		}
+	}
+
+	/**
+	 * Unregister the monitor from the platform MBean server.
+	 */
+	public void unregister() {
+		try {
+			if (ManagementFactory.getPlatformMBeanServer().isRegistered(name))
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Mark the start of an epoch.
+	 * 
+	 * @param evolve
+	 *            whether the population is evolved in the epoch
+	 */
+	public void startEpoch(final boolean evolve) {
+		evolving = evolve;
+		currentEpoch = myLcs.totalRepetition + 1;
+		matchSetSizes = 0;
+		correctSetSizes = 0;
+		epochStartCovers = myLcs.numberOfCoversOccured;
+		epochStartInstances = instancesTrained;
+		epochStartNanos = System.nanoTime();
+	}
+
+	/**
+	 * Record the training with an instance.
+	 * 
+	 * @param matchSetSize
+	 *            the number of macroclassifiers in the match set of the instance
+	 */
+	public void recordInstance(final int matchSetSize) {
+		matchSetSizes += matchSetSize;
+		correctSetSizes += myLcs.meanCorrectSetNumerosity;
+		instancesTrained++;
+	}
+
+	/**
+	 * Publish the gauges at the end of an epoch.
+	 * 
+	 * @param population
+	 *            the population trained
+	 */
+	public void endEpoch(final ClassifierSet population) {
+		final long instances = instancesTrained - epochStartInstances;
+		final long nanos = System.nanoTime() - epochStartNanos;
+		if (instances > 0) {
+			lastInstancesPerSecond = (nanos > 0) ? instances * 1e9 / nanos : 0;
+			meanMatchSetSize = (double) matchSetSizes / instances;
+			meanCorrectSetSize = correctSetSizes / instances;
+		}
+		coversPerEpoch = myLcs.numberOfCoversOccured - epochStartCovers;
+
+		long cacheBytes = 0;
+		for (int i = 0; i < population.getNumberOfMacroclassifiers(); i++) {
+			final Classifier cl = population.getClassifier(i);
+			if (cl.matchInstances != null) // a byte per instance, 16 bytes of array header, 8-byte aligned
+				cacheBytes += (16 + cl.matchInstances.length + 7) & ~7L;
+		}
+
+		macroclassifiers = population.getNumberOfMacroclassifiers();
+		numerosity = population.getTotalNumerosity();
+		gaInvocations = population.totalGAInvocations;
+		subsumptions = population.totalSubsumptions;
+		deletions = population.coveredDeleted + population.gaedDeleted;
+		zeroCoverageDeletions = population.zeroCoverageDeletions;
+		matchCacheHeapEstimate = cacheBytes;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.TrainingMonitorMBean#getOutputDirectory()
+	 */
+	@Override
+	public String getOutputDirectory() {
+		return myLcs.hookedMetricsFileDirectory;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.TrainingMonitorMBean#getTrainingThread()
+	 */
+	@Override
+	public String getTrainingThread() {
+		return trainingThread;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.TrainingMonitorMBean#isEvolving()
+	 */
+	@Override
+	public boolean isEvolving() {
+		return evolving;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.TrainingMonitorMBean#getCurrentEpoch()
+	 */
+	@Override
+	public int getCurrentEpoch() {
+		return currentEpoch;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.TrainingMonitorMBean#getInstancesTrained()
+	 */
+	@Override
+	public long getInstancesTrained() {
+		return instancesTrained;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.TrainingMonitorMBean#getInstancesPerSecond()
+	 */
+	@Override
+	public double getInstancesPerSecond() {
+		final long instances = instancesTrained - epochStartInstances;
+		final long nanos = System.nanoTime() - epochStartNanos;
+		if (instances < 100 || nanos <= 0)
+			return lastInstancesPerSecond;
+		return instances * 1e9 / nanos;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.TrainingMonitorMBean#getMacroclassifiers()
+	 */
+	@Override
+	public int getMacroclassifiers() {
+		return macroclassifiers;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.TrainingMonitorMBean#getNumerosity()
+	 */
+	@Override
+	public int getNumerosity() {
+		return numerosity;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.TrainingMonitorMBean#getMeanMatchSetSize()
+	 */
+	@Override
+	public double getMeanMatchSetSize() {
+		return meanMatchSetSize;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.TrainingMonitorMBean#getMeanCorrectSetSize()
+	 */
+	@Override
+	public double getMeanCorrectSetSize() {
+		return meanCorrectSetSize;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.TrainingMonitorMBean#getCoversPerEpoch()
+	 */
+	@Override
+	public int getCoversPerEpoch() {
+		return coversPerEpoch;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.TrainingMonitorMBean#getGaInvocations()
+	 */
+	@Override
+	public int getGaInvocations() {
+		return gaInvocations;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.TrainingMonitorMBean#getSubsumptions()
+	 */
+	@Override
+	public int getSubsumptions() {
+		return subsumptions;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.TrainingMonitorMBean#getDeletions()
+	 */
+	@Override
+	public int getDeletions() {
+		return deletions;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.TrainingMonitorMBean#getZeroCoverageDeletions()
+	 */
+	@Override
+	public int getZeroCoverageDeletions() {
+		return zeroCoverageDeletions;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.TrainingMonitorMBean#getMatchCacheHeapEstimate()
+	 */
+	@Override
+	public long getMatchCacheHeapEstimate() {
+		return matchCacheHeapEstimate;
+	}
+
+}
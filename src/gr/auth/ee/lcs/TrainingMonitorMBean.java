@@ -0,0 +1,115 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs;
+
+/**
+ * The JMX management interface of a training run, implemented by TrainingMonitor.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public interface TrainingMonitorMBean {
+
+	/**
+	 * @return the directory of the output files of the run
+	 */
+	String getOutputDirectory();
+
+	/**
+	 * @return the name of the thread training the LCS
+	 */
+	String getTrainingThread();
+
+	/**
+	 * @return true while the population is evolved, false in the update-only iterations
+	 */
+	boolean isEvolving();
+
+	/**
+	 * @return the number of the current epoch (full pass over the train set)
+	 */
+	int getCurrentEpoch();
+
+	/**
+	 * @return the number of instances trained with so far
+	 */
+	long getInstancesTrained();
+
+	/**
+	 * @return the training throughput of the current epoch, or of the last one when the current has just started
+	 */
+	double getInstancesPerSecond();
+
+	/**
+	 * @return the number of macroclassifiers in the population at the end of the last epoch
+	 */
+	int getMacroclassifiers();
+
+	/**
+	 * @return the number of microclassifiers in the population at the end of the last epoch
+	 */
+	int getNumerosity();
+
+	/**
+	 * @return the mean number of macroclassifiers in the match sets of the last epoch
+	 */
+	double getMeanMatchSetSize();
+
+	/**
+	 * @return the mean number of macroclassifiers in the label correct sets of the last epoch
+	 */
+	double getMeanCorrectSetSize();
+
+	/**
+	 * @return the number of covering classifiers created in the last epoch
+	 */
+	int getCoversPerEpoch();
+
+	/**
+	 * @return the number of GA invocations so far
+	 */
+	int getGaInvocations();
+
+	/**
+	 * @return the number of subsumptions into the population so far
+	 */
+	int getSubsumptions();
+
+	/**
+	 * @return the number of classifiers deleted to control the population size so far
+	 */
+	int getDeletions();
+
+	/**
+	 * @return the number of zero-coverage classifiers deleted so far
+	 */
+	int getZeroCoverageDeletions();
+
+	/**
+	 * @return an estimate of the heap held by the match caches of the population, in bytes
+	 */
+	long getMatchCacheHeapEstimate();
+
+}
@@ -0,0 +1,187 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.benchmarks;
+
+import gr.auth.ee.lcs.classifiers.Classifier;
+import gr.auth.ee.lcs.classifiers.ClassifierSet;
+import gr.auth.ee.lcs.classifiers.Macroclassifier;
+import gr.auth.ee.lcs.data.representations.complex.GenericMultiLabelRepresentation;
+import gr.auth.ee.lcs.implementations.MLSLCS;
+import gr.auth.ee.lcs.utilities.ArffDataset;
+import gr.auth.ee.lcs.utilities.FlatDataset;
+import gr.auth.ee.lcs.utilities.InstancesUtility;
+import gr.auth.ee.lcs.utilities.RandomGenerator;
+import gr.auth.ee.lcs.utilities.SettingsLoader;
+import gr.auth.ee.lcs.utilities.SyntheticDatasetGenerator;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The state shared by the hot path benchmarks of one parameter combination: an MLSLCS on a dataset
+ * and a rule population of the requested size. The population is built by covering randomly chosen
+ * instances and is then updated (without evolution) with every instance once, so that its fitness,
+ * experience and match caches look like those of a population under training.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public final class BenchmarkState {
+
+	/**
+	 * The name of the dataset, as reported.
+	 */
+	public final String datasetName;
+
+	/**
+	 * The LCS, trained on the dataset.
+	 */
+	public final MLSLCS lcs;
+
+	/**
+	 * The representation of the LCS.
+	 */
+	public final GenericMultiLabelRepresentation representation;
+
+	/**
+	 * The rule population of the LCS.
+	 */
+	public final ClassifierSet population;
+
+	/**
+	 * The instances of the dataset.
+	 */
+	public final double[][] instances;
+
+	/**
+	 * The instances of the dataset, in the form used for matching.
+	 */
+	public final FlatDataset dataset;
+
+	/**
+	 * The maximum population size (micro-classifiers).
+	 */
+	public final int populationSize;
+
+	/**
+	 * The number of attributes of the dataset, labels excluded.
+	 */
+	public final int numberOfAttributes;
+
+	/**
+	 * The number of labels of the dataset.
+	 */
+	public final int numberOfLabels;
+
+	/**
+	 * Constructor. Builds the LCS and its population.
+	 * 
+	 * @param datasetName
+	 *            the name of the dataset, as reported
+	 * @param filename
+	 *            the .arff file of the dataset
+	 * @param numberOfLabels
+	 *            the number of labels of the dataset
+	 * @param populationSize
+	 *            the maximum population size
+	 * @param seed
+	 *            the seed of the random generator, so that every run benchmarks the same population
+	 * @throws IOException
+	 *             if the dataset cannot be read
+	 */
+	public BenchmarkState(final String datasetName,
+						  final String filename,
+						  final int numberOfLabels,
+						  final int populationSize,
+						  final long seed) throws IOException {
+		
+		this.datasetName = datasetName;
+		this.numberOfLabels = numberOfLabels;
+		this.populationSize = populationSize;
+		
+		SettingsLoader.overrideSetting("filename", filename);
+		SettingsLoader.overrideSetting("numberOfLabels", Integer.toString(numberOfLabels));
+		SettingsLoader.overrideSetting("populationSize", Integer.toString(populationSize));
+		SettingsLoader.overrideSetting("randomSeed", Long.toString(seed));
+
+		lcs = new MLSLCS();
+		representation = (GenericMultiLabelRepresentation) lcs.getClassifierTransformBridge();
+		instances = ArffDataset.load(filename).getInstances();
+		lcs.instances = instances;
+		lcs.labelCardinality = InstancesUtility.getLabelCardinality(instances);
+		dataset = lcs.getTrainDataset();
+		numberOfAttributes = dataset.getNumberOfAttributes() - numberOfLabels;
+
+		population = lcs.getRulePopulation();
+		final RandomGenerator random = lcs.getRandomGenerator();
+		for (int i = 0; i < populationSize; i++) {
+			final Classifier rule = representation.createRandomCoveringClassifier(instances[random.nextInt(instances.length)]);
+			rule.setClassifierOrigin(Classifier.CLASSIFIER_ORIGIN_COVER);
+			population.addClassifier(new Macroclassifier(rule, 1), false);
+		}
+		for (int i = 0; i < instances.length; i++)
+			lcs.trainWithInstance(population, i, false);
+	}
+
+	/**
+	 * Returns a copy of the population, sharing its classifiers, that benchmarks may modify.
+	 * 
+	 * @return the copy, without a population control strategy
+	 */
+	public ClassifierSet copyPopulation() {
+		final ClassifierSet copy = new ClassifierSet(null);
+		for (int i = 0; i < population.getNumberOfMacroclassifiers(); i++)
+			copy.addClassifier(new Macroclassifier(population.getMacroclassifier(i)), false);
+		return copy;
+	}
+
+	/**
+	 * Write a random multi-label dataset to a temporary .arff file. Attribute values are uniform
+	 * in [0, 1] and the labels are decided by rules planted by a SyntheticDatasetGenerator (two 
+	 * labels per rule family, up to three conditions per rule), so that rules can be learned.
+	 * 
+	 * @param instances
+	 *            the number of instances
+	 * @param attributes
+	 *            the number of numeric attributes
+	 * @param labels
+	 *            the number of labels
+	 * @param seed
+	 *            the seed of the values
+	 * @return the path of the file, deleted on exit
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public static String generateDataset(final int instances,
+										 final int attributes,
+										 final int labels,
+										 final long seed) throws IOException {
+		
+		final File file = File.createTempFile("lcs-benchmark-" + attributes + "x" + labels + "-", ".arff");
+		file.deleteOnExit();
+		new SyntheticDatasetGenerator(instances, 0, 0, 0, attributes, labels, .4 * labels, 2, 3, 0, seed).writeArff(file.getPath());
+		return file.getPath();
+	}
+}
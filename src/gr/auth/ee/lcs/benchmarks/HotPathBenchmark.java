@@ -0,0 +1,90 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.benchmarks;
+
+import java.io.IOException;
+
+/**
+ * A benchmark of one of the hot paths of the LCS. Each parameter combination calls setUp() once; 
+ * every measured invocation is then preceded by an untimed call to prepare(), so that benchmarks 
+ * of operations that consume their input (e.g. deletion) can rebuild it.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public abstract class HotPathBenchmark {
+
+	/**
+	 * The name of the benchmark, as reported.
+	 */
+	private final String name;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param name
+	 *            the name of the benchmark, as reported
+	 */
+	protected HotPathBenchmark(final String name) {
+		this.name = name;
+	}
+
+	/**
+	 * @return the name of the benchmark
+	 */
+	public final String getName() {
+		return name;
+	}
+
+	/**
+	 * Set up the benchmark for a parameter combination. Not timed.
+	 * 
+	 * @param state
+	 *            the LCS and population of the combination
+	 * @throws IOException
+	 *             if the setup needs to read files and fails
+	 */
+	public abstract void setUp(BenchmarkState state) throws IOException;
+
+	/**
+	 * Prepare the next invocation. Not timed.
+	 */
+	public void prepare() {
+	}
+
+	/**
+	 * Perform one timed invocation.
+	 * 
+	 * @return a value computed from the results, so that the work is not optimized away
+	 */
+	public abstract long run();
+
+	/**
+	 * @return the number of operations performed by each invocation, for the per operation times
+	 */
+	public int getOperationsPerInvocation() {
+		return 1;
+	}
+}
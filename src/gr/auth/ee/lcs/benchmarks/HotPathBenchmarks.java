@@ -0,0 +1,474 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.benchmarks;
+
+import gr.auth.ee.lcs.calibration.ExactProportionalCut;
+import gr.auth.ee.lcs.calibration.ProportionalCut;
+import gr.auth.ee.lcs.classifiers.Classifier;
+import gr.auth.ee.lcs.classifiers.ClassifierSet;
+import gr.auth.ee.lcs.classifiers.CompiledInferenceModel;
+import gr.auth.ee.lcs.classifiers.Macroclassifier;
+import gr.auth.ee.lcs.classifiers.populationcontrol.FixedSizeSetWorstFitnessDeletion;
+import gr.auth.ee.lcs.data.AbstractUpdateStrategy;
+import gr.auth.ee.lcs.data.representations.complex.GenericMultiLabelRepresentation;
+import gr.auth.ee.lcs.geneticalgorithm.algorithms.SteadyStateGeneticAlgorithm;
+import gr.auth.ee.lcs.geneticalgorithm.operators.SinglePointCrossover;
+import gr.auth.ee.lcs.geneticalgorithm.operators.UniformBitMutation;
+import gr.auth.ee.lcs.geneticalgorithm.selectors.RouletteWheelSelector;
+import gr.auth.ee.lcs.utilities.SettingsLoader;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Vector;
+
+/**
+ * Micro-benchmarks of the hot paths of the LCS: matching, match set generation, thorough addition,
+ * deletion, the steady-state GA, classification and threshold calibration. Each benchmark runs for 
+ * every combination of dataset and population size. The datasets are the bundled ones plus random 
+ * ones of every combination of attribute and label count (see the benchmark* settings).
+ * 
+ * Each benchmark is warmed up for a number of iterations and then measured for a number of 
+ * iterations of fixed duration. The mean time per operation, its standard deviation across the 
+ * measured iterations and the fastest iteration are printed and written to a .csv file.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public final class HotPathBenchmarks {
+
+	/**
+	 * Consumes the values returned by the benchmarks, so that their work is not optimized away.
+	 */
+	private static volatile long sink;
+
+	/**
+	 * The seed of the random generator, for the datasets and populations.
+	 */
+	private static final long SEED = (long) SettingsLoader.getNumericSetting("benchmarkSeed", 7);
+
+	/**
+	 * The number of warm-up iterations of each benchmark.
+	 */
+	private static final int WARMUP_ITERATIONS = (int) SettingsLoader.getNumericSetting("benchmarkWarmupIterations", 3);
+
+	/**
+	 * The number of measured iterations of each benchmark.
+	 */
+	private static final int ITERATIONS = (int) SettingsLoader.getNumericSetting("benchmarkIterations", 5);
+
+	/**
+	 * The duration of each iteration, in nanoseconds. At least one invocation is performed.
+	 */
+	private static final long ITERATION_NANOS = 1000000L * (long) SettingsLoader.getNumericSetting("benchmarkIterationMillis", 500);
+
+	/**
+	 * Static class.
+	 */
+	private HotPathBenchmarks() {
+	}
+
+	/**
+	 * Run the benchmarks.
+	 * 
+	 * @param args
+	 *            an optional part of the benchmark names; only benchmarks containing it are run
+	 * @throws IOException
+	 *             if a dataset cannot be read or the results cannot be written
+	 */
+	public static void main(final String[] args) throws IOException {
+		final String filter = (args.length > 0) ? args[0] : SettingsLoader.getStringSetting("benchmarkFilter", "");
+		final int[] populationSizes = parseList(SettingsLoader.getStringSetting("benchmarkPopulationSizes", "1000,5000"));
+		final int[] attributeCounts = parseList(SettingsLoader.getStringSetting("benchmarkAttributes", "10,50"));
+		final int[] labelCounts = parseList(SettingsLoader.getStringSetting("benchmarkLabels", "4,16"));
+		final int numberOfInstances = (int) SettingsLoader.getNumericSetting("benchmarkInstances", 1000);
+
+		// name, file and number of labels of each dataset
+		final Vector<String[]> datasets = new Vector<String[]>();
+		for (final String dataset : SettingsLoader.getStringSetting("benchmarkDatasets", 
+				"datasets/toy6x4.arff:4,datasets/mlposition4.arff:4").split(",")) {
+			if (dataset.trim().isEmpty())
+				continue;
+			final int separator = dataset.lastIndexOf(':');
+			final String file = dataset.substring(0, separator).trim();
+			datasets.add(new String[] {file.substring(file.lastIndexOf('/') + 1), file, dataset.substring(separator + 1).trim()});
+		}
+		for (final int attributes : attributeCounts)
+			for (final int labels : labelCounts)
+				datasets.add(new String[] {"random" + attributes + "x" + labels, 
+						BenchmarkState.generateDataset(numberOfInstances, attributes, labels, SEED), Integer.toString(labels)});
+
+		final Vector<HotPathBenchmark> benchmarks = new Vector<HotPathBenchmark>();
+		for (final HotPathBenchmark benchmark : createBenchmarks())
+			if (benchmark.getName().contains(filter))
+				benchmarks.add(benchmark);
+
+		final BufferedWriter csv = new BufferedWriter(new FileWriter(SettingsLoader.getStringSetting("benchmarkOutputFile", "benchmarks.csv")));
+		try {
+			csv.write("benchmark,dataset,instances,attributes,labels,populationSize,macroclassifiers,nsPerOp,stdDev,minNsPerOp\n");
+			System.out.println(String.format(Locale.US, "%-52s %-16s %8s %6s %6s %8s %14s %12s", 
+					"Benchmark", "Dataset", "Rules", "Attrs", "Labels", "PopSize", "ns/op", "stddev"));
+			
+			for (final String[] dataset : datasets) {
+				for (final int populationSize : populationSizes) {
+					final BenchmarkState state = new BenchmarkState(dataset[0], dataset[1], 
+							Integer.parseInt(dataset[2]), populationSize, SEED);
+					
+					for (final HotPathBenchmark benchmark : benchmarks) {
+						final double[] result = measure(benchmark, state);
+						final String row = String.format(Locale.US, "%s,%s,%d,%d,%d,%d,%d,%.1f,%.1f,%.1f", 
+								benchmark.getName(), state.datasetName, state.instances.length, state.numberOfAttributes, 
+								state.numberOfLabels, populationSize, state.population.getNumberOfMacroclassifiers(), 
+								result[0], result[1], result[2]);
+						csv.write(row + "\n");
+						csv.flush();
+						System.out.println(String.format(Locale.US, "%-52s %-16s %8d %6d %6d %8d %14.1f %12.1f", 
+								benchmark.getName(), state.datasetName, state.population.getNumberOfMacroclassifiers(), 
+								state.numberOfAttributes, state.numberOfLabels, populationSize, result[0], result[1]));
+					}
+				}
+			}
+		} finally {
+			csv.close();
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * Warm up and measure a benchmark.
+	 * 
+	 * @param benchmark
+	 *            the benchmark
+	 * @param state
+	 *            the state of the parameter combination
+	 * @return the mean time per operation, its standard deviation across the iterations and the 
+	 * 		   time per operation of the fastest iteration, in nanoseconds
+	 * @throws IOException
+	 *             if the benchmark setup fails
+	 */
+	private static double[] measure(final HotPathBenchmark benchmark, final BenchmarkState state) throws IOException {
+		benchmark.setUp(state);
+		for (int i = 0; i < WARMUP_ITERATIONS; i++)
+			iterate(benchmark);
+
+		final double[] times = new double[ITERATIONS];
+		double sum = 0;
+		double min = Double.MAX_VALUE;
+		for (int i = 0; i < ITERATIONS; i++) {
+			times[i] = iterate(benchmark);
+			sum += times[i];
+			min = Math.min(min, times[i]);
+		}
+		
+		final double mean = sum / ITERATIONS;
+		double squares = 0;
+		for (final double time : times)
+			squares += (time - mean) * (time - mean);
+		return new double[] {mean, (ITERATIONS > 1) ? Math.sqrt(squares / (ITERATIONS - 1)) : 0, min};
+	}
+
+	/**
+	 * Invoke a benchmark until the iteration time has been spent in timed invocations.
+	 * 
+	 * @param benchmark
+	 *            the benchmark
+	 * @return the time per operation of the iteration, in nanoseconds
+	 */
+	private static double iterate(final HotPathBenchmark benchmark) {
+		long timed = 0;
+		long operations = 0;
+		long result = 0;
+		do {
+			benchmark.prepare();
+			final long start = System.nanoTime();
+			result += benchmark.run();
+			timed += System.nanoTime() - start;
+			operations += benchmark.getOperationsPerInvocation();
+		} while (timed < ITERATION_NANOS);
+		sink += result;
+		return (double) timed / operations;
+	}
+
+	/**
+	 * @param list
+	 *            a comma separated list of integers
+	 * @return the integers
+	 */
+	private static int[] parseList(final String list) {
+		final String[] values = list.split(",");
+		final int[] parsed = new int[values.length];
+		for (int i = 0; i < values.length; i++)
+			parsed[i] = Integer.parseInt(values[i].trim());
+		return parsed;
+	}
+
+	/**
+	 * @return the benchmarks, in the order they are run
+	 */
+	private static Vector<HotPathBenchmark> createBenchmarks() {
+		final Vector<HotPathBenchmark> benchmarks = new Vector<HotPathBenchmark>();
+
+		// matching of every rule against every instance, without the match caches
+		benchmarks.add(new HotPathBenchmark("ComplexRepresentation.isMatch") {
+			private BenchmarkState state;
+			private Classifier[] rules;
+
+			@Override
+			public void setUp(final BenchmarkState benchmarkState) {
+				state = benchmarkState;
+				rules = new Classifier[state.population.getNumberOfMacroclassifiers()];
+				for (int i = 0; i < rules.length; i++)
+					rules[i] = state.population.getClassifier(i);
+			}
+
+			@Override
+			public long run() {
+				long matches = 0;
+				for (final Classifier rule : rules)
+					for (int i = 0; i < state.instances.length; i++)
+						if (state.representation.isMatch(state.dataset, i, rule))
+							matches++;
+				return matches;
+			}
+
+			@Override
+			public int getOperationsPerInvocation() {
+				return rules.length * state.instances.length;
+			}
+		});
+
+		// the match set of every instance, with the match caches as they are during training
+		benchmarks.add(new HotPathBenchmark("ClassifierSet.generateMatchSetNew") {
+			private BenchmarkState state;
+			private ClassifierSet population;
+
+			@Override
+			public void setUp(final BenchmarkState benchmarkState) {
+				state = benchmarkState;
+				population = state.copyPopulation();
+			}
+
+			@Override
+			public long run() {
+				long size = 0;
+				for (int i = 0; i < state.instances.length; i++)
+					size += population.generateMatchSetNew(i).getNumberOfMacroclassifiers();
+				return size;
+			}
+
+			@Override
+			public int getOperationsPerInvocation() {
+				return state.instances.length;
+			}
+		});
+
+		// addition of new covering rules, checked against the whole population for subsumption
+		benchmarks.add(new HotPathBenchmark("ClassifierSet.addClassifier(thorough)") {
+			private static final int RULES = 10;
+			private BenchmarkState state;
+			private ClassifierSet population;
+			private final Classifier[] rules = new Classifier[RULES];
+			private int next = 0;
+
+			@Override
+			public void setUp(final BenchmarkState benchmarkState) {
+				state = benchmarkState;
+			}
+
+			@Override
+			public void prepare() {
+				population = state.copyPopulation();
+				for (int i = 0; i < RULES; i++) {
+					next = (next + 1) % state.instances.length;
+					rules[i] = state.representation.createRandomCoveringClassifier(state.instances[next]);
+				}
+			}
+
+			@Override
+			public long run() {
+				for (final Classifier rule : rules)
+					population.addClassifier(new Macroclassifier(rule, 1), true);
+				return population.getNumberOfMacroclassifiers();
+			}
+
+			@Override
+			public int getOperationsPerInvocation() {
+				return RULES;
+			}
+		});
+
+		// deletion of the rules exceeding the population size by 1%
+		benchmarks.add(new HotPathBenchmark("FixedSizeSetWorstFitnessDeletion.controlPopulation") {
+			private BenchmarkState state;
+			private FixedSizeSetWorstFitnessDeletion deletion;
+			private ClassifierSet population;
+			private int next = 0;
+
+			@Override
+			public void setUp(final BenchmarkState benchmarkState) {
+				state = benchmarkState;
+				deletion = new FixedSizeSetWorstFitnessDeletion(state.lcs, state.populationSize, 
+						new RouletteWheelSelector(AbstractUpdateStrategy.COMPARISON_MODE_DELETION, true, state.lcs.getRandomGenerator()));
+			}
+
+			@Override
+			public void prepare() {
+				population = state.copyPopulation();
+				final int excess = Math.max(1, state.populationSize / 100) + state.populationSize - population.getTotalNumerosity();
+				for (int i = 0; i < excess; i++) {
+					next = (next + 1) % state.instances.length;
+					population.addClassifier(new Macroclassifier(
+							state.representation.createRandomCoveringClassifier(state.instances[next]), 1), false);
+				}
+			}
+
+			@Override
+			public long run() {
+				deletion.controlPopulation(population);
+				return population.getNumberOfMacroclassifiers();
+			}
+		});
+
+		// one GA invocation on the match set of an instance, always activated
+		for (int variant = 0; variant < 2; variant++) {
+			final boolean newVariant = variant == 1;
+			benchmarks.add(new HotPathBenchmark(newVariant ? "SteadyStateGeneticAlgorithm.evolveSetNew" 
+														   : "SteadyStateGeneticAlgorithm.evolveSet") {
+				private BenchmarkState state;
+				private SteadyStateGeneticAlgorithm ga;
+				private ClassifierSet population;
+				private ClassifierSet evolveSet;
+				private int next = 0;
+
+				@Override
+				public void setUp(final BenchmarkState benchmarkState) {
+					state = benchmarkState;
+					ga = new SteadyStateGeneticAlgorithm(
+							new RouletteWheelSelector(AbstractUpdateStrategy.COMPARISON_MODE_EXPLORATION, true, state.lcs.getRandomGenerator()), 
+							new SinglePointCrossover(state.lcs), 
+							(float) SettingsLoader.getNumericSetting("crossoverRate", .8),
+							new UniformBitMutation(SettingsLoader.getNumericSetting("mutationRate", .04)), 
+							0, 
+							state.lcs, 
+							true);
+					population = new ClassifierSet(new FixedSizeSetWorstFitnessDeletion(state.lcs, state.populationSize, 
+							new RouletteWheelSelector(AbstractUpdateStrategy.COMPARISON_MODE_DELETION, true, state.lcs.getRandomGenerator())));
+					population.mergeWithoutControl(state.copyPopulation());
+				}
+
+				@Override
+				public void prepare() {
+					do {
+						next = (next + 1) % state.instances.length;
+						evolveSet = population.generateMatchSetNew(next);
+					} while (evolveSet.getNumberOfMacroclassifiers() == 0);
+				}
+
+				@Override
+				public long run() {
+					if (newVariant)
+						ga.evolveSetNew(evolveSet, population, next % state.numberOfLabels);
+					else
+						ga.evolveSet(evolveSet, population, next % state.numberOfLabels);
+					return population.getNumberOfMacroclassifiers();
+				}
+			});
+		}
+
+		// classification of every instance with the strategies of the representation and the compiled model
+		final String[] strategies = {"BestFitnessClassificationStrategy", "VotingClassificationStrategy", 
+									 "CompiledInferenceModel(best fitness)", "CompiledInferenceModel(voting)"};
+		for (int s = 0; s < strategies.length; s++) {
+			final int strategy = s;
+			benchmarks.add(new HotPathBenchmark("classify:" + strategies[s]) {
+				private BenchmarkState state;
+				private CompiledInferenceModel model;
+
+				@Override
+				public void setUp(final BenchmarkState benchmarkState) {
+					state = benchmarkState;
+					final GenericMultiLabelRepresentation representation = state.representation;
+					switch (strategy) {
+					case 0:
+						representation.setClassificationStrategy(representation.new BestFitnessClassificationStrategy());
+						break;
+					case 1:
+						final GenericMultiLabelRepresentation.VotingClassificationStrategy voting = 
+							representation.new VotingClassificationStrategy();
+						voting.setThreshold(.5);
+						representation.setClassificationStrategy(voting);
+						break;
+					default:
+						model = state.lcs.compile().withClassificationMode((strategy == 2) 
+								? CompiledInferenceModel.CLASSIFICATION_MODE_BEST_FITNESS 
+								: CompiledInferenceModel.CLASSIFICATION_MODE_VOTING, .5);
+					}
+				}
+
+				@Override
+				public long run() {
+					long active = 0;
+					for (final double[] instance : state.instances)
+						active += (model == null) ? state.representation.classify(state.population, instance).length 
+												  : model.classify(instance).length;
+					return active;
+				}
+
+				@Override
+				public int getOperationsPerInvocation() {
+					return state.instances.length;
+				}
+			});
+		}
+
+		// pcut threshold calibration on the voting confidences of the train instances
+		for (int variant = 0; variant < 2; variant++) {
+			final boolean exact = variant == 1;
+			benchmarks.add(new HotPathBenchmark(exact ? "ExactProportionalCut.calibrate" : "ProportionalCut.calibrate") {
+				private BenchmarkState state;
+				private float[][] confidences;
+
+				@Override
+				public void setUp(final BenchmarkState benchmarkState) {
+					state = benchmarkState;
+					final CompiledInferenceModel model = state.lcs.compile();
+					confidences = new float[state.instances.length][state.numberOfLabels];
+					for (int i = 0; i < confidences.length; i++)
+						model.getConfidence(state.instances[i], confidences[i]);
+				}
+
+				@Override
+				public long run() {
+					final float threshold = exact ? new ExactProportionalCut().calibrate((float) state.lcs.labelCardinality, confidences) 
+												  : new ProportionalCut().calibrate((float) state.lcs.labelCardinality, confidences);
+					return Float.floatToIntBits(threshold);
+				}
+			});
+		}
+
+		return benchmarks;
+	}
+}
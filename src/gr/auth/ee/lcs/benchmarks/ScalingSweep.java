@@ -0,0 +1,230 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.benchmarks;
+
+import gr.auth.ee.lcs.implementations.MLSLCS;
+import gr.auth.ee.lcs.utilities.ArffDataset;
+import gr.auth.ee.lcs.utilities.InstancesUtility;
+import gr.auth.ee.lcs.utilities.SettingsLoader;
+import gr.auth.ee.lcs.utilities.SyntheticDatasetGenerator;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * A sweep of training runs on synthetic datasets of growing size (see SyntheticDatasetGenerator), 
+ * reporting how training throughput and memory scale. For every combination of attribute and label 
+ * count of the sweep* settings, an MLSLCS is trained for a few iterations on a dataset of each 
+ * instance count, and the throughput, the heap retained by the trained LCS and the peak heap are 
+ * printed and written to a .csv file. The exponents give the slope of the curves between consecutive 
+ * instance counts on a log-log scale: 1 is linear scaling, 0 is no growth.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public final class ScalingSweep {
+
+	/**
+	 * Static class.
+	 */
+	private ScalingSweep() {
+	}
+
+	/**
+	 * Run the sweep.
+	 * 
+	 * @param args
+	 *            unused
+	 * @throws IOException
+	 *             if a dataset or the results cannot be written
+	 */
+	public static void main(final String[] args) throws IOException {
+		final int[] instanceCounts = parseList(SettingsLoader.getStringSetting("sweepInstances", "1000,10000,100000"));
+		final int[] attributeCounts = parseList(SettingsLoader.getStringSetting("sweepAttributes", "12,48"));
+		final int[] labelCounts = parseList(SettingsLoader.getStringSetting("sweepLabels", "6,24"));
+		final int[] mix = Arrays.copyOf(parseList(SettingsLoader.getStringSetting("sweepAttributeMix", "1:1:1").replace(':', ',')), 3);
+		final int iterations = (int) SettingsLoader.getNumericSetting("sweepIterations", 5);
+		final int populationSize = (int) SettingsLoader.getNumericSetting("sweepPopulationSize", 1000);
+		final double cardinality = SettingsLoader.getNumericSetting("syntheticLabelCardinality", 2);
+		final int labelsPerFamily = (int) SettingsLoader.getNumericSetting("syntheticLabelsPerFamily", 2);
+		final int ruleOrder = (int) SettingsLoader.getNumericSetting("syntheticRuleOrder", 3);
+		final int nominalValues = (int) SettingsLoader.getNumericSetting("syntheticNominalValues", 4);
+		final double noise = SettingsLoader.getNumericSetting("syntheticNoise", 0);
+		final long seed = (long) SettingsLoader.getNumericSetting("syntheticSeed", 7);
+
+		final File directory = new File(SettingsLoader.getStringSetting("sweepDirectory", System.getProperty("java.io.tmpdir") + "/lcs-sweep"));
+		directory.mkdirs();
+
+		final BufferedWriter csv = new BufferedWriter(new FileWriter(SettingsLoader.getStringSetting("sweepOutputFile", "scaling.csv")));
+		try {
+			csv.write("instances,attributes,labels,labelCardinality,iterations,populationSize,macroclassifiers,"
+					+ "loadSeconds,trainSeconds,instancesPerSecond,retainedHeapMB,peakHeapMB,timeExponent,memoryExponent\n");
+			System.out.println(String.format(Locale.US, "%10s %6s %6s %6s %8s %10s %12s %10s %10s %8s %8s", 
+					"Instances", "Attrs", "Labels", "Card", "Rules", "Train s", "Inst/s", "Heap MB", "Peak MB", "Time^", "Mem^"));
+
+			for (final int attributes : attributeCounts) {
+				// split the attributes by the mix, the rest are numeric
+				final int mixSum = Math.max(1, mix[0] + mix[1] + mix[2]);
+				final int booleans = attributes * mix[0] / mixSum;
+				final int nominals = attributes * mix[1] / mixSum;
+
+				for (final int labels : labelCounts) {
+					double previousInstances = 0;
+					double previousSeconds = 0;
+					double previousHeap = 0;
+
+					for (final int instances : instanceCounts) {
+						final SyntheticDatasetGenerator generator = new SyntheticDatasetGenerator(instances, booleans, nominals, 
+								nominalValues, attributes - booleans - nominals, labels, cardinality, labelsPerFamily, ruleOrder, noise, seed);
+						final String name = "synthetic" + attributes + "x" + labels + "-" + instances;
+						final String filename = new File(directory, name + ".arff").getPath();
+						generator.writeArff(filename);
+						generator.writeBamRules(SyntheticDatasetGenerator.getBamFile(filename));
+
+						final double[] run = train(filename, labels, iterations, populationSize, seed, new File(directory, name));
+						final double trainSeconds = run[2];
+						final double heap = run[4];
+						final String timeExponent = (previousInstances > 0) 
+								? String.format(Locale.US, "%.2f", Math.log(trainSeconds / previousSeconds) / Math.log(instances / previousInstances)) : "";
+						final String memoryExponent = (previousInstances > 0 && previousHeap > 0 && heap > 0)
+								? String.format(Locale.US, "%.2f", Math.log(heap / previousHeap) / Math.log(instances / previousInstances)) : "";
+
+						csv.write(String.format(Locale.US, "%d,%d,%d,%.3f,%d,%d,%d,%.3f,%.3f,%.1f,%.1f,%.1f,%s,%s\n", 
+								instances, attributes, labels, run[0], iterations, populationSize, (int) run[1], run[5], trainSeconds, 
+								(double) instances * iterations / trainSeconds, heap, run[3], timeExponent, memoryExponent));
+						csv.flush();
+						System.out.println(String.format(Locale.US, "%10d %6d %6d %6.2f %8d %10.2f %12.1f %10.1f %10.1f %8s %8s", 
+								instances, attributes, labels, run[0], (int) run[1], trainSeconds, 
+								(double) instances * iterations / trainSeconds, heap, run[3], timeExponent, memoryExponent));
+
+						new File(filename).delete();
+						previousInstances = instances;
+						previousSeconds = trainSeconds;
+						previousHeap = heap;
+					}
+				}
+			}
+		} finally {
+			csv.close();
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * Train an MLSLCS on a dataset.
+	 * 
+	 * @param filename
+	 *            the .arff file
+	 * @param labels
+	 *            the number of labels
+	 * @param iterations
+	 *            the number of training iterations
+	 * @param populationSize
+	 *            the population size
+	 * @param seed
+	 *            the seed of the LCS
+	 * @param outputDirectory
+	 *            the directory of the output files of the LCS
+	 * @return the label cardinality, the number of macroclassifiers, the training seconds, the peak heap 
+	 * 		   in MB, the heap retained by the trained LCS in MB and the seconds spent loading the dataset
+	 * @throws IOException
+	 *             if the dataset cannot be read
+	 */
+	private static double[] train(final String filename, 
+								  final int labels, 
+								  final int iterations, 
+								  final int populationSize, 
+								  final long seed, 
+								  final File outputDirectory) throws IOException {
+		SettingsLoader.overrideSetting("filename", filename);
+		SettingsLoader.overrideSetting("numberOfLabels", Integer.toString(labels));
+		SettingsLoader.overrideSetting("populationSize", Integer.toString(populationSize));
+		SettingsLoader.overrideSetting("trainIterations", Integer.toString(iterations));
+		SettingsLoader.overrideSetting("callbackRate", Integer.toString(iterations));
+		SettingsLoader.overrideSetting("bamRulesFile", SyntheticDatasetGenerator.getBamFile(filename));
+		SettingsLoader.overrideSetting("randomSeed", Long.toString(seed));
+		outputDirectory.mkdirs();
+
+		final long heapBefore = getUsedHeap();
+		long start = System.nanoTime();
+		final double[][] instances = ArffDataset.load(filename).getInstances();
+		final double loadSeconds = (System.nanoTime() - start) / 1e9;
+
+		final MLSLCS lcs = new MLSLCS();
+		lcs.hookedMetricsFileDirectory = outputDirectory.getPath();
+		lcs.instances = instances;
+		lcs.labelCardinality = InstancesUtility.getLabelCardinality(instances);
+
+		for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			pool.resetPeakUsage();
+		start = System.nanoTime();
+		lcs.trainSet(iterations, lcs.getRulePopulation(), true);
+		final double trainSeconds = (System.nanoTime() - start) / 1e9;
+
+		long peak = 0;
+		for (final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+			if (pool.getType() == MemoryType.HEAP)
+				peak += pool.getPeakUsage().getUsed();
+		final long retained = getUsedHeap() - heapBefore;
+
+		return new double[] {lcs.labelCardinality, lcs.getRulePopulation().getNumberOfMacroclassifiers(), trainSeconds, 
+				peak / 1048576.0, retained / 1048576.0, loadSeconds};
+	}
+
+	/**
+	 * Get the heap used after a garbage collection.
+	 * 
+	 * @return the used heap in bytes
+	 */
+	private static long getUsedHeap() {
+		final Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * Parse a comma-separated list of integers.
+	 * 
+	 * @param list
+	 *            the list
+	 * @return the integers
+	 */
+	private static int[] parseList(final String list) {
+		final String[] values = list.split(",");
+		final int[] parsed = new int[values.length];
+		for (int i = 0; i < values.length; i++)
+			parsed[i] = Integer.parseInt(values[i].trim());
+		return parsed;
+	}
+
+}
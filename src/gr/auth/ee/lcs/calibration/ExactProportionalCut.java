@@ -0,0 +1,149 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.calibration;
+
+import java.util.Arrays;
+
+/**
+ * An exact proportional cut threshold calibration. All confidence values are sorted
+ * once and every distinct number of active labels is checked, instead of refining a 
+ * grid of thresholds. Returns the threshold in (0, .5] whose label cardinality is 
+ * closest to the target.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public class ExactProportionalCut {
+
+	/**
+	 * The largest threshold considered, as in the grid search of {@link ProportionalCut}.
+	 */
+	private static final float MAX_THRESHOLD = (float) .5;
+
+	/**
+	 * Calibrates the threshold for strategies activating the labels whose confidence 
+	 * is strictly greater than the threshold.
+	 * 
+	 * @param targetLC
+	 *            the target Label Cardinality we are trying to achieve
+	 * @param confidenceValues
+	 *            the normalized confidence value's array per instance per label
+	 * @return a float representing the normalized threshold (in (0, .5])
+	 */
+	public float calibrate(final float targetLC,
+						   final float[][] confidenceValues) {
+		return calibrate(targetLC, confidenceValues, false);
+	}
+
+	/**
+	 * Calibrates the threshold.
+	 * 
+	 * @param targetLC
+	 *            the target Label Cardinality we are trying to achieve
+	 * @param confidenceValues
+	 *            the normalized confidence value's array per instance per label
+	 * @param inclusive
+	 *            true if the strategy activates the labels whose confidence is greater than 
+	 *            or equal to the threshold (as {@link ProportionalCut#getNumberOfActiveLabels} 
+	 *            does), false if it only activates those strictly greater than it
+	 * @return a float representing the normalized threshold (in (0, .5])
+	 */
+	public float calibrate(final float targetLC,
+						   final float[][] confidenceValues,
+						   final boolean inclusive) {
+		
+		if (confidenceValues.length == 0)
+			return (float) .25;
+		
+		// Only values in (0, .5) can be separated by a threshold, the rest are counted.
+		// A value of exactly .5 is active at the maximum threshold only if it is inclusive
+		int numberOfCandidates = 0;
+		int numberAboveMax = 0;
+		for (int i = 0; i < confidenceValues.length; i++) {
+			for (int l = 0; l < confidenceValues[i].length; l++) {
+				final float value = confidenceValues[i][l];
+				if (value > MAX_THRESHOLD || (inclusive && value == MAX_THRESHOLD))
+					numberAboveMax++;
+				else if (value > 0)
+					numberOfCandidates++;
+			}
+		}
+
+		final float[] values = new float[numberOfCandidates];
+		int index = 0;
+		for (int i = 0; i < confidenceValues.length; i++) {
+			for (int l = 0; l < confidenceValues[i].length; l++) {
+				final float value = confidenceValues[i][l];
+				if (value > 0 && (value < MAX_THRESHOLD || (!inclusive && value == MAX_THRESHOLD)))
+					values[index++] = value;
+			}
+		}
+		Arrays.sort(values);
+
+		final double numberOfInstances = confidenceValues.length;
+		
+		// The maximum threshold activates only the values above it
+		float bestThreshold = MAX_THRESHOLD;
+		double bestDiff = Math.abs(numberAboveMax / numberOfInstances - targetLC);
+		
+		// Activate values[i + 1] and above. The threshold is placed strictly between values[i] and 
+		// values[i + 1] when possible, so that it separates them under either comparison
+		for (int i = -1; i < numberOfCandidates - 1; i++) {
+			if (i >= 0 && values[i] == values[i + 1])
+				continue;
+			
+			final int numberOfActive = numberOfCandidates - i - 1 + numberAboveMax;
+			final double diff = Math.abs(numberOfActive / numberOfInstances - targetLC);
+			if (diff < bestDiff) {
+				final float threshold = between((i < 0) ? 0 : values[i], values[i + 1], inclusive);
+				if (threshold > 0) {
+					bestDiff = diff;
+					bestThreshold = threshold;
+				}
+			}
+		}
+		
+		return bestThreshold;
+	}
+
+	/**
+	 * Returns a threshold separating two distinct values.
+	 * 
+	 * @param lower
+	 *            the lower value, to be left inactive
+	 * @param upper
+	 *            the upper value, to be activated
+	 * @param inclusive
+	 *            whether the threshold activates the values equal to it
+	 * @return the midpoint, or, if no value lies strictly between the two, the upper 
+	 *         value for an inclusive threshold and the lower one otherwise
+	 */
+	private static float between(final float lower, final float upper, final boolean inclusive) {
+		final float middle = (lower + upper) / 2;
+		if (middle > lower && middle < upper)
+			return middle;
+		return inclusive ? upper : lower;
+	}
+}
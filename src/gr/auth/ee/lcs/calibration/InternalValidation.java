@@ -27,6 +27,7 @@ package gr.auth.ee.lcs.calibration;
 import gr.auth.ee.lcs.AbstractLearningClassifierSystem;
 import gr.auth.ee.lcs.data.IClassificationStrategy;
 import gr.auth.ee.lcs.data.ILCSMetric;
+import gr.auth.ee.lcs.evaluators.MultiLabelEvaluation;
 
 /**
  * Internal Validation for thresholds.
@@ -42,10 +43,26 @@ public class InternalValidation {
 	private final IClassificationStrategy strategy;
 
 	/**
-	 * The optimization metric used.
+	 * The optimization metric used. Null when optimizing the accuracy of an evaluation.
 	 */
 	private final ILCSMetric optimizationMetric;
 
+	/**
+	 * The evaluation whose accuracy is optimized. Null when optimizing a metric.
+	 */
+	private final MultiLabelEvaluation evaluation;
+
+	/**
+	 * The confidence vectors of the evaluation instances, computed once per calibration.
+	 * Null if the LCS cannot provide confidences, in which case each threshold is evaluated by classifying.
+	 */
+	private float[][] confidences;
+
+	/**
+	 * The confidence vectors of the evaluation instances, when given at construction.
+	 */
+	private float[][] precomputedConfidences;
+
 	/**
 	 * The rules on which to perform Internal Validation.
 	 */
@@ -66,6 +83,47 @@ public class InternalValidation {
 		myLCS = lcs;
 		strategy = classificationStrategy;
 		optimizationMetric = metric;
+		evaluation = null;
+	}
+
+	/**
+	 * Constructor optimizing the accuracy on an instance set. The confidences of
+	 * the instances do not depend on the threshold, so they are computed once and
+	 * all probed thresholds are evaluated on the cached confidences.
+	 * 
+	 * @param lcs
+	 *            the LCS to perform evaluation on.
+	 * @param classificationStrategy
+	 *            the (voting) classification strategy used.
+	 * @param accuracyEvaluation
+	 *            the evaluation on the instances to optimize the accuracy of
+	 */
+	public InternalValidation(AbstractLearningClassifierSystem lcs,
+			IClassificationStrategy classificationStrategy, MultiLabelEvaluation accuracyEvaluation) {
+		myLCS = lcs;
+		strategy = classificationStrategy;
+		optimizationMetric = null;
+		evaluation = accuracyEvaluation;
+	}
+
+	/**
+	 * Constructor optimizing the accuracy on an instance set, whose confidences are already known 
+	 * (e.g. aggregated from a match matrix).
+	 * 
+	 * @param lcs
+	 *            the LCS to perform evaluation on.
+	 * @param classificationStrategy
+	 *            the (voting) classification strategy used.
+	 * @param accuracyEvaluation
+	 *            the evaluation on the instances to optimize the accuracy of
+	 * @param instanceConfidences
+	 *            the confidence vectors of the evaluation instances, in the order of the instances
+	 */
+	public InternalValidation(AbstractLearningClassifierSystem lcs,
+			IClassificationStrategy classificationStrategy, MultiLabelEvaluation accuracyEvaluation, 
+			float[][] instanceConfidences) {
+		this(lcs, classificationStrategy, accuracyEvaluation);
+		precomputedConfidences = instanceConfidences;
 	}
 
 	/**
@@ -76,12 +134,18 @@ public class InternalValidation {
 	 */
 	public void calibrate(int iterations) {
 
+		if (precomputedConfidences != null)
+			confidences = precomputedConfidences;
+		else if (evaluation != null)
+			confidences = myLCS.getConfidences(evaluation.getInstances());
+
 		double step = .25;
 		double center = .25;
 		for (int i = 0; i < iterations; i++) {
 			center = getNextCenter(center, step, strategy);
 			step /= 2.;
 		}
+		confidences = null;
 		strategy.setThreshold(center);
 		System.out.println("Threshold (ival) set to " + center + "\n");
 	}
@@ -108,8 +172,7 @@ public class InternalValidation {
 		double bestEvaluation = Double.MIN_VALUE;
 		double bestThreshold = center;
 		for (double th = downLimit; th <= upLimit; th += (step / 2)) {
-			classificationStrategy.setThreshold(th);
-			final double eval = optimizationMetric.getMetric(myLCS);
+			final double eval = evaluateThreshold(th, classificationStrategy);
 			if (eval > bestEvaluation) {
 				bestEvaluation = eval;
 				bestThreshold = th;
@@ -118,4 +181,28 @@ public class InternalValidation {
 
 		return bestThreshold;
 	}
+
+	/**
+	 * Evaluates the optimized metric for a threshold.
+	 * 
+	 * @param threshold
+	 *            the threshold to evaluate
+	 * @param classificationStrategy
+	 *            the classification used
+	 * @return the value of the optimized metric
+	 */
+	private double evaluateThreshold(final double threshold,
+			IClassificationStrategy classificationStrategy) {
+		if (confidences != null) {
+			evaluation.evaluate(myLCS, confidences, threshold);
+			return evaluation.getAccuracy();
+		}
+		
+		classificationStrategy.setThreshold(threshold);
+		if (optimizationMetric != null)
+			return optimizationMetric.getMetric(myLCS);
+		
+		evaluation.evaluate(myLCS);
+		return evaluation.getAccuracy();
+	}
 }
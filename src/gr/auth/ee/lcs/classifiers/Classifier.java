@@ -25,9 +25,11 @@ import gr.auth.ee.lcs.AbstractLearningClassifierSystem;
 import gr.auth.ee.lcs.data.AbstractUpdateStrategy;
 import gr.auth.ee.lcs.data.ClassifierTransformBridge;
 import gr.auth.ee.lcs.utilities.ExtendedBitSet;
+import gr.auth.ee.lcs.utilities.FlatDataset;
 import gr.auth.ee.lcs.utilities.SettingsLoader;
 
 import java.io.Serializable;
+import java.text.DecimalFormat;
 import java.util.Arrays;
 
 /**
@@ -90,6 +92,11 @@ public final class Classifier extends ExtendedBitSet implements Serializable {
 	 */
 	private int[] actionCache = null;
 
+	/**
+	 * Cache for the consequent state of each label. Built and used by the representation.
+	 */
+	private transient byte[] labelStateCache = null;
+
 	/**
 	 * Serialization code for versioning.
 	 */
@@ -117,11 +124,6 @@ public final class Classifier extends ExtendedBitSet implements Serializable {
 	 */
 	public transient int checked = 0;
 
-	/**
-	 * The serial number of last classifier (start from the lowest & increment).
-	 */
-	private static int currentSerial = Integer.MIN_VALUE;
-
 	/**
 	 * The serial number of the classifier.
 	 */
@@ -290,6 +292,7 @@ public final class Classifier extends ExtendedBitSet implements Serializable {
 	 */
 	public void fixChromosome() {
 		transformBridge.fixChromosome(this);
+		labelStateCache = null;
 	}
 
 	/**
@@ -304,6 +307,15 @@ public final class Classifier extends ExtendedBitSet implements Serializable {
 		return actionCache;
 	}
 
+	/**
+	 * Getter for the cached consequent state of each label.
+	 * 
+	 * @return the cached label states, or null if not built (or reset) since the last chromosome change
+	 */
+	public byte[] getLabelStateCache() {
+		return labelStateCache;
+	}
+
 	/**
 	 * Getter of the number of instances the classifier has seen.
 	 * 
@@ -392,6 +404,18 @@ public final class Classifier extends ExtendedBitSet implements Serializable {
 		return updateStrategy.getData(this);
 	}
 
+	/**
+	 * Append the update-specific data to a buffer.
+	 * 
+	 * @param out
+	 *            the buffer to append to
+	 * @param format
+	 *            the (reused) format of the decimal values
+	 */
+	public void appendUpdateSpecificData(final StringBuilder out, final DecimalFormat format) {
+		updateStrategy.appendData(this, out, format);
+	}
+
 	
 	/**
 	 * Through the update strategy inherit the parameters
@@ -421,6 +445,20 @@ public final class Classifier extends ExtendedBitSet implements Serializable {
 		return transformBridge.isMatch(visionVector, this);
 	}
 
+	/**
+	 * Calls the bridge to detect if the classifier is matching an instance of
+	 * a flat dataset, without caching the result.
+	 * 
+	 * @param dataset
+	 *            the dataset
+	 * @param instanceIndex
+	 *            the index of the instance in the dataset
+	 * @return true if the classifier matches the instance
+	 */
+	public boolean isMatch(final FlatDataset dataset, final int instanceIndex) {
+		return transformBridge.isMatch(dataset, instanceIndex, this);
+	}
+
 	/**
 	 * Checks if Classifier is matches an instance vector. Through caching for
 	 * performance optimization.
@@ -441,7 +479,7 @@ public final class Classifier extends ExtendedBitSet implements Serializable {
 		unmatched = 0;
 		// if we haven't cached the answer, then answer...
 		if (this.matchInstances[instanceIndex] == -1) {
-			this.matchInstances[instanceIndex] = (byte) ((transformBridge.isMatch(myLcs.instances[instanceIndex], this)) ? 1 : 0);
+			this.matchInstances[instanceIndex] = (byte) ((transformBridge.isMatch(myLcs.getTrainDataset(), instanceIndex, this)) ? 1 : 0);
 			this.checked++;  
 			this.covered += this.matchInstances[instanceIndex];
 			unmatched = 1;
@@ -458,7 +496,7 @@ public final class Classifier extends ExtendedBitSet implements Serializable {
 	
 	public boolean isMatchUnCached (final int instanceIndex) {
 		
-		this.matchInstances[instanceIndex] = (byte) ((transformBridge.isMatch(myLcs.instances[instanceIndex], this)) ? 1 : 0);
+		this.matchInstances[instanceIndex] = (byte) ((transformBridge.isMatch(myLcs.getTrainDataset(), instanceIndex, this)) ? 1 : 0);
 		this.checked++;
 		this.covered += this.matchInstances[instanceIndex];
 		
@@ -513,6 +551,17 @@ public final class Classifier extends ExtendedBitSet implements Serializable {
 	}
 
 	
+	/**
+	 * Setter for the cached consequent state of each label. Set to null 
+	 * whenever the chromosome is modified in place.
+	 * 
+	 * @param labelStates
+	 *            the label states, or null to reset the cache
+	 */
+	public void setLabelStateCache(final byte[] labelStates) {
+		labelStateCache = labelStates;
+	}
+
 	/**
 	 * Setter for the origin (cover or ga) of a classifier. 
 	 */
@@ -546,8 +595,7 @@ public final class Classifier extends ExtendedBitSet implements Serializable {
 		if (transformBridge != null)
 			transformBridge.setRepresentationSpecificClassifierData(this);
 
-		this.serial = currentSerial;
-		currentSerial++;
+		this.serial = myLcs.getNewClassifierSerial();
 	}
 
 	/**
@@ -591,4 +639,14 @@ public final class Classifier extends ExtendedBitSet implements Serializable {
 		return transformBridge.toNaturalLanguageString(this);
 	}
 
+	/**
+	 * Calls the bridge to append it self as a natural language string to a buffer.
+	 * 
+	 * @param out
+	 *            the buffer to append to
+	 */
+	public void appendTo(final StringBuilder out) {
+		transformBridge.appendNaturalLanguageString(this, out);
+	}
+
 }
\ No newline at end of file
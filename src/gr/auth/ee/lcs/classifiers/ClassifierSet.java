@@ -31,11 +31,12 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
-import java.text.DecimalFormat;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Vector;
 
 /**
@@ -71,11 +72,32 @@ public class ClassifierSet implements Serializable {
 	
 	public int totalGAInvocations = 0;
 
+	/**
+	 * The number of subsumptions into the macroclassifiers of this set, ever. Unlike the sum of their
+	 * numberOfSubsumptions, it does not drop when a macroclassifier is deleted.
+	 */
+	public int totalSubsumptions = 0;
+
 	public int unmatched;
 	
 	
 	/**
-	 * Open a saved (and serialized) ClassifierSet.
+	 * Save rules with Java serialization.
+	 */
+	public static final int RULES_FILE_FORMAT_SERIALIZED = 0;
+
+	/**
+	 * Save rules in the binary format of ClassifierSetBinaryFormat.
+	 */
+	public static final int RULES_FILE_FORMAT_BINARY = 1;
+
+	/**
+	 * The format used by saveClassifierSet().
+	 */
+	public static final int RULES_FILE_FORMAT = (int) SettingsLoader.getNumericSetting("rulesFileFormat", RULES_FILE_FORMAT_SERIALIZED);
+
+	/**
+	 * Open a saved ClassifierSet, either serialized or in the binary format (detected from the file).
 	 * 
 	 * @param path
 	 *            the path of the ClassifierSet to be opened
@@ -88,6 +110,9 @@ public class ClassifierSet implements Serializable {
 	public static ClassifierSet openClassifierSet(final String path,
 			final IPopulationControlStrategy sizeControlStrategy,
 			final AbstractLearningClassifierSystem lcs) {
+		if (ClassifierSetBinaryFormat.isBinaryFile(path))
+			return ClassifierSetBinaryFormat.open(path, sizeControlStrategy, lcs);
+		
 		FileInputStream fis = null;
 		ObjectInputStream in = null;
 		ClassifierSet opened = null;
@@ -115,7 +140,7 @@ public class ClassifierSet implements Serializable {
 	}
 
 	/**
-	 * A static function to save the classifier set.
+	 * A static function to save the classifier set, in the format of the rulesFileFormat setting.
 	 * 
 	 * @param toSave
 	 *            the set to be saved
@@ -124,6 +149,11 @@ public class ClassifierSet implements Serializable {
 	 */
 	public static void saveClassifierSet(final ClassifierSet toSave,
 			final String filename) {
+		if (RULES_FILE_FORMAT == RULES_FILE_FORMAT_BINARY && !toSave.isEmpty()) {
+			ClassifierSetBinaryFormat.save(toSave, filename, toSave.getClassifier(0).getLCS());
+			return;
+		}
+		
 		FileOutputStream fos = null;
 		ObjectOutputStream out = null;
 
@@ -286,6 +316,7 @@ public class ClassifierSet implements Serializable {
 				// Subsume and control size...
 				myMacroclassifiers.get(indicesVector.elementAt(indexOfSurvivor)).numerosity += numerosity;
 				myMacroclassifiers.get(indicesVector.elementAt(indexOfSurvivor)).numberOfSubsumptions++;
+				totalSubsumptions++;
 				
 				indicesVector.clear();
 				originVector.clear();
@@ -611,7 +642,7 @@ public class ClassifierSet implements Serializable {
 			Macroclassifier cl = firstTimeSet.getMacroclassifier(i);
 			cl.myClassifier.matchInstances[dataInstanceIndex]
 			= (byte)(cl.myClassifier.getLCS().getClassifierTransformBridge().isMatch
-					(cl.myClassifier.getLCS().instances[dataInstanceIndex], cl.myClassifier)? 1 : 0);
+					(cl.myClassifier.getLCS().getTrainDataset(), dataInstanceIndex, cl.myClassifier)? 1 : 0);
 			
 			cl.myClassifier.checked++;
 			cl.myClassifier.covered += cl.myClassifier.matchInstances[dataInstanceIndex];
@@ -979,6 +1010,7 @@ public class ClassifierSet implements Serializable {
 				
 				getMacroclassifiersVector().get(toBeReturned).numerosity += getMacroclassifiersVector().get(c).numerosity; 
 				getMacroclassifiersVector().get(toBeReturned).numberOfSubsumptions++; 
+				totalSubsumptions++;
 				this.deleteMacroclassifier(c);
 				
 				indicesVector.clear();
@@ -1021,6 +1053,58 @@ public class ClassifierSet implements Serializable {
 
 	
 
+	/**
+	 * Returns an empty set holding a copy of this set's counters and logs (numerosity, deletion 
+	 * and GA counters, zero coverage logs), so that they can be saved apart from the macroclassifiers.
+	 * 
+	 * @return the empty set with the copied counters
+	 */
+	public final ClassifierSet copyCounters() {
+		final ClassifierSet copy = new ClassifierSet(null);
+		copyCounters(this, copy);
+		return copy;
+	}
+
+	/**
+	 * Replaces the contents of this set with saved counters and macroclassifiers, as they are: no 
+	 * subsumption or numerosity bookkeeping takes place. Used when resuming training from a checkpoint.
+	 * 
+	 * @param counters
+	 *            the set returned by copyCounters()
+	 * @param macroclassifiers
+	 *            the macroclassifiers, in their original order
+	 */
+	public final void restore(final ClassifierSet counters, final List<Macroclassifier> macroclassifiers) {
+		copyCounters(counters, this);
+		this.myMacroclassifiers.clear();
+		this.myMacroclassifiers.addAll(macroclassifiers);
+	}
+
+	/**
+	 * Copies the counters and logs of a set to another one.
+	 * 
+	 * @param from
+	 *            the set to copy from
+	 * @param to
+	 *            the set to copy to
+	 */
+	private static void copyCounters(final ClassifierSet from, final ClassifierSet to) {
+		to.firstDeletionFormula = from.firstDeletionFormula;
+		to.secondDeletionFormula = from.secondDeletionFormula;
+		to.coveredDeleted = from.coveredDeleted;
+		to.gaedDeleted = from.gaedDeleted;
+		to.zeroCoverageDeletions = from.zeroCoverageDeletions;
+		to.zeroCoverageVector = new Vector<Integer>(from.zeroCoverageVector);
+		to.zeroCoverageIterations = new Vector<Integer>(from.zeroCoverageIterations);
+		to.totalGAInvocations = from.totalGAInvocations;
+		to.totalSubsumptions = from.totalSubsumptions;
+		to.unmatched = from.unmatched;
+		to.totalNumerosity = from.totalNumerosity;
+		to.sumOfUnmatched = from.sumOfUnmatched;
+		to.deleteIndices = (from.deleteIndices == null) ? null : new Vector<Integer>(from.deleteIndices);
+		to.subsumed = from.subsumed;
+	}
+
 	/**
 	 * Print all classifiers in the set.
 	 */
@@ -1052,110 +1136,12 @@ public class ClassifierSet implements Serializable {
 	
 	@Override
 	public String toString() { // o buffer writes to population.txt. system.out -> console
-		final StringBuffer response = new StringBuffer();
-		
-		double numOfCover = 0;
-		double numOfGA = 0;
-		double numOfInit = 0;
-		int 	numOfSubsumptions = 0;
-		int 	meanNs = 0;
-		int 	coveredTotalNumerosity = 0;
-		int 	gaedTotalNumerosity = 0;
-		double meanAcc = 0;
-		
-		for (int i = 0; i < this.getNumberOfMacroclassifiers(); i++) {
-
-			double acc = this.getActualMacroclassifier(i).myClassifier.getComparisonValue(AbstractUpdateStrategy.COMPARISON_MODE_PURE_ACCURACY);
-			if (Double.isNaN(acc)) 
-				acc = 0;
-			
-			meanNs += this.getClassifier(i).getNs();
-			meanAcc += acc * this.getMacroclassifier(i).numerosity;
-
-		}
-		
-		if (this.getNumberOfMacroclassifiers() > 0) {
-			meanNs /= this.getNumberOfMacroclassifiers();
-			meanAcc /= this.getTotalNumerosity();
-		}
-		
-        DecimalFormat df = new DecimalFormat("#.####");
-
-        
-        double accuracyOfCovered = 0;
-        double accuracyOfGa = 0;
-		for (int i = 0; i < this.getNumberOfMacroclassifiers(); i++) {
-
-			
-			//response.append(this.getClassifier(i).toString()
-			response.append(
-					myMacroclassifiers.get(i).myClassifier.toString() // antecedent => concequent
-					+ "|"	
-					//+ " total fitness: " + this.getClassifier(i).getComparisonValue(AbstractUpdateStrategy.COMPARISON_MODE_EXPLOITATION) * this.getMacroclassifier(i).numerosity
-					// myMacroclassifiers.elementAt(i).toString isos kalutera
-					+ "macro fit:|" + df.format(myMacroclassifiers.get(i).myClassifier.getComparisonValue(AbstractUpdateStrategy.COMPARISON_MODE_EXPLORATION) 
-							* myMacroclassifiers.get(i).numerosity) 
-					+ "|"
-					+ "fit:|" + df.format(myMacroclassifiers.get(i).myClassifier.getComparisonValue(AbstractUpdateStrategy.COMPARISON_MODE_EXPLORATION))
-					+ "|"
-					+ "acc:|" + df.format(myMacroclassifiers.get(i).myClassifier.getComparisonValue(AbstractUpdateStrategy.COMPARISON_MODE_PURE_ACCURACY))
-					+ "|"
-					+ "num:|" + myMacroclassifiers.get(i).numerosity 
-					+ "|"
-					+ "exp:|" + myMacroclassifiers.get(i).myClassifier.experience  
-					+ "|"
-					+ "cov:|" + (int) (myMacroclassifiers.get(i).myClassifier.objectiveCoverage * myMacroclassifiers.get(i).myClassifier.getLCS().instances.length)
-					+ "|");
-			
-			response.append(myMacroclassifiers.get(i).myClassifier.getUpdateSpecificData());
-						
-			if (myMacroclassifiers.get(i).myClassifier.getClassifierOrigin() == Classifier.CLASSIFIER_ORIGIN_COVER) {
-				numOfCover++;
-				coveredTotalNumerosity += myMacroclassifiers.get(i).numerosity;
-				accuracyOfCovered +=  myMacroclassifiers.get(i).numerosity * myMacroclassifiers.get(i).myClassifier.getComparisonValue(AbstractUpdateStrategy.COMPARISON_MODE_PURE_ACCURACY);
-				response.append("origin:|cover" + "|");
-			}
-			else if (myMacroclassifiers.get(i).myClassifier.getClassifierOrigin() == Classifier.CLASSIFIER_ORIGIN_GA) {
-				numOfGA++;
-				gaedTotalNumerosity += myMacroclassifiers.get(i).numerosity;
-				accuracyOfGa +=  myMacroclassifiers.get(i).numerosity * myMacroclassifiers.get(i).myClassifier.getComparisonValue(AbstractUpdateStrategy.COMPARISON_MODE_PURE_ACCURACY);
-				response.append("origin:|ga" + "|");
-			}
-			else if (myMacroclassifiers.get(i).myClassifier.getClassifierOrigin() == Classifier.CLASSIFIER_ORIGIN_INIT) {
-				numOfInit++;
-				coveredTotalNumerosity += myMacroclassifiers.get(i).numerosity;
-				accuracyOfCovered +=  myMacroclassifiers.get(i).numerosity * myMacroclassifiers.get(i).myClassifier.getComparisonValue(AbstractUpdateStrategy.COMPARISON_MODE_PURE_ACCURACY);
-				response.append("origin:|init "+ "|");
-			}	
-			
-			
-			numOfSubsumptions += myMacroclassifiers.get(i).numberOfSubsumptions;
-			response.append("created:|" + myMacroclassifiers.get(i).myClassifier.cummulativeInstanceCreated + "|");
-			response.append("last in correctset:|" + myMacroclassifiers.get(i).myClassifier.timestamp + "|");
-			response.append("subsumptions:|" + myMacroclassifiers.get(i).numberOfSubsumptions + "|");
-			response.append("created:|" + (-Integer.MIN_VALUE + myMacroclassifiers.get(i).myClassifier.getSerial()) + "th" + "|");
-			response.append(System.getProperty("line.separator"));
+		final StringWriter response = new StringWriter();
+		try {
+			new PopulationWriter().writeText(this, response);
+		} catch (IOException e) {
+			e.printStackTrace();
 		}
-		
-		System.out.println("\nPopulation size (macro, micro): "  	+ "(" + this.getNumberOfMacroclassifiers() + "," + this.getTotalNumerosity() + ")");
-
-		System.out.println("Classifiers in population covered: " 	+ (int) numOfCover);
-		System.out.println("Classifiers in population ga-ed:   " 	+ (int) numOfGA);
-		System.out.println("Classifiers in population init-ed: " 	+ (int) numOfInit);
-		System.out.println();
-		
-		System.out.println("Accuracy of covered: " +  (Double.isNaN(accuracyOfCovered / numOfCover) ? 0 : accuracyOfCovered / coveredTotalNumerosity /*(numOfCover + numOfInit)*/));
-		System.out.println("Accuracy of gaed:    " +  (Double.isNaN(accuracyOfGa/ numOfCover) ? 0 : accuracyOfGa / gaedTotalNumerosity/*numOfGA*/));
-		System.out.println();
-
-		
-		System.out.println("Mean ns:   " + meanNs);
-		System.out.println("Mean pure accuracy:   " + meanAcc);
-		
-		System.out.println("ga invocations: " 						+ this.totalGAInvocations);
-
-		System.out.println("Subsumptions: " + numOfSubsumptions + "\n");
-
 		return response.toString();
 	}
 
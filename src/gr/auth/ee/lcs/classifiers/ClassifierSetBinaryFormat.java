@@ -0,0 +1,543 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.classifiers;
+
+import gr.auth.ee.lcs.AbstractLearningClassifierSystem;
+import gr.auth.ee.lcs.data.AbstractUpdateStrategy;
+import gr.auth.ee.lcs.data.representations.complex.ComplexRepresentation;
+import gr.auth.ee.lcs.utilities.ExtendedBitSet;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A versioned binary file format for rule populations, an alternative to the Java serialization 
+ * of ClassifierSet.saveClassifierSet().
+ * 
+ * The file starts with a header (magic number, format version, population dimensions and the 
+ * schema of the representation that produced the chromosomes), followed by fixed-width columns: 
+ * the chromosome words of all rules, then one column per numeric field (numerosity, experience, ..., 
+ * the exploitation weight and the update-specific state). Files are read through a memory map, so a 
+ * population is rebuilt without per-object deserialization, and an inference model can be compiled 
+ * directly from the chromosome and weight columns, without constructing classifiers at all.
+ * 
+ * Only complex representations are supported, since their schema identifies compatible chromosomes.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public final class ClassifierSetBinaryFormat {
+
+	/**
+	 * The magic number starting every binary rules file ("LCSR").
+	 */
+	public static final int MAGIC = 0x4C435352;
+
+	/**
+	 * The current format version.
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * The flag of classifiers able to subsume.
+	 */
+	private static final int FLAG_CAN_SUBSUME = 1;
+
+	/**
+	 * The header of a binary rules file.
+	 */
+	private static final class Header {
+		
+		/**
+		 * The population dimensions.
+		 */
+		int numberOfRules, chromosomeSize, wordsPerRule, numberOfLabels, stateSize;
+
+		/**
+		 * The schema of the representation.
+		 */
+		String schema;
+
+		/**
+		 * Read and validate the header of a mapped file, leaving the buffer at the first column.
+		 * 
+		 * @param buffer
+		 *            the mapped file
+		 * @param path
+		 *            the path of the file (for messages)
+		 * @param representation
+		 *            the representation the rules are loaded into
+		 * @return the header, or null if the file is not a compatible binary rules file
+		 */
+		static Header read(final ByteBuffer buffer, final String path, final ComplexRepresentation representation) {
+			if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+				System.out.println(path + " is not a binary rules file");
+				return null;
+			}
+			final int version = buffer.getInt();
+			if (version != VERSION) {
+				System.out.println(path + " has format version " + version + ", expected " + VERSION);
+				return null;
+			}
+			
+			final Header header = new Header();
+			header.numberOfRules = buffer.getInt();
+			header.chromosomeSize = buffer.getInt();
+			header.wordsPerRule = buffer.getInt();
+			header.numberOfLabels = buffer.getInt();
+			header.stateSize = buffer.getInt();
+			final byte[] schema = new byte[buffer.getInt()];
+			buffer.get(schema);
+			header.schema = decode(schema);
+			buffer.position(align(buffer.position()));
+			
+			if (!header.schema.equals(representation.getSchema())) {
+				System.out.println(path + " was saved with another representation schema:\n" + header.schema);
+				return null;
+			}
+			return header;
+		}
+	}
+
+	/**
+	 * Static utility class.
+	 */
+	private ClassifierSetBinaryFormat() {
+	}
+
+	/**
+	 * Checks whether a file is a binary rules file.
+	 * 
+	 * @param path
+	 *            the path of the file
+	 * @return true if the file starts with the binary format's magic number
+	 */
+	public static boolean isBinaryFile(final String path) {
+		FileInputStream in = null;
+		try {
+			in = new FileInputStream(path);
+			final byte[] magic = new byte[4];
+			if (in.read(magic) != 4)
+				return false;
+			return ByteBuffer.wrap(magic).getInt() == MAGIC;
+		} catch (IOException e) {
+			return false;
+		} finally {
+			try {
+				if (in != null)
+					in.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Save a classifier set in the binary format.
+	 * 
+	 * @param toSave
+	 *            the set to save
+	 * @param filename
+	 *            the path to save the set to
+	 * @param lcs
+	 *            the LCS the set belongs to (providing the representation and the update strategy)
+	 * @return true if the set was saved
+	 */
+	public static boolean save(final ClassifierSet toSave, 
+							   final String filename, 
+							   final AbstractLearningClassifierSystem lcs) {
+		if (!(lcs.getClassifierTransformBridge() instanceof ComplexRepresentation)) {
+			System.out.println("Binary rules files need a complex representation");
+			return false;
+		}
+		final ComplexRepresentation representation = (ComplexRepresentation) lcs.getClassifierTransformBridge();
+		final AbstractUpdateStrategy updateStrategy = lcs.getUpdateStrategy();
+		
+		final int numberOfRules = toSave.getNumberOfMacroclassifiers();
+		final int chromosomeSize = representation.getChromosomeSize();
+		final int wordsPerRule = (chromosomeSize + Long.SIZE - 1) / Long.SIZE;
+		final int numberOfLabels = (numberOfRules > 0) ? toSave.getClassifier(0).timestamps.length : 0;
+		final int stateSize = updateStrategy.getNumericStateSize();
+		final byte[] schema = encode(representation.getSchema());
+		
+		final int headerSize = align(8 * 4 + schema.length);
+		final long size = headerSize + getColumnsSize(numberOfRules, wordsPerRule, numberOfLabels, stateSize);
+		
+		final ByteBuffer buffer = ByteBuffer.allocate((int) size);
+		buffer.putInt(MAGIC).putInt(VERSION);
+		buffer.putInt(numberOfRules).putInt(chromosomeSize).putInt(wordsPerRule).putInt(numberOfLabels).putInt(stateSize);
+		buffer.putInt(schema.length).put(schema);
+		buffer.position(headerSize);
+		
+		// chromosome words (the last word read only up to the chromosome's length)
+		for (int r = 0; r < numberOfRules; r++) {
+			final Classifier cl = toSave.getClassifier(r);
+			for (int w = 0; w < wordsPerRule; w++)
+				buffer.putLong(cl.getLongAt(w * Long.SIZE, Math.min(Long.SIZE, chromosomeSize - w * Long.SIZE)));
+		}
+		
+		for (int r = 0; r < numberOfRules; r++)
+			buffer.putInt(toSave.getClassifierNumerosity(r));
+		for (int r = 0; r < numberOfRules; r++)
+			buffer.putInt(toSave.getMacroclassifier(r).numberOfSubsumptions);
+		for (int r = 0; r < numberOfRules; r++)
+			buffer.putInt(toSave.getClassifier(r).experience);
+		for (int r = 0; r < numberOfRules; r++)
+			buffer.putInt(toSave.getClassifier(r).timestamp);
+		for (int r = 0; r < numberOfRules; r++)
+			buffer.putInt(toSave.getClassifier(r).getClassifierOrigin());
+		for (int r = 0; r < numberOfRules; r++)
+			buffer.putInt(toSave.getClassifier(r).created);
+		for (int r = 0; r < numberOfRules; r++)
+			buffer.putInt(toSave.getClassifier(r).cummulativeInstanceCreated);
+		for (int r = 0; r < numberOfRules; r++)
+			buffer.putInt(toSave.getClassifier(r).canSubsume() ? FLAG_CAN_SUBSUME : 0);
+		for (int r = 0; r < numberOfRules; r++)
+			for (int l = 0; l < numberOfLabels; l++)
+				buffer.putInt(toSave.getClassifier(r).timestamps[l]);
+		buffer.position(align(buffer.position()));
+		
+		for (int r = 0; r < numberOfRules; r++)
+			buffer.putDouble(toSave.getMacroclassifier(r).totalFitness);
+		for (int r = 0; r < numberOfRules; r++)
+			buffer.putDouble(toSave.getClassifier(r).objectiveCoverage);
+		for (int r = 0; r < numberOfRules; r++)
+			buffer.putDouble(toSave.getClassifierNumerosity(r) 
+					* toSave.getClassifier(r).getComparisonValue(AbstractUpdateStrategy.COMPARISON_MODE_EXPLOITATION));
+		
+		final double[] state = new double[stateSize];
+		for (int r = 0; r < numberOfRules; r++) {
+			updateStrategy.getNumericState(toSave.getClassifier(r), state, 0);
+			for (int i = 0; i < stateSize; i++)
+				buffer.putDouble(state[i]);
+		}
+		
+		FileOutputStream out = null;
+		try {
+			out = new FileOutputStream(filename);
+			buffer.flip();
+			final FileChannel channel = out.getChannel();
+			while (buffer.hasRemaining())
+				channel.write(buffer);
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		} finally {
+			try {
+				if (out != null)
+					out.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Open a binary rules file as a classifier set.
+	 * 
+	 * @param path
+	 *            the path of the file
+	 * @param sizeControlStrategy
+	 *            the population control strategy of the new set
+	 * @param lcs
+	 *            the LCS which the new set will belong to
+	 * @return the opened set, or null if the file cannot be read or is incompatible with the LCS
+	 */
+	public static ClassifierSet open(final String path, 
+									  final IPopulationControlStrategy sizeControlStrategy,
+									  final AbstractLearningClassifierSystem lcs) {
+		final ComplexRepresentation representation = getRepresentation(lcs);
+		final ByteBuffer buffer = map(path);
+		if (representation == null || buffer == null)
+			return null;
+		final Header header = Header.read(buffer, path, representation);
+		if (header == null)
+			return null;
+		
+		final AbstractUpdateStrategy updateStrategy = lcs.getUpdateStrategy();
+		final boolean restoreState = header.stateSize > 0 && header.stateSize == updateStrategy.getNumericStateSize();
+		if (!restoreState && header.stateSize > 0)
+			System.out.println("The update-specific data of " + path + " do not match the update strategy and are not restored");
+		
+		final int n = header.numberOfRules;
+		final ExtendedBitSet[] chromosomes = readChromosomes(buffer, header);
+		final Classifier[] classifiers = new Classifier[n];
+		for (int r = 0; r < n; r++)
+			classifiers[r] = Classifier.createNewClassifier(lcs, chromosomes[r]);
+		
+		final int[] numerosity = readInts(buffer, n);
+		final int[] subsumptions = readInts(buffer, n);
+		final int[] experience = readInts(buffer, n);
+		final int[] timestamp = readInts(buffer, n);
+		final int[] origin = readInts(buffer, n);
+		final int[] created = readInts(buffer, n);
+		final int[] cummulativeInstanceCreated = readInts(buffer, n);
+		final int[] flags = readInts(buffer, n);
+		final int[] labelTimestamps = readInts(buffer, n * header.numberOfLabels);
+		buffer.position(align(buffer.position()));
+		final double[] totalFitness = readDoubles(buffer, n);
+		final double[] objectiveCoverage = readDoubles(buffer, n);
+		readDoubles(buffer, n); // the exploitation weights are recomputed from the restored state
+		final double[] state = restoreState ? readDoubles(buffer, n * header.stateSize) : null;
+		
+		final ClassifierSet opened = new ClassifierSet(null);
+		for (int r = 0; r < n; r++) {
+			final Classifier cl = classifiers[r];
+			cl.experience = experience[r];
+			cl.timestamp = timestamp[r];
+			cl.setClassifierOrigin(origin[r]);
+			cl.created = created[r];
+			cl.cummulativeInstanceCreated = cummulativeInstanceCreated[r];
+			cl.setSubsumptionAbility((flags[r] & FLAG_CAN_SUBSUME) != 0);
+			cl.objectiveCoverage = objectiveCoverage[r];
+			for (int l = 0; l < header.numberOfLabels && l < cl.timestamps.length; l++)
+				cl.timestamps[l] = labelTimestamps[r * header.numberOfLabels + l];
+			if (restoreState)
+				updateStrategy.setNumericState(cl, state, r * header.stateSize);
+			
+			final Macroclassifier macro = new Macroclassifier(cl, numerosity[r]);
+			macro.numberOfSubsumptions = subsumptions[r];
+			macro.totalFitness = totalFitness[r];
+			opened.addClassifier(macro, false);
+		}
+		
+		final ClassifierSet result = new ClassifierSet(sizeControlStrategy);
+		result.mergeWithoutControl(opened);
+		return result;
+	}
+
+	/**
+	 * Compile a binary rules file directly into an inference model, reading only the 
+	 * chromosome and weight columns and constructing no classifiers.
+	 * 
+	 * @param path
+	 *            the path of the file
+	 * @param representation
+	 *            the representation of the rules
+	 * @param classificationMode
+	 *            the classification mode of the model
+	 * @param voteThreshold
+	 *            the threshold used when classifying by voting
+	 * @return the compiled model, or null if the file cannot be read or is incompatible with the representation
+	 */
+	public static CompiledInferenceModel openModel(final String path, 
+												   final ComplexRepresentation representation,
+												   final int classificationMode,
+												   final double voteThreshold) {
+		final ByteBuffer buffer = map(path);
+		if (buffer == null)
+			return null;
+		final Header header = Header.read(buffer, path, representation);
+		if (header == null)
+			return null;
+		
+		final int n = header.numberOfRules;
+		final ExtendedBitSet[] chromosomes = readChromosomes(buffer, header);
+		
+		// skip to the weight column
+		final int intColumns = 8 * n + n * header.numberOfLabels;
+		buffer.position(align(buffer.position() + intColumns * 4) + 2 * n * 8);
+		final double[] weight = readDoubles(buffer, n);
+		
+		return representation.compile(chromosomes, weight, classificationMode, voteThreshold);
+	}
+
+	/**
+	 * Read the chromosome column, advancing the buffer.
+	 * 
+	 * @param buffer
+	 *            the buffer, at the chromosome column
+	 * @param header
+	 *            the header of the file
+	 * @return the chromosome of each rule
+	 */
+	private static ExtendedBitSet[] readChromosomes(final ByteBuffer buffer, final Header header) {
+		final long[] words = new long[header.numberOfRules * header.wordsPerRule];
+		buffer.asLongBuffer().get(words);
+		buffer.position(buffer.position() + words.length * 8);
+		
+		final ExtendedBitSet[] chromosomes = new ExtendedBitSet[header.numberOfRules];
+		final long[] ruleWords = new long[header.wordsPerRule];
+		for (int r = 0; r < header.numberOfRules; r++) {
+			System.arraycopy(words, r * header.wordsPerRule, ruleWords, 0, header.wordsPerRule);
+			chromosomes[r] = new ExtendedBitSet(header.chromosomeSize, ruleWords);
+		}
+		return chromosomes;
+	}
+
+	/**
+	 * Returns the size of the columns of a file.
+	 * 
+	 * @param numberOfRules
+	 *            the number of rules
+	 * @param wordsPerRule
+	 *            the number of chromosome words per rule
+	 * @param numberOfLabels
+	 *            the number of labels
+	 * @param stateSize
+	 *            the number of update-specific values per rule
+	 * @return the size in bytes
+	 */
+	private static long getColumnsSize(final int numberOfRules, 
+									   final int wordsPerRule, 
+									   final int numberOfLabels, 
+									   final int stateSize) {
+		final long intColumns = align(4L * (8 * numberOfRules + numberOfRules * numberOfLabels));
+		return 8L * numberOfRules * wordsPerRule + intColumns + 8L * numberOfRules * (3 + stateSize);
+	}
+
+	/**
+	 * Returns the complex representation of an LCS.
+	 * 
+	 * @param lcs
+	 *            the LCS
+	 * @return the representation, or null if it is not a complex one
+	 */
+	private static ComplexRepresentation getRepresentation(final AbstractLearningClassifierSystem lcs) {
+		if (lcs.getClassifierTransformBridge() instanceof ComplexRepresentation)
+			return (ComplexRepresentation) lcs.getClassifierTransformBridge();
+		System.out.println("Binary rules files need a complex representation");
+		return null;
+	}
+
+	/**
+	 * Memory-map a file for reading.
+	 * 
+	 * @param path
+	 *            the path of the file
+	 * @return the mapped file, or null if it cannot be read
+	 */
+	private static ByteBuffer map(final String path) {
+		RandomAccessFile file = null;
+		try {
+			file = new RandomAccessFile(path, "r");
+			final MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+			return buffer;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		} finally {
+			try {
+				if (file != null)
+					file.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Read an int column, advancing the buffer.
+	 * 
+	 * @param buffer
+	 *            the buffer
+	 * @param length
+	 *            the number of values
+	 * @return the values
+	 */
+	private static int[] readInts(final ByteBuffer buffer, final int length) {
+		final int[] values = new int[length];
+		buffer.asIntBuffer().get(values);
+		buffer.position(buffer.position() + length * 4);
+		return values;
+	}
+
+	/**
+	 * Read a double column, advancing the buffer.
+	 * 
+	 * @param buffer
+	 *            the buffer
+	 * @param length
+	 *            the number of values
+	 * @return the values
+	 */
+	private static double[] readDoubles(final ByteBuffer buffer, final int length) {
+		final double[] values = new double[length];
+		buffer.asDoubleBuffer().get(values);
+		buffer.position(buffer.position() + length * 8);
+		return values;
+	}
+
+	/**
+	 * Round a position up to a multiple of 8 bytes.
+	 * 
+	 * @param position
+	 *            the position
+	 * @return the aligned position
+	 */
+	private static int align(final int position) {
+		return (position + 7) & ~7;
+	}
+
+	/**
+	 * Round a size up to a multiple of 8 bytes.
+	 * 
+	 * @param size
+	 *            the size
+	 * @return the aligned size
+	 */
+	private static long align(final long size) {
+		return (size + 7) & ~7L;
+	}
+
+	/**
+	 * Encode a string as UTF-8.
+	 * 
+	 * @param text
+	 *            the string
+	 * @return the bytes
+	 */
+	private static byte[] encode(final String text) {
+		try {
+			return text.getBytes("UTF-8");
+		} catch (IOException e) {
+			e.printStackTrace();
+			return new byte[0];
+		}
+	}
+
+	/**
+	 * Decode a UTF-8 string.
+	 * 
+	 * @param bytes
+	 *            the bytes
+	 * @return the string
+	 */
+	private static String decode(final byte[] bytes) {
+		try {
+			return new String(bytes, "UTF-8");
+		} catch (IOException e) {
+			e.printStackTrace();
+			return "";
+		}
+	}
+
+}
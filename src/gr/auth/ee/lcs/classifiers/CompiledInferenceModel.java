@@ -0,0 +1,918 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.classifiers;
+
+import gr.auth.ee.lcs.utilities.FlatDataset;
+import gr.auth.ee.lcs.utilities.ParallelChunkExecutor;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * An immutable, compiled form of a trained rule population, used only for inference.
+ * 
+ * The rule conditions are packed in flat primitive arrays (only the specific attributes of each rule are kept), 
+ * the exploitation fitness of each rule is precomputed and multiplied by its numerosity and the consequent of 
+ * each rule for each label is stored as a single byte. Classification thus needs no match set construction, 
+ * no virtual calls and no string conversions, and does not allocate when the caller provides the work arrays.
+ * Since the model is never modified after construction, a single instance can be shared among threads.
+ * 
+ * Models are created by ComplexRepresentation.compile().
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public final class CompiledInferenceModel {
+
+	/**
+	 * A boolean condition. Matches when (value != 0) equals the condition's expected value (stored as its low bound).
+	 */
+	public static final byte CONDITION_BOOLEAN = 0;
+
+	/**
+	 * A numeric interval condition. Matches when low bound <= value <= high bound.
+	 */
+	public static final byte CONDITION_INTERVAL = 1;
+
+	/**
+	 * A nominal condition. Matches when the bit of the (integer) value is set in the condition's nominal mask.
+	 */
+	public static final byte CONDITION_NOMINAL = 2;
+
+	/**
+	 * The rule advocates the absence of the label.
+	 */
+	public static final byte LABEL_NEGATIVE = 0;
+
+	/**
+	 * The rule advocates the presence of the label.
+	 */
+	public static final byte LABEL_POSITIVE = 1;
+
+	/**
+	 * The rule does not care about the label (#).
+	 */
+	public static final byte LABEL_DONT_CARE = 2;
+
+	/**
+	 * Classify selecting, for every label, the decision of the fittest (numerosity * exploitation fitness) matching rule 
+	 * that does not have a # for it (as in GenericMultiLabelRepresentation.BestFitnessClassificationStrategy).
+	 */
+	public static final int CLASSIFICATION_MODE_BEST_FITNESS = 0;
+
+	/**
+	 * Classify by normalized weighted voting of all matching rules and thresholding 
+	 * (as in GenericMultiLabelRepresentation.VotingClassificationStrategy).
+	 */
+	public static final int CLASSIFICATION_MODE_VOTING = 1;
+
+	/**
+	 * The minimum number of instances classified by a single thread in batch classification.
+	 */
+	private static final int MIN_CHUNK_SIZE = 64;
+
+	/**
+	 * The number of rules (macroclassifiers) in the model.
+	 */
+	private final int numberOfRules;
+
+	/**
+	 * The number of attributes of the problem (excluding the labels), i.e. the length of the instance vectors needed.
+	 */
+	private final int numberOfAttributes;
+
+	/**
+	 * The number of labels of the problem.
+	 */
+	private final int numberOfLabels;
+
+	/**
+	 * The conditions of rule r are stored at positions conditionStart[r] (inclusive) to conditionStart[r + 1] (exclusive).
+	 */
+	private final int[] conditionStart;
+
+	/**
+	 * The attribute (index in the instance vector) tested by each condition.
+	 */
+	private final int[] conditionAttribute;
+
+	/**
+	 * The type of each condition.
+	 */
+	private final byte[] conditionType;
+
+	/**
+	 * The low bound of interval conditions, or the expected value of boolean conditions.
+	 */
+	private final float[] conditionLow;
+
+	/**
+	 * The high bound of interval conditions.
+	 */
+	private final float[] conditionHigh;
+
+	/**
+	 * The offset in nominalMasks of the mask of each nominal condition.
+	 */
+	private final int[] conditionMaskOffset;
+
+	/**
+	 * The allowed values of all nominal conditions, as consecutive bit masks.
+	 */
+	private final long[] nominalMasks;
+
+	/**
+	 * The numerosity * exploitation fitness of each rule.
+	 */
+	private final double[] weight;
+
+	/**
+	 * The consequent code of every rule for every label, rule-major.
+	 */
+	private final byte[] consequents;
+
+	/**
+	 * The classification mode used by classify().
+	 */
+	private final int classificationMode;
+
+	/**
+	 * The threshold used by the voting classification mode.
+	 */
+	private final double voteThreshold;
+
+	/**
+	 * Constructor. The arrays are used as they are (not copied) and must not be modified afterwards.
+	 * 
+	 * @param attributes
+	 *            the number of attributes (excluding the labels)
+	 * @param labels
+	 *            the number of labels
+	 * @param conditionStart
+	 *            the start of each rule's conditions (length: number of rules + 1)
+	 * @param conditionAttribute
+	 *            the attribute tested by each condition
+	 * @param conditionType
+	 *            the type of each condition
+	 * @param conditionLow
+	 *            the low bound (or expected value) of each condition
+	 * @param conditionHigh
+	 *            the high bound of each condition
+	 * @param conditionMaskOffset
+	 *            the nominal mask offset of each condition
+	 * @param nominalMasks
+	 *            the nominal masks
+	 * @param weight
+	 *            the numerosity * exploitation fitness of each rule
+	 * @param consequents
+	 *            the consequent codes, rule-major
+	 * @param mode
+	 *            the classification mode used by classify()
+	 * @param threshold
+	 *            the voting threshold
+	 */
+	public CompiledInferenceModel(final int attributes,
+								   final int labels,
+								   final int[] conditionStart,
+								   final int[] conditionAttribute,
+								   final byte[] conditionType,
+								   final float[] conditionLow,
+								   final float[] conditionHigh,
+								   final int[] conditionMaskOffset,
+								   final long[] nominalMasks,
+								   final double[] weight,
+								   final byte[] consequents,
+								   final int mode,
+								   final double threshold) {
+		
+		this.numberOfRules = weight.length;
+		this.numberOfAttributes = attributes;
+		this.numberOfLabels = labels;
+		this.conditionStart = conditionStart;
+		this.conditionAttribute = conditionAttribute;
+		this.conditionType = conditionType;
+		this.conditionLow = conditionLow;
+		this.conditionHigh = conditionHigh;
+		this.conditionMaskOffset = conditionMaskOffset;
+		this.nominalMasks = nominalMasks;
+		this.weight = weight;
+		this.consequents = consequents;
+		this.classificationMode = mode;
+		this.voteThreshold = threshold;
+	}
+
+	/**
+	 * Returns a model sharing all rule data with this one, but using another classification mode and voting threshold.
+	 * 
+	 * @param mode
+	 *            the new classification mode
+	 * @param threshold
+	 *            the new voting threshold
+	 * @return the new model
+	 */
+	public CompiledInferenceModel withClassificationMode(final int mode, final double threshold) {
+		return new CompiledInferenceModel(numberOfAttributes, numberOfLabels, conditionStart, conditionAttribute, conditionType, 
+				conditionLow, conditionHigh, conditionMaskOffset, nominalMasks, weight, consequents, mode, threshold);
+	}
+
+	/**
+	 * Returns a model containing only the selected rules (in their original order), 
+	 * with the same classification mode and voting threshold.
+	 * 
+	 * @param keep
+	 *            whether each rule of this model is kept
+	 * @return the new model
+	 */
+	public CompiledInferenceModel selectRules(final boolean[] keep) {
+		final int[] maskLength = getMaskLengths();
+		int rules = 0;
+		int conditions = 0;
+		int maskWords = 0;
+		for (int r = 0; r < numberOfRules; r++) {
+			if (!keep[r])
+				continue;
+			rules++;
+			for (int c = conditionStart[r]; c < conditionStart[r + 1]; c++) {
+				conditions++;
+				if (conditionType[c] == CONDITION_NOMINAL)
+					maskWords += maskLength[c];
+			}
+		}
+		
+		final int[] newConditionStart = new int[rules + 1];
+		final int[] newConditionAttribute = new int[conditions];
+		final byte[] newConditionType = new byte[conditions];
+		final float[] newConditionLow = new float[conditions];
+		final float[] newConditionHigh = new float[conditions];
+		final int[] newConditionMaskOffset = new int[conditions];
+		final long[] newNominalMasks = new long[maskWords];
+		final double[] newWeight = new double[rules];
+		final byte[] newConsequents = new byte[rules * numberOfLabels];
+		
+		int newRule = 0;
+		int newCondition = 0;
+		int maskWord = 0;
+		for (int r = 0; r < numberOfRules; r++) {
+			if (!keep[r])
+				continue;
+			newConditionStart[newRule] = newCondition;
+			for (int c = conditionStart[r]; c < conditionStart[r + 1]; c++) {
+				newConditionAttribute[newCondition] = conditionAttribute[c];
+				newConditionType[newCondition] = conditionType[c];
+				newConditionLow[newCondition] = conditionLow[c];
+				newConditionHigh[newCondition] = conditionHigh[c];
+				if (conditionType[c] == CONDITION_NOMINAL) {
+					System.arraycopy(nominalMasks, conditionMaskOffset[c], newNominalMasks, maskWord, maskLength[c]);
+					newConditionMaskOffset[newCondition] = maskWord;
+					maskWord += maskLength[c];
+				}
+				newCondition++;
+			}
+			newWeight[newRule] = weight[r];
+			System.arraycopy(consequents, r * numberOfLabels, newConsequents, newRule * numberOfLabels, numberOfLabels);
+			newRule++;
+		}
+		newConditionStart[rules] = newCondition;
+		
+		return new CompiledInferenceModel(numberOfAttributes, numberOfLabels, newConditionStart, newConditionAttribute, newConditionType, 
+				newConditionLow, newConditionHigh, newConditionMaskOffset, newNominalMasks, newWeight, newConsequents, 
+				classificationMode, voteThreshold);
+	}
+
+	/**
+	 * Returns the number of mask words of each nominal condition. The masks are stored in 
+	 * condition order, so a mask ends where the mask of the next nominal condition starts.
+	 * 
+	 * @return the number of words of each condition's mask (0 for non nominal conditions)
+	 */
+	private int[] getMaskLengths() {
+		final int[] maskLength = new int[conditionType.length];
+		int nextOffset = nominalMasks.length;
+		for (int c = conditionType.length - 1; c >= 0; c--) {
+			if (conditionType[c] != CONDITION_NOMINAL)
+				continue;
+			maskLength[c] = nextOffset - conditionMaskOffset[c];
+			nextOffset = conditionMaskOffset[c];
+		}
+		return maskLength;
+	}
+
+	/**
+	 * Classify an instance using the model's classification mode.
+	 * 
+	 * @param instance
+	 *            the instance vector
+	 * @return the indices of the active labels
+	 */
+	public int[] classify(final double[] instance) {
+		final boolean[] decisions = new boolean[numberOfLabels];
+		final int activeLabels;
+		
+		if (classificationMode == CLASSIFICATION_MODE_VOTING)
+			activeLabels = classifyVoting(instance, new float[numberOfLabels], decisions);
+		else
+			activeLabels = classifyBestFitness(instance, new double[numberOfLabels], decisions);
+		
+		return toLabelIndices(decisions, activeLabels);
+	}
+
+	/**
+	 * Classify a batch of instances using the model's classification mode. The batch is 
+	 * split in chunks classified in parallel, each chunk reusing its own work arrays.
+	 * 
+	 * @param instances
+	 *            the instance vectors
+	 * @return the indices of the active labels of each instance, in the order of the instances
+	 */
+	public int[][] classifyInstances(final double[][] instances) {
+		final int[][] classifications = new int[instances.length][];
+		
+		ParallelChunkExecutor.forEachChunk(instances.length, MIN_CHUNK_SIZE, new ParallelChunkExecutor.IChunkTask() {
+			@Override
+			public void run(final int from, final int to) {
+				final boolean[] decisions = new boolean[numberOfLabels];
+				final float[] votingTable = new float[numberOfLabels];
+				final double[] confidenceTable = new double[numberOfLabels];
+				
+				for (int i = from; i < to; i++) {
+					final int activeLabels;
+					if (classificationMode == CLASSIFICATION_MODE_VOTING)
+						activeLabels = classifyVoting(instances[i], votingTable, decisions);
+					else
+						activeLabels = classifyBestFitness(instances[i], confidenceTable, decisions);
+					classifications[i] = toLabelIndices(decisions, activeLabels);
+				}
+			}
+		});
+		return classifications;
+	}
+
+	/**
+	 * Classify every instance of a flat dataset using the model's classification mode, in parallel. 
+	 * The instances of mapped sets are read from the file one at a time.
+	 * 
+	 * @param dataset
+	 *            the dataset
+	 * @return the indices of the active labels of each instance, in the order of the instances
+	 */
+	public int[][] classifyInstances(final FlatDataset dataset) {
+		final int[][] classifications = new int[dataset.getNumberOfInstances()][];
+		
+		ParallelChunkExecutor.forEachChunk(classifications.length, MIN_CHUNK_SIZE, new ParallelChunkExecutor.IChunkTask() {
+			@Override
+			public void run(final int from, final int to) {
+				final boolean[] decisions = new boolean[numberOfLabels];
+				final float[] votingTable = new float[numberOfLabels];
+				final double[] confidenceTable = new double[numberOfLabels];
+				
+				for (int i = from; i < to; i++) {
+					final double[] instance = dataset.getInstance(i);
+					final int activeLabels;
+					if (classificationMode == CLASSIFICATION_MODE_VOTING)
+						activeLabels = classifyVoting(instance, votingTable, decisions);
+					else
+						activeLabels = classifyBestFitness(instance, confidenceTable, decisions);
+					classifications[i] = toLabelIndices(decisions, activeLabels);
+				}
+			}
+		});
+		return classifications;
+	}
+
+	/**
+	 * Classify every instance of a matched set using the model's classification mode, in parallel.
+	 * 
+	 * @param matches
+	 *            the match matrix of the set
+	 * @return the indices of the active labels of each instance, in the order of the instances
+	 * @throws IllegalArgumentException
+	 *             if the matrix was not built with the rules of this model
+	 */
+	public int[][] classifyInstances(final MatchMatrix matches) {
+		checkMatchedBy(matches);
+		
+		final int[][] classifications = new int[matches.getNumberOfInstances()][];
+		
+		ParallelChunkExecutor.forEachChunk(classifications.length, MIN_CHUNK_SIZE, new ParallelChunkExecutor.IChunkTask() {
+			@Override
+			public void run(final int from, final int to) {
+				final boolean[] decisions = new boolean[numberOfLabels];
+				final float[] votingTable = new float[numberOfLabels];
+				final double[] confidenceTable = new double[numberOfLabels];
+				
+				for (int i = from; i < to; i++) {
+					final int activeLabels;
+					if (classificationMode == CLASSIFICATION_MODE_VOTING)
+						activeLabels = classifyVoting(matches, i, votingTable, decisions);
+					else
+						activeLabels = classifyBestFitness(matches, i, confidenceTable, decisions);
+					classifications[i] = toLabelIndices(decisions, activeLabels);
+				}
+			}
+		});
+		return classifications;
+	}
+
+	/**
+	 * Computes the normalized voting confidences of every instance of a matched set, in parallel.
+	 * 
+	 * @param matches
+	 *            the match matrix of the set
+	 * @return the confidence vectors, in the order of the instances
+	 * @throws IllegalArgumentException
+	 *             if the matrix was not built with the rules of this model
+	 */
+	public float[][] getConfidences(final MatchMatrix matches) {
+		checkMatchedBy(matches);
+		
+		final float[][] confidences = new float[matches.getNumberOfInstances()][numberOfLabels];
+		
+		ParallelChunkExecutor.forEachChunk(confidences.length, MIN_CHUNK_SIZE, new ParallelChunkExecutor.IChunkTask() {
+			@Override
+			public void run(final int from, final int to) {
+				for (int i = from; i < to; i++)
+					getConfidence(matches, i, confidences[i]);
+			}
+		});
+		return confidences;
+	}
+
+	/**
+	 * Checks that a match matrix was built with the rules of this model.
+	 * 
+	 * @param matches
+	 *            the match matrix
+	 * @throws IllegalArgumentException
+	 *             if the rules of the matrix's model are not the rules of this model
+	 */
+	private void checkMatchedBy(final MatchMatrix matches) {
+		if (matches.getModel().weight != weight)
+			throw new IllegalArgumentException("The match matrix was built with the rules of another model");
+	}
+
+	/**
+	 * Best fitness classification of an instance, without allocations.
+	 * 
+	 * @param instance
+	 *            the instance vector
+	 * @param confidenceTable
+	 *            a work array of length numberOfLabels
+	 * @param decisions
+	 *            the array (of length numberOfLabels) where the decision for each label is stored
+	 * @return the number of active labels
+	 */
+	public int classifyBestFitness(final double[] instance, 
+									final double[] confidenceTable,
+									final boolean[] decisions) {
+		
+		Arrays.fill(confidenceTable, 0);
+		Arrays.fill(decisions, false);
+		
+		for (int r = 0; r < numberOfRules; r++)
+			if (isMatch(r, instance))
+				addBestFitnessDecisions(r, confidenceTable, decisions);
+		
+		return countActiveLabels(decisions);
+	}
+
+	/**
+	 * Best fitness classification of an instance of a matched set, without allocations.
+	 * 
+	 * @param matches
+	 *            the match matrix of the set, built with this model (or one sharing its rules)
+	 * @param instance
+	 *            the index of the instance in the matched set
+	 * @param confidenceTable
+	 *            a work array of length numberOfLabels
+	 * @param decisions
+	 *            the array (of length numberOfLabels) where the decision for each label is stored
+	 * @return the number of active labels
+	 */
+	public int classifyBestFitness(final MatchMatrix matches,
+									final int instance,
+									final double[] confidenceTable,
+									final boolean[] decisions) {
+		
+		Arrays.fill(confidenceTable, 0);
+		Arrays.fill(decisions, false);
+		
+		for (int r = matches.nextMatchingRule(instance, 0); r >= 0; r = matches.nextMatchingRule(instance, r + 1))
+			addBestFitnessDecisions(r, confidenceTable, decisions);
+		
+		return countActiveLabels(decisions);
+	}
+
+	/**
+	 * Let a matching rule override the decisions of the labels it is the fittest rule for so far.
+	 * 
+	 * @param rule
+	 *            the index of the matching rule
+	 * @param confidenceTable
+	 *            the fitness of the rule deciding each label so far
+	 * @param decisions
+	 *            the decision for each label so far
+	 */
+	private void addBestFitnessDecisions(final int rule, 
+										 final double[] confidenceTable, 
+										 final boolean[] decisions) {
+		final double fitness = weight[rule];
+		final int base = rule * numberOfLabels;
+		for (int label = 0; label < numberOfLabels; label++) {
+			if (fitness > confidenceTable[label]) {
+				final byte cons = consequents[base + label];
+				if (cons == LABEL_DONT_CARE)
+					continue;
+				confidenceTable[label] = fitness;
+				decisions[label] = (cons == LABEL_POSITIVE);
+			}
+		}
+	}
+
+	/**
+	 * Voting classification of an instance, without allocations.
+	 * 
+	 * @param instance
+	 *            the instance vector
+	 * @param votingTable
+	 *            a work array of length numberOfLabels, containing the normalized confidences on return
+	 * @param decisions
+	 *            the array (of length numberOfLabels) where the decision for each label is stored
+	 * @return the number of active labels
+	 */
+	public int classifyVoting(final double[] instance, 
+							   final float[] votingTable,
+							   final boolean[] decisions) {
+		
+		getConfidence(instance, votingTable);
+		return applyThreshold(votingTable, decisions);
+	}
+
+	/**
+	 * Voting classification of an instance of a matched set, without allocations.
+	 * 
+	 * @param matches
+	 *            the match matrix of the set, built with this model (or one sharing its rules)
+	 * @param instance
+	 *            the index of the instance in the matched set
+	 * @param votingTable
+	 *            a work array of length numberOfLabels, containing the normalized confidences on return
+	 * @param decisions
+	 *            the array (of length numberOfLabels) where the decision for each label is stored
+	 * @return the number of active labels
+	 */
+	public int classifyVoting(final MatchMatrix matches,
+							   final int instance,
+							   final float[] votingTable,
+							   final boolean[] decisions) {
+		
+		getConfidence(matches, instance, votingTable);
+		return applyThreshold(votingTable, decisions);
+	}
+
+	/**
+	 * Activate the labels whose confidence exceeds the voting threshold.
+	 * 
+	 * @param votingTable
+	 *            the normalized confidences
+	 * @param decisions
+	 *            the array where the decision for each label is stored
+	 * @return the number of active labels
+	 */
+	private int applyThreshold(final float[] votingTable, final boolean[] decisions) {
+		for (int label = 0; label < numberOfLabels; label++)
+			decisions[label] = votingTable[label] > voteThreshold;
+		return countActiveLabels(decisions);
+	}
+
+	/**
+	 * Counts the active labels of a decisions array.
+	 * 
+	 * @param decisions
+	 *            the decision for each label
+	 * @return the number of active labels
+	 */
+	private int countActiveLabels(final boolean[] decisions) {
+		int activeLabels = 0;
+		for (int label = 0; label < numberOfLabels; label++)
+			if (decisions[label])
+				activeLabels++;
+		return activeLabels;
+	}
+
+	/**
+	 * Computes the normalized voting confidence of each label for an instance, exactly as 
+	 * GenericMultiLabelRepresentation.VotingClassificationStrategy does.
+	 * 
+	 * @param instance
+	 *            the instance vector
+	 * @param votingTable
+	 *            the array (of length numberOfLabels) where the confidences are stored
+	 */
+	public void getConfidence(final double[] instance, final float[] votingTable) {
+		
+		getVotes(instance, votingTable);
+		normalize(votingTable);
+	}
+
+	/**
+	 * Computes the normalized voting confidence of each label for an instance of a matched set.
+	 * 
+	 * @param matches
+	 *            the match matrix of the set, built with this model (or one sharing its rules)
+	 * @param instance
+	 *            the index of the instance in the matched set
+	 * @param votingTable
+	 *            the array (of length numberOfLabels) where the confidences are stored
+	 */
+	public void getConfidence(final MatchMatrix matches, final int instance, final float[] votingTable) {
+		
+		getVotes(matches, instance, votingTable);
+		normalize(votingTable);
+	}
+
+	/**
+	 * Normalizes raw votes to confidences, exactly as GenericMultiLabelRepresentation.VotingClassificationStrategy does.
+	 * 
+	 * @param votingTable
+	 *            the raw votes, replaced by the confidences
+	 */
+	private void normalize(final float[] votingTable) {
+
+		// Find min to make all numbers positive
+		double minVote = 0;
+		for (int i = 0; i < numberOfLabels; i++) {
+			if (votingTable[i] < minVote)
+				minVote = votingTable[i];
+		}
+
+		// Find sum (and make all positive)
+		double sumVote = 0;
+		for (int i = 0; i < numberOfLabels; i++) {
+			votingTable[i] -= minVote;
+			sumVote += votingTable[i];
+		}
+
+		// Normalize
+		if (sumVote > 0) {
+			for (int i = 0; i < numberOfLabels; i++) {
+				votingTable[i] /= sumVote;
+			}
+		}
+	}
+
+	/**
+	 * Computes the raw (not normalized) weighted votes of the matching rules for each label.
+	 * 
+	 * @param instance
+	 *            the instance vector
+	 * @param votingTable
+	 *            the array (of length numberOfLabels) where the votes are stored
+	 */
+	public void getVotes(final double[] instance, final float[] votingTable) {
+		
+		Arrays.fill(votingTable, 0);
+		
+		for (int r = 0; r < numberOfRules; r++)
+			if (isMatch(r, instance))
+				addVotes(r, votingTable);
+	}
+
+	/**
+	 * Computes the raw (not normalized) weighted votes of the matching rules for each label, 
+	 * for an instance of a matched set.
+	 * 
+	 * @param matches
+	 *            the match matrix of the set, built with this model (or one sharing its rules)
+	 * @param instance
+	 *            the index of the instance in the matched set
+	 * @param votingTable
+	 *            the array (of length numberOfLabels) where the votes are stored
+	 */
+	public void getVotes(final MatchMatrix matches, final int instance, final float[] votingTable) {
+		
+		Arrays.fill(votingTable, 0);
+		
+		for (int r = matches.nextMatchingRule(instance, 0); r >= 0; r = matches.nextMatchingRule(instance, r + 1))
+			addVotes(r, votingTable);
+	}
+
+	/**
+	 * Adds the weighted votes of a matching rule.
+	 * 
+	 * @param rule
+	 *            the index of the matching rule
+	 * @param votingTable
+	 *            the votes so far
+	 */
+	private void addVotes(final int rule, final float[] votingTable) {
+		final double vote = weight[rule];
+		final int base = rule * numberOfLabels;
+		for (int label = 0; label < numberOfLabels; label++) {
+			final byte cons = consequents[base + label];
+			if (cons == LABEL_POSITIVE)
+				votingTable[label] += vote;
+			else if (cons == LABEL_NEGATIVE)
+				votingTable[label] -= vote;
+		}
+	}
+
+	/**
+	 * Checks whether a rule matches an instance.
+	 * 
+	 * @param rule
+	 *            the index of the rule
+	 * @param instance
+	 *            the instance vector
+	 * @return true if all the rule's conditions are satisfied
+	 */
+	public boolean isMatch(final int rule, final double[] instance) {
+		
+		final int end = conditionStart[rule + 1];
+		for (int c = conditionStart[rule]; c < end; c++) {
+			if (!isSatisfied(c, (float) instance[conditionAttribute[c]]))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether a rule matches an instance of a flat dataset.
+	 * 
+	 * @param rule
+	 *            the index of the rule
+	 * @param dataset
+	 *            the dataset
+	 * @param instance
+	 *            the index of the instance in the dataset
+	 * @return true if all the rule's conditions are satisfied
+	 */
+	public boolean isMatch(final int rule, final FlatDataset dataset, final int instance) {
+		
+		if (dataset.isSparse()) {
+			// the conditions are in ascending attribute order: look each one up among the
+			// instance's non-zero values, from where the previous one was found
+			final int[] nonZeroAttributes = dataset.getNonZeroAttributes();
+			final float[] nonZeroValues = dataset.getNonZeroValues();
+			int position = dataset.getRowStart(instance);
+			final int rowEnd = dataset.getRowStart(instance + 1);
+			final int end = conditionStart[rule + 1];
+			for (int c = conditionStart[rule]; c < end; c++) {
+				final int found = Arrays.binarySearch(nonZeroAttributes, position, rowEnd, conditionAttribute[c]);
+				final float value;
+				if (found >= 0) {
+					value = nonZeroValues[found];
+					position = found + 1;
+				} else {
+					value = 0;
+					position = -found - 1;
+				}
+				if (!isSatisfied(c, value))
+					return false;
+			}
+			return true;
+		}
+		
+		if (dataset.isMapped()) {
+			final DoubleBuffer mapped = dataset.getMappedValues(instance);
+			final int offset = dataset.getMappedOffset(instance);
+			final int end = conditionStart[rule + 1];
+			for (int c = conditionStart[rule]; c < end; c++) {
+				if (!isSatisfied(c, (float) mapped.get(offset + conditionAttribute[c])))
+					return false;
+			}
+			return true;
+		}
+		
+		final float[] values = dataset.getValues();
+		final int offset = dataset.getOffset(instance);
+		final int end = conditionStart[rule + 1];
+		for (int c = conditionStart[rule]; c < end; c++) {
+			if (!isSatisfied(c, values[offset + conditionAttribute[c]]))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether a condition is satisfied by the value of its attribute.
+	 * 
+	 * @param c
+	 *            the index of the condition
+	 * @param value
+	 *            the attribute value
+	 * @return true if the condition is satisfied
+	 */
+	private boolean isSatisfied(final int c, final float value) {
+		switch (conditionType[c]) {
+		case CONDITION_BOOLEAN:
+			return (value != 0) == (conditionLow[c] != 0);
+		case CONDITION_INTERVAL:
+			return value >= conditionLow[c] && value <= conditionHigh[c];
+		case CONDITION_NOMINAL:
+			final int bit = conditionMaskOffset[c] * Long.SIZE + (int) value;
+			return (nominalMasks[bit >>> 6] & (1L << (bit & 63))) != 0;
+		default:
+			return true;
+		}
+	}
+
+	/**
+	 * Converts a decisions array to the array of active label indices.
+	 * 
+	 * @param decisions
+	 *            the decision for each label
+	 * @param activeLabels
+	 *            the number of active labels
+	 * @return the indices of the active labels
+	 */
+	public static int[] toLabelIndices(final boolean[] decisions, final int activeLabels) {
+		final int[] result = new int[activeLabels];
+		int currentIndex = 0;
+		for (int i = 0; i < decisions.length; i++)
+			if (decisions[i])
+				result[currentIndex++] = i;
+		return result;
+	}
+
+	/**
+	 * @return the classification mode used by classify()
+	 */
+	public int getClassificationMode() {
+		return classificationMode;
+	}
+
+	/**
+	 * Returns the consequent code of a rule for a label.
+	 * 
+	 * @param rule
+	 *            the index of the rule
+	 * @param label
+	 *            the index of the label
+	 * @return one of LABEL_NEGATIVE, LABEL_POSITIVE, LABEL_DONT_CARE
+	 */
+	public byte getConsequent(final int rule, final int label) {
+		return consequents[rule * numberOfLabels + label];
+	}
+
+	/**
+	 * @return the number of attributes (excluding the labels)
+	 */
+	public int getNumberOfAttributes() {
+		return numberOfAttributes;
+	}
+
+	/**
+	 * @return the number of labels
+	 */
+	public int getNumberOfLabels() {
+		return numberOfLabels;
+	}
+
+	/**
+	 * @return the number of rules
+	 */
+	public int getNumberOfRules() {
+		return numberOfRules;
+	}
+
+	/**
+	 * @return the voting threshold
+	 */
+	public double getVoteThreshold() {
+		return voteThreshold;
+	}
+
+	/**
+	 * Returns the numerosity * exploitation fitness of a rule.
+	 * 
+	 * @param rule
+	 *            the index of the rule
+	 * @return the rule's weight
+	 */
+	public double getWeight(final int rule) {
+		return weight[rule];
+	}
+
+}
@@ -0,0 +1,224 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.classifiers;
+
+import gr.auth.ee.lcs.utilities.FlatDataset;
+import gr.auth.ee.lcs.utilities.ParallelChunkExecutor;
+
+/**
+ * The rule x instance match matrix of a compiled model over a fixed set of instances: 
+ * bit (r, i) is set when rule r matches instance i.
+ * 
+ * Once the population is fixed (after training), the match sets of an instance set do not depend 
+ * on the classification strategy or the threshold, so they are computed once, in parallel, and every
+ * voting table, best fitness decision and metric is then aggregated from the matrix without matching again.
+ * The bits of each instance are stored contiguously (one row of ceil(rules / 64) words per instance), 
+ * so that an instance's match set is scanned sequentially and the rows are built without sharing words between threads.
+ * 
+ * The matrix is immutable and valid for the model it was built with and every model obtained from it 
+ * through withClassificationMode(), since these share the same rules.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public final class MatchMatrix {
+
+	/**
+	 * The minimum number of instances matched by a single thread.
+	 */
+	private static final int MIN_CHUNK_SIZE = 32;
+
+	/**
+	 * The model whose rules were matched.
+	 */
+	private final CompiledInferenceModel model;
+
+	/**
+	 * The number of rules (rows of the logical matrix).
+	 */
+	private final int numberOfRules;
+
+	/**
+	 * The number of instances (columns of the logical matrix).
+	 */
+	private final int numberOfInstances;
+
+	/**
+	 * The number of words of each instance's row.
+	 */
+	private final int wordsPerInstance;
+
+	/**
+	 * The match bits, instance-major.
+	 */
+	private final long[] bits;
+
+	/**
+	 * Match every rule of a model against every instance of a set.
+	 * 
+	 * @param compiledModel
+	 *            the model whose rules to match
+	 * @param instances
+	 *            the instance vectors
+	 */
+	public MatchMatrix(final CompiledInferenceModel compiledModel, final double[][] instances) {
+		model = compiledModel;
+		numberOfRules = compiledModel.getNumberOfRules();
+		numberOfInstances = instances.length;
+		wordsPerInstance = (numberOfRules + Long.SIZE - 1) / Long.SIZE;
+		bits = new long[numberOfInstances * wordsPerInstance];
+		
+		ParallelChunkExecutor.forEachChunk(numberOfInstances, MIN_CHUNK_SIZE, new ParallelChunkExecutor.IChunkTask() {
+			@Override
+			public void run(final int from, final int to) {
+				for (int i = from; i < to; i++) {
+					final int base = i * wordsPerInstance;
+					for (int r = 0; r < numberOfRules; r++)
+						if (model.isMatch(r, instances[i]))
+							bits[base + (r >>> 6)] |= 1L << (r & 63);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Match every rule of a model against every instance of a flat dataset.
+	 * 
+	 * @param compiledModel
+	 *            the model whose rules to match
+	 * @param dataset
+	 *            the dataset
+	 */
+	public MatchMatrix(final CompiledInferenceModel compiledModel, final FlatDataset dataset) {
+		model = compiledModel;
+		numberOfRules = compiledModel.getNumberOfRules();
+		numberOfInstances = dataset.getNumberOfInstances();
+		wordsPerInstance = (numberOfRules + Long.SIZE - 1) / Long.SIZE;
+		bits = new long[numberOfInstances * wordsPerInstance];
+		
+		ParallelChunkExecutor.forEachChunk(numberOfInstances, MIN_CHUNK_SIZE, new ParallelChunkExecutor.IChunkTask() {
+			@Override
+			public void run(final int from, final int to) {
+				for (int i = from; i < to; i++) {
+					final int base = i * wordsPerInstance;
+					for (int r = 0; r < numberOfRules; r++)
+						if (model.isMatch(r, dataset, i))
+							bits[base + (r >>> 6)] |= 1L << (r & 63);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Checks whether a rule matches an instance.
+	 * 
+	 * @param rule
+	 *            the index of the rule
+	 * @param instance
+	 *            the index of the instance in the matched set
+	 * @return true if the rule matches the instance
+	 */
+	public boolean isMatch(final int rule, final int instance) {
+		return (bits[instance * wordsPerInstance + (rule >>> 6)] & (1L << (rule & 63))) != 0;
+	}
+
+	/**
+	 * Returns the first rule matching an instance, at or after the given rule. 
+	 * All matching rules are visited, in increasing order, by 
+	 * for (int r = nextMatchingRule(i, 0); r >= 0; r = nextMatchingRule(i, r + 1)).
+	 * 
+	 * @param instance
+	 *            the index of the instance in the matched set
+	 * @param fromRule
+	 *            the rule to start from (inclusive)
+	 * @return the index of the matching rule, or -1 if there is none
+	 */
+	public int nextMatchingRule(final int instance, final int fromRule) {
+		if (fromRule >= numberOfRules)
+			return -1;
+		
+		final int base = instance * wordsPerInstance;
+		int word = fromRule >>> 6;
+		long current = bits[base + word] & (-1L << (fromRule & 63));
+		while (current == 0) {
+			if (++word == wordsPerInstance)
+				return -1;
+			current = bits[base + word];
+		}
+		return (word << 6) + Long.numberOfTrailingZeros(current);
+	}
+
+	/**
+	 * Returns the size (in macroclassifiers) of an instance's match set.
+	 * 
+	 * @param instance
+	 *            the index of the instance in the matched set
+	 * @return the number of matching rules
+	 */
+	public int getMatchSetSize(final int instance) {
+		int size = 0;
+		final int base = instance * wordsPerInstance;
+		for (int w = 0; w < wordsPerInstance; w++)
+			size += Long.bitCount(bits[base + w]);
+		return size;
+	}
+
+	/**
+	 * Returns the number of instances a rule matches.
+	 * 
+	 * @param rule
+	 *            the index of the rule
+	 * @return the number of matched instances
+	 */
+	public int getNumberOfMatchedInstances(final int rule) {
+		int matched = 0;
+		for (int i = 0; i < numberOfInstances; i++)
+			if (isMatch(rule, i))
+				matched++;
+		return matched;
+	}
+
+	/**
+	 * @return the model whose rules were matched
+	 */
+	public CompiledInferenceModel getModel() {
+		return model;
+	}
+
+	/**
+	 * @return the number of matched instances
+	 */
+	public int getNumberOfInstances() {
+		return numberOfInstances;
+	}
+
+	/**
+	 * @return the number of rules
+	 */
+	public int getNumberOfRules() {
+		return numberOfRules;
+	}
+
+}
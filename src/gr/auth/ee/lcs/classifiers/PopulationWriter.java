@@ -0,0 +1,356 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.classifiers;
+
+import gr.auth.ee.lcs.data.AbstractUpdateStrategy;
+import gr.auth.ee.lcs.utilities.SettingsLoader;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.DecimalFormat;
+
+/**
+ * Writes rule populations to a writer, one rule at a time, instead of building the whole dump as a string.
+ * Each rule is formatted into a reused line buffer with a reused decimal format and handed to the writer 
+ * as soon as it is complete, and the comparison values of a rule are computed once.
+ * 
+ * The text format is the one of ClassifierSet.toString(). The compact CSV format has a header row and
+ * one row per rule. Like ClassifierSet.toString(), writing a population prints its summary to the console.
+ * 
+ * A writer is not thread-safe, each thread dumping populations should use its own.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public final class PopulationWriter {
+
+	/**
+	 * The human-readable text format of ClassifierSet.toString().
+	 */
+	public static final int FORMAT_TEXT = 0;
+
+	/**
+	 * A compact CSV format, one row per rule.
+	 */
+	public static final int FORMAT_CSV = 1;
+
+	/**
+	 * The binary rules format of ClassifierSetBinaryFormat.
+	 */
+	public static final int FORMAT_BINARY = 2;
+
+	/**
+	 * The format of the population dumps taken at the callbacks, set by the populationDumpFormat setting 
+	 * (text, csv or binary).
+	 */
+	public static final int DUMP_FORMAT = getFormat(SettingsLoader.getStringSetting("populationDumpFormat", "text"));
+
+	/**
+	 * The header row of the CSV format.
+	 */
+	private static final String CSV_HEADER = "rule,macro_fitness,fitness,accuracy,numerosity,experience,coverage,"
+											+ "origin,created,last_in_correctset,subsumptions,serial,data";
+
+	/**
+	 * The line separator.
+	 */
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+	/**
+	 * The decimal format of the values.
+	 */
+	private final DecimalFormat format = new DecimalFormat("#.####");
+
+	/**
+	 * The buffer a rule is formatted into.
+	 */
+	private final StringBuilder line = new StringBuilder(512);
+
+	/**
+	 * The summary counters of the population being written.
+	 */
+	private int numOfCover;
+	private int numOfGA;
+	private int numOfInit;
+	private int numOfSubsumptions;
+	private int meanNs;
+	private int coveredTotalNumerosity;
+	private int gaedTotalNumerosity;
+	private double meanAcc;
+	private double accuracyOfCovered;
+	private double accuracyOfGa;
+
+	/**
+	 * Returns the format constant of a format name.
+	 * 
+	 * @param name
+	 *            the name of the format (text, csv or binary)
+	 * @return the format constant, FORMAT_TEXT for unknown names
+	 */
+	public static int getFormat(final String name) {
+		if ("csv".equalsIgnoreCase(name.trim()))
+			return FORMAT_CSV;
+		if ("binary".equalsIgnoreCase(name.trim()))
+			return FORMAT_BINARY;
+		if (!"text".equalsIgnoreCase(name.trim()))
+			System.out.println("Unknown population dump format " + name + ", using text");
+		return FORMAT_TEXT;
+	}
+
+	/**
+	 * Returns the file extension of a format.
+	 * 
+	 * @param format
+	 *            the format constant
+	 * @return the extension, including the dot
+	 */
+	public static String getExtension(final int format) {
+		switch (format) {
+		case FORMAT_CSV:
+			return ".csv";
+		case FORMAT_BINARY:
+			return ".bin";
+		default:
+			return ".txt";
+		}
+	}
+
+	/**
+	 * Write a population in the text format of ClassifierSet.toString() and print its summary.
+	 * 
+	 * @param population
+	 *            the population to write
+	 * @param out
+	 *            the writer to write to
+	 * @throws IOException
+	 *             if the writer fails
+	 */
+	public void writeText(final ClassifierSet population, final Writer out) throws IOException {
+		reset();
+		for (int i = 0; i < population.getNumberOfMacroclassifiers(); i++) {
+			final Macroclassifier macro = population.getActualMacroclassifier(i);
+			final Classifier cl = macro.myClassifier;
+			final double fitness = cl.getComparisonValue(AbstractUpdateStrategy.COMPARISON_MODE_EXPLORATION);
+			final double accuracy = count(macro);
+
+			line.setLength(0);
+			cl.appendTo(line);
+			line.append("|macro fit:|").append(format.format(fitness * macro.numerosity))
+				.append("|fit:|").append(format.format(fitness))
+				.append("|acc:|").append(format.format(accuracy))
+				.append("|num:|").append(macro.numerosity)
+				.append("|exp:|").append(cl.experience)
+				.append("|cov:|").append((int) (cl.objectiveCoverage * cl.getLCS().instances.length))
+				.append('|');
+			cl.appendUpdateSpecificData(line, format);
+
+			switch (cl.getClassifierOrigin()) {
+			case Classifier.CLASSIFIER_ORIGIN_COVER:
+				line.append("origin:|cover|");
+				break;
+			case Classifier.CLASSIFIER_ORIGIN_GA:
+				line.append("origin:|ga|");
+				break;
+			case Classifier.CLASSIFIER_ORIGIN_INIT:
+				line.append("origin:|init |");
+				break;
+			default:
+				break;
+			}
+
+			line.append("created:|").append(cl.cummulativeInstanceCreated)
+				.append("|last in correctset:|").append(cl.timestamp)
+				.append("|subsumptions:|").append(macro.numberOfSubsumptions)
+				.append("|created:|").append(-Integer.MIN_VALUE + cl.getSerial())
+				.append("th|").append(LINE_SEPARATOR);
+			out.append(line);
+		}
+		printSummary(population);
+	}
+
+	/**
+	 * Write a population in the compact CSV format and print its summary. Rules are quoted, 
+	 * the update-specific data are kept in the last column as they are.
+	 * 
+	 * @param population
+	 *            the population to write
+	 * @param out
+	 *            the writer to write to
+	 * @throws IOException
+	 *             if the writer fails
+	 */
+	public void writeCsv(final ClassifierSet population, final Writer out) throws IOException {
+		reset();
+		out.append(CSV_HEADER).append(LINE_SEPARATOR);
+		for (int i = 0; i < population.getNumberOfMacroclassifiers(); i++) {
+			final Macroclassifier macro = population.getActualMacroclassifier(i);
+			final Classifier cl = macro.myClassifier;
+			final double fitness = cl.getComparisonValue(AbstractUpdateStrategy.COMPARISON_MODE_EXPLORATION);
+			final double accuracy = count(macro);
+
+			line.setLength(0);
+			line.append('"');
+			cl.appendTo(line);
+			escapeQuotes(1);
+			line.append("\",");
+			appendNumber(fitness * macro.numerosity).append(',');
+			appendNumber(fitness).append(',');
+			appendNumber(accuracy).append(',');
+			line.append(macro.numerosity).append(',')
+				.append(cl.experience).append(',')
+				.append((int) (cl.objectiveCoverage * cl.getLCS().instances.length)).append(',')
+				.append(cl.getClassifierOrigin()).append(',')
+				.append(cl.cummulativeInstanceCreated).append(',')
+				.append(cl.timestamp).append(',')
+				.append(macro.numberOfSubsumptions).append(',')
+				.append(-Integer.MIN_VALUE + cl.getSerial()).append(",\"");
+			final int dataStart = line.length();
+			cl.appendUpdateSpecificData(line, format);
+			escapeQuotes(dataStart);
+			line.append('"').append(LINE_SEPARATOR);
+			out.append(line);
+		}
+		printSummary(population);
+	}
+
+	/**
+	 * Print the summary of a population, as writing it would, without writing its rules.
+	 * 
+	 * @param population
+	 *            the population
+	 */
+	public void summarize(final ClassifierSet population) {
+		reset();
+		for (int i = 0; i < population.getNumberOfMacroclassifiers(); i++)
+			count(population.getActualMacroclassifier(i));
+		printSummary(population);
+	}
+
+	/**
+	 * Reset the summary counters.
+	 */
+	private void reset() {
+		numOfCover = 0;
+		numOfGA = 0;
+		numOfInit = 0;
+		numOfSubsumptions = 0;
+		meanNs = 0;
+		coveredTotalNumerosity = 0;
+		gaedTotalNumerosity = 0;
+		meanAcc = 0;
+		accuracyOfCovered = 0;
+		accuracyOfGa = 0;
+	}
+
+	/**
+	 * Add a macroclassifier to the summary counters.
+	 * 
+	 * @param macro
+	 *            the macroclassifier
+	 * @return the pure accuracy of the macroclassifier
+	 */
+	private double count(final Macroclassifier macro) {
+		final Classifier cl = macro.myClassifier;
+		final double accuracy = cl.getComparisonValue(AbstractUpdateStrategy.COMPARISON_MODE_PURE_ACCURACY);
+
+		meanNs += cl.getNs();
+		meanAcc += (Double.isNaN(accuracy) ? 0 : accuracy) * macro.numerosity;
+		numOfSubsumptions += macro.numberOfSubsumptions;
+
+		switch (cl.getClassifierOrigin()) {
+		case Classifier.CLASSIFIER_ORIGIN_COVER:
+			numOfCover++;
+			coveredTotalNumerosity += macro.numerosity;
+			accuracyOfCovered += macro.numerosity * accuracy;
+			break;
+		case Classifier.CLASSIFIER_ORIGIN_GA:
+			numOfGA++;
+			gaedTotalNumerosity += macro.numerosity;
+			accuracyOfGa += macro.numerosity * accuracy;
+			break;
+		case Classifier.CLASSIFIER_ORIGIN_INIT:
+			numOfInit++;
+			coveredTotalNumerosity += macro.numerosity;
+			accuracyOfCovered += macro.numerosity * accuracy;
+			break;
+		default:
+			break;
+		}
+		return accuracy;
+	}
+
+	/**
+	 * Print the summary counters to the console.
+	 * 
+	 * @param population
+	 *            the population the counters were collected from
+	 */
+	private void printSummary(final ClassifierSet population) {
+		if (population.getNumberOfMacroclassifiers() > 0) {
+			meanNs /= population.getNumberOfMacroclassifiers();
+			meanAcc /= population.getTotalNumerosity();
+		}
+
+		System.out.println("\nPopulation size (macro, micro): "  	+ "(" + population.getNumberOfMacroclassifiers() + "," + population.getTotalNumerosity() + ")");
+
+		System.out.println("Classifiers in population covered: " 	+ numOfCover);
+		System.out.println("Classifiers in population ga-ed:   " 	+ numOfGA);
+		System.out.println("Classifiers in population init-ed: " 	+ numOfInit);
+		System.out.println();
+		
+		System.out.println("Accuracy of covered: " +  (Double.isNaN(accuracyOfCovered / numOfCover) ? 0 : accuracyOfCovered / coveredTotalNumerosity));
+		System.out.println("Accuracy of gaed:    " +  (Double.isNaN(accuracyOfGa / numOfCover) ? 0 : accuracyOfGa / gaedTotalNumerosity));
+		System.out.println();
+
+		System.out.println("Mean ns:   " + meanNs);
+		System.out.println("Mean pure accuracy:   " + meanAcc);
+		
+		System.out.println("ga invocations: " 						+ population.totalGAInvocations);
+
+		System.out.println("Subsumptions: " + numOfSubsumptions + "\n");
+	}
+
+	/**
+	 * Append a decimal value to the line buffer, writing NaN for undefined values.
+	 * 
+	 * @param value
+	 *            the value
+	 * @return the line buffer
+	 */
+	private StringBuilder appendNumber(final double value) {
+		return Double.isNaN(value) ? line.append("NaN") : line.append(format.format(value));
+	}
+
+	/**
+	 * Double the quotes in the line buffer, from a position on.
+	 * 
+	 * @param from
+	 *            the position to start from
+	 */
+	private void escapeQuotes(final int from) {
+		for (int i = line.indexOf("\"", from); i >= 0; i = line.indexOf("\"", i + 2))
+			line.insert(i, '"');
+	}
+}
@@ -0,0 +1,367 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.classifiers;
+
+import gr.auth.ee.lcs.utilities.ParallelChunkExecutor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Vector;
+
+/**
+ * Compacts a trained model by the contribution of its rules to the predictions, rather than by 
+ * experience, coverage or fitness (as PostProcessPopulationControl does).
+ * 
+ * The training set is replayed through both the best fitness and the voting strategy (at the 
+ * model's voting threshold). A rule contributes if, for some instance, it is the rule deciding a label 
+ * under best fitness, or removing its votes alone would move a label's confidence across the threshold. 
+ * Rules that never contribute are dropped. Since rules may matter jointly, the pruned model is then 
+ * replayed as well: for every instance whose predictions changed, its fittest pruned matching rules are restored, 
+ * until the pruned model makes the same predictions as the full one on every training instance, in both modes.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public final class VoteContributionPruning {
+
+	/**
+	 * The minimum number of instances replayed by a single thread.
+	 */
+	private static final int MIN_CHUNK_SIZE = 32;
+
+	/**
+	 * The full model.
+	 */
+	private final CompiledInferenceModel model;
+
+	/**
+	 * Whether each rule of the full model is kept.
+	 */
+	private final boolean[] contributing;
+
+	/**
+	 * The number of rules restored to preserve the predictions.
+	 */
+	private int restoredRules = 0;
+
+	/**
+	 * The number of replays of the pruned model needed to preserve the predictions.
+	 */
+	private int verificationRounds = 0;
+
+	/**
+	 * The model containing only the kept rules.
+	 */
+	private final CompiledInferenceModel prunedModel;
+
+	/**
+	 * Prune a model over the instances it was trained on.
+	 * 
+	 * @param fullModel
+	 *            the model to prune
+	 * @param instances
+	 *            the training instances
+	 */
+	public VoteContributionPruning(final CompiledInferenceModel fullModel, final double[][] instances) {
+		model = fullModel;
+		contributing = new boolean[model.getNumberOfRules()];
+		
+		final MatchMatrix matches = new MatchMatrix(model, instances);
+		findContributingRules(matches);
+		prunedModel = preservePredictions(matches, instances);
+	}
+
+	/**
+	 * Mark the rules deciding a label under best fitness or whose votes alone decide a label under voting.
+	 * 
+	 * @param matches
+	 *            the match matrix of the training instances
+	 */
+	private void findContributingRules(final MatchMatrix matches) {
+		final int numberOfLabels = model.getNumberOfLabels();
+		final double threshold = model.getVoteThreshold();
+		
+		ParallelChunkExecutor.forEachChunk(matches.getNumberOfInstances(), MIN_CHUNK_SIZE, new ParallelChunkExecutor.IChunkTask() {
+			@Override
+			public void run(final int from, final int to) {
+				final double[] bestFitness = new double[numberOfLabels];
+				final int[] deciding = new int[numberOfLabels];
+				final float[] votes = new float[numberOfLabels];
+				final boolean[] decisions = new boolean[numberOfLabels];
+				final float[] reducedVotes = new float[numberOfLabels];
+				
+				for (int i = from; i < to; i++) {
+					
+					// best fitness: the fittest matching rule not indifferent to the label decides it
+					Arrays.fill(bestFitness, 0);
+					Arrays.fill(deciding, -1);
+					for (int r = matches.nextMatchingRule(i, 0); r >= 0; r = matches.nextMatchingRule(i, r + 1)) {
+						final double fitness = model.getWeight(r);
+						for (int label = 0; label < numberOfLabels; label++) {
+							if (fitness > bestFitness[label] 
+									&& model.getConsequent(r, label) != CompiledInferenceModel.LABEL_DONT_CARE) {
+								bestFitness[label] = fitness;
+								deciding[label] = r;
+							}
+						}
+					}
+					for (int label = 0; label < numberOfLabels; label++)
+						if (deciding[label] >= 0)
+							contributing[deciding[label]] = true;
+					
+					// voting: a rule contributes if the decisions change without its votes
+					model.getVotes(matches, i, votes);
+					normalizedDecisions(votes, threshold, decisions, reducedVotes);
+					final boolean[] fullDecisions = decisions.clone();
+					for (int r = matches.nextMatchingRule(i, 0); r >= 0; r = matches.nextMatchingRule(i, r + 1)) {
+						if (contributing[r])
+							continue;
+						
+						final double vote = model.getWeight(r);
+						for (int label = 0; label < numberOfLabels; label++) {
+							final byte cons = model.getConsequent(r, label);
+							if (cons == CompiledInferenceModel.LABEL_POSITIVE)
+								reducedVotes[label] = (float) (votes[label] - vote);
+							else if (cons == CompiledInferenceModel.LABEL_NEGATIVE)
+								reducedVotes[label] = (float) (votes[label] + vote);
+							else
+								reducedVotes[label] = votes[label];
+						}
+						normalizedDecisions(reducedVotes, threshold, decisions, reducedVotes);
+						if (!Arrays.equals(decisions, fullDecisions))
+							contributing[r] = true;
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Threshold the normalized confidences of raw votes, normalizing as the voting strategy does.
+	 * 
+	 * @param votes
+	 *            the raw votes
+	 * @param threshold
+	 *            the voting threshold
+	 * @param decisions
+	 *            the array where the decision of each label is stored
+	 * @param work
+	 *            a work array for the confidences (may be the votes array)
+	 */
+	private static void normalizedDecisions(final float[] votes, 
+											final double threshold, 
+											final boolean[] decisions, 
+											final float[] work) {
+		double minVote = 0;
+		for (int i = 0; i < votes.length; i++)
+			if (votes[i] < minVote)
+				minVote = votes[i];
+		
+		double sumVote = 0;
+		for (int i = 0; i < votes.length; i++) {
+			work[i] = (float) (votes[i] - minVote);
+			sumVote += work[i];
+		}
+		
+		for (int i = 0; i < votes.length; i++) {
+			if (sumVote > 0)
+				work[i] /= sumVote;
+			decisions[i] = work[i] > threshold;
+		}
+	}
+
+	/**
+	 * Restore rules until the pruned model predicts as the full model on every instance.
+	 * 
+	 * @param matches
+	 *            the match matrix of the instances (with the full model's rules)
+	 * @param instances
+	 *            the instances
+	 * @return the pruned model
+	 */
+	private CompiledInferenceModel preservePredictions(final MatchMatrix matches, final double[][] instances) {
+		final CompiledInferenceModel fullVoting = 
+				model.withClassificationMode(CompiledInferenceModel.CLASSIFICATION_MODE_VOTING, model.getVoteThreshold());
+		final CompiledInferenceModel fullBestFitness = 
+				model.withClassificationMode(CompiledInferenceModel.CLASSIFICATION_MODE_BEST_FITNESS, 0);
+		final int[][] votingPredictions = fullVoting.classifyInstances(matches);
+		final int[][] bestFitnessPredictions = fullBestFitness.classifyInstances(matches);
+		
+		while (true) {
+			verificationRounds++;
+			final CompiledInferenceModel pruned = model.selectRules(contributing);
+			final int[][] prunedVoting = pruned.withClassificationMode(
+					CompiledInferenceModel.CLASSIFICATION_MODE_VOTING, model.getVoteThreshold()).classifyInstances(instances);
+			final int[][] prunedBestFitness = pruned.withClassificationMode(
+					CompiledInferenceModel.CLASSIFICATION_MODE_BEST_FITNESS, 0).classifyInstances(instances);
+			
+			int restored = 0;
+			for (int i = 0; i < instances.length; i++) {
+				if (Arrays.equals(prunedVoting[i], votingPredictions[i]) 
+						&& Arrays.equals(prunedBestFitness[i], bestFitnessPredictions[i]))
+					continue;
+				
+				restored += restoreRules(matches, i, votingPredictions[i]);
+			}
+			
+			if (restored == 0)
+				return pruned;
+			restoredRules += restored;
+		}
+	}
+
+	/**
+	 * Restore the pruned rules matching an instance, fittest first, until the instance's votes 
+	 * decide as in the full model. If they already seem to (the pruned model differs only by rounding), 
+	 * all of them are restored, so that the instance then votes exactly as in the full model. 
+	 * Best fitness decisions never need restoring, since the deciding rules are always kept.
+	 * 
+	 * @param matches
+	 *            the match matrix of the instances
+	 * @param instance
+	 *            the index of the instance
+	 * @param fullPrediction
+	 *            the labels the full model activates by voting
+	 * @return the number of restored rules
+	 */
+	private int restoreRules(final MatchMatrix matches, final int instance, final int[] fullPrediction) {
+		final int numberOfLabels = model.getNumberOfLabels();
+		final boolean[] fullDecisions = new boolean[numberOfLabels];
+		for (int i = 0; i < fullPrediction.length; i++)
+			fullDecisions[fullPrediction[i]] = true;
+		
+		final float[] votes = new float[numberOfLabels];
+		final Vector<Integer> pruned = new Vector<Integer>();
+		for (int r = matches.nextMatchingRule(instance, 0); r >= 0; r = matches.nextMatchingRule(instance, r + 1)) {
+			if (contributing[r])
+				addVotes(r, votes);
+			else
+				pruned.add(r);
+		}
+		Collections.sort(pruned, new Comparator<Integer>() {
+			@Override
+			public int compare(final Integer a, final Integer b) {
+				return Double.compare(model.getWeight(b), model.getWeight(a));
+			}
+		});
+		
+		final boolean[] decisions = new boolean[numberOfLabels];
+		final float[] work = new float[numberOfLabels];
+		normalizedDecisions(votes, model.getVoteThreshold(), decisions, work);
+		
+		int restored = 0;
+		for (int i = 0; i < pruned.size() && !Arrays.equals(decisions, fullDecisions); i++) {
+			contributing[pruned.get(i)] = true;
+			restored++;
+			addVotes(pruned.get(i), votes);
+			normalizedDecisions(votes, model.getVoteThreshold(), decisions, work);
+		}
+		
+		if (restored == 0) {
+			for (int i = 0; i < pruned.size(); i++)
+				contributing[pruned.get(i)] = true;
+			restored = pruned.size();
+		}
+		return restored;
+	}
+
+	/**
+	 * Adds the weighted votes of a rule.
+	 * 
+	 * @param rule
+	 *            the index of the rule
+	 * @param votes
+	 *            the votes so far
+	 */
+	private void addVotes(final int rule, final float[] votes) {
+		final double vote = model.getWeight(rule);
+		for (int label = 0; label < votes.length; label++) {
+			final byte cons = model.getConsequent(rule, label);
+			if (cons == CompiledInferenceModel.LABEL_POSITIVE)
+				votes[label] += vote;
+			else if (cons == CompiledInferenceModel.LABEL_NEGATIVE)
+				votes[label] -= vote;
+		}
+	}
+
+	/**
+	 * Remove the rules that do not contribute from a set. The set must be the one 
+	 * the full model was compiled from (the rules of the model are the macroclassifiers of the set, in order).
+	 * 
+	 * @param aSet
+	 *            the set of classifiers to prune
+	 */
+	public void pruneClassifierSet(final ClassifierSet aSet) {
+		if (aSet.getNumberOfMacroclassifiers() != contributing.length) {
+			System.out.println("The set does not correspond to the pruned model");
+			return;
+		}
+		
+		for (int i = contributing.length - 1; i >= 0; i--) {
+			if (contributing[i])
+				continue;
+			final Classifier cl = aSet.getClassifier(i);
+			while (aSet.getClassifierNumerosity(cl) > 0)
+				aSet.deleteClassifier(cl);
+		}
+	}
+
+	/**
+	 * @return whether each rule of the full model is kept
+	 */
+	public boolean[] getContributingRules() {
+		return contributing.clone();
+	}
+
+	/**
+	 * @return the number of rules of the pruned model
+	 */
+	public int getNumberOfKeptRules() {
+		return prunedModel.getNumberOfRules();
+	}
+
+	/**
+	 * @return the number of rules restored to preserve the predictions
+	 */
+	public int getNumberOfRestoredRules() {
+		return restoredRules;
+	}
+
+	/**
+	 * @return the model containing only the kept rules
+	 */
+	public CompiledInferenceModel getPrunedModel() {
+		return prunedModel;
+	}
+
+	/**
+	 * @return the number of replays of the pruned model needed to preserve the predictions
+	 */
+	public int getVerificationRounds() {
+		return verificationRounds;
+	}
+
+}
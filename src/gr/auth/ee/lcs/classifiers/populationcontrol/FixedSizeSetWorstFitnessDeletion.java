@@ -27,6 +27,8 @@ import gr.auth.ee.lcs.classifiers.ClassifierSet;
 import gr.auth.ee.lcs.classifiers.IPopulationControlStrategy;
 import gr.auth.ee.lcs.data.AbstractUpdateStrategy;
 import gr.auth.ee.lcs.geneticalgorithm.IRuleSelector;
+import gr.auth.ee.lcs.utilities.FlightRecorderEvents;
+import gr.auth.ee.lcs.utilities.PhaseProfiler;
 
 /**
  * A fixed size control strategy. Classifiers are deleted based on the selector
@@ -93,6 +95,8 @@ public class FixedSizeSetWorstFitnessDeletion implements
 		numberOfDeletions = 0;
 		deletionTime = 0;
 		
+		final Object event = (aSet.getTotalNumerosity() > populationSize) ? FlightRecorderEvents.begin(FlightRecorderEvents.DELETION) : null;
+		PhaseProfiler.start();
 		while (aSet.getTotalNumerosity() > populationSize) {
 			long time1 = - System.currentTimeMillis();
 			
@@ -118,6 +122,9 @@ public class FixedSizeSetWorstFitnessDeletion implements
 			
 			deletionTime += time1;
 		}
+		PhaseProfiler.stop(PhaseProfiler.DELETION);
+		if (event != null)
+			FlightRecorderEvents.commit(event, numberOfDeletions, aSet.getTotalNumerosity());
 		
 	}
 
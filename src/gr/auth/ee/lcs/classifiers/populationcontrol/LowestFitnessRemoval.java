@@ -27,6 +27,8 @@ import gr.auth.ee.lcs.classifiers.ClassifierSet;
 import gr.auth.ee.lcs.classifiers.IPopulationControlStrategy;
 import gr.auth.ee.lcs.data.AbstractUpdateStrategy;
 import gr.auth.ee.lcs.geneticalgorithm.IRuleSelector;
+import gr.auth.ee.lcs.utilities.FlightRecorderEvents;
+import gr.auth.ee.lcs.utilities.PhaseProfiler;
 
 public class LowestFitnessRemoval implements IPopulationControlStrategy {
 
@@ -104,6 +106,8 @@ public class LowestFitnessRemoval implements IPopulationControlStrategy {
 		numberOfDeletions = 0;
 		deletionTime = 0;
 
+		final Object event = (aSet.getTotalNumerosity() > populationSize) ? FlightRecorderEvents.begin(FlightRecorderEvents.DELETION) : null;
+		PhaseProfiler.start();
 		while (aSet.getTotalNumerosity() > populationSize) {
 			long time1 = - System.currentTimeMillis();
 			
@@ -138,6 +142,9 @@ public class LowestFitnessRemoval implements IPopulationControlStrategy {
 			
 			deletionTime += time1;
 		}
+		PhaseProfiler.stop(PhaseProfiler.DELETION);
+		if (event != null)
+			FlightRecorderEvents.commit(event, numberOfDeletions, aSet.getTotalNumerosity());
 	}
 	
 	@Override
@@ -25,6 +25,7 @@ import gr.auth.ee.lcs.classifiers.Classifier;
 import gr.auth.ee.lcs.classifiers.ClassifierSet;
 
 import java.io.Serializable;
+import java.text.DecimalFormat;
 
 /**
  * An interface for representing different update strategies, depending on the
@@ -107,6 +108,62 @@ public abstract class AbstractUpdateStrategy {
 	 */
 	public abstract double getComparisonValue(Classifier aClassifier, int mode);
 
+	/**
+	 * Returns the number of numeric values describing the update-specific data of a classifier,
+	 * as stored in binary rule files. Strategies returning 0 (the default) do not support it, and 
+	 * classifiers loaded from binary rule files then start with new update-specific data.
+	 * 
+	 * @return the number of values
+	 */
+	public int getNumericStateSize() {
+		return 0;
+	}
+
+	/**
+	 * Copies the update-specific data of a classifier to an array of getNumericStateSize() values.
+	 * 
+	 * @param aClassifier
+	 *            the classifier whose data to copy
+	 * @param state
+	 *            the array to copy to
+	 * @param offset
+	 *            the position of the first value in the array
+	 */
+	public void getNumericState(final Classifier aClassifier, final double[] state, final int offset) {
+	}
+
+	/**
+	 * Restores the update-specific data of a classifier from an array of getNumericStateSize() values.
+	 * 
+	 * @param aClassifier
+	 *            the classifier whose data to restore
+	 * @param state
+	 *            the array to copy from
+	 * @param offset
+	 *            the position of the first value in the array
+	 */
+	public void setNumericState(final Classifier aClassifier, final double[] state, final int offset) {
+	}
+
+	/**
+	 * Returns the training state kept by the strategy itself rather than by the classifiers 
+	 * (e.g. the GA timestamp), to be saved in training checkpoints.
+	 * 
+	 * @return the state, or null if the strategy keeps none
+	 */
+	public Serializable getTrainingState() {
+		return null;
+	}
+
+	/**
+	 * Restores the training state returned by getTrainingState(), when resuming from a checkpoint.
+	 * 
+	 * @param state
+	 *            the saved state
+	 */
+	public void setTrainingState(final Serializable state) {
+	}
+
 	/**
 	 * Returns a string with the update specific data.
 	 * 
@@ -115,6 +172,21 @@ public abstract class AbstractUpdateStrategy {
 	 * @return a string representation of the classifier data
 	 */
 	public abstract String getData(Classifier aClassifier);
+
+	/**
+	 * Appends the update specific data of a classifier to a buffer, formatting the
+	 * decimal values with the given format.
+	 * 
+	 * @param aClassifier
+	 *            the classifier used to obtain the data
+	 * @param out
+	 *            the buffer to append to
+	 * @param format
+	 *            the (reused) format of the decimal values
+	 */
+	public void appendData(final Classifier aClassifier, final StringBuilder out, final DecimalFormat format) {
+		out.append(getData(aClassifier));
+	}
 	
 	/**
 	 * Inherit the parent's parameters (used when creating a classifier using
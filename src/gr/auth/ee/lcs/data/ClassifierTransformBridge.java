@@ -24,6 +24,7 @@ package gr.auth.ee.lcs.data;
 import gr.auth.ee.lcs.classifiers.Classifier;
 import gr.auth.ee.lcs.classifiers.ClassifierSet;
 import gr.auth.ee.lcs.utilities.ExtendedBitSet;
+import gr.auth.ee.lcs.utilities.FlatDataset;
 
 /**
  * A bridge [GoF] that decouples the chromosome bit representation and the
@@ -184,6 +185,27 @@ public abstract class ClassifierTransformBridge {
 	public abstract boolean isMatch(double[] visionVector,
 			ExtendedBitSet chromosome);
 
+	/**
+	 * Checks if an instance of a flat dataset matches the condition of the given chromosome.
+	 * Representations reading their values as floats override this to match in place; by 
+	 * default the instance is copied to a vision vector.
+	 * 
+	 * @param dataset
+	 *            the dataset
+	 * @param instance
+	 *            the index of the instance in the dataset
+	 * @param chromosome
+	 *            the chromosome testing to vision
+	 * @return true if chromosome matches the instance
+	 */
+	public boolean isMatch(final FlatDataset dataset, final int instance,
+			final ExtendedBitSet chromosome) {
+		final double[] visionVector = new double[dataset.getNumberOfAttributes()];
+		for (int i = 0; i < visionVector.length; i++)
+			visionVector[i] = dataset.getValue(instance, i);
+		return isMatch(visionVector, chromosome);
+	}
+
 	/**
 	 * Tests the given chromosomes if the baseClassifier is a more general
 	 * version of the testClassifier.
@@ -236,4 +258,17 @@ public abstract class ClassifierTransformBridge {
 	 */
 	public abstract String toNaturalLanguageString(Classifier aClassifier);
 
+	/**
+	 * Appends the natural language rule of the given classifier to a buffer,
+	 * without building an intermediate string where the representation allows it.
+	 * 
+	 * @param aClassifier
+	 *            the classifier to convert
+	 * @param out
+	 *            the buffer to append the rule to
+	 */
+	public void appendNaturalLanguageString(final Classifier aClassifier, final StringBuilder out) {
+		out.append(toNaturalLanguageString(aClassifier));
+	}
+
 }
\ No newline at end of file
@@ -32,6 +32,7 @@ import gr.auth.ee.lcs.data.ClassifierTransformBridge;
 import gr.auth.ee.lcs.geneticalgorithm.IRuleSelector;
 import gr.auth.ee.lcs.geneticalgorithm.selectors.BestClassifierSelector;
 import gr.auth.ee.lcs.utilities.ExtendedBitSet;
+import gr.auth.ee.lcs.utilities.FlatDataset;
 
 /**
  * Implements the a simple boolean representation of the chromosomes. Each bit
@@ -141,7 +142,8 @@ public final class SimpleBooleanRepresentation extends
 	@Override
 	public float classifyAbilityAll(final Classifier aClassifier,
 			final int instanceIndex) {
-		return (myLcs.instances[instanceIndex][myLcs.instances[instanceIndex].length - 1] == ((int[]) (aClassifier.transformData))[0]) ? 1
+		final FlatDataset dataset = myLcs.getTrainDataset();
+		return (dataset.getValue(instanceIndex, dataset.getNumberOfAttributes() - 1) == ((int[]) (aClassifier.transformData))[0]) ? 1
 				: 0;
 	}
 
@@ -180,13 +182,13 @@ public final class SimpleBooleanRepresentation extends
 
 		// Generalize
 		for (int i = 0; i < chromosomeSize; i += 2) {
-			if (Math.random() > this.coverGeneralizationRate)
+			if (myLcs.getRandomGenerator().nextDouble() > this.coverGeneralizationRate)
 				chromosome.set(i);
 			else
 				chromosome.clear(i);
 		}
 		// coverClassifier.actionAdvocated=advocatingAction;
-		((int[]) (coverClassifier.transformData))[0] = ((Math.random() < .5) ? 1
+		((int[]) (coverClassifier.transformData))[0] = ((myLcs.getRandomGenerator().nextDouble() < .5) ? 1
 				: 0);
 		return coverClassifier;
 	}
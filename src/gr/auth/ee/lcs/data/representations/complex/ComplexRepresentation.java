@@ -24,15 +24,21 @@ package gr.auth.ee.lcs.data.representations.complex;
 import gr.auth.ee.lcs.AbstractLearningClassifierSystem;
 import gr.auth.ee.lcs.classifiers.Classifier;
 import gr.auth.ee.lcs.classifiers.ClassifierSet;
+import gr.auth.ee.lcs.classifiers.CompiledInferenceModel;
+import gr.auth.ee.lcs.data.AbstractUpdateStrategy;
 import gr.auth.ee.lcs.data.ClassifierTransformBridge;
 import gr.auth.ee.lcs.data.IClassificationStrategy;
+import gr.auth.ee.lcs.utilities.ArffDataset;
 import gr.auth.ee.lcs.utilities.ExtendedBitSet;
-import gr.auth.ee.lcs.utilities.InstancesUtility;
+import gr.auth.ee.lcs.utilities.FlatDataset;
 
 import java.io.IOException;
-import java.util.Enumeration;
-
-import weka.core.Instances;
+import java.math.RoundingMode;
+import java.nio.DoubleBuffer;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Arrays;
+import java.util.Locale;
 
 /**
  * A Complex representation for the chromosome.
@@ -188,6 +194,18 @@ public abstract class ComplexRepresentation extends ClassifierTransformBridge {
 		 * @return the string representation of the attribute
 		 */
 		public abstract String toString(ExtendedBitSet convertingClassifier);
+
+		/**
+		 * Append the human-readable String of the attribute to a buffer.
+		 * 
+		 * @param convertingClassifier
+		 *            the chromosome of the classifier to convert
+		 * @param out
+		 *            the buffer to append to
+		 */
+		public void appendTo(final ExtendedBitSet convertingClassifier, final StringBuilder out) {
+			out.append(toString(convertingClassifier));
+		}
 	}
 
 	/**
@@ -322,7 +340,7 @@ public abstract class ComplexRepresentation extends ClassifierTransformBridge {
 			else
 				generatedClassifier.set(positionInChromosome + 1);
 
-			if (Math.random() < generalizationRate)
+			if (myLcs.getRandomGenerator().nextDouble() < generalizationRate)
 				generatedClassifier.clear(positionInChromosome);
 			else
 				generatedClassifier.set(positionInChromosome);
@@ -337,7 +355,7 @@ public abstract class ComplexRepresentation extends ClassifierTransformBridge {
 			else
 				generatedClassifier.set(positionInChromosome + 1);
 
-			if (Math.random() < clusteringAttributeGeneralizationRate)
+			if (myLcs.getRandomGenerator().nextDouble() < clusteringAttributeGeneralizationRate)
 				generatedClassifier.clear(positionInChromosome);
 			else
 				generatedClassifier.set(positionInChromosome);
@@ -569,14 +587,14 @@ public abstract class ComplexRepresentation extends ClassifierTransformBridge {
 			// First find a random value that is smaller than the attribute
 			// value & convert it to fraction
 			final int newLowBound = (int) Math
-					.floor((((attributeValue - minValue) * Math.random()) / (maxValue - minValue))
+					.floor((((attributeValue - minValue) * myLcs.getRandomGenerator().nextDouble()) / (maxValue - minValue))
 							* totalParts);
 			final int newMaxBound = (int) Math
-					.ceil((((maxValue - minValue - ((maxValue - attributeValue) * Math
-							.random())) / (maxValue - minValue)) * totalParts));
+					.ceil((((maxValue - minValue - ((maxValue - attributeValue) * myLcs.getRandomGenerator()
+							.nextDouble())) / (maxValue - minValue)) * totalParts));
 
 			// Then set at chromosome
-			if (Math.random() < (1 - generalizationRate))
+			if (myLcs.getRandomGenerator().nextDouble() < (1 - generalizationRate))
 				generatedClassifier.set(positionInChromosome);
 			else
 				generatedClassifier.clear(positionInChromosome);
@@ -593,14 +611,14 @@ public abstract class ComplexRepresentation extends ClassifierTransformBridge {
 			// First find a random value that is smaller than the attribute
 			// value & convert it to fraction
 			final int newLowBound = (int) Math
-					.floor((((attributeValue - minValue) * Math.random()) / (maxValue - minValue))
+					.floor((((attributeValue - minValue) * myLcs.getRandomGenerator().nextDouble()) / (maxValue - minValue))
 							* totalParts);
 			final int newMaxBound = (int) Math
-					.ceil((((maxValue - minValue - ((maxValue - attributeValue) * Math
-							.random())) / (maxValue - minValue)) * totalParts));
+					.ceil((((maxValue - minValue - ((maxValue - attributeValue) * myLcs.getRandomGenerator()
+							.nextDouble())) / (maxValue - minValue)) * totalParts));
 
 			// Then set at chromosome
-			if (Math.random() < (1 - clusteringAttributeGeneralizationRate))
+			if (myLcs.getRandomGenerator().nextDouble() < (1 - clusteringAttributeGeneralizationRate))
 				generatedClassifier.set(positionInChromosome);
 			else
 				generatedClassifier.clear(positionInChromosome);
@@ -638,6 +656,40 @@ public abstract class ComplexRepresentation extends ClassifierTransformBridge {
 			return value;
 		}
 
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see
+		 * gr.auth.ee.lcs.data.representations.complex.ComplexRepresentation.AbstractAttribute#appendTo
+		 * (gr.auth.ee.lcs.utilities.ExtendedBitSet, java.lang.StringBuilder)
+		 */
+		@Override
+		public final void appendTo(final ExtendedBitSet convertingChromosome, final StringBuilder out) {
+			if (!convertingChromosome.get(positionInChromosome)) {
+				out.append(nameOfAttribute).append(":#");
+				return;
+			}
+			out.append(nameOfAttribute).append(" in [");
+			appendBound(out, getLowBoundValue(convertingChromosome));
+			out.append(',');
+			appendBound(out, getHighBoundValue(convertingChromosome));
+			out.append(']');
+		}
+
+		/**
+		 * Append a bound as String.format("%.3f", bound) does, with the format of the representation.
+		 * 
+		 * @param out
+		 *            the buffer to append to
+		 * @param bound
+		 *            the bound
+		 */
+		private void appendBound(final StringBuilder out, final float bound) {
+			synchronized (boundFormat) {
+				out.append(boundFormat.format(bound));
+			}
+		}
+
 	}
 
 	/**
@@ -785,14 +837,14 @@ public abstract class ComplexRepresentation extends ClassifierTransformBridge {
 				final Classifier myChromosome) {
 			// Clear everything
 			myChromosome.clear(positionInChromosome, this.lengthInBits);
-			if (Math.random() < (1 - generalizationRate))
+			if (myLcs.getRandomGenerator().nextDouble() < (1 - generalizationRate))
 				myChromosome.set(positionInChromosome);
 			else
 				myChromosome.clear(positionInChromosome);
 
 			// Randomize all bits of gene
 			for (int i = 1; i < lengthInBits; i++) {
-				if (Math.random() < (.5))
+				if (myLcs.getRandomGenerator().nextDouble() < (.5))
 					myChromosome.set(positionInChromosome + i);
 				else
 					myChromosome.clear(positionInChromosome + i);
@@ -808,14 +860,14 @@ public abstract class ComplexRepresentation extends ClassifierTransformBridge {
 				final Classifier myChromosome) {
 			// Clear everything
 			myChromosome.clear(positionInChromosome, this.lengthInBits);
-			if (Math.random() < (1 - clusteringAttributeGeneralizationRate))
+			if (myLcs.getRandomGenerator().nextDouble() < (1 - clusteringAttributeGeneralizationRate))
 				myChromosome.set(positionInChromosome);
 			else
 				myChromosome.clear(positionInChromosome);
 
 			// Randomize all bits of gene
 			for (int i = 1; i < lengthInBits; i++) {
-				if (Math.random() < (.5))
+				if (myLcs.getRandomGenerator().nextDouble() < (.5))
 					myChromosome.set(positionInChromosome + i);
 				else
 					myChromosome.clear(positionInChromosome + i);
@@ -848,6 +900,43 @@ public abstract class ComplexRepresentation extends ClassifierTransformBridge {
 			return attr + "]";
 		}
 
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see
+		 * gr.auth.ee.lcs.data.representations.complex.ComplexRepresentation.AbstractAttribute#appendTo
+		 * (gr.auth.ee.lcs.utilities.ExtendedBitSet, java.lang.StringBuilder)
+		 */
+		@Override
+		public final void appendTo(final ExtendedBitSet convertingChromosome, final StringBuilder out) {
+			out.append(nameOfAttribute);
+			if (!convertingChromosome.get(positionInChromosome)) {
+				out.append(":#");
+				return;
+			}
+			out.append(" in [");
+			for (int i = 0; i < nominalValuesNames.length; i++)
+				if (convertingChromosome.get(positionInChromosome + 1 + i))
+					out.append(nominalValuesNames[i]).append(", ");
+			out.append(']');
+		}
+
+	}
+
+	/**
+	 * The format interval bounds are printed with, reused for all rules. Not thread-safe, 
+	 * used while holding its lock.
+	 */
+	private final DecimalFormat boundFormat = createBoundFormat();
+
+	/**
+	 * @return a format printing numbers as String.format("%.3f") does in the default locale
+	 */
+	private static DecimalFormat createBoundFormat() {
+		final DecimalFormat format = new DecimalFormat("0.000", 
+				DecimalFormatSymbols.getInstance(Locale.getDefault(Locale.Category.FORMAT)));
+		format.setRoundingMode(RoundingMode.HALF_UP);
+		return format;
 	}
 
 	/**
@@ -895,6 +984,21 @@ public abstract class ComplexRepresentation extends ClassifierTransformBridge {
 	 */
 	protected final AbstractLearningClassifierSystem myLcs;
 
+	/**
+	 * The label state of a rule advocating that the label is not present.
+	 */
+	public static final byte LABEL_STATE_NEGATIVE = 0;
+
+	/**
+	 * The label state of a rule advocating that the label is present.
+	 */
+	public static final byte LABEL_STATE_POSITIVE = 1;
+
+	/**
+	 * The label state of a rule not deciding on the label (#).
+	 */
+	public static final byte LABEL_STATE_DONT_CARE = 2;
+
 	
 	/**
 	 * Constructor.
@@ -947,10 +1051,10 @@ public abstract class ComplexRepresentation extends ClassifierTransformBridge {
 								    final AbstractLearningClassifierSystem lcs) throws IOException {
 
 		this.myLcs = lcs;
-		final Instances instances = InstancesUtility.openInstance(inputArff);
+		final ArffDataset header = ArffDataset.loadHeader(inputArff);
 
 		this.numberOfLabels = labels;
-		attributeList = new AbstractAttribute[instances.numAttributes()];
+		attributeList = new AbstractAttribute[header.getNumberOfAttributes()];
 		this.attributeGeneralizationRate = generalizationRate;
 		this.clusteringAttributeGeneralizationRate = clusteringAttributeGeneralizationRate;
 		this.precision = precisionBits;
@@ -978,28 +1082,22 @@ public abstract class ComplexRepresentation extends ClassifierTransformBridge {
 	}
 
 	/**
-	 * Build the representation for some instances.
+	 * Build the representation for a dataset. Numeric attributes span the range of their
+	 * values in the dataset.
 	 * 
-	 * @param instances
-	 *            the instances
+	 * @param dataset
+	 *            the dataset
 	 */
-	
-	protected void buildRepresentationFromInstance(final Instances instances) { 
+	protected void buildRepresentationFromDataset(final ArffDataset dataset) { 
 		
-		for (int i = 0; i < (instances.numAttributes() - numberOfLabels); i++) { 
+		for (int i = 0; i < (dataset.getNumberOfAttributes() - numberOfLabels); i++) { 
 			
 
-			final String attributeName = instances.attribute(i).name();
+			final String attributeName = dataset.getAttributeName(i);
 
-			if (instances.attribute(i).isNominal()) {
-				
-				String[] attributeNames = new String[instances.attribute(i).numValues()]; 
+			if (dataset.isNominal(i)) {
 				
-				final Enumeration<?> values = instances.attribute(i).enumerateValues();
-				
-				for (int j = 0; j < attributeNames.length; j++) {
-					attributeNames[j] = (String) values.nextElement();
-				}
+				final String[] attributeNames = dataset.getNominalValues(i); 
 				
 				// Create boolean or generic nominal
 				if (attributeNames.length > 2)
@@ -1014,29 +1112,18 @@ public abstract class ComplexRepresentation extends ClassifierTransformBridge {
 							attributeName,
 							attributeGeneralizationRate);
 
-			} else if (instances.attribute(i).isNumeric()) {
-				float minValue, maxValue;
-				minValue = (float) instances.instance(0).toDoubleArray()[i];
-				maxValue = minValue;
-				for (int sample = 0; sample < instances.numInstances(); sample++) {
-					final float currentVal = (float) instances.instance(sample)
-							.toDoubleArray()[i];
-					if (currentVal > maxValue)
-						maxValue = currentVal;
-					if (currentVal < minValue)
-						minValue = currentVal;
-				}
+			} else {
 				attributeList[i] = new ComplexRepresentation.IntervalAttribute( 
 																				this.chromosomeSize, 
 																				attributeName, 
-																				minValue, 
-																				maxValue,
+																				dataset.getMinValue(i), 
+																				dataset.getMaxValue(i),
 																				precision, 
 																				attributeGeneralizationRate);
 			}
 		} 
 		
-		createClassRepresentation(instances);
+		createClassRepresentation(dataset);
 	}
 
 	/*
@@ -1080,13 +1167,146 @@ public abstract class ComplexRepresentation extends ClassifierTransformBridge {
 		return strategy.classify(aSet, visionVector);
 	}
 
+	/**
+	 * Compile a (trained) set of classifiers into an immutable inference model,
+	 * using the best fitness classification mode.
+	 * 
+	 * @param aSet
+	 *            the set of classifiers to compile
+	 * @return the compiled model
+	 */
+	public CompiledInferenceModel compile(final ClassifierSet aSet) {
+		return compile(aSet, CompiledInferenceModel.CLASSIFICATION_MODE_BEST_FITNESS, 0);
+	}
+
+	/**
+	 * Compile a (trained) set of classifiers into an immutable inference model. 
+	 * Only the specific attributes of each rule are kept as conditions.
+	 * 
+	 * @param aSet
+	 *            the set of classifiers to compile
+	 * @param classificationMode
+	 *            the classification mode of the model
+	 * @param voteThreshold
+	 *            the threshold used when classifying by voting
+	 * @return the compiled model
+	 */
+	public final CompiledInferenceModel compile(final ClassifierSet aSet, 
+												 final int classificationMode,
+												 final double voteThreshold) {
+		
+		final int numberOfRules = aSet.getNumberOfMacroclassifiers();
+		final ExtendedBitSet[] chromosomes = new ExtendedBitSet[numberOfRules];
+		final double[] weight = new double[numberOfRules];
+		for (int r = 0; r < numberOfRules; r++) {
+			chromosomes[r] = aSet.getClassifier(r);
+			weight[r] = aSet.getClassifierNumerosity(r)
+					* aSet.getClassifier(r).getComparisonValue(AbstractUpdateStrategy.COMPARISON_MODE_EXPLOITATION);
+		}
+		return compile(chromosomes, weight, classificationMode, voteThreshold);
+	}
+
+	/**
+	 * Compile a set of rules, given as chromosomes (e.g. read from a binary rules file 
+	 * without constructing classifiers) into an immutable inference model.
+	 * 
+	 * @param chromosomes
+	 *            the chromosome of each rule (classifiers use their cached label states)
+	 * @param weight
+	 *            the numerosity * exploitation fitness of each rule. The array is used by the model as it is
+	 * @param classificationMode
+	 *            the classification mode of the model
+	 * @param voteThreshold
+	 *            the threshold used when classifying by voting
+	 * @return the compiled model
+	 */
+	public final CompiledInferenceModel compile(final ExtendedBitSet[] chromosomes, 
+												 final double[] weight,
+												 final int classificationMode,
+												 final double voteThreshold) {
+		
+		final int numberOfRules = chromosomes.length;
+		final int numberOfAttributes = attributeList.length - numberOfLabels;
+		
+		// First pass: count the conditions and the nominal mask words needed
+		int numberOfConditions = 0;
+		int numberOfMaskWords = 0;
+		for (int r = 0; r < numberOfRules; r++) {
+			final ExtendedBitSet cl = chromosomes[r];
+			for (int i = 0; i < numberOfAttributes; i++) {
+				if (!attributeList[i].isSpecific(cl))
+					continue;
+				numberOfConditions++;
+				if (attributeList[i] instanceof NominalAttribute)
+					numberOfMaskWords += (((NominalAttribute) attributeList[i]).nominalValuesNames.length + Long.SIZE - 1) / Long.SIZE;
+			}
+		}
+		
+		final int[] conditionStart = new int[numberOfRules + 1];
+		final int[] conditionAttribute = new int[numberOfConditions];
+		final byte[] conditionType = new byte[numberOfConditions];
+		final float[] conditionLow = new float[numberOfConditions];
+		final float[] conditionHigh = new float[numberOfConditions];
+		final int[] conditionMaskOffset = new int[numberOfConditions];
+		final long[] nominalMasks = new long[numberOfMaskWords];
+		final byte[] consequents = new byte[numberOfRules * numberOfLabels];
+		
+		int c = 0;
+		int maskWord = 0;
+		for (int r = 0; r < numberOfRules; r++) {
+			final ExtendedBitSet cl = chromosomes[r];
+			conditionStart[r] = c;
+			
+			for (int i = 0; i < numberOfAttributes; i++) {
+				final AbstractAttribute attribute = attributeList[i];
+				if (!attribute.isSpecific(cl))
+					continue;
+				
+				conditionAttribute[c] = i;
+				if (attribute instanceof BooleanAttribute) {
+					conditionType[c] = CompiledInferenceModel.CONDITION_BOOLEAN;
+					conditionLow[c] = cl.get(attribute.positionInChromosome + 1) ? 1 : 0;
+				} else if (attribute instanceof IntervalAttribute) {
+					conditionType[c] = CompiledInferenceModel.CONDITION_INTERVAL;
+					conditionLow[c] = ((IntervalAttribute) attribute).getLowBoundValue(cl);
+					conditionHigh[c] = ((IntervalAttribute) attribute).getHighBoundValue(cl);
+				} else if (attribute instanceof NominalAttribute) {
+					final int numberOfValues = ((NominalAttribute) attribute).nominalValuesNames.length;
+					conditionType[c] = CompiledInferenceModel.CONDITION_NOMINAL;
+					conditionMaskOffset[c] = maskWord;
+					for (int v = 0; v < numberOfValues; v++)
+						if (cl.get(attribute.positionInChromosome + 1 + v))
+							nominalMasks[maskWord + v / Long.SIZE] |= 1L << (v % Long.SIZE);
+					maskWord += (numberOfValues + Long.SIZE - 1) / Long.SIZE;
+				}
+				c++;
+			}
+			
+			for (int label = 0; label < numberOfLabels; label++) {
+				final byte state = (cl instanceof Classifier) 
+						? getLabelState((Classifier) cl, label) : getChromosomeLabelState(cl, label);
+				if (state == LABEL_STATE_DONT_CARE)
+					consequents[r * numberOfLabels + label] = CompiledInferenceModel.LABEL_DONT_CARE;
+				else if (state == LABEL_STATE_POSITIVE)
+					consequents[r * numberOfLabels + label] = CompiledInferenceModel.LABEL_POSITIVE;
+				else
+					consequents[r * numberOfLabels + label] = CompiledInferenceModel.LABEL_NEGATIVE;
+			}
+		}
+		conditionStart[numberOfRules] = c;
+		
+		return new CompiledInferenceModel(numberOfAttributes, numberOfLabels, conditionStart, conditionAttribute, conditionType, 
+				conditionLow, conditionHigh, conditionMaskOffset, nominalMasks, weight, consequents, 
+				classificationMode, voteThreshold);
+	}
+
 	/**
 	 * Create the class representation depending on the problem.
 	 * 
-	 * @param instances
-	 *            the Weka instances
+	 * @param dataset
+	 *            the dataset
 	 */
-	protected abstract void createClassRepresentation(Instances instances);
+	protected abstract void createClassRepresentation(ArffDataset dataset);
 	
 	
 	
@@ -1137,6 +1357,8 @@ public abstract class ComplexRepresentation extends ClassifierTransformBridge {
 		for (int i = 0; i < attributeList.length; i++) {
 			attributeList[i].fixAttributeRepresentation(aChromosome);
 		}
+		if (aChromosome instanceof Classifier)
+			((Classifier) aChromosome).setLabelStateCache(null);
 
 	}
 
@@ -1158,6 +1380,90 @@ public abstract class ComplexRepresentation extends ClassifierTransformBridge {
 		return ruleConsequents;
 	}
 
+	/**
+	 * Returns the consequent state of a label in a classifier, without creating strings.
+	 * 
+	 * @param aClassifier
+	 *            the classifier
+	 * @param label
+	 *            the label index
+	 * @return one of LABEL_STATE_NEGATIVE, LABEL_STATE_POSITIVE, LABEL_STATE_DONT_CARE
+	 */
+	public byte getLabelState(final Classifier aClassifier, final int label) {
+		return getLabelStates(aClassifier)[label];
+	}
+
+	/**
+	 * Returns the consequent state of every label of a classifier. The states are
+	 * computed once and cached in the classifier, until its chromosome is modified.
+	 * The returned array must not be modified.
+	 * 
+	 * @param aClassifier
+	 *            the classifier
+	 * @return the state of each label
+	 */
+	public final byte[] getLabelStates(final Classifier aClassifier) {
+		byte[] labelStates = aClassifier.getLabelStateCache();
+		if (labelStates == null) {
+			labelStates = new byte[numberOfLabels];
+			for (int label = 0; label < numberOfLabels; label++)
+				labelStates[label] = computeLabelState(aClassifier, label);
+			aClassifier.setLabelStateCache(labelStates);
+		}
+		return labelStates;
+	}
+
+	/**
+	 * Returns the consequent state of a label of a chromosome, as getLabelState() does for 
+	 * classifiers, but without caching.
+	 * 
+	 * @param aChromosome
+	 *            the chromosome
+	 * @param label
+	 *            the label index
+	 * @return one of LABEL_STATE_NEGATIVE, LABEL_STATE_POSITIVE, LABEL_STATE_DONT_CARE
+	 */
+	public byte getChromosomeLabelState(final ExtendedBitSet aChromosome, final int label) {
+		return computeLabelState(aChromosome, label);
+	}
+
+	/**
+	 * Returns a description of the chromosome layout (the type, name, position and length of every attribute),
+	 * identifying the representations whose chromosomes are interchangeable.
+	 * 
+	 * @return the schema description
+	 */
+	public final String getSchema() {
+		final StringBuilder schema = new StringBuilder();
+		for (int i = 0; i < attributeList.length; i++) {
+			schema.append(attributeList[i].getClass().getSimpleName()).append(' ')
+				  .append(attributeList[i].nameOfAttribute).append(' ')
+				  .append(attributeList[i].positionInChromosome).append(' ')
+				  .append(attributeList[i].lengthInBits).append('\n');
+		}
+		return schema.toString();
+	}
+
+	/**
+	 * Computes the consequent state of a label from the chromosome. The default
+	 * implementation parses the label's string representation; representations 
+	 * should override it to read the chromosome directly.
+	 * 
+	 * @param aChromosome
+	 *            the chromosome
+	 * @param label
+	 *            the label index
+	 * @return one of LABEL_STATE_NEGATIVE, LABEL_STATE_POSITIVE, LABEL_STATE_DONT_CARE
+	 */
+	protected byte computeLabelState(final ExtendedBitSet aChromosome, final int label) {
+		final String value = attributeList[attributeList.length - numberOfLabels + label].toString(aChromosome);
+		if (value.equals("1"))
+			return LABEL_STATE_POSITIVE;
+		if (value.equals("0"))
+			return LABEL_STATE_NEGATIVE;
+		return LABEL_STATE_DONT_CARE;
+	}
+
 	@Override
 	public final int getNumberOfAttributes() {
 		return attributeList.length - numberOfLabels;
@@ -1186,6 +1492,61 @@ public abstract class ComplexRepresentation extends ClassifierTransformBridge {
 		return true;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.data.ClassifierTransformBridge#isMatch(gr.auth.ee.lcs.utilities.FlatDataset,
+	 * int, gr.auth.ee.lcs.classifiers.ExtendedBitSet)
+	 */
+	@Override
+	public final boolean isMatch(final FlatDataset dataset, 
+								 final int instance,
+								 final ExtendedBitSet chromosome) {
+		
+		if (dataset.isSparse()) {
+			// only the attributes the rule is specific on are looked up among the instance's non-zero
+			// values (absent ones being zero), from where the previous one was found
+			final int[] nonZeroAttributes = dataset.getNonZeroAttributes();
+			final float[] nonZeroValues = dataset.getNonZeroValues();
+			int position = dataset.getRowStart(instance);
+			final int end = dataset.getRowStart(instance + 1);
+			for (int i = 0; i < (attributeList.length - numberOfLabels); i++) {
+				if (!attributeList[i].isSpecific(chromosome))
+					continue;
+				final int found = Arrays.binarySearch(nonZeroAttributes, position, end, i);
+				final float value;
+				if (found >= 0) {
+					value = nonZeroValues[found];
+					position = found + 1;
+				} else {
+					value = 0;
+					position = -found - 1;
+				}
+				if (!attributeList[i].isMatch(value, chromosome))
+					return false;
+			}
+			return true;
+		}
+		
+		if (dataset.isMapped()) {
+			final DoubleBuffer mapped = dataset.getMappedValues(instance);
+			final int offset = dataset.getMappedOffset(instance);
+			for (int i = 0; i < (attributeList.length - numberOfLabels); i++) {
+				if (!attributeList[i].isMatch((float) mapped.get(offset + i), chromosome))
+					return false;
+			}
+			return true;
+		}
+		
+		final float[] values = dataset.getValues();
+		final int offset = dataset.getOffset(instance);
+		for (int i = 0; i < (attributeList.length - numberOfLabels); i++) {
+			if (!attributeList[i].isMatch(values[offset + i], chromosome))
+				return false;
+		}
+		return true;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -1204,6 +1565,15 @@ public abstract class ComplexRepresentation extends ClassifierTransformBridge {
 		return true;
 	}
 
+	/**
+	 * Getter of the classification strategy.
+	 * 
+	 * @return the strategy currently used by classify()
+	 */
+	public final IClassificationStrategy getClassificationStrategy() {
+		return defaultClassificationStrategy;
+	}
+
 	/**
 	 * Setter of the classification strategy.
 	 * 
@@ -1250,20 +1620,29 @@ public abstract class ComplexRepresentation extends ClassifierTransformBridge {
 	 */
 	@Override
 	public final String toNaturalLanguageString(final Classifier aClassifier) {
-		final StringBuffer nlRule = new StringBuffer();
-		for (int i = 0; i < (attributeList.length - numberOfLabels); i++) {
-			
-			final String attributeString = attributeList[i].toString(aClassifier);
+		final StringBuilder nlRule = new StringBuilder();
+		appendNaturalLanguageString(aClassifier, nlRule);
+		return nlRule.toString();
+	}
 
-			nlRule.append(attributeString); 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * gr.auth.ee.lcs.data.ClassifierTransformBridge#appendNaturalLanguageString
+	 * (gr.auth.ee.lcs.classifiers.Classifier, java.lang.StringBuilder)
+	 */
+	@Override
+	public final void appendNaturalLanguageString(final Classifier aClassifier, final StringBuilder out) {
+		for (int i = 0; i < (attributeList.length - numberOfLabels); i++) {
+			attributeList[i].appendTo(aClassifier, out); 
 		}
 
 		// Add consequence
-		nlRule.append(" => ");
+		out.append(" => ");
 		for (int i = attributeList.length - numberOfLabels; i < attributeList.length; i++) {
-			nlRule.append(attributeList[i].toString(aClassifier));
+			attributeList[i].appendTo(aClassifier, out);
 		}
-		return nlRule.toString();
 	}
 
 }
\ No newline at end of file
@@ -25,19 +25,19 @@
 package gr.auth.ee.lcs.data.representations.complex;
 
 import gr.auth.ee.lcs.AbstractLearningClassifierSystem;
-import gr.auth.ee.lcs.calibration.ProportionalCut;
+import gr.auth.ee.lcs.calibration.ExactProportionalCut;
 import gr.auth.ee.lcs.classifiers.Classifier;
 import gr.auth.ee.lcs.classifiers.ClassifierSet;
+import gr.auth.ee.lcs.classifiers.CompiledInferenceModel;
 import gr.auth.ee.lcs.data.AbstractUpdateStrategy;
 import gr.auth.ee.lcs.data.IClassificationStrategy;
+import gr.auth.ee.lcs.utilities.ArffDataset;
 import gr.auth.ee.lcs.utilities.ExtendedBitSet;
 import gr.auth.ee.lcs.utilities.ILabelSelector;
-import gr.auth.ee.lcs.utilities.InstancesUtility;
 
 import java.io.IOException;
 import java.util.Arrays;
 
-import weka.core.Instances;
 
 /**
  * A class for representing multilabel rules. For each rule each label can be
@@ -84,15 +84,14 @@ public final class GenericMultiLabelRepresentation extends
 				for (int label = 0; label < numberOfLabels; label++) {
 
 					if (fitness > confidenceTable[label]) {
-						final String cons = (attributeList[(attributeList.length - numberOfLabels)
-								+ label]).toString(currentClassifier);
+						final byte cons = getLabelState(currentClassifier, label);
 						
-						if (cons.equals("#"))
+						if (cons == LABEL_STATE_DONT_CARE)
 							continue;
 						
 						confidenceTable[label] = fitness;
 						
-						if (cons.equals("1"))
+						if (cons == LABEL_STATE_POSITIVE)
 							decisionTable[label] = 1;
 						else
 							decisionTable[label] = 0;
@@ -167,6 +166,29 @@ public final class GenericMultiLabelRepresentation extends
 				return;
 			aClassifier.clear(positionInChromosome);
 			aClassifier.clear(positionInChromosome + 1);
+			aClassifier.setLabelStateCache(null);
+		}
+
+		/**
+		 * Returns the state a chromosome advocates for the label, regardless of the label being active.
+		 * 
+		 * @param aChromosome
+		 *            the chromosome
+		 * @return one of LABEL_STATE_NEGATIVE, LABEL_STATE_POSITIVE, LABEL_STATE_DONT_CARE
+		 */
+		public final byte getState(final ExtendedBitSet aChromosome) {
+			if (!aChromosome.get(positionInChromosome))
+				return LABEL_STATE_DONT_CARE;
+			return aChromosome.get(positionInChromosome + 1) ? LABEL_STATE_POSITIVE : LABEL_STATE_NEGATIVE;
+		}
+
+		/**
+		 * Getter for the active variable.
+		 * 
+		 * @return true if the label is active
+		 */
+		public final boolean isActive() {
+			return active;
 		}
 
 		/*
@@ -286,7 +308,7 @@ public final class GenericMultiLabelRepresentation extends
 			else
 				generatedClassifier.set(positionInChromosome + 1);
 
-			if (Math.random() < labelGeneralizationRate)
+			if (myLcs.getRandomGenerator().nextDouble() < labelGeneralizationRate)
 				generatedClassifier.clear(positionInChromosome);
 			else
 				generatedClassifier.set(positionInChromosome);
@@ -307,7 +329,7 @@ public final class GenericMultiLabelRepresentation extends
 			else
 				generatedClassifier.set(positionInChromosome + 1);
 
-			if (Math.random() < clusteringlabelGeneralizationRate)
+			if (myLcs.getRandomGenerator().nextDouble() < clusteringlabelGeneralizationRate)
 				generatedClassifier.clear(positionInChromosome);
 			else
 				generatedClassifier.set(positionInChromosome);
@@ -415,11 +437,10 @@ public final class GenericMultiLabelRepresentation extends
 				final double fitness = currentClassifier.getComparisonValue(AbstractUpdateStrategy.COMPARISON_MODE_EXPLOITATION);
 
 				for (int label = 0; label < numberOfLabels; label++) {
-					final String cons = (attributeList[(attributeList.length - numberOfLabels)
-							+ label]).toString(currentClassifier);
-					if (cons.equals("#"))
+					final byte cons = getLabelState(currentClassifier, label);
+					if (cons == LABEL_STATE_DONT_CARE)
 						continue;
-					if (cons.equals("1"))
+					if (cons == LABEL_STATE_POSITIVE)
 						votingTable[label] += classifierNumerosity * fitness;
 					else
 						votingTable[label] -= classifierNumerosity * fitness;
@@ -464,18 +485,29 @@ public final class GenericMultiLabelRepresentation extends
 											   final ClassifierSet rules) {
 			
 			final float[][] confidenceValues = new float[instances.length][]; 
+			final double[] buffer = myLcs.newInstanceBuffer(instances);
 			getConfidenceArrayTime = -System.currentTimeMillis();
 			for (int i = 0; i < instances.length; i++) {
-				confidenceValues[i] = getConfidenceArray(rules, instances[i]); 
+				confidenceValues[i] = getConfidenceArray(rules, myLcs.getInstance(instances, i, buffer)); 
 			}
 			getConfidenceArrayTime += System.currentTimeMillis();
 
-			final ProportionalCut pCut = new ProportionalCut();
+			proportionalCutCalibration(confidenceValues);
+		}
+
+		/**
+		 * Calibrate the threshold with pcut, from the already known confidences of the train instances 
+		 * (e.g. aggregated from a match matrix).
+		 * 
+		 * @param confidenceValues
+		 *            the confidence vector of each train instance
+		 */
+		public void proportionalCutCalibration(final float[][] confidenceValues) {
+			final ExactProportionalCut pCut = new ExactProportionalCut();
 			//this.voteThreshold = pCut.calibrate(targetLC, confidenceValues);
 			calibrateTime = -System.currentTimeMillis();
 			this.voteThreshold = pCut.calibrate((float) myLcs.labelCardinality, confidenceValues);
 			calibrateTime += System.currentTimeMillis();
-
 		}
 
 		public double  getThreshold() {
@@ -600,7 +632,7 @@ public final class GenericMultiLabelRepresentation extends
 		labelGeneralizationRate = lblgeneralizationRate;
 		clusteringlabelGeneralizationRate = clusteringLblgeneralizationRate;
 		
-		buildRepresentationFromInstance(InstancesUtility.openInstance(inputArff));
+		buildRepresentationFromDataset(ArffDataset.loadSchema(inputArff));
 	}
 
 	/**
@@ -629,6 +661,57 @@ public final class GenericMultiLabelRepresentation extends
 		}
 	}
 
+	/**
+	 * Compile a set of classifiers, using the classification mode (and threshold) 
+	 * of the currently set classification strategy.
+	 * 
+	 * @param aSet
+	 *            the set of classifiers to compile
+	 * @return the compiled model
+	 */
+	@Override
+	public CompiledInferenceModel compile(final ClassifierSet aSet) {
+		if (getClassificationStrategy() instanceof VotingClassificationStrategy)
+			return compile(aSet, CompiledInferenceModel.CLASSIFICATION_MODE_VOTING, 
+					((VotingClassificationStrategy) getClassificationStrategy()).getThreshold());
+		return compile(aSet, CompiledInferenceModel.CLASSIFICATION_MODE_BEST_FITNESS, 0);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.data.representations.complex.ComplexRepresentation#computeLabelState(gr.auth.ee.lcs.utilities.ExtendedBitSet, int)
+	 */
+	@Override
+	protected byte computeLabelState(final ExtendedBitSet aChromosome, final int label) {
+		return ((GenericLabel) attributeList[(attributeList.length - numberOfLabels) + label]).getState(aChromosome);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.data.representations.complex.ComplexRepresentation#getChromosomeLabelState(gr.auth.ee.lcs.utilities.ExtendedBitSet, int)
+	 */
+	@Override
+	public byte getChromosomeLabelState(final ExtendedBitSet aChromosome, final int label) {
+		if (!((GenericLabel) attributeList[(attributeList.length - numberOfLabels) + label]).isActive())
+			return LABEL_STATE_DONT_CARE;
+		return computeLabelState(aChromosome, label);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.data.representations.complex.ComplexRepresentation#getLabelState(gr.auth.ee.lcs.classifiers.Classifier, int)
+	 */
+	@Override
+	public byte getLabelState(final Classifier aClassifier, final int label) {
+		// the cached states ignore label deactivation
+		if (!((GenericLabel) attributeList[(attributeList.length - numberOfLabels) + label]).isActive())
+			return LABEL_STATE_DONT_CARE;
+		return getLabelStates(aClassifier)[label];
+	}
+
 	@Override
 	public float classifyAbilityAll(final Classifier aClassifier,
 			final int instanceIndex) {
@@ -651,9 +734,8 @@ public final class GenericMultiLabelRepresentation extends
 		
 		
 		final int currentLabelIndex = (attributeList.length - numberOfLabels) + label;
-		if (attributeList[currentLabelIndex].isMatch((float) myLcs.instances[instanceIndex][currentLabelIndex], aClassifier)) {
-			final String value = attributeList[currentLabelIndex].toString(aClassifier);
-			if (!value.equals("#"))
+		if (attributeList[currentLabelIndex].isMatch(myLcs.getTrainDataset().getValue(instanceIndex, currentLabelIndex), aClassifier)) {
+			if (getLabelState(aClassifier, label) != LABEL_STATE_DONT_CARE)
 				return 1;
 			return 0;
 		}
@@ -676,18 +758,14 @@ public final class GenericMultiLabelRepresentation extends
 			final int currentLabelIndex = (attributeList.length - numberOfLabels)
 					+ i;
 			if (!attributeList[currentLabelIndex].isMatch(
-					(float) myLcs.instances[instanceIndex][currentLabelIndex],
+					myLcs.getTrainDataset().getValue(instanceIndex, currentLabelIndex),
 					aClassifier))
 				return 0;
 		}
 
 		// Check for overgeneral
 		for (int i = 0; i < numberOfLabels; i++) {
-			final int currentLabelIndex = (attributeList.length - numberOfLabels)
-					+ i;
-			final String value = attributeList[currentLabelIndex]
-					.toString(aClassifier);
-			if (!value.equals("#"))
+			if (getLabelState(aClassifier, i) != LABEL_STATE_DONT_CARE)
 				return 1;
 		}
 
@@ -708,17 +786,14 @@ public final class GenericMultiLabelRepresentation extends
 		float correct = 0;
 		float wrong = 0;
 		for (int i = 0; i < numberOfLabels; i++) {
-			final int currentLabelIndex = (attributeList.length - numberOfLabels)
-					+ i;
-			final String actualLabel = ((myLcs.instances[instanceIndex][currentLabelIndex] == 1)) ? "1"
-					: "0";
-			final String classifiedLabel = attributeList[currentLabelIndex]
-					.toString(aClassifier);
-			if (classifiedLabel.equals("#")) {
-				if (actualLabel.equals("1"))
+			final byte actualLabel = myLcs.getTrainDataset().isLabelActive(instanceIndex, i) ? LABEL_STATE_POSITIVE
+					: LABEL_STATE_NEGATIVE;
+			final byte classifiedLabel = getLabelState(aClassifier, i);
+			if (classifiedLabel == LABEL_STATE_DONT_CARE) {
+				if (actualLabel == LABEL_STATE_POSITIVE)
 					correct += ACCURACY_DONT_CARE_VALUE;
-			} else if (classifiedLabel.equals(actualLabel)) {
-				if (actualLabel.equals("1"))
+			} else if (classifiedLabel == actualLabel) {
+				if (actualLabel == LABEL_STATE_POSITIVE)
 					correct++;
 			} else {
 				wrong++;
@@ -746,13 +821,11 @@ public final class GenericMultiLabelRepresentation extends
 		for (int i = 0; i < numberOfLabels; i++) {
 			final int currentLabelIndex = (attributeList.length - numberOfLabels)
 					+ i;
-			final String value = attributeList[currentLabelIndex]
-					.toString(aClassifier);
-			if (value.equals("#"))
+			if (getLabelState(aClassifier, i) == LABEL_STATE_DONT_CARE)
 				continue;
 			totalClassifications++;
 			if (attributeList[currentLabelIndex].isMatch(
-					(float) myLcs.instances[instanceIndex][currentLabelIndex],
+					myLcs.getTrainDataset().getValue(instanceIndex, currentLabelIndex),
 					aClassifier))
 				result++;
 		}
@@ -763,13 +836,13 @@ public final class GenericMultiLabelRepresentation extends
 	}
 
 	@Override
-	protected void createClassRepresentation(final Instances instances) {
+	protected void createClassRepresentation(final ArffDataset dataset) {
 		
 		for (int i = 0; i < numberOfLabels; i++) {
 
 			final int labelIndex = (attributeList.length - numberOfLabels) + i;
 
-			final String attributeName = instances.attribute(labelIndex).name();
+			final String attributeName = dataset.getAttributeName(labelIndex);
 
 			attributeList[labelIndex] = new GenericLabel(chromosomeSize,
 														 attributeName, 
@@ -782,11 +855,7 @@ public final class GenericMultiLabelRepresentation extends
 		final int[] labels = new int[numberOfLabels];
 		int labelIndex = 0;
 		for (int i = 0; i < numberOfLabels; i++) {
-			final int currentLabelIndex = (attributeList.length - numberOfLabels)
-					+ i;
-			final String value = attributeList[currentLabelIndex]
-					.toString(aClassifier);
-			if (value.equals("1")) {
+			if (getLabelState(aClassifier, i) == LABEL_STATE_POSITIVE) {
 				labels[labelIndex] = i;
 				labelIndex++;
 			}
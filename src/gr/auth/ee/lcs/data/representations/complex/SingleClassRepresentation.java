@@ -31,14 +31,13 @@ import gr.auth.ee.lcs.data.AbstractUpdateStrategy;
 import gr.auth.ee.lcs.data.IClassificationStrategy;
 import gr.auth.ee.lcs.geneticalgorithm.IRuleSelector;
 import gr.auth.ee.lcs.geneticalgorithm.selectors.BestClassifierSelector;
+import gr.auth.ee.lcs.utilities.ArffDataset;
 import gr.auth.ee.lcs.utilities.ExtendedBitSet;
-import gr.auth.ee.lcs.utilities.InstancesUtility;
+import gr.auth.ee.lcs.utilities.FlatDataset;
 
 import java.io.IOException;
 import java.util.Arrays;
-import java.util.Enumeration;
 
-import weka.core.Instances;
 
 /**
  * A unilabel representation.
@@ -126,7 +125,7 @@ public final class SingleClassRepresentation extends ComplexRepresentation {
 			if (generatedClassifier
 					.getIntAt(positionInChromosome, lengthInBits) >= classes.length) {
 
-				final int randClass = (int) Math.floor(Math.random()
+				final int randClass = (int) Math.floor(myLcs.getRandomGenerator().nextDouble()
 						* classes.length);
 				generatedClassifier.setIntAt(positionInChromosome,
 						lengthInBits, randClass);
@@ -307,8 +306,7 @@ public final class SingleClassRepresentation extends ComplexRepresentation {
 			final int precision, final double generalizationRate,
 			final AbstractLearningClassifierSystem lcs) throws IOException {
 		super(inputArff, precision, 1, generalizationRate, -100, lcs);
-		buildRepresentationFromInstance(InstancesUtility
-				.openInstance(inputArff));
+		buildRepresentationFromDataset(ArffDataset.loadSchema(inputArff));
 	}
 
 	/**
@@ -332,15 +330,15 @@ public final class SingleClassRepresentation extends ComplexRepresentation {
 			final double generalizationRate,
 			final AbstractLearningClassifierSystem lcs) throws IOException {
 		super(inputArff, precision, attributeToIgnore, generalizationRate, -100, lcs);
-		buildRepresentationFromInstance(InstancesUtility
-				.openInstance(inputArff));
+		buildRepresentationFromDataset(ArffDataset.loadSchema(inputArff));
 	}
 
 	@Override
 	public float classifyAbilityAll(final Classifier aClassifier,
 			final int instanceIndex) {
+		final FlatDataset dataset = myLcs.getTrainDataset();
 		return (((UniLabel) attributeList[attributeList.length - 1])
-				.getValue(aClassifier) == myLcs.instances[instanceIndex][myLcs.instances[instanceIndex].length - 1]) ? 1
+				.getValue(aClassifier) == dataset.getValue(instanceIndex, dataset.getNumberOfAttributes() - 1)) ? 1
 				: 0;
 	}
 
@@ -357,18 +355,11 @@ public final class SingleClassRepresentation extends ComplexRepresentation {
 	 * gr.auth.ee.lcs.data.ComplexRepresentation#createClassRepresentation()
 	 */
 	@Override
-	protected void createClassRepresentation(final Instances instances) {
+	protected void createClassRepresentation(final ArffDataset dataset) {
 
-		if (instances.classIndex() < 0)
-			instances.setClassIndex(instances.numAttributes() - 1);
-
-		// Rule Consequents
-		final Enumeration<?> classNames = instances.classAttribute()
-				.enumerateValues();
-		final String[] ruleConsequents = new String[instances.numClasses()];
+		// Rule Consequents: the values of the class, the last attribute
+		final String[] ruleConsequents = dataset.getNominalValues(dataset.getNumberOfAttributes() - 1);
 		this.ruleConsequents = ruleConsequents;
-		for (int i = 0; i < instances.numClasses(); i++)
-			ruleConsequents[i] = (String) classNames.nextElement();
 
 		attributeList[attributeList.length - 1] = new UniLabel(chromosomeSize,
 				"class", ruleConsequents);
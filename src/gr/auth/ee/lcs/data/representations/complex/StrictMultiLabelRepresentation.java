@@ -25,18 +25,17 @@
 package gr.auth.ee.lcs.data.representations.complex;
 
 import gr.auth.ee.lcs.AbstractLearningClassifierSystem;
-import gr.auth.ee.lcs.calibration.ProportionalCut;
+import gr.auth.ee.lcs.calibration.ExactProportionalCut;
 import gr.auth.ee.lcs.classifiers.Classifier;
 import gr.auth.ee.lcs.classifiers.ClassifierSet;
 import gr.auth.ee.lcs.data.AbstractUpdateStrategy;
 import gr.auth.ee.lcs.data.IClassificationStrategy;
+import gr.auth.ee.lcs.utilities.ArffDataset;
 import gr.auth.ee.lcs.utilities.ExtendedBitSet;
-import gr.auth.ee.lcs.utilities.InstancesUtility;
 
 import java.io.IOException;
 import java.util.Arrays;
 
-import weka.core.Instances;
 
 /**
  * A strict multi-label representation. Each labels uses one bit that it may be
@@ -371,11 +370,12 @@ public final class StrictMultiLabelRepresentation extends ComplexRepresentation
 		public void proportionalCutCalibration(final double[][] instances,
 				final ClassifierSet rules) {
 			final float[][] confidenceValues = new float[instances.length][];
+			final double[] buffer = myLcs.newInstanceBuffer(instances);
 			for (int i = 0; i < instances.length; i++) {
-				confidenceValues[i] = getConfidenceArray(rules, instances[i]);
+				confidenceValues[i] = getConfidenceArray(rules, myLcs.getInstance(instances, i, buffer));
 			}
 
-			final ProportionalCut pCut = new ProportionalCut();
+			final ExactProportionalCut pCut = new ExactProportionalCut();
 			this.threshold = pCut.calibrate(targetLC, confidenceValues);
 			System.out.println("Threshold set to " + this.threshold);
 
@@ -464,8 +464,7 @@ public final class StrictMultiLabelRepresentation extends ComplexRepresentation
 			final AbstractLearningClassifierSystem lcs) throws IOException {
 		super(inputArff, precision, labels, generalizationRate, -100,  lcs);
 		metricType = type;
-		buildRepresentationFromInstance(InstancesUtility
-				.openInstance(inputArff));
+		buildRepresentationFromDataset(ArffDataset.loadSchema(inputArff));
 	}
 
 	/*
@@ -497,7 +496,7 @@ public final class StrictMultiLabelRepresentation extends ComplexRepresentation
 		final int currentLabelIndex = (attributeList.length - numberOfLabels)
 				+ label;
 		if (attributeList[currentLabelIndex].isMatch(
-				(float) myLcs.instances[instanceIndex][currentLabelIndex],
+				myLcs.getTrainDataset().getValue(instanceIndex, currentLabelIndex),
 				aClassifier)) {
 			return 1;
 		}
@@ -520,7 +519,7 @@ public final class StrictMultiLabelRepresentation extends ComplexRepresentation
 		for (int i = 0; i < numberOfLabels; i++) {
 			final int currentLabelIndex = (attributeList.length - numberOfLabels)
 					+ i;
-			final String actualLabel = (myLcs.instances[instanceIndex][currentLabelIndex] == 1) ? "1"
+			final String actualLabel = (myLcs.getTrainDataset().getValue(instanceIndex, currentLabelIndex) == 1) ? "1"
 					: "0";
 			final String classifiedLabel = attributeList[currentLabelIndex]
 					.toString(aClassifier);
@@ -552,7 +551,7 @@ public final class StrictMultiLabelRepresentation extends ComplexRepresentation
 			final int currentLabelIndex = (attributeList.length - numberOfLabels)
 					+ i;
 			if (!attributeList[currentLabelIndex].isMatch(
-					(float) myLcs.instances[instanceIndex][currentLabelIndex],
+					myLcs.getTrainDataset().getValue(instanceIndex, currentLabelIndex),
 					aClassifier))
 				return 0;
 		}
@@ -577,7 +576,7 @@ public final class StrictMultiLabelRepresentation extends ComplexRepresentation
 			final int currentLabelIndex = (attributeList.length - numberOfLabels)
 					+ i;
 			if (attributeList[currentLabelIndex].isMatch(
-					(float) myLcs.instances[instanceIndex][currentLabelIndex],
+					myLcs.getTrainDataset().getValue(instanceIndex, currentLabelIndex),
 					aClassifier))
 				result++;
 		}
@@ -588,15 +587,15 @@ public final class StrictMultiLabelRepresentation extends ComplexRepresentation
 	 * (non-Javadoc)
 	 * 
 	 * @see gr.auth.ee.lcs.data.representations.ComplexRepresentation#
-	 * createClassRepresentation(weka.core.Instances)
+	 * createClassRepresentation(gr.auth.ee.lcs.utilities.ArffDataset)
 	 */
 	@Override
-	protected void createClassRepresentation(final Instances instances) {
+	protected void createClassRepresentation(final ArffDataset dataset) {
 		for (int i = 0; i < numberOfLabels; i++) {
 
 			final int labelIndex = (attributeList.length - numberOfLabels) + i;
 
-			final String attributeName = instances.attribute(labelIndex).name();
+			final String attributeName = dataset.getAttributeName(labelIndex);
 
 			attributeList[labelIndex] = new Label(chromosomeSize, attributeName);
 		}
@@ -25,18 +25,18 @@
 package gr.auth.ee.lcs.data.representations.complex;
 
 import gr.auth.ee.lcs.AbstractLearningClassifierSystem;
+import gr.auth.ee.lcs.calibration.ExactProportionalCut;
 import gr.auth.ee.lcs.calibration.ProportionalCut;
 import gr.auth.ee.lcs.classifiers.Classifier;
 import gr.auth.ee.lcs.classifiers.ClassifierSet;
 import gr.auth.ee.lcs.data.AbstractUpdateStrategy;
 import gr.auth.ee.lcs.data.IClassificationStrategy;
+import gr.auth.ee.lcs.utilities.ArffDataset;
 import gr.auth.ee.lcs.utilities.ExtendedBitSet;
-import gr.auth.ee.lcs.utilities.InstancesUtility;
 
 import java.io.IOException;
 import java.util.Arrays;
 
-import weka.core.Instances;
 
 /**
  * A multi-label representation using only one label.
@@ -203,7 +203,7 @@ public final class UniLabelRepresentation extends ComplexRepresentation {
 
 			int currentIndex = 0;
 			for (int i = 0; i < lblProbs.length; i++) {
-				if (lblProbs[i] > threshold) {
+				if (lblProbs[i] >= (float) threshold) {
 					result[currentIndex] = i;
 					currentIndex++;
 				}
@@ -226,11 +226,12 @@ public final class UniLabelRepresentation extends ComplexRepresentation {
 		public void proportionalCutCalibration(final double[][] instances,
 				final ClassifierSet rules, final float targetLc) {
 			final float[][] confidenceValues = new float[instances.length][];
+			final double[] buffer = myLcs.newInstanceBuffer(instances);
 			for (int i = 0; i < instances.length; i++) {
-				confidenceValues[i] = buildConfidence(rules, instances[i]);
+				confidenceValues[i] = buildConfidence(rules, myLcs.getInstance(instances, i, buffer));
 			}
 
-			this.threshold = pCut.calibrate(targetLc, confidenceValues);
+			this.threshold = new ExactProportionalCut().calibrate(targetLc, confidenceValues, true);
 			System.out.println("Threshold set to " + this.threshold);
 
 		}
@@ -279,7 +280,7 @@ public final class UniLabelRepresentation extends ComplexRepresentation {
 			if (generatedClassifier
 					.getIntAt(positionInChromosome, lengthInBits) >= classes.length) {
 
-				final int randClass = (int) Math.floor(Math.random()
+				final int randClass = (int) Math.floor(myLcs.getRandomGenerator().nextDouble()
 						* classes.length);
 				generatedClassifier.setIntAt(positionInChromosome,
 						lengthInBits, randClass);
@@ -328,7 +329,7 @@ public final class UniLabelRepresentation extends ComplexRepresentation {
 		@Override
 		public void randomCoveringValue(final float attributeValue,
 				final Classifier generatedClassifier) {
-			final int coverClass = (int) (Math.random() * classes.length);
+			final int coverClass = (int) (myLcs.getRandomGenerator().nextDouble() * classes.length);
 			generatedClassifier.setIntAt(positionInChromosome, lengthInBits,
 					coverClass);
 		}
@@ -381,8 +382,7 @@ public final class UniLabelRepresentation extends ComplexRepresentation {
 			final int labels, final double generalizationRate,
 			final AbstractLearningClassifierSystem lcs) throws IOException {
 		super(inputArff, precision, labels, generalizationRate, -100, lcs);
-		buildRepresentationFromInstance(InstancesUtility
-				.openInstance(inputArff));
+		buildRepresentationFromDataset(ArffDataset.loadSchema(inputArff));
 	}
 
 	/*
@@ -395,10 +395,9 @@ public final class UniLabelRepresentation extends ComplexRepresentation {
 	@Override
 	public float classifyAbilityAll(final Classifier aClassifier,
 			final int instanceIndex) {
-		final int[] possibleLabels = getDataInstanceLabels(myLcs.instances[instanceIndex]);
 		final int ruleLabel = getClassification(aClassifier)[0];
 
-		if (Arrays.binarySearch(possibleLabels, ruleLabel) < 0) {
+		if (!myLcs.getTrainDataset().isLabelActive(instanceIndex, ruleLabel)) {
 			return 0;
 		} else {
 			return 1;
@@ -422,7 +421,7 @@ public final class UniLabelRepresentation extends ComplexRepresentation {
 	}
 
 	@Override
-	protected void createClassRepresentation(final Instances instances) {
+	protected void createClassRepresentation(final ArffDataset dataset) {
 		final String[] ruleConsequents = new String[numberOfLabels];
 		this.ruleConsequents = ruleConsequents;
 
@@ -142,7 +142,7 @@ public abstract class AbstractSLCSUpdateAlgorithm extends
 	public final void cover(final ClassifierSet population, final int instanceIndex) {
 		System.out.println("covering");		
 		final Classifier coveringClassifier = myLCS
-				.getClassifierTransformBridge().createRandomCoveringClassifier(myLCS.instances[instanceIndex]);
+				.getClassifierTransformBridge().createRandomCoveringClassifier(myLCS.getTrainInstance(instanceIndex));
 		
 		population.addClassifier(new Macroclassifier(coveringClassifier, 1),
 				false);
@@ -181,6 +181,26 @@ public abstract class AbstractSLCSUpdateAlgorithm extends
 		return correctSet;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.data.AbstractUpdateStrategy#getTrainingState()
+	 */
+	@Override
+	public Serializable getTrainingState() {
+		return ga.getTimestamp();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.data.AbstractUpdateStrategy#setTrainingState(java.io.Serializable)
+	 */
+	@Override
+	public void setTrainingState(final Serializable state) {
+		ga.setTimestamp((Integer) state);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -273,7 +293,7 @@ public abstract class AbstractSLCSUpdateAlgorithm extends
 		/*
 		 * Run GA
 		 */
-		if (Math.random() < matchSetRunProbability)
+		if (myLCS.getRandomGenerator().nextDouble() < matchSetRunProbability)
 			ga.evolveSet(matchSet, population, 0);
 		else
 			ga.evolveSet(correctSet, population, 0);
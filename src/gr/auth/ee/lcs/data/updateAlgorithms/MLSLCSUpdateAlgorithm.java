@@ -34,6 +34,8 @@ import gr.auth.ee.lcs.classifiers.Macroclassifier;
 import gr.auth.ee.lcs.classifiers.statistics.MeanFitnessStatistic;
 import gr.auth.ee.lcs.data.AbstractUpdateStrategy;
 import gr.auth.ee.lcs.geneticalgorithm.IGeneticAlgorithmStrategy;
+import gr.auth.ee.lcs.utilities.FlightRecorderEvents;
+import gr.auth.ee.lcs.utilities.PhaseProfiler;
 import gr.auth.ee.lcs.utilities.SettingsLoader;
 
 public class MLSLCSUpdateAlgorithm extends AbstractUpdateStrategy  {
@@ -96,6 +98,49 @@ public class MLSLCSUpdateAlgorithm extends AbstractUpdateStrategy  {
 		
 		public int minCurrentNs = 0;
 		
+		/**
+		 * The number of numeric values stored by getNumericState().
+		 */
+		static final int NUMERIC_STATE_SIZE = 8;
+		
+		/**
+		 * Copy the fields to an array (for binary rule files).
+		 * 
+		 * @param state
+		 *            the array to copy to
+		 * @param offset
+		 *            the position of the first field
+		 */
+		void getNumericState(final double[] state, final int offset) {
+			state[offset] = d;
+			state[offset + 1] = fitness;
+			state[offset + 2] = ns;
+			state[offset + 3] = msa;
+			state[offset + 4] = tp;
+			state[offset + 5] = totalFitness;
+			state[offset + 6] = k;
+			state[offset + 7] = minCurrentNs;
+		}
+		
+		/**
+		 * Restore the fields from an array (for binary rule files).
+		 * 
+		 * @param state
+		 *            the array to copy from
+		 * @param offset
+		 *            the position of the first field
+		 */
+		void setNumericState(final double[] state, final int offset) {
+			d = state[offset];
+			fitness = state[offset + 1];
+			ns = state[offset + 2];
+			msa = state[offset + 3];
+			tp = state[offset + 4];
+			totalFitness = state[offset + 5];
+			k = state[offset + 6];
+			minCurrentNs = (int) state[offset + 7];
+		}
+		
 		
 		@Override
 		public String toString(){
@@ -336,8 +381,10 @@ public class MLSLCSUpdateAlgorithm extends AbstractUpdateStrategy  {
 	public void cover(ClassifierSet population, 
 					    int instanceIndex) {
 		
+		final Object event = FlightRecorderEvents.begin(FlightRecorderEvents.COVERING);
+		PhaseProfiler.start();
 		final Classifier coveringClassifier = myLcs.getClassifierTransformBridge()
-											  .createRandomCoveringClassifier(myLcs.instances[instanceIndex]);
+											  .createRandomCoveringClassifier(myLcs.getTrainInstance(instanceIndex));
 		
 		coveringClassifier.created = myLcs.totalRepetition;
 		
@@ -346,13 +393,18 @@ public class MLSLCSUpdateAlgorithm extends AbstractUpdateStrategy  {
 		coveringClassifier.setClassifierOrigin(Classifier.CLASSIFIER_ORIGIN_COVER);
 		myLcs.numberOfCoversOccured ++ ;
 		population.addClassifier(new Macroclassifier(coveringClassifier, 1), false);
+		PhaseProfiler.stop(PhaseProfiler.COVERING);
+		if (event != null)
+			FlightRecorderEvents.commit(event, instanceIndex);
 	}
 	
 	
 	private Macroclassifier coverNew( int instanceIndex ) {
 		
+		final Object event = FlightRecorderEvents.begin(FlightRecorderEvents.COVERING);
+		PhaseProfiler.start();
 		final Classifier coveringClassifier = myLcs.getClassifierTransformBridge()
-		  									  .createRandomCoveringClassifier(myLcs.instances[instanceIndex]);
+		  									  .createRandomCoveringClassifier(myLcs.getTrainInstance(instanceIndex));
 
 		coveringClassifier.created = myLcs.totalRepetition;//ga.getTimestamp();
 		
@@ -360,6 +412,9 @@ public class MLSLCSUpdateAlgorithm extends AbstractUpdateStrategy  {
 		
 		coveringClassifier.setClassifierOrigin(Classifier.CLASSIFIER_ORIGIN_COVER);
 		myLcs.numberOfCoversOccured ++ ;
+		PhaseProfiler.stop(PhaseProfiler.COVERING);
+		if (event != null)
+			FlightRecorderEvents.commit(event, instanceIndex);
 		return new Macroclassifier(coveringClassifier, 1);
 	}
 	
@@ -488,6 +543,64 @@ public class MLSLCSUpdateAlgorithm extends AbstractUpdateStrategy  {
 		return 0;
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.data.AbstractUpdateStrategy#getNumericStateSize()
+	 */
+	@Override
+	public int getNumericStateSize() {
+		return MLSLCSClassifierData.NUMERIC_STATE_SIZE * (1 + numberOfLabels);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.data.AbstractUpdateStrategy#getNumericState(gr.auth.ee.lcs.classifiers.Classifier, double[], int)
+	 */
+	@Override
+	public void getNumericState(final Classifier aClassifier, final double[] state, final int offset) {
+		((MLSLCSClassifierData) aClassifier.getUpdateDataObject()).getNumericState(state, offset);
+		final Serializable[] dataArray = aClassifier.getUpdateDataArray();
+		for (int i = 0; i < numberOfLabels && i < dataArray.length; i++)
+			((MLSLCSClassifierData) dataArray[i]).getNumericState(state, offset + (i + 1) * MLSLCSClassifierData.NUMERIC_STATE_SIZE);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.data.AbstractUpdateStrategy#setNumericState(gr.auth.ee.lcs.classifiers.Classifier, double[], int)
+	 */
+	@Override
+	public void setNumericState(final Classifier aClassifier, final double[] state, final int offset) {
+		((MLSLCSClassifierData) aClassifier.getUpdateDataObject()).setNumericState(state, offset);
+		final Serializable[] dataArray = aClassifier.getUpdateDataArray();
+		for (int i = 0; i < numberOfLabels && i < dataArray.length; i++)
+			((MLSLCSClassifierData) dataArray[i]).setNumericState(state, offset + (i + 1) * MLSLCSClassifierData.NUMERIC_STATE_SIZE);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.data.AbstractUpdateStrategy#getTrainingState()
+	 */
+	@Override
+	public Serializable getTrainingState() {
+		return new int[] { ga.getTimestamp(), commencedDeletions ? 1 : 0 };
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.data.AbstractUpdateStrategy#setTrainingState(java.io.Serializable)
+	 */
+	@Override
+	public void setTrainingState(final Serializable state) {
+		final int[] values = (int[]) state;
+		ga.setTimestamp(values[0]);
+		commencedDeletions = values[1] == 1;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -508,6 +621,23 @@ public class MLSLCSUpdateAlgorithm extends AbstractUpdateStrategy  {
 //				+ "d:|" + df.format(data.d) + "|";
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see
+	 * gr.auth.ee.lcs.data.AbstractUpdateStrategy#appendData(gr.auth.ee.lcs.classifiers
+	 * .Classifier, java.lang.StringBuilder, java.text.DecimalFormat)
+	 */
+	@Override
+	public void appendData(final Classifier aClassifier, final StringBuilder out, final DecimalFormat format) {
+		
+		final MLSLCSClassifierData data = ((MLSLCSClassifierData) aClassifier.getUpdateDataObject());
+		
+		out.append("tp:|").append(format.format(data.tp)).append('|')
+		   .append("msa:|").append(format.format(data.msa)).append('|')
+		   .append("ns:|").append(format.format(data.ns)).append('|');
+	}
+
 	
 	@Override
 	public double getNs (Classifier aClassifier) {
@@ -682,19 +812,22 @@ public class MLSLCSUpdateAlgorithm extends AbstractUpdateStrategy  {
 						   int instanceIndex, 
 						   boolean evolve) {
 		
-		if(commencedDeletions && SettingsLoader.getStringSetting("matchSetPopulationControl", "false").equals("true"))
+		if(commencedDeletions && SettingsLoader.getStringSetting("matchSetPopulationControl", "false").equals("true")) {
+			PhaseProfiler.start();
 			controlPopulationInMatchSet(population, matchSet);
+			PhaseProfiler.stop(PhaseProfiler.DELETION);
+		}
 
 		// Create all label correct sets
 		final ClassifierSet[] labelCorrectSets = new ClassifierSet[numberOfLabels];
 			
-//		generateCorrectSetTime = -System.currentTimeMillis(); 
+		PhaseProfiler.start();
 		
 		for (int i = 0; i < numberOfLabels; i++) { 
 			labelCorrectSets[i] = generateLabelCorrectSet(matchSet, instanceIndex, i); 		
 		}		
 		
-//		generateCorrectSetTime += System.currentTimeMillis();
+		PhaseProfiler.stop(PhaseProfiler.CORRECT_SETS);
 
 		
 		int CorrectSetsPopulation = 0;
@@ -707,7 +840,7 @@ public class MLSLCSUpdateAlgorithm extends AbstractUpdateStrategy  {
 		
 		final int matchSetSize = matchSet.getNumberOfMacroclassifiers();
 
-//		updateParametersTime = -System.currentTimeMillis();
+		PhaseProfiler.start();
 		
 		if (FITNESS_MODE == FITNESS_MODE_SIMPLE || FITNESS_MODE == FITNESS_MODE_COMPLEX) {
 			// For each classifier in the matchset
@@ -804,7 +937,7 @@ public class MLSLCSUpdateAlgorithm extends AbstractUpdateStrategy  {
 			} 
 		}
 		
-//		updateParametersTime += System.currentTimeMillis();
+		PhaseProfiler.stop(PhaseProfiler.FITNESS_UPDATE);
 		
 //		evolutionTime = 0;
 		
@@ -857,19 +990,21 @@ public class MLSLCSUpdateAlgorithm extends AbstractUpdateStrategy  {
 		 * */
 		
 		if (commencedDeletions && SettingsLoader.getStringSetting("matchSetPopulationControl", "false").equals("true") /* && evolve */) {
+				PhaseProfiler.start();
 				controlPopulationInMatchSet(population, matchSet);
+				PhaseProfiler.stop(PhaseProfiler.DELETION);
 		}
 		
 		// Create all label correct sets
 		final ClassifierSet[] labelCorrectSets = new ClassifierSet[numberOfLabels];
 		
-//		generateCorrectSetTime = -System.currentTimeMillis();
+		PhaseProfiler.start();
 
 		for (int i = 0; i < numberOfLabels; i++) { 
 			labelCorrectSets[i] = generateLabelCorrectSet(matchSet, instanceIndex, i); 
 		}
 		
-//		generateCorrectSetTime += System.currentTimeMillis();
+		PhaseProfiler.stop(PhaseProfiler.CORRECT_SETS);
 
 		
 		int CorrectSetsPopulation = 0;
@@ -881,7 +1016,7 @@ public class MLSLCSUpdateAlgorithm extends AbstractUpdateStrategy  {
 		
 		final int matchSetSize = matchSet.getNumberOfMacroclassifiers();
 
-//		updateParametersTime = -System.currentTimeMillis();
+		PhaseProfiler.start();
 		
 		if (FITNESS_MODE == FITNESS_MODE_SIMPLE || FITNESS_MODE == FITNESS_MODE_COMPLEX) {
 			// For each classifier in the matchset
@@ -978,7 +1113,7 @@ public class MLSLCSUpdateAlgorithm extends AbstractUpdateStrategy  {
 			} 
 		}
 		
-//		updateParametersTime += System.currentTimeMillis(); 
+		PhaseProfiler.stop(PhaseProfiler.FITNESS_UPDATE);
 //		
 //		numberOfEvolutionsConducted = 0;
 //		numberOfSubsumptionsConducted = 0;
@@ -1039,14 +1174,17 @@ public class MLSLCSUpdateAlgorithm extends AbstractUpdateStrategy  {
 //			numberOfSubsumptionsConducted = indicesToSubsume.size();
 //			numberOfNewClassifiers        = newClassifiersSet.getNumberOfMacroclassifiers();
 			
+			PhaseProfiler.start();
 			for ( int i = 0; i < indicesToSubsume.size() ; i++ )
 			{
 				population.getMacroclassifiersVector().get(indicesToSubsume.elementAt(i)).numerosity++; 
 				population.getMacroclassifiersVector().get(indicesToSubsume.elementAt(i)).numberOfSubsumptions++; 
+				population.totalSubsumptions++;
 				population.totalNumerosity++;
 			}
 			
 			population.mergeWithoutControl(newClassifiersSet);
+			PhaseProfiler.stop(PhaseProfiler.SUBSUMPTION);
 			
 //			deletionTime = -System.currentTimeMillis();
 			final IPopulationControlStrategy theControlStrategy = population.getPopulationControlStrategy();
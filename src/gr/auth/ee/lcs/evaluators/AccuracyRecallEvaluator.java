@@ -25,12 +25,10 @@
 package gr.auth.ee.lcs.evaluators;
 
 import gr.auth.ee.lcs.AbstractLearningClassifierSystem;
-import gr.auth.ee.lcs.data.ClassifierTransformBridge;
 import gr.auth.ee.lcs.data.ILCSMetric;
-import gr.auth.ee.lcs.utilities.InstancesUtility;
+import gr.auth.ee.lcs.utilities.ArffDataset;
 
 import java.io.IOException;
-import java.util.Arrays;
 
 import weka.core.Instances;
 
@@ -59,22 +57,22 @@ public class AccuracyRecallEvaluator implements ILCSMetric {
 	private final int currentType;
 
 	/**
-	 * The set of instances to evaluate on.
+	 * The evaluation this evaluator is a view of.
 	 * 
 	 */
-	private final double[][] instances;
+	private final MultiLabelEvaluation evaluation;
 
 	/**
-	 * A boolean indicating if the evaluator is going to print the results.
+	 * The number of the evaluation last read by this view.
 	 * 
 	 */
-	private final boolean printResults;
+	private int lastReadEvaluation = 0;
 
 	/**
-	 * The LCS instance being used.
+	 * A boolean indicating if the evaluator is going to print the results.
 	 * 
 	 */
-	private final AbstractLearningClassifierSystem myLcs;
+	private final boolean printResults;
 
 	/**
 	 * A constructor using only instances.
@@ -92,10 +90,7 @@ public class AccuracyRecallEvaluator implements ILCSMetric {
 									final boolean print, 
 									final AbstractLearningClassifierSystem lcs,
 									final int type) {
-		this.printResults = print;
-		this.instances = instances;
-		myLcs = lcs;
-		currentType = type;
+		this(new MultiLabelEvaluation(instances), print, type);
 	}
 
 	/**
@@ -114,11 +109,7 @@ public class AccuracyRecallEvaluator implements ILCSMetric {
 								   final boolean print, 
 								   final AbstractLearningClassifierSystem lcs,
 								   final int type) {
-		
-		this.instances = InstancesUtility.convertIntancesToDouble(instances);
-		printResults = print;
-		myLcs = lcs;
-		currentType = type;
+		this(new MultiLabelEvaluation(instances), print, type);
 	}
 
 	/**
@@ -138,11 +129,26 @@ public class AccuracyRecallEvaluator implements ILCSMetric {
 	public AccuracyRecallEvaluator(final String arffFileName,
 			final boolean print, final AbstractLearningClassifierSystem lcs,
 			final int type) throws IOException {
+		this(new MultiLabelEvaluation(ArffDataset.load(arffFileName).getInstances(), -1), print, type);
+	}
+
+	/**
+	 * Constructor for creating a view over an evaluation shared with other evaluators.
+	 * The first of the views asked for its metric after all of them have read the
+	 * last results classifies the set again.
+	 * 
+	 * @param sharedEvaluation
+	 *            the evaluation to read the metric from
+	 * @param print
+	 *            true to print results to stdout
+	 * @param type
+	 *            the type of evaluation to be performed
+	 */
+	public AccuracyRecallEvaluator(final MultiLabelEvaluation sharedEvaluation,
+								   final boolean print,
+								   final int type) {
+		evaluation = sharedEvaluation;
 		printResults = print;
-		this.instances = InstancesUtility
-				.convertIntancesToDouble(InstancesUtility
-						.openInstance(arffFileName));
-		myLcs = lcs;
 		currentType = type;
 	}
 
@@ -156,63 +162,20 @@ public class AccuracyRecallEvaluator implements ILCSMetric {
 	@Override
 	public final double getMetric(final AbstractLearningClassifierSystem lcs) {
 		
-		final ClassifierTransformBridge bridge = myLcs.getClassifierTransformBridge();
-
-		double sumOfAccuracies = 0;
-		double sumOfRecall = 0;
-
-		int emptySamples = 0;
-
-		for (int i = 0; i < instances.length; i++) {
-			int unionOfLabels = 0;
-			int intersectionOfLabels = 0;
-
-			final int[] classes = lcs.classifyInstance(instances[i]); 
-			final int[] classification = bridge.getDataInstanceLabels(instances[i]); 
-			
-			// Find symmetric differences
-			Arrays.sort(classes);
-			Arrays.sort(classification);
-			
-			for (int j = 0; j < classes.length; j++) {
-				if (Arrays.binarySearch(classification, classes[j]) < 0) {
-					unionOfLabels++;
-				} else {
-					intersectionOfLabels++;
-					unionOfLabels++;
-				}
-			}
-			for (int j = 0; j < classification.length; j++) {
-				if (Arrays.binarySearch(classes, classification[j]) < 0)
-					unionOfLabels++;
-			}
-			final double instanceAccuracy = ((double) intersectionOfLabels) / ((double) unionOfLabels);
-			sumOfAccuracies += Double.isNaN(instanceAccuracy) ? 0 : instanceAccuracy;
-
-			final double instanceRecall = ((double) intersectionOfLabels) / ((double) classification.length);
-			sumOfRecall += Double.isNaN(instanceRecall) ? 0 : instanceRecall;
-
-			if (unionOfLabels == 0) 
-				emptySamples++;
-		} 
+		lastReadEvaluation = evaluation.refresh(lastReadEvaluation, lcs);
 		
-		final double accuracy = sumOfAccuracies / (instances.length - emptySamples);
-		final double recall = sumOfRecall / (instances.length - emptySamples);
+		final double accuracy = evaluation.getAccuracy();
+		final double recall = evaluation.getRecall();
 
 		if (printResults) {
 			System.out.println("Accuracy: " + accuracy);
 			System.out.println("Recall: " + recall);
-			System.out.println("emptySamples: " + emptySamples);
+			System.out.println("emptySamples: " + evaluation.getEmptySamples());
 			
 		}
 		
-		
-		
 		if (currentType == TYPE_ACCURACY)
-		{
-//			System.out.println("uncoveredInstances: " + uncoveredInstances + " of " +  instances.length);
 			return accuracy;
-		}
 		else
 			return recall;
 	}
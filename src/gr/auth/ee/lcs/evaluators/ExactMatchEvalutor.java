@@ -25,12 +25,10 @@
 package gr.auth.ee.lcs.evaluators;
 
 import gr.auth.ee.lcs.AbstractLearningClassifierSystem;
-import gr.auth.ee.lcs.data.ClassifierTransformBridge;
 import gr.auth.ee.lcs.data.ILCSMetric;
-import gr.auth.ee.lcs.utilities.InstancesUtility;
+import gr.auth.ee.lcs.utilities.ArffDataset;
 
 import java.io.IOException;
-import java.util.Arrays;
 
 import weka.core.Instances;
 
@@ -43,19 +41,19 @@ import weka.core.Instances;
 public class ExactMatchEvalutor implements ILCSMetric {
 
 	/**
-	 * The set of instances to evaluate on.
+	 * The evaluation this evaluator is a view of.
 	 */
-	private final double[][] instances;
+	private final MultiLabelEvaluation evaluation;
 
 	/**
-	 * A boolean indicating if the evaluator is going to print the results.
+	 * The number of the evaluation last read by this view.
 	 */
-	private final boolean printResults;
+	private int lastReadEvaluation = 0;
 
 	/**
-	 * The LCS instance being used.
+	 * A boolean indicating if the evaluator is going to print the results.
 	 */
-	private final AbstractLearningClassifierSystem myLcs;
+	private final boolean printResults;
 
 	/**
 	 * Constructor using a double array.
@@ -69,9 +67,7 @@ public class ExactMatchEvalutor implements ILCSMetric {
 	 */
 	public ExactMatchEvalutor(final double[][] instances, final boolean print,
 			final AbstractLearningClassifierSystem lcs) {
-		printResults = print;
-		this.instances = instances;
-		myLcs = lcs;
+		this(new MultiLabelEvaluation(instances), print);
 	}
 
 	/**
@@ -86,9 +82,7 @@ public class ExactMatchEvalutor implements ILCSMetric {
 	 */
 	public ExactMatchEvalutor(final Instances instances, final boolean print,
 			final AbstractLearningClassifierSystem lcs) {
-		this.instances = InstancesUtility.convertIntancesToDouble(instances);
-		printResults = print;
-		myLcs = lcs;
+		this(new MultiLabelEvaluation(instances), print);
 	}
 
 	/**
@@ -105,41 +99,34 @@ public class ExactMatchEvalutor implements ILCSMetric {
 	 */
 	public ExactMatchEvalutor(final String arffFileName, final boolean print,
 			final AbstractLearningClassifierSystem lcs) throws IOException {
-		printResults = print;
-
-		this.instances = InstancesUtility
-				.convertIntancesToDouble(InstancesUtility
-						.openInstance(arffFileName));
-		myLcs = lcs;
+		this(new MultiLabelEvaluation(ArffDataset.load(arffFileName).getInstances(), -1), print);
+	}
 
+	/**
+	 * Constructor for creating a view over an evaluation shared with other evaluators.
+	 * 
+	 * @param sharedEvaluation
+	 *            the evaluation to read the metric from
+	 * @param print
+	 *            true to turn printing on
+	 */
+	public ExactMatchEvalutor(final MultiLabelEvaluation sharedEvaluation, final boolean print) {
+		evaluation = sharedEvaluation;
+		printResults = print;
 	}
 
 	@Override
 	public final double getMetric(final AbstractLearningClassifierSystem lcs) {
 		
-		final ClassifierTransformBridge bridge = myLcs.getClassifierTransformBridge();
-
-		int tp = 0, fp = 0;
-		for (int i = 0; i < instances.length; i++) {
-			final int[] classes = myLcs.classifyInstance(instances[i]); 
-																		
-			final int[] classification = bridge							
-					.getDataInstanceLabels(instances[i]);				
-			Arrays.sort(classes);
-			Arrays.sort(classification);
-
-			if (Arrays.equals(classes, classification))
-				tp++;
-			else
-				fp++;
-
-		}
+		lastReadEvaluation = evaluation.refresh(lastReadEvaluation, lcs);
 
-		final double correctRate = ((double) tp) / ((double) (fp + tp));
+		final double correctRate = evaluation.getExactMatch();
 
 		if (printResults) {
+			final int tp = evaluation.getExactMatches();
+			final int fp = evaluation.getNumberOfInstances() - tp;
 			System.out.println("tp:" + tp + " fp:" + fp + " exactMatch:"
-					+ correctRate + " total instances:" + instances.length);
+					+ correctRate + " total instances:" + evaluation.getNumberOfInstances());
 		}
 		return correctRate;
 	}
@@ -26,13 +26,12 @@ package gr.auth.ee.lcs.evaluators;
 
 import gr.auth.ee.lcs.AbstractLearningClassifierSystem;
 import gr.auth.ee.lcs.data.ILCSMetric;
+import gr.auth.ee.lcs.utilities.OutputWriter;
 import gr.auth.ee.lcs.utilities.SettingsLoader;
 
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 
@@ -166,16 +165,7 @@ public class FileLogger implements ILCSMetric {
 		file = storeDirectory + "/" + filename + ".txt"; 
 		actualEvaluator = evaluator;
 		
-		try {
-			final FileWriter fstream = new FileWriter(file, false);
-			final BufferedWriter buffer = new BufferedWriter(fstream);
-			buffer.write("");
-			buffer.flush();
-			buffer.close();
-		} 
-		catch (Exception e) {
-			e.printStackTrace();
-		}
+		OutputWriter.truncate(file);
 
 	}
 
@@ -184,20 +174,11 @@ public class FileLogger implements ILCSMetric {
 		
 		final double evalResult = actualEvaluator.getMetric(lcs);
 		
-		try {
-			
-			final FileWriter fstream = new FileWriter(file, true);
-			final BufferedWriter buffer = new BufferedWriter(fstream);
-			buffer.write(
+		OutputWriter.append(file, 
 /*						String.valueOf(lcs.repetition) 
 						+ ":" 
 						+ */String.valueOf(evalResult)
 						+ System.getProperty("line.separator"));
-			buffer.flush();
-			buffer.close();
-		} catch (Exception e) {
-			e.printStackTrace();
-		}
 		return 0;
 	}
 
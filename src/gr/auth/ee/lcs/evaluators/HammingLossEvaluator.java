@@ -25,12 +25,10 @@
 package gr.auth.ee.lcs.evaluators;
 
 import gr.auth.ee.lcs.AbstractLearningClassifierSystem;
-import gr.auth.ee.lcs.data.ClassifierTransformBridge;
 import gr.auth.ee.lcs.data.ILCSMetric;
-import gr.auth.ee.lcs.utilities.InstancesUtility;
+import gr.auth.ee.lcs.utilities.ArffDataset;
 
 import java.io.IOException;
-import java.util.Arrays;
 
 import weka.core.Instances;
 
@@ -43,24 +41,20 @@ import weka.core.Instances;
 public class HammingLossEvaluator implements ILCSMetric {
 
 	/**
-	 * The set of instances to evaluate on.
+	 * The evaluation this evaluator is a view of.
 	 */
-	private final double instances[][];
+	private final MultiLabelEvaluation evaluation;
 
 	/**
-	 * A boolean indicating if the evaluator is going to print the results.
+	 * The number of the evaluation last read by this view.
 	 */
-	private final boolean printResults;
+	private int lastReadEvaluation = 0;
 
 	/**
-	 * The number of labels used.
+	 * A boolean indicating if the evaluator is going to print the results.
 	 */
-	private final int numberOfLabels;
+	private final boolean printResults;
 
-	/**
-	 * The LCS instance being used.
-	 */
-	private final AbstractLearningClassifierSystem myLcs;
 
 	/**
 	 * Constructor using double[][] of instances.
@@ -77,10 +71,7 @@ public class HammingLossEvaluator implements ILCSMetric {
 	public HammingLossEvaluator(final double[][] instances,
 			final boolean print, final int numOfLabels,
 			final AbstractLearningClassifierSystem lcs) {
-		this.instances = instances;
-		printResults = print;
-		numberOfLabels = numOfLabels;
-		myLcs = lcs;
+		this(new MultiLabelEvaluation(instances, numOfLabels), print);
 	}
 
 	/**
@@ -97,10 +88,7 @@ public class HammingLossEvaluator implements ILCSMetric {
 	 */
 	public HammingLossEvaluator(final Instances instances, final boolean print,
 			final int numOfLabels, final AbstractLearningClassifierSystem lcs) {
-		this.instances = InstancesUtility.convertIntancesToDouble(instances);
-		printResults = print;
-		numberOfLabels = numOfLabels;
-		myLcs = lcs;
+		this(new MultiLabelEvaluation(instances, numOfLabels), print);
 	}
 
 	/**
@@ -120,13 +108,20 @@ public class HammingLossEvaluator implements ILCSMetric {
 	public HammingLossEvaluator(final String arffFileName, final boolean print,
 			final int numOfLabels, AbstractLearningClassifierSystem lcs)
 			throws IOException {
-		printResults = print;
+		this(new MultiLabelEvaluation(ArffDataset.load(arffFileName).getInstances(), numOfLabels), print);
+	}
 
-		this.instances = InstancesUtility
-				.convertIntancesToDouble(InstancesUtility
-						.openInstance(arffFileName));
-		numberOfLabels = numOfLabels;
-		myLcs = lcs;
+	/**
+	 * Constructor for creating a view over an evaluation shared with other evaluators.
+	 * 
+	 * @param sharedEvaluation
+	 *            the evaluation to read the metric from
+	 * @param print
+	 *            true to print results to stdout
+	 */
+	public HammingLossEvaluator(final MultiLabelEvaluation sharedEvaluation, final boolean print) {
+		evaluation = sharedEvaluation;
+		printResults = print;
 	}
 
 	/*
@@ -139,29 +134,9 @@ public class HammingLossEvaluator implements ILCSMetric {
 	@Override
 	public double getMetric(final AbstractLearningClassifierSystem lcs) {
 		
-		final ClassifierTransformBridge bridge = myLcs.getClassifierTransformBridge();
-		int numberOfSymmetricDifferences = 0;
-		
-		for (int i = 0; i < instances.length; i++) {
-
-			final int[] classes = myLcs.classifyInstance(instances[i]);
-			final int[] classification = bridge.getDataInstanceLabels(instances[i]);
-
-			// Find symmetric differences
-			Arrays.sort(classes);
-			Arrays.sort(classification);
-
-			for (int j = 0; j < classes.length; j++) {
-				if (Arrays.binarySearch(classification, classes[j]) < 0)
-					numberOfSymmetricDifferences++;
-			}
-			for (int j = 0; j < classification.length; j++) {
-				if (Arrays.binarySearch(classes, classification[j]) < 0)
-					numberOfSymmetricDifferences++;
-			}
-		}
+		lastReadEvaluation = evaluation.refresh(lastReadEvaluation, lcs);
 		
-		final double hammingLoss = ((double) numberOfSymmetricDifferences) / ((double) (instances.length * numberOfLabels));
+		final double hammingLoss = evaluation.getHammingLoss();
 		if (printResults)
 			System.out.println("Hamming Loss: " + hammingLoss);
 		return hammingLoss;
@@ -0,0 +1,396 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.evaluators;
+
+import gr.auth.ee.lcs.AbstractLearningClassifierSystem;
+import gr.auth.ee.lcs.data.ClassifierTransformBridge;
+import gr.auth.ee.lcs.utilities.InstancesUtility;
+import gr.auth.ee.lcs.utilities.SettingsLoader;
+
+import java.util.Arrays;
+
+import weka.core.Instances;
+
+/**
+ * An evaluation engine computing all multi-label metrics in a single pass. Each instance of the set is 
+ * classified once per evaluation and the classification updates the accumulators of every metric. 
+ * The evaluators (accuracy, recall, hamming loss, exact match) can be constructed as views over 
+ * a shared evaluation, so that they classify the set once between them.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public final class MultiLabelEvaluation {
+
+	/**
+	 * The set of instances to evaluate on.
+	 */
+	private final double[][] instances;
+
+	/**
+	 * The number of labels used. Taken from the settings on the first evaluation when not given.
+	 */
+	private int numberOfLabels;
+
+	/**
+	 * The sorted actual labels of each instance. Computed on the first evaluation.
+	 */
+	private int[][] actualLabels;
+
+	/**
+	 * The number of evaluations performed so far.
+	 */
+	private int numberOfEvaluations = 0;
+
+	/**
+	 * The results of the last evaluation.
+	 */
+	private double accuracy, recall, precision, fMeasure, hammingLoss, exactMatch;
+
+	/**
+	 * The number of instances where both the actual and the predicted label sets were empty, at the last evaluation.
+	 */
+	private int emptySamples;
+
+	/**
+	 * The number of exactly matched instances, at the last evaluation.
+	 */
+	private int exactMatches;
+
+	/**
+	 * The fraction of instances correctly classified per label, at the last evaluation.
+	 */
+	private double[] labelAccuracies;
+
+	/**
+	 * Constructor using a double array. The number of labels is taken from the settings.
+	 * 
+	 * @param instances
+	 *            the double[][] of instances
+	 */
+	public MultiLabelEvaluation(final double[][] instances) {
+		this(instances, -1);
+	}
+
+	/**
+	 * Constructor using a double array.
+	 * 
+	 * @param instances
+	 *            the double[][] of instances
+	 * @param numOfLabels
+	 *            the number of labels
+	 */
+	public MultiLabelEvaluation(final double[][] instances, final int numOfLabels) {
+		this.instances = instances;
+		numberOfLabels = numOfLabels;
+	}
+
+	/**
+	 * Constructor using a Weka instance set. The number of labels is taken from the settings.
+	 * 
+	 * @param instances
+	 *            the set of Weka instances
+	 */
+	public MultiLabelEvaluation(final Instances instances) {
+		this(InstancesUtility.convertIntancesToDouble(instances), -1);
+	}
+
+	/**
+	 * Constructor using a Weka instance set.
+	 * 
+	 * @param instances
+	 *            the set of Weka instances
+	 * @param numOfLabels
+	 *            the number of labels
+	 */
+	public MultiLabelEvaluation(final Instances instances, final int numOfLabels) {
+		this(InstancesUtility.convertIntancesToDouble(instances), numOfLabels);
+	}
+
+	/**
+	 * Classify the instance set once and compute all metrics.
+	 * 
+	 * @param lcs
+	 *            the LCS whose classification to evaluate
+	 */
+	public synchronized void evaluate(final AbstractLearningClassifierSystem lcs) {
+		evaluate(lcs, lcs.classifyInstances(instances));
+	}
+
+	/**
+	 * Compute all metrics from precomputed classifications of the instance set 
+	 * (e.g. aggregated from a match matrix).
+	 * 
+	 * @param lcs
+	 *            the LCS providing the actual labels of the instances
+	 * @param classifications
+	 *            the labels each instance is classified in, in the order of the instances
+	 */
+	public synchronized void evaluate(final AbstractLearningClassifierSystem lcs, final int[][] classifications) {
+		extractActualLabels(lcs);
+		accumulate(classifications);
+	}
+
+	/**
+	 * Compute all metrics from precomputed per-label confidences, activating the labels
+	 * whose confidence exceeds the threshold (as the voting classification strategy does). 
+	 * Used to sweep thresholds without classifying the set again.
+	 * 
+	 * @param lcs
+	 *            the LCS providing the actual labels of the instances
+	 * @param confidences
+	 *            the confidence vector of each instance of the set, in the order of the instances
+	 * @param threshold
+	 *            the threshold above which a label is active
+	 */
+	public synchronized void evaluate(final AbstractLearningClassifierSystem lcs, 
+									  final float[][] confidences, 
+									  final double threshold) {
+		extractActualLabels(lcs);
+
+		final int[][] batchClasses = new int[instances.length][];
+		for (int i = 0; i < instances.length; i++) {
+			final float[] votingTable = confidences[i];
+			int numberOfActiveLabels = 0;
+			for (int l = 0; l < votingTable.length; l++)
+				if (votingTable[l] > threshold)
+					numberOfActiveLabels++;
+			
+			batchClasses[i] = new int[numberOfActiveLabels];
+			int currentIndex = 0;
+			for (int l = 0; l < votingTable.length; l++)
+				if (votingTable[l] > threshold)
+					batchClasses[i][currentIndex++] = l;
+		}
+		accumulate(batchClasses);
+	}
+
+	/**
+	 * Extract and sort the actual labels of the set, if not already done.
+	 * 
+	 * @param lcs
+	 *            the LCS whose representation provides the labels
+	 */
+	private void extractActualLabels(final AbstractLearningClassifierSystem lcs) {
+		if (actualLabels != null)
+			return;
+		
+		final ClassifierTransformBridge bridge = lcs.getClassifierTransformBridge();
+		if (numberOfLabels < 0)
+			numberOfLabels = (int) SettingsLoader.getNumericSetting("numberOfLabels", 1);
+		labelAccuracies = new double[numberOfLabels];
+		actualLabels = new int[instances.length][];
+		final double[] buffer = lcs.newInstanceBuffer(instances);
+		for (int i = 0; i < instances.length; i++) {
+			actualLabels[i] = bridge.getDataInstanceLabels(lcs.getInstance(instances, i, buffer));
+			Arrays.sort(actualLabels[i]);
+		}
+	}
+
+	/**
+	 * Update all metrics from the classification of every instance of the set.
+	 * 
+	 * @param batchClasses
+	 *            the labels each instance is classified in, in the order of the instances
+	 */
+	private void accumulate(final int[][] batchClasses) {
+		double sumOfAccuracies = 0;
+		double sumOfRecall = 0;
+		double sumOfPrecision = 0;
+		double sumOfFMeasure = 0;
+		int numberOfSymmetricDifferences = 0;
+		int empty = 0;
+		int matches = 0;
+		final int[] labelErrors = new int[numberOfLabels];
+
+		for (int i = 0; i < instances.length; i++) {
+			final int[] classes = batchClasses[i];
+			final int[] classification = actualLabels[i];
+			Arrays.sort(classes);
+
+			int intersectionOfLabels = 0;
+			for (int j = 0; j < classes.length; j++) {
+				if (Arrays.binarySearch(classification, classes[j]) >= 0) {
+					intersectionOfLabels++;
+				} else if (classes[j] < numberOfLabels) {
+					labelErrors[classes[j]]++;
+				}
+			}
+			for (int j = 0; j < classification.length; j++) {
+				if (Arrays.binarySearch(classes, classification[j]) < 0 && classification[j] < numberOfLabels)
+					labelErrors[classification[j]]++;
+			}
+			
+			final int unionOfLabels = classes.length + classification.length - intersectionOfLabels;
+			numberOfSymmetricDifferences += unionOfLabels - intersectionOfLabels;
+
+			if (unionOfLabels == 0) {
+				empty++;
+			} else {
+				sumOfAccuracies += ((double) intersectionOfLabels) / ((double) unionOfLabels);
+				sumOfFMeasure += (2.0 * intersectionOfLabels) / ((double) (classes.length + classification.length));
+			}
+			if (classification.length > 0)
+				sumOfRecall += ((double) intersectionOfLabels) / ((double) classification.length);
+			if (classes.length > 0)
+				sumOfPrecision += ((double) intersectionOfLabels) / ((double) classes.length);
+
+			if (intersectionOfLabels == classes.length && intersectionOfLabels == classification.length)
+				matches++;
+		}
+
+		accuracy = sumOfAccuracies / (instances.length - empty);
+		recall = sumOfRecall / (instances.length - empty);
+		precision = sumOfPrecision / (instances.length - empty);
+		fMeasure = sumOfFMeasure / (instances.length - empty);
+		hammingLoss = ((double) numberOfSymmetricDifferences) / ((double) (instances.length * numberOfLabels));
+		exactMatch = ((double) matches) / ((double) instances.length);
+		emptySamples = empty;
+		exactMatches = matches;
+		for (int l = 0; l < numberOfLabels; l++)
+			labelAccuracies[l] = ((double) (instances.length - labelErrors[l])) / ((double) instances.length);
+
+		numberOfEvaluations++;
+	}
+
+	/**
+	 * Evaluates the LCS if the caller has already read the results of the last evaluation.
+	 * Views call this once per metric request, so the first view asked after a 
+	 * round of requests triggers a new classification pass and the others reuse it.
+	 * 
+	 * @param lastRead
+	 *            the number of the evaluation last read by the caller
+	 * @param lcs
+	 *            the LCS whose classification to evaluate
+	 * @return the number of the evaluation holding the current results
+	 */
+	synchronized int refresh(final int lastRead, final AbstractLearningClassifierSystem lcs) {
+		if (lastRead >= numberOfEvaluations)
+			evaluate(lcs);
+		return numberOfEvaluations;
+	}
+
+	/**
+	 * Returns the mean (Jaccard) accuracy of the last evaluation.
+	 * 
+	 * @return the accuracy
+	 */
+	public synchronized double getAccuracy() {
+		return accuracy;
+	}
+
+	/**
+	 * Returns the number of instances with empty actual and predicted label sets, at the last evaluation.
+	 * These are excluded from the mean of the example based metrics.
+	 * 
+	 * @return the number of empty samples
+	 */
+	public synchronized int getEmptySamples() {
+		return emptySamples;
+	}
+
+	/**
+	 * Returns the fraction of exactly matched instances of the last evaluation.
+	 * 
+	 * @return the exact match
+	 */
+	public synchronized double getExactMatch() {
+		return exactMatch;
+	}
+
+	/**
+	 * Returns the number of exactly matched instances of the last evaluation.
+	 * 
+	 * @return the number of exact matches
+	 */
+	public synchronized int getExactMatches() {
+		return exactMatches;
+	}
+
+	/**
+	 * Returns the mean F-measure of the last evaluation.
+	 * 
+	 * @return the F-measure
+	 */
+	public synchronized double getFMeasure() {
+		return fMeasure;
+	}
+
+	/**
+	 * Returns the hamming loss of the last evaluation.
+	 * 
+	 * @return the hamming loss
+	 */
+	public synchronized double getHammingLoss() {
+		return hammingLoss;
+	}
+
+	/**
+	 * Returns the fraction of instances correctly classified for a single label, at the last evaluation.
+	 * 
+	 * @param label
+	 *            the label index
+	 * @return the label's accuracy
+	 */
+	public synchronized double getLabelAccuracy(final int label) {
+		return labelAccuracies[label];
+	}
+
+	/**
+	 * Returns the instances of the evaluated set.
+	 * 
+	 * @return the instances
+	 */
+	public double[][] getInstances() {
+		return instances;
+	}
+
+	/**
+	 * Returns the number of instances of the evaluated set.
+	 * 
+	 * @return the number of instances
+	 */
+	public int getNumberOfInstances() {
+		return instances.length;
+	}
+
+	/**
+	 * Returns the mean precision of the last evaluation.
+	 * 
+	 * @return the precision
+	 */
+	public synchronized double getPrecision() {
+		return precision;
+	}
+
+	/**
+	 * Returns the mean recall of the last evaluation.
+	 * 
+	 * @return the recall
+	 */
+	public synchronized double getRecall() {
+		return recall;
+	}
+}
@@ -78,10 +78,11 @@ public class SingleLabelEvaluator implements ILCSMetric {
 		final ClassifierTransformBridge bridge = myLcs.getClassifierTransformBridge();
 		int tp = 0;
 		final double[][] instances = InstancesUtility.convertIntancesToDouble(instanceSet);
+		final int[][] batchClasses = lcs.classifyInstances(instances);
 
 		for (int i = 0; i < instances.length; i++) {
 
-			final int[] classes = lcs.classifyInstance(instances[i]);
+			final int[] classes = batchClasses[i];
 			Arrays.sort(classes);
 
 			final int[] classification = bridge.getDataInstanceLabels(instances[i]);
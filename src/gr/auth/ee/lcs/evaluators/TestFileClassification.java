@@ -25,7 +25,7 @@
 package gr.auth.ee.lcs.evaluators;
 
 import gr.auth.ee.lcs.AbstractLearningClassifierSystem;
-import gr.auth.ee.lcs.utilities.InstancesUtility;
+import gr.auth.ee.lcs.utilities.ArffDataset;
 import gr.auth.ee.lcs.utilities.LabelRepresentationConverter;
 
 import java.io.BufferedWriter;
@@ -99,8 +99,7 @@ public class TestFileClassification {
 			throws IOException {
 		mLcs = lcs;
 		mOutputFilename = outputFilename;
-		mInstances = InstancesUtility.convertIntancesToDouble(InstancesUtility
-				.openInstance(arffFileName));
+		mInstances = ArffDataset.load(arffFileName).getInstances();
 		mNumOfLabels = numOfLabels;
 
 	}
@@ -114,9 +113,10 @@ public class TestFileClassification {
 	public void produceClassification() throws IOException {
 
 		final StringBuffer response = new StringBuffer();
+		final int[][] batchClasses = mLcs.classifyInstances(mInstances);
 
 		for (int i = 0; i < mInstances.length; i++) {
-			final int[] classes = mLcs.classifyInstance(mInstances[i]);
+			final int[] classes = batchClasses[i];
 			Arrays.sort(classes);
 			response.append(LabelRepresentationConverter.activeLabelsToString(
 					classes, mNumOfLabels, ",")
@@ -58,6 +58,14 @@ public interface IGeneticAlgorithmStrategy {
 		
 	void increaseTimestamp();
 	
+	/**
+	 * Sets the timestamp, e.g. when resuming training from a checkpoint.
+	 * 
+	 * @param timestamp
+	 *            the new timestamp
+	 */
+	void setTimestamp(int timestamp);
+	
 	int getMeanAge(ClassifierSet evolveSet);
 	
 	int evolutionConducted();
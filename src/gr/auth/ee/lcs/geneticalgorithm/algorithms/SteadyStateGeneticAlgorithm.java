@@ -32,6 +32,10 @@ import gr.auth.ee.lcs.geneticalgorithm.IGeneticAlgorithmStrategy;
 import gr.auth.ee.lcs.geneticalgorithm.IRuleSelector;
 import gr.auth.ee.lcs.geneticalgorithm.IUnaryGeneticOperator;
 import gr.auth.ee.lcs.geneticalgorithm.selectors.RouletteWheelSelector;
+import gr.auth.ee.lcs.utilities.FlatDataset;
+import gr.auth.ee.lcs.utilities.FlightRecorderEvents;
+import gr.auth.ee.lcs.utilities.PhaseProfiler;
+import gr.auth.ee.lcs.utilities.RandomGenerator;
 import gr.auth.ee.lcs.utilities.SettingsLoader;
 
 import java.util.Arrays;
@@ -92,6 +96,11 @@ public class SteadyStateGeneticAlgorithm implements IGeneticAlgorithmStrategy {
 	 */
 	private final AbstractLearningClassifierSystem myLcs;
 	
+	/**
+	 * The random number generator of the LCS.
+	 */
+	private final RandomGenerator random;
+	
 	Vector<Integer> indicesToSubsume;
 	
 	ClassifierSet newClassifiersSet;
@@ -210,6 +219,7 @@ public class SteadyStateGeneticAlgorithm implements IGeneticAlgorithmStrategy {
 		if (subsumer != null) {
 				population.getMacroclassifiersVector().get(index).numerosity++;
 				population.getMacroclassifiersVector().get(index).numberOfSubsumptions++;
+				population.totalSubsumptions++;
 				population.totalNumerosity++;
 				theControlStrategy.controlPopulation(population);
 				return true;
@@ -326,6 +336,7 @@ public class SteadyStateGeneticAlgorithm implements IGeneticAlgorithmStrategy {
 		this.gaActivationAge = gaActivationAge;
 		this.crossoverRate = crossoverRate;
 		this.myLcs = lcs;
+		this.random = lcs.getRandomGenerator();
 		this.decideAtOnceForCrossOver = decideAtOnceForCrossOver;
 		
 	}
@@ -361,6 +372,7 @@ public class SteadyStateGeneticAlgorithm implements IGeneticAlgorithmStrategy {
 		}
 
 		evolutionConducted = 1;
+		final Object event = FlightRecorderEvents.begin(FlightRecorderEvents.GA_INVOCATION);
 
 		final int evolveSetSize = evolveSet.getNumberOfMacroclassifiers();
 
@@ -371,6 +383,7 @@ public class SteadyStateGeneticAlgorithm implements IGeneticAlgorithmStrategy {
 		final ClassifierSet parents = new ClassifierSet(null);
 
 		// Select parents
+		PhaseProfiler.start();
 		gaSelector.select(1, evolveSet, parents); 
 		final Classifier parentA = parents.getClassifier(0);
 		parents.deleteClassifier(0);
@@ -378,6 +391,7 @@ public class SteadyStateGeneticAlgorithm implements IGeneticAlgorithmStrategy {
 		gaSelector.select(1, evolveSet, parents);
 		final Classifier parentB = parents.getClassifier(0);
 		parents.deleteClassifier(0);
+		PhaseProfiler.stop(PhaseProfiler.GA_SELECTION);
 
 
 		boolean[] doCrossover = new boolean[CHILDREN_PER_GENERATION];
@@ -386,7 +400,7 @@ public class SteadyStateGeneticAlgorithm implements IGeneticAlgorithmStrategy {
 
 		if (decideAtOnceForCrossOver)
 		{
-			if (Math.random() < crossoverRate && !parentA.equals(parentB)) {
+			if (random.nextDouble() < crossoverRate && !parentA.equals(parentB)) {
 
 				int chromosomeSize = -1;
 				if (crossoverOperator == MULTIPOINT_CROSSOVER)
@@ -398,7 +412,7 @@ public class SteadyStateGeneticAlgorithm implements IGeneticAlgorithmStrategy {
 				{
 					doCrossover[i] = true;
 					//The point at which the crossover will occur
-					mutationPoint[i] = (int) Math.ceil(Math.random() * chromosomeSize - 1);
+					mutationPoint[i] = (int) Math.ceil(random.nextDouble() * chromosomeSize - 1);
 				}
 			}
 		}
@@ -406,7 +420,7 @@ public class SteadyStateGeneticAlgorithm implements IGeneticAlgorithmStrategy {
 		{
 			for (int i = 0; i < CHILDREN_PER_GENERATION; i++)
 			{
-				if (Math.random() < crossoverRate && !parentA.equals(parentB)) {
+				if (random.nextDouble() < crossoverRate && !parentA.equals(parentB)) {
 
 					int chromosomeSize = -1;
 					if (crossoverOperator == MULTIPOINT_CROSSOVER)
@@ -416,7 +430,7 @@ public class SteadyStateGeneticAlgorithm implements IGeneticAlgorithmStrategy {
 
 					doCrossover[i] = true;
 					//The point at which the crossover will occur
-					mutationPoint[i] = (int) Math.ceil(Math.random() * chromosomeSize - 1);
+					mutationPoint[i] = (int) Math.ceil(random.nextDouble() * chromosomeSize - 1);
 				}
 			}
 		}
@@ -429,6 +443,7 @@ public class SteadyStateGeneticAlgorithm implements IGeneticAlgorithmStrategy {
 
 			Classifier child;
 			// produce a child
+			PhaseProfiler.start();
 			if (doCrossover[i]) {
 				child = crossoverOp.operate((i == 0) ? parentB : parentA, (i == 0) ? parentA : parentB, label, mutationPoint[i]);
 			} 
@@ -443,14 +458,18 @@ public class SteadyStateGeneticAlgorithm implements IGeneticAlgorithmStrategy {
 
 
 			child = mutationOp.operate(child);
+			PhaseProfiler.stop(PhaseProfiler.GA_OPERATORS);
 
 			// 0-coverage prevention. every child introduced in the population will be non 0-coverage.
-			for (int ins = 0; ins < myLcs.instances.length; ins++) {
-				if (child.isMatch(myLcs.instances[ins])) {
+			PhaseProfiler.start();
+			final FlatDataset dataset = myLcs.getTrainDataset();
+			for (int ins = 0; ins < dataset.getNumberOfInstances(); ins++) {
+				if (child.isMatch(dataset, ins)) {
 					proceedMyChild = true;
 					break;
 				}
 			}
+			PhaseProfiler.stop(PhaseProfiler.VIABILITY_CHECK);
 
 
 			if (proceedMyChild) {
@@ -465,6 +484,7 @@ public class SteadyStateGeneticAlgorithm implements IGeneticAlgorithmStrategy {
 				child.created = myLcs.totalRepetition; //timestamp; 
 
 				long time1 = -System.currentTimeMillis();
+				PhaseProfiler.start();
 
 				//check subsumption by parents
 				boolean parentsSubsumed = letParentsSubsume(population, parentA, parentB, child);
@@ -481,6 +501,7 @@ public class SteadyStateGeneticAlgorithm implements IGeneticAlgorithmStrategy {
 				else
 					numberOfSubsumptions++;
 
+				PhaseProfiler.stop(PhaseProfiler.SUBSUMPTION);
 				time1 += System.currentTimeMillis();
 
 				subsumptionTime += time1;
@@ -494,6 +515,9 @@ public class SteadyStateGeneticAlgorithm implements IGeneticAlgorithmStrategy {
 
 		subsumptionTime -= deletionTime;
 
+		if (event != null)
+			FlightRecorderEvents.commit(event, label, evolveSetSize, numberOfSubsumptions + numberOfNewClassifiers, numberOfSubsumptions);
+
 	}
 	
 	
@@ -505,6 +529,8 @@ public class SteadyStateGeneticAlgorithm implements IGeneticAlgorithmStrategy {
 								  	int label) {
 	
 		subsumptionTime = 0;
+		final Object event = FlightRecorderEvents.begin(FlightRecorderEvents.GA_INVOCATION);
+		int offspring = 0;
 		
 		final ClassifierSet parents = new ClassifierSet(null);
 		
@@ -519,6 +545,7 @@ public class SteadyStateGeneticAlgorithm implements IGeneticAlgorithmStrategy {
 		
 		RouletteWheelSelector rwSelector  = (RouletteWheelSelector)gaSelector;
 		// Select parents
+		PhaseProfiler.start();
 		double fitnessSumLocal = rwSelector.computeFitnessSum(evolveSet);
 		
 		rwSelector.selectWithoutSum(1, evolveSet, parents, fitnessSumLocal); 
@@ -528,6 +555,7 @@ public class SteadyStateGeneticAlgorithm implements IGeneticAlgorithmStrategy {
 		rwSelector.selectWithoutSum(1, evolveSet, parents, fitnessSumLocal);
 		final Classifier parentB = parents.getClassifier(0);
 		parents.deleteClassifier(0);
+		PhaseProfiler.stop(PhaseProfiler.GA_SELECTION);
 		
 		
 		boolean[] doCrossover = new boolean[CHILDREN_PER_GENERATION];
@@ -536,7 +564,7 @@ public class SteadyStateGeneticAlgorithm implements IGeneticAlgorithmStrategy {
 
 		if (decideAtOnceForCrossOver)
 		{
-			if (Math.random() < crossoverRate && !parentA.equals(parentB)) {
+			if (random.nextDouble() < crossoverRate && !parentA.equals(parentB)) {
 
 				int chromosomeSize = -1;
 				if (crossoverOperator == MULTIPOINT_CROSSOVER)
@@ -548,7 +576,7 @@ public class SteadyStateGeneticAlgorithm implements IGeneticAlgorithmStrategy {
 				{
 					doCrossover[i] = true;
 					//The point at which the crossover will occur
-					mutationPoint[i] = (int) Math.ceil(Math.random() * chromosomeSize - 1);
+					mutationPoint[i] = (int) Math.ceil(random.nextDouble() * chromosomeSize - 1);
 				}
 			}
 		}
@@ -556,7 +584,7 @@ public class SteadyStateGeneticAlgorithm implements IGeneticAlgorithmStrategy {
 		{
 			for (int i = 0; i < CHILDREN_PER_GENERATION; i++)
 			{
-				if (Math.random() < crossoverRate && !parentA.equals(parentB)) {
+				if (random.nextDouble() < crossoverRate && !parentA.equals(parentB)) {
 
 					int chromosomeSize = -1;
 					if (crossoverOperator == MULTIPOINT_CROSSOVER)
@@ -566,7 +594,7 @@ public class SteadyStateGeneticAlgorithm implements IGeneticAlgorithmStrategy {
 
 					doCrossover[i] = true;
 					//The point at which the crossover will occur
-					mutationPoint[i] = (int) Math.ceil(Math.random() * chromosomeSize - 1);
+					mutationPoint[i] = (int) Math.ceil(random.nextDouble() * chromosomeSize - 1);
 				}
 			}
 		}
@@ -578,6 +606,7 @@ public class SteadyStateGeneticAlgorithm implements IGeneticAlgorithmStrategy {
 			
 			Classifier child;
 			// produce a child
+			PhaseProfiler.start();
 			if (doCrossover[i]) {
 				child = crossoverOp.operate((i == 0) ? parentB : parentA, (i == 0) ? parentA : parentB, label, mutationPoint[i]);
 			} 
@@ -591,18 +620,23 @@ public class SteadyStateGeneticAlgorithm implements IGeneticAlgorithmStrategy {
 			}
 
 			child = mutationOp.operate(child);
+			PhaseProfiler.stop(PhaseProfiler.GA_OPERATORS);
 			
 			// 0-coverage prevention. every child introduced in the population will be non 0-coverage.
-			for (int ins = 0; ins < myLcs.instances.length; ins++) {
-				if (child.isMatch(myLcs.instances[ins])) {
+			PhaseProfiler.start();
+			final FlatDataset dataset = myLcs.getTrainDataset();
+			for (int ins = 0; ins < dataset.getNumberOfInstances(); ins++) {
+				if (child.isMatch(dataset, ins)) {
 					proceedMyChild = true;
 					break;
 				}
 			}
+			PhaseProfiler.stop(PhaseProfiler.VIABILITY_CHECK);
 
 			
 			if (proceedMyChild) {
-								
+				
+				offspring++;
 				child.inheritParametersFromParents(parentA, parentB);
 				myLcs.getClassifierTransformBridge().fixChromosome(child);
 				child.setClassifierOrigin(Classifier.CLASSIFIER_ORIGIN_GA);
@@ -612,6 +646,7 @@ public class SteadyStateGeneticAlgorithm implements IGeneticAlgorithmStrategy {
 				child.created = myLcs.totalRepetition;
 				
 				long time1 = -System.currentTimeMillis();
+				PhaseProfiler.start();
 				
 				int parentIndex = letParentsSubsumeNew(population, parentA, parentB, child);
 							
@@ -634,6 +669,7 @@ public class SteadyStateGeneticAlgorithm implements IGeneticAlgorithmStrategy {
 					
 				}
 				
+				PhaseProfiler.stop(PhaseProfiler.SUBSUMPTION);
 				time1 += System.currentTimeMillis();
 				
 				subsumptionTime += time1; 
@@ -642,7 +678,9 @@ public class SteadyStateGeneticAlgorithm implements IGeneticAlgorithmStrategy {
 
 				
 		}
-			
+		
+		if (event != null)
+			FlightRecorderEvents.commit(event, label, evolveSet.getNumberOfMacroclassifiers(), offspring, indicesToSubsume.size());
 	}
 	
 	
@@ -705,6 +743,11 @@ public class SteadyStateGeneticAlgorithm implements IGeneticAlgorithmStrategy {
 		timestamp++;
 	}
 	
+	@Override
+	public void setTimestamp(final int timestamp) {
+		this.timestamp = timestamp;
+	}
+	
 	
 	
 	@Override
@@ -23,6 +23,7 @@ package gr.auth.ee.lcs.geneticalgorithm.operators;
 
 import gr.auth.ee.lcs.classifiers.Classifier;
 import gr.auth.ee.lcs.geneticalgorithm.IUnaryGeneticOperator;
+import gr.auth.ee.lcs.utilities.RandomGenerator;
 
 /**
  * Implements a mutation operator. Bits of a chromosome are mutated by following
@@ -62,11 +63,13 @@ public class UniformBitMutation implements IUnaryGeneticOperator {
 	@Override
 	public final Classifier operate(final Classifier aClassifier) {
 		final int chromosomeSize = aClassifier.size();
+		final RandomGenerator random = aClassifier.getLCS().getRandomGenerator();
 
 		for (int i = 0; i < chromosomeSize; i++) {
-			if (Math.random() < mutationRate)
+			if (random.nextDouble() < mutationRate)
 				aClassifier.invert(i);
 		}
+		aClassifier.setLabelStateCache(null);
 		return aClassifier;
 	}
 
@@ -24,6 +24,7 @@ package gr.auth.ee.lcs.geneticalgorithm.selectors;
 import gr.auth.ee.lcs.classifiers.ClassifierSet;
 import gr.auth.ee.lcs.classifiers.Macroclassifier;
 import gr.auth.ee.lcs.geneticalgorithm.IRuleSelector;
+import gr.auth.ee.lcs.utilities.RandomGenerator;
 
 /**
  * A Natural Selection operator performing a weighted roulette wheel selection.
@@ -45,6 +46,11 @@ public class RouletteWheelSelector implements IRuleSelector {
 	 * Private variable for selecting maximum or minimum selection.
 	 */
 	private final boolean max;
+
+	/**
+	 * The random number generator of the LCS.
+	 */
+	private final RandomGenerator random;
 	
 
 	/**
@@ -54,12 +60,16 @@ public class RouletteWheelSelector implements IRuleSelector {
 	 *            the comparison mode
 	 * @param max
 	 *            whether the selector selects min or max fitness (when max, max=true)
+	 * @param random
+	 *            the random number generator of the LCS
 	 */
 	public RouletteWheelSelector(final int comparisonMode, 
-								  final boolean max) {
+								  final boolean max,
+								  final RandomGenerator random) {
 		
 		mode = comparisonMode;
 		this.max = max;
+		this.random = random;
 	}
 	
 	
@@ -83,7 +93,7 @@ public class RouletteWheelSelector implements IRuleSelector {
 		// Repeat roulette for howManyToSelect times
 		for (int i = 0; i < howManyToSelect; i++) {
 			// Roulette
-			double rand = Math.random() * fitnessSum;
+			double rand = random.nextDouble() * fitnessSum;
 
 			double tempSum = 0;
 			int selectedIndex = -1;
@@ -133,7 +143,7 @@ public class RouletteWheelSelector implements IRuleSelector {
 		// Repeat roulette for howManyToSelect times
 		for (int i = 0; i < howManyToSelect; i++) {
 			// Roulette
-			final double rand = Math.random() * fitnessSum;
+			final double rand = random.nextDouble() * fitnessSum;
 
 			double tempSum = 0;
 			int selectedIndex = -1;
@@ -27,6 +27,7 @@ package gr.auth.ee.lcs.geneticalgorithm.selectors;
 import gr.auth.ee.lcs.classifiers.ClassifierSet;
 import gr.auth.ee.lcs.classifiers.Macroclassifier;
 import gr.auth.ee.lcs.geneticalgorithm.IRuleSelector;
+import gr.auth.ee.lcs.utilities.RandomGenerator;
 
 import java.util.Arrays;
 
@@ -58,6 +59,11 @@ public class TournamentSelector implements IRuleSelector {
 	 */
 	private final int mode;
 
+	/**
+	 * The random number generator of the LCS.
+	 */
+	private final RandomGenerator random;
+
 	/**
 	 * Constructor.
 	 * 
@@ -68,12 +74,15 @@ public class TournamentSelector implements IRuleSelector {
 	 *            true if the tournament selects the max fitness
 	 * @param comparisonMode
 	 *            the comparison mode to be used
+	 * @param random
+	 *            the random number generator of the LCS
 	 */
 	public TournamentSelector(final double sizeOfTournaments,
-			final boolean max, final int comparisonMode) {
+			final boolean max, final int comparisonMode, final RandomGenerator random) {
 		this.tournamentSize = 0;
 		this.max = max;
 		this.mode = comparisonMode;
+		this.random = random;
 		percentSize = sizeOfTournaments;
 	}
 
@@ -88,12 +97,15 @@ public class TournamentSelector implements IRuleSelector {
 	 * @param comparisonMode
 	 *            comparison mode @see
 	 *            gr.auth.ee.lcs.data.UpdateAlgorithmFactoryAndStrategy
+	 * @param random
+	 *            the random number generator of the LCS
 	 */
 	public TournamentSelector(final int sizeOfTournaments, final boolean max,
-			final int comparisonMode) {
+			final int comparisonMode, final RandomGenerator random) {
 		this.tournamentSize = sizeOfTournaments;
 		this.max = max;
 		this.mode = comparisonMode;
+		this.random = random;
 		percentSize = 0;
 	}
 
@@ -118,7 +130,7 @@ public class TournamentSelector implements IRuleSelector {
 		final int[] participants = new int[size];
 		// Create random participants
 		for (int j = 0; j < participants.length; j++) {
-			participants[j] = (int) Math.floor((Math.random() * fromPopulation.getTotalNumerosity()));
+			participants[j] = (int) Math.floor((random.nextDouble() * fromPopulation.getTotalNumerosity()));
 		}
 		return this.tournament(fromPopulation, participants);
 
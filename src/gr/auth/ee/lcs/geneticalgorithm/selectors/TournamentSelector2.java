@@ -27,6 +27,7 @@ package gr.auth.ee.lcs.geneticalgorithm.selectors;
 import gr.auth.ee.lcs.classifiers.ClassifierSet;
 import gr.auth.ee.lcs.classifiers.Macroclassifier;
 import gr.auth.ee.lcs.geneticalgorithm.IRuleSelector;
+import gr.auth.ee.lcs.utilities.RandomGenerator;
 
 import java.util.Arrays;
 
@@ -58,6 +59,11 @@ public class TournamentSelector2 implements IRuleSelector {
 	 */
 	private final int mode;
 
+	/**
+	 * The random number generator of the LCS.
+	 */
+	private final RandomGenerator random;
+
 	/**
 	 * Constructor.
 	 * 
@@ -67,12 +73,15 @@ public class TournamentSelector2 implements IRuleSelector {
 	 *            true if the tournament selects the max fitness
 	 * @param comparisonMode
 	 *            the comparison mode to be used
+	 * @param random
+	 *            the random number generator of the LCS
 	 */
 	public TournamentSelector2(final double sizeOfTournaments,
-			final boolean max, final int comparisonMode) {
+			final boolean max, final int comparisonMode, final RandomGenerator random) {
 		this.tournamentSize = 0;
 		this.max = max;
 		this.mode = comparisonMode;
+		this.random = random;
 		percentSize = sizeOfTournaments;
 	}
 
@@ -87,12 +96,15 @@ public class TournamentSelector2 implements IRuleSelector {
 	 * @param comparisonMode
 	 *            comparison mode @see
 	 *            gr.auth.ee.lcs.data.UpdateAlgorithmFactoryAndStrategy
+	 * @param random
+	 *            the random number generator of the LCS
 	 */
 	public TournamentSelector2(final int sizeOfTournaments, final boolean max,
-			final int comparisonMode) {
+			final int comparisonMode, final RandomGenerator random) {
 		this.tournamentSize = sizeOfTournaments;
 		this.max = max;
 		this.mode = comparisonMode;
+		this.random = random;
 		percentSize = 0;
 	}
 
@@ -133,7 +145,7 @@ public class TournamentSelector2 implements IRuleSelector {
 		final int[] participants = new int[size];
 		// Create random participants
 		for (int j = 0; j < participants.length; j++) {
-			participants[j] = (int) Math.floor((Math.random() * fromPopulation
+			participants[j] = (int) Math.floor((random.nextDouble() * fromPopulation
 					.getTotalNumerosity()));
 		}
 		return this.tournament(fromPopulation, participants);
@@ -24,6 +24,8 @@ package gr.auth.ee.lcs.implementations;
 import gr.auth.ee.lcs.AbstractLearningClassifierSystem;
 import gr.auth.ee.lcs.calibration.InternalValidation;
 import gr.auth.ee.lcs.classifiers.ClassifierSet;
+import gr.auth.ee.lcs.classifiers.CompiledInferenceModel;
+import gr.auth.ee.lcs.classifiers.MatchMatrix;
 import gr.auth.ee.lcs.classifiers.populationcontrol.FixedSizeSetWorstFitnessDeletion;
 import gr.auth.ee.lcs.classifiers.statistics.MeanCoverageStatistic;
 import gr.auth.ee.lcs.data.AbstractUpdateStrategy;
@@ -31,15 +33,16 @@ import gr.auth.ee.lcs.data.ILCSMetric;
 import gr.auth.ee.lcs.data.representations.complex.GenericMultiLabelRepresentation;
 import gr.auth.ee.lcs.data.representations.complex.GenericMultiLabelRepresentation.VotingClassificationStrategy;
 import gr.auth.ee.lcs.data.updateAlgorithms.MLSLCSUpdateAlgorithm;
-import gr.auth.ee.lcs.evaluators.AccuracyRecallEvaluator;
-import gr.auth.ee.lcs.evaluators.ExactMatchEvalutor;
-import gr.auth.ee.lcs.evaluators.HammingLossEvaluator;
+import gr.auth.ee.lcs.evaluators.MultiLabelEvaluation;
 import gr.auth.ee.lcs.geneticalgorithm.IGeneticAlgorithmStrategy;
 import gr.auth.ee.lcs.geneticalgorithm.algorithms.SteadyStateGeneticAlgorithm;
 import gr.auth.ee.lcs.geneticalgorithm.operators.MultiPointCrossover;
 import gr.auth.ee.lcs.geneticalgorithm.operators.SinglePointCrossover;
 import gr.auth.ee.lcs.geneticalgorithm.operators.UniformBitMutation;
 import gr.auth.ee.lcs.geneticalgorithm.selectors.RouletteWheelSelector;
+import gr.auth.ee.lcs.utilities.FlightRecorderEvents;
+import gr.auth.ee.lcs.utilities.InstancesUtility;
+import gr.auth.ee.lcs.utilities.OutputWriter;
 import gr.auth.ee.lcs.utilities.SettingsLoader;
 
 import java.io.BufferedWriter;
@@ -152,19 +155,8 @@ public class MLSLCS extends AbstractLearningClassifierSystem {
 	private String zeroCoverageFile;
 	
 	long accEvalTime1;
-	long recEvalTime1;
-	long hamEvalTime1;
-	long testEvalTime1;
-	
 	long accEvalTime2;
-	long recEvalTime2;
-	long hamEvalTime2;
-	long testEvalTime2;
-	
 	long accEvalTime3;
-	long recEvalTime3;
-	long hamEvalTime3;
-	long testEvalTime3;
 	
 	long bestClassificationModeTime;
 	long proportionalCutCalibrationTime;
@@ -193,7 +185,7 @@ public class MLSLCS extends AbstractLearningClassifierSystem {
 			decideAtOnceForCrossOver = false;
 		
 		final IGeneticAlgorithmStrategy ga = new SteadyStateGeneticAlgorithm(
-			new RouletteWheelSelector(AbstractUpdateStrategy.COMPARISON_MODE_EXPLORATION, true), 
+			new RouletteWheelSelector(AbstractUpdateStrategy.COMPARISON_MODE_EXPLORATION, true, getRandomGenerator()), 
 			CROSSOVER_OPERATOR == 0 ? new SinglePointCrossover(this) : new MultiPointCrossover(this), 
 			CROSSOVER_RATE,
 			new UniformBitMutation(MUTATION_RATE), 
@@ -223,7 +215,7 @@ public class MLSLCS extends AbstractLearningClassifierSystem {
 		rulePopulation = new ClassifierSet(
 											new FixedSizeSetWorstFitnessDeletion(this,
 																				 populationSize,
-																				 new RouletteWheelSelector(AbstractUpdateStrategy.COMPARISON_MODE_DELETION, true)));
+																				 new RouletteWheelSelector(AbstractUpdateStrategy.COMPARISON_MODE_DELETION, true, getRandomGenerator())));
 	}
 
 	@Override
@@ -231,6 +223,17 @@ public class MLSLCS extends AbstractLearningClassifierSystem {
 		
 		return getClassifierTransformBridge().classify(this.getRulePopulation(), instance);
 	}
+	
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.AbstractLearningClassifierSystem#compileForBatchClassification()
+	 */
+	@Override
+	protected CompiledInferenceModel compileForBatchClassification() {
+		// the generic representation compiles its current (best fitness or voting) strategy
+		return compile();
+	}
 
 	@Override
 	public AbstractLearningClassifierSystem createNew() {
@@ -263,63 +266,69 @@ public class MLSLCS extends AbstractLearningClassifierSystem {
 
 	@Override
 	public double[] getEvaluations(Instances testSet) {
+		return getEvaluations(InstancesUtility.convertIntancesToDouble(testSet));
+	}
+
+	@Override
+	public double[] getEvaluations(double[][] testInstances) {
 		
 
 		final double[] results = new double[13];
 		Arrays.fill(results, 0);
 
+		// the population is fixed from now on: match the train and test sets once and aggregate
+		// the decisions of every classification mode and threshold from the same match matrices
+		final MultiLabelEvaluation testEvaluation = new MultiLabelEvaluation(testInstances, numberOfLabels);
+		final CompiledInferenceModel model = compile();
+		
+		final MatchMatrix testMatches = new MatchMatrix(model, getDataset(testInstances));
+		final float[][] testConfidences = model.getConfidences(testMatches);
+
+		Object event = FlightRecorderEvents.begin(FlightRecorderEvents.CALIBRATION);
 		proportionalCutCalibrationTime = -System.currentTimeMillis();
-		final VotingClassificationStrategy pcut = proportionalCutCalibration();
+		getConfidenceArrayTime = -System.currentTimeMillis();
+		final float[][] trainConfidences = model.getConfidences(new MatchMatrix(model, getTrainDataset()));
+		getConfidenceArrayTime += System.currentTimeMillis();
+		final VotingClassificationStrategy pcut = proportionalCutCalibration(trainConfidences);
 		proportionalCutCalibrationTime += System.currentTimeMillis();
+		if (event != null)
+			FlightRecorderEvents.commit(event, "pcut", pcut.getThreshold());
 		
 		System.out.println("Threshold (pcut) set to " + pcut.getThreshold());
 		
 		
 		
+		// all metrics of a classification mode come from a single aggregation pass, timed in accEvalTime
+
+		event = FlightRecorderEvents.begin(FlightRecorderEvents.EVALUATION);
 		accEvalTime1 = -System.currentTimeMillis();
-		final AccuracyRecallEvaluator accEval = new AccuracyRecallEvaluator(testSet, false, this, AccuracyRecallEvaluator.TYPE_ACCURACY);
-		results[0] = accEval.getMetric(this);
+		testEvaluation.evaluate(this, testConfidences, pcut.getThreshold());
 		accEvalTime1 += System.currentTimeMillis();
-
-
-		recEvalTime1 = -System.currentTimeMillis();
-		final AccuracyRecallEvaluator recEval = new AccuracyRecallEvaluator(testSet, false, this, AccuracyRecallEvaluator.TYPE_RECALL);
-		results[1] = recEval.getMetric(this);
-		recEvalTime1 += System.currentTimeMillis();
-
-
-		hamEvalTime1 = -System.currentTimeMillis();
-		final HammingLossEvaluator hamEval = new HammingLossEvaluator(testSet, false, numberOfLabels, this);
-		results[2] = hamEval.getMetric(this);
-		hamEvalTime1 += System.currentTimeMillis();
-
-		testEvalTime1 = -System.currentTimeMillis();
-		final ExactMatchEvalutor testEval = new ExactMatchEvalutor(testSet, false, this);
-		results[3] = testEval.getMetric(this);
-		testEvalTime1 += System.currentTimeMillis();
-		
+		if (event != null)
+			FlightRecorderEvents.commit(event, "pcut", testInstances.length, testEvaluation.getAccuracy(), testEvaluation.getExactMatch());
+		results[0] = testEvaluation.getAccuracy();
+		results[1] = testEvaluation.getRecall();
+		results[2] = testEvaluation.getHammingLoss();
+		results[3] = testEvaluation.getExactMatch();
 		
-		final AccuracyRecallEvaluator selfAcc = new AccuracyRecallEvaluator(instances, false, this, AccuracyRecallEvaluator.TYPE_ACCURACY);
 		
+		event = FlightRecorderEvents.begin(FlightRecorderEvents.CALIBRATION);
 		internalValidationCalibrationTime = -System.currentTimeMillis();
-		internalValidationCalibration(selfAcc);
+		final VotingClassificationStrategy ival = internalValidationCalibration(trainConfidences);
 		internalValidationCalibrationTime += System.currentTimeMillis();
+		if (event != null)
+			FlightRecorderEvents.commit(event, "ival", ival.getThreshold());
 
+		event = FlightRecorderEvents.begin(FlightRecorderEvents.EVALUATION);
 		accEvalTime2 = -System.currentTimeMillis();
-		results[4] = accEval.getMetric(this);
+		testEvaluation.evaluate(this, testConfidences, ival.getThreshold());
 		accEvalTime2 += System.currentTimeMillis();
-
-		recEvalTime2 = -System.currentTimeMillis();
-		results[5] = recEval.getMetric(this);
-		recEvalTime2 += System.currentTimeMillis();
-		
-		hamEvalTime2 = -System.currentTimeMillis();
-		results[6] = hamEval.getMetric(this);
-		hamEvalTime2 += System.currentTimeMillis();
-		
-		testEvalTime2 = -System.currentTimeMillis();		
-		results[7] = testEval.getMetric(this);
-		testEvalTime2 += System.currentTimeMillis();
+		if (event != null)
+			FlightRecorderEvents.commit(event, "ival", testInstances.length, testEvaluation.getAccuracy(), testEvaluation.getExactMatch());
+		results[4] = testEvaluation.getAccuracy();
+		results[5] = testEvaluation.getRecall();
+		results[6] = testEvaluation.getHammingLoss();
+		results[7] = testEvaluation.getExactMatch();
 
 
 		bestClassificationModeTime = -System.currentTimeMillis();
@@ -327,21 +336,17 @@ public class MLSLCS extends AbstractLearningClassifierSystem {
 		bestClassificationModeTime += System.currentTimeMillis();
 		
 
+		event = FlightRecorderEvents.begin(FlightRecorderEvents.EVALUATION);
 		accEvalTime3 = -System.currentTimeMillis();
-		results[8] = accEval.getMetric(this);
+		testEvaluation.evaluate(this, model.withClassificationMode(
+				CompiledInferenceModel.CLASSIFICATION_MODE_BEST_FITNESS, 0).classifyInstances(testMatches));
 		accEvalTime3 += System.currentTimeMillis();
-		
-		recEvalTime3 = -System.currentTimeMillis();
-		results[9] = recEval.getMetric(this);
-		recEvalTime3 += System.currentTimeMillis();
-		
-		hamEvalTime3 = -System.currentTimeMillis();
-		results[10] = hamEval.getMetric(this);
-		hamEvalTime3 += System.currentTimeMillis();
-		
-		testEvalTime3 = -System.currentTimeMillis();
-		results[11] = testEval.getMetric(this);
-		testEvalTime3 += System.currentTimeMillis();
+		if (event != null)
+			FlightRecorderEvents.commit(event, "best", testInstances.length, testEvaluation.getAccuracy(), testEvaluation.getExactMatch());
+		results[8] = testEvaluation.getAccuracy();
+		results[9] = testEvaluation.getRecall();
+		results[10] = testEvaluation.getHammingLoss();
+		results[11] = testEvaluation.getExactMatch();
 		
 		
 		MeanCoverageStatistic meanCoverage = new MeanCoverageStatistic();
@@ -375,36 +380,18 @@ public class MLSLCS extends AbstractLearningClassifierSystem {
 			buffer.write(System.getProperty("line.separator"));
 			buffer.write(String.valueOf(accEvalTime1));
 			buffer.write(System.getProperty("line.separator"));
-			buffer.write(String.valueOf(recEvalTime1));
-			buffer.write(System.getProperty("line.separator"));
-			buffer.write(String.valueOf(hamEvalTime1));
-			buffer.write(System.getProperty("line.separator"));
-			buffer.write(String.valueOf(testEvalTime1));
-			buffer.write(System.getProperty("line.separator"));
 			buffer.write(System.getProperty("line.separator"));
 			
 			buffer.write(String.valueOf(internalValidationCalibrationTime));
 			buffer.write(System.getProperty("line.separator"));
 			buffer.write(String.valueOf(accEvalTime2));
 			buffer.write(System.getProperty("line.separator"));
-			buffer.write(String.valueOf(recEvalTime2));
-			buffer.write(System.getProperty("line.separator"));
-			buffer.write(String.valueOf(hamEvalTime2));
-			buffer.write(System.getProperty("line.separator"));
-			buffer.write(String.valueOf(testEvalTime2));
-			buffer.write(System.getProperty("line.separator"));
 			buffer.write(System.getProperty("line.separator"));
 			
 			buffer.write(String.valueOf(bestClassificationModeTime));
 			buffer.write(System.getProperty("line.separator"));
 			buffer.write(String.valueOf(accEvalTime3));
 			buffer.write(System.getProperty("line.separator"));
-			buffer.write(String.valueOf(recEvalTime3));
-			buffer.write(System.getProperty("line.separator"));
-			buffer.write(String.valueOf(hamEvalTime3));
-			buffer.write(System.getProperty("line.separator"));
-			buffer.write(String.valueOf(testEvalTime3));
-			buffer.write(System.getProperty("line.separator"));
 			
 			buffer.flush();
 			buffer.close();
@@ -425,6 +412,41 @@ public class MLSLCS extends AbstractLearningClassifierSystem {
 	}
 	
 	
+	/**
+	 * Calibrate the voting threshold with internal validation, optimizing the accuracy on 
+	 * the training instances. The confidences of the instances are computed once and
+	 * reused for all probed thresholds.
+	 */
+	public void internalValidationCalibration() {
+		
+		final VotingClassificationStrategy str = rep.new VotingClassificationStrategy();
+		
+		rep.setClassificationStrategy(str);
+		
+		final InternalValidation ival = new InternalValidation(this, str, new MultiLabelEvaluation(instances, numberOfLabels));
+		ival.calibrate(10);
+	}
+
+	/**
+	 * Calibrate the voting threshold with internal validation, optimizing the accuracy on 
+	 * the training instances, whose confidences are already known.
+	 * 
+	 * @param trainConfidences
+	 *            the confidence vector of each training instance
+	 * @return the calibrated voting strategy, set as the classification strategy of the representation
+	 */
+	public VotingClassificationStrategy internalValidationCalibration(final float[][] trainConfidences) {
+		
+		final VotingClassificationStrategy str = rep.new VotingClassificationStrategy();
+		
+		rep.setClassificationStrategy(str);
+		
+		final InternalValidation ival = new InternalValidation(this, str, 
+				new MultiLabelEvaluation(instances, numberOfLabels), trainConfidences);
+		ival.calibrate(10);
+		return str;
+	}
+
 	public void internalValidationCalibration(ILCSMetric selfAcc) {
 		
 		final VotingClassificationStrategy str = rep.new VotingClassificationStrategy();
@@ -450,6 +472,26 @@ public class MLSLCS extends AbstractLearningClassifierSystem {
 		return str;
 	}
 
+	/**
+	 * Calibrate the voting threshold with pcut, from the already known confidences of the training instances.
+	 * 
+	 * @param trainConfidences
+	 *            the confidence vector of each training instance
+	 * @return the calibrated voting strategy, set as the classification strategy of the representation
+	 */
+	public VotingClassificationStrategy proportionalCutCalibration(final float[][] trainConfidences) {
+		
+		final VotingClassificationStrategy str = rep.new VotingClassificationStrategy();
+		
+		rep.setClassificationStrategy(str);
+
+		str.proportionalCutCalibration(trainConfidences);
+		
+		calibrateTime = str.calibrateTime;
+		
+		return str;
+	}
+
 	/**
 	 * Runs the Direct-ML-UCS.
 	 * 
@@ -466,78 +508,41 @@ public class MLSLCS extends AbstractLearningClassifierSystem {
 		deletionsFile = this.hookedMetricsFileDirectory + "/deletions.txt";
 		zeroCoverageFile = this.hookedMetricsFileDirectory + "/zeroCoverage.txt";	
 		
-		try {
-			final FileWriter fstream3 = new FileWriter(deletionsFile, false);
-			final FileWriter fstream4 = new FileWriter(zeroCoverageFile, false);
-
-			final BufferedWriter buffer3 = new BufferedWriter(fstream3);
-			final BufferedWriter buffer4 = new BufferedWriter(fstream4);
-			
-			buffer3.write("");
-			buffer3.flush();
-			buffer3.close();
-			
-			buffer4.write("");
-			buffer4.flush();
-			buffer4.close();
-		} 
-		catch (Exception e) {
-			e.printStackTrace();
+		OutputWriter.truncate(deletionsFile);
+		OutputWriter.truncate(zeroCoverageFile);
+		
+		final StringBuilder deletions = new StringBuilder();
+		for (int i = 0 ; i < qualityIndexOfDeleted.size(); i++ ){
+			deletions.append(qualityIndexOfDeleted.elementAt(i)) 
+					 .append("	") 
+					 .append(accuracyOfDeleted.elementAt(i)) 
+					 .append("	")
+					 .append(iteration.elementAt(i))
+					 .append("	")
+					 .append(originOfDeleted.elementAt(i))
+					 .append("	")
+					 .append(accuracyOfCoveredDeletion.elementAt(i))
+					 .append("	")
+					 .append(accuracyOfGaedDeletion.elementAt(i))
+					 .append("	")
+					 .append(qualityIndexOfClassifiersCoveredDeleted.elementAt(i))
+					 .append("	")
+					 .append(qualityIndexOfClassifiersGaedDeleted.elementAt(i))
+					 .append(System.getProperty("line.separator"));
 		}
-		
-
-		
-		try {
-			final FileWriter fstream = new FileWriter(hookedMetricsFileDirectory + "/deletions.txt", true);
-			final BufferedWriter buffer = new BufferedWriter(fstream);
-
-
-			for (int i = 0 ; i < qualityIndexOfDeleted.size(); i++ ){
-				buffer.write(
-							   qualityIndexOfDeleted.elementAt(i) 
-							 + "	" 
-							 + accuracyOfDeleted.elementAt(i) 
-							 + "	"
-							 + iteration.elementAt(i)
-							 + "	"
-							 + originOfDeleted.elementAt(i)
-							 + "	"
-							 + accuracyOfCoveredDeletion.elementAt(i)
-							 + "	"
-							 + accuracyOfGaedDeletion.elementAt(i)
-							 + "	"
-							 + qualityIndexOfClassifiersCoveredDeleted.elementAt(i)
-							 + "	"
-							 + qualityIndexOfClassifiersGaedDeleted.elementAt(i)
-							 + System.getProperty("line.separator"));
-			}
-			buffer.flush();
-			buffer.close();
-		} 
-		catch (Exception e) {
-			e.printStackTrace();
+		OutputWriter.append(deletionsFile, deletions.toString());
+		
+		final StringBuilder zeroCoverage = new StringBuilder();
+		for (int i = 0 ; i < rulePopulation.zeroCoverageVector.size(); i++ ){
+			zeroCoverage.append(rulePopulation.zeroCoverageVector.elementAt(i))	
+						.append("		")
+						.append(rulePopulation.zeroCoverageIterations.elementAt(i))
+						.append(System.getProperty("line.separator"));
 		}
+		OutputWriter.append(zeroCoverageFile, zeroCoverage.toString());
 		
-		
-		
-		try {
-			
-			final FileWriter fstream = new FileWriter(hookedMetricsFileDirectory + "/zeroCoverage.txt", true);
-			final BufferedWriter buffer = new BufferedWriter(fstream);
-			for (int i = 0 ; i < rulePopulation.zeroCoverageVector.size(); i++ ){
-				buffer.write(
-							rulePopulation.zeroCoverageVector.elementAt(i)	
-							+ "		"
-							+ rulePopulation.zeroCoverageIterations.elementAt(i)
-						   	+ System.getProperty("line.separator"));
-			}
-			buffer.flush();
-			buffer.close();
-		} 
-		
-		catch (Exception e) {
-			e.printStackTrace();
-		}
+		// the training logs are complete once train() returns
+		OutputWriter.sync();
 		
 
 	}
@@ -0,0 +1,190 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.sampling;
+
+import gr.auth.ee.lcs.utilities.RandomGenerator;
+import gr.auth.ee.lcs.utilities.SettingsLoader;
+
+/**
+ * A sampling schedule that oversamples the "hard" train instances, i.e. the ones whose match set 
+ * was small or whose correct sets needed covering the last time they were presented to the LCS.
+ * 
+ * Every instance has an integer difficulty counter. Covering raises it by samplingCoverPenalty,
+ * a match set smaller than samplingSmallMatchSetRatio times the running mean match set size raises it by one,
+ * while any other outcome halves it. Each epoch draws (with replacement) samplingEpochFraction * |train set| 
+ * instances, with probabilities proportional to (1 + difficulty). The first epoch is a plain shuffled pass over all
+ * instances, so that every counter gets initialized.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public final class HardInstancePrioritizedSamplingSchedule implements IInstanceSamplingSchedule {
+
+	/**
+	 * Serialization id for versioning.
+	 */
+	private static final long serialVersionUID = 3511514721590346631L;
+
+	/**
+	 * The fraction of the train set size that forms an epoch.
+	 */
+	private final double EPOCH_FRACTION = SettingsLoader.getNumericSetting("samplingEpochFraction", 1);
+
+	/**
+	 * The difficulty increase when an instance needed covering.
+	 */
+	private final int COVER_PENALTY = (int) SettingsLoader.getNumericSetting("samplingCoverPenalty", 4);
+
+	/**
+	 * The upper bound of the difficulty counters, so that a few hard instances cannot monopolize the epoch.
+	 */
+	private final int MAX_DIFFICULTY = (int) SettingsLoader.getNumericSetting("samplingMaxDifficulty", 32);
+
+	/**
+	 * A match set is considered small when its size is below this ratio of the running mean match set size.
+	 */
+	private final double SMALL_MATCH_SET_RATIO = SettingsLoader.getNumericSetting("samplingSmallMatchSetRatio", .5);
+
+	/**
+	 * The learning rate of the running mean match set size.
+	 */
+	private static final double MEAN_RATE = .01;
+
+	/**
+	 * The difficulty counter of every train instance.
+	 */
+	private final int[] difficulty;
+
+	/**
+	 * The cumulative sampling weights, rebuilt at every epoch.
+	 */
+	private final long[] cumulativeWeights;
+
+	/**
+	 * The order of the train instances for the current epoch.
+	 */
+	private final int[] order;
+
+	/**
+	 * The order used for the first (full) epoch.
+	 */
+	private final int[] firstEpochOrder;
+
+	/**
+	 * The running mean of the match set size.
+	 */
+	private double meanMatchSetSize = 0;
+
+	/**
+	 * The number of epochs served so far.
+	 */
+	private int epochsServed = 0;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param numberOfInstances
+	 *            the number of train instances
+	 */
+	public HardInstancePrioritizedSamplingSchedule(final int numberOfInstances) {
+		difficulty = new int[numberOfInstances];
+		cumulativeWeights = new long[numberOfInstances];
+		order = new int[Math.max(1, (int) Math.ceil(EPOCH_FRACTION * numberOfInstances))];
+		
+		firstEpochOrder = new int[numberOfInstances];
+		for (int i = 0; i < numberOfInstances; i++)
+			firstEpochOrder[i] = i;
+	}
+
+	/**
+	 * Returns the current difficulty of a train instance.
+	 * 
+	 * @param instanceIndex
+	 *            the index of the train instance
+	 * @return the instance's difficulty counter
+	 */
+	public int getDifficulty(final int instanceIndex) {
+		return difficulty[instanceIndex];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.sampling.IInstanceSamplingSchedule#getEpochOrder(RandomGenerator)
+	 */
+	@Override
+	public int[] getEpochOrder(final RandomGenerator random) {
+		
+		if (epochsServed++ == 0) {
+			ShuffledSamplingSchedule.shuffle(firstEpochOrder, 0, firstEpochOrder.length, random);
+			return firstEpochOrder;
+		}
+		
+		long weightSum = 0;
+		for (int i = 0; i < difficulty.length; i++) {
+			weightSum += 1 + difficulty[i];
+			cumulativeWeights[i] = weightSum;
+		}
+		
+		for (int j = 0; j < order.length; j++) {
+			final long rand = (long) (random.nextDouble() * weightSum);
+			
+			// find the first instance whose cumulative weight exceeds rand
+			int low = 0;
+			int high = cumulativeWeights.length - 1;
+			while (low < high) {
+				final int middle = (low + high) >>> 1;
+				if (cumulativeWeights[middle] > rand)
+					high = middle;
+				else
+					low = middle + 1;
+			}
+			order[j] = low;
+		}
+		
+		return order;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.sampling.IInstanceSamplingSchedule#recordOutcome(int, int, int)
+	 */
+	@Override
+	public void recordOutcome(final int instanceIndex, 
+							   final int matchSetSize,
+							   final int coversOccured) {
+		
+		if (coversOccured > 0) 
+			difficulty[instanceIndex] = Math.min(MAX_DIFFICULTY, difficulty[instanceIndex] + COVER_PENALTY);
+		else if (matchSetSize < SMALL_MATCH_SET_RATIO * meanMatchSetSize) 
+			difficulty[instanceIndex] = Math.min(MAX_DIFFICULTY, difficulty[instanceIndex] + 1);
+		else 
+			difficulty[instanceIndex] >>= 1;
+		
+		meanMatchSetSize += MEAN_RATE * (matchSetSize - meanMatchSetSize);
+	}
+
+}
@@ -0,0 +1,65 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.sampling;
+
+import gr.auth.ee.lcs.utilities.RandomGenerator;
+
+import java.io.Serializable;
+
+/**
+ * A strategy deciding which train instances are presented to the LCS, and in what order,
+ * during a single training epoch (one call of the inner loop of trainSet()).
+ * Schedules are serializable, so that their state can be saved in training checkpoints.
+ * 
+ * @stereotype Strategy
+ * 
+ * @author F. Tzima and M. Allamanis
+ */
+public interface IInstanceSamplingSchedule extends Serializable {
+
+	/**
+	 * Returns the indices of the train instances to be used in the next epoch, 
+	 * in the order they should be presented to the LCS. 
+	 * An index may appear more than once and the array length may differ from the train set size.
+	 * 
+	 * @param random
+	 *            the random number generator of the LCS, to draw any random choices from
+	 * @return the instance indices for the next epoch
+	 */
+	int[] getEpochOrder(RandomGenerator random);
+
+	/**
+	 * Informs the schedule about the outcome of training with a single instance.
+	 * 
+	 * @param instanceIndex
+	 *            the index of the train instance just used
+	 * @param matchSetSize
+	 *            the number of macroclassifiers in the instance's match set
+	 * @param coversOccured
+	 *            the number of covering classifiers created for the instance
+	 */
+	void recordOutcome(int instanceIndex, int matchSetSize, int coversOccured);
+
+}
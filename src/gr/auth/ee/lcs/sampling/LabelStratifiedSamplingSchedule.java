@@ -0,0 +1,150 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.sampling;
+
+import gr.auth.ee.lcs.utilities.FlatDataset;
+import gr.auth.ee.lcs.utilities.RandomGenerator;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Vector;
+
+/**
+ * A label-stratified sampling schedule. The train instances are partitioned according to their
+ * label combination (as in InstancesUtility.partitionInstances()) and every epoch presents all of them once,
+ * interleaving the partitions so that each label combination is spread evenly over the epoch.
+ * The order inside each partition is reshuffled at every epoch.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public final class LabelStratifiedSamplingSchedule implements IInstanceSamplingSchedule {
+
+	/**
+	 * Serialization id for versioning.
+	 */
+	private static final long serialVersionUID = 8948961716597870245L;
+
+	/**
+	 * The scale used to turn the (fractional) position keys into integers.
+	 */
+	private static final double KEY_SCALE = 1 << 30;
+
+	/**
+	 * The instance indices of every partition (label combination).
+	 */
+	private final int[][] partitions;
+
+	/**
+	 * The position keys of the current epoch, packed with the instance indices for sorting.
+	 */
+	private final long[] packedKeys;
+
+	/**
+	 * The order of the train instances for the current epoch.
+	 */
+	private final int[] order;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param instances
+	 *            the train instances
+	 */
+	public LabelStratifiedSamplingSchedule(final FlatDataset instances) {
+		
+		final HashMap<String, Vector<Integer>> combinations = new HashMap<String, Vector<Integer>>();
+		final Vector<Vector<Integer>> partitionsFound = new Vector<Vector<Integer>>();
+		
+		final int numberOfLabels = instances.getNumberOfLabels();
+		for (int i = 0; i < instances.getNumberOfInstances(); i++) {
+			final StringBuilder combination = new StringBuilder(numberOfLabels);
+			for (int l = 0; l < numberOfLabels; l++)
+				combination.append(instances.isLabelActive(i, l) ? '1' : '0');
+			
+			Vector<Integer> partition = combinations.get(combination.toString());
+			if (partition == null) {
+				partition = new Vector<Integer>();
+				combinations.put(combination.toString(), partition);
+				partitionsFound.add(partition);
+			}
+			partition.add(i);
+		}
+		
+		partitions = new int[partitionsFound.size()][];
+		for (int p = 0; p < partitions.length; p++) {
+			partitions[p] = new int[partitionsFound.get(p).size()];
+			for (int k = 0; k < partitions[p].length; k++)
+				partitions[p][k] = partitionsFound.get(p).get(k);
+		}
+		
+		packedKeys = new long[instances.getNumberOfInstances()];
+		order = new int[instances.getNumberOfInstances()];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.sampling.IInstanceSamplingSchedule#getEpochOrder(RandomGenerator)
+	 */
+	@Override
+	public int[] getEpochOrder(final RandomGenerator random) {
+		
+		/*
+		 * The k-th instance of a partition of size m gets the key (k + offset) / m, 
+		 * so that sorting by key interleaves the partitions proportionally to their size.
+		 */
+		int position = 0;
+		for (int p = 0; p < partitions.length; p++) {
+			final int[] partition = partitions[p];
+			ShuffledSamplingSchedule.shuffle(partition, 0, partition.length, random);
+			
+			final double offset = random.nextDouble();
+			for (int k = 0; k < partition.length; k++) {
+				final long key = (long) (KEY_SCALE * (k + offset) / partition.length);
+				packedKeys[position++] = (key << 32) | partition[k];
+			}
+		}
+		
+		Arrays.sort(packedKeys);
+		for (int i = 0; i < order.length; i++)
+			order[i] = (int) packedKeys[i];
+		
+		return order;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.sampling.IInstanceSamplingSchedule#recordOutcome(int, int, int)
+	 */
+	@Override
+	public void recordOutcome(final int instanceIndex, 
+							   final int matchSetSize,
+							   final int coversOccured) {
+		// Nothing here!
+	}
+
+}
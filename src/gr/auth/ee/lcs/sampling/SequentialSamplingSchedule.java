@@ -0,0 +1,81 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.sampling;
+
+import gr.auth.ee.lcs.utilities.RandomGenerator;
+
+/**
+ * The default sampling schedule. Every epoch presents all train instances once, in array order.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public final class SequentialSamplingSchedule implements IInstanceSamplingSchedule {
+
+	/**
+	 * Serialization id for versioning.
+	 */
+	private static final long serialVersionUID = 7134520100073619928L;
+
+	/**
+	 * The (constant) order of the train instances.
+	 */
+	private final int[] order;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param numberOfInstances
+	 *            the number of train instances
+	 */
+	public SequentialSamplingSchedule(final int numberOfInstances) {
+		order = new int[numberOfInstances];
+		for (int i = 0; i < numberOfInstances; i++)
+			order[i] = i;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.sampling.IInstanceSamplingSchedule#getEpochOrder(RandomGenerator)
+	 */
+	@Override
+	public int[] getEpochOrder(final RandomGenerator random) {
+		return order;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.sampling.IInstanceSamplingSchedule#recordOutcome(int, int, int)
+	 */
+	@Override
+	public void recordOutcome(final int instanceIndex, 
+							   final int matchSetSize,
+							   final int coversOccured) {
+		// Nothing here!
+	}
+
+}
@@ -0,0 +1,106 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.sampling;
+
+import gr.auth.ee.lcs.utilities.RandomGenerator;
+
+/**
+ * A sampling schedule that presents all train instances once per epoch, in a new random order every time.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public final class ShuffledSamplingSchedule implements IInstanceSamplingSchedule {
+
+	/**
+	 * Serialization id for versioning.
+	 */
+	private static final long serialVersionUID = 2738660828305197205L;
+
+	/**
+	 * The order of the train instances, reshuffled in place at every epoch.
+	 */
+	private final int[] order;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param numberOfInstances
+	 *            the number of train instances
+	 */
+	public ShuffledSamplingSchedule(final int numberOfInstances) {
+		order = new int[numberOfInstances];
+		for (int i = 0; i < numberOfInstances; i++)
+			order[i] = i;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.sampling.IInstanceSamplingSchedule#getEpochOrder(RandomGenerator)
+	 */
+	@Override
+	public int[] getEpochOrder(final RandomGenerator random) {
+		shuffle(order, 0, order.length, random);
+		return order;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see gr.auth.ee.lcs.sampling.IInstanceSamplingSchedule#recordOutcome(int, int, int)
+	 */
+	@Override
+	public void recordOutcome(final int instanceIndex, 
+							   final int matchSetSize,
+							   final int coversOccured) {
+		// Nothing here!
+	}
+
+	/**
+	 * Fisher-Yates shuffle of a part of an index array.
+	 * 
+	 * @param array
+	 *            the array to shuffle
+	 * @param from
+	 *            the first position (inclusive) of the part to shuffle
+	 * @param to
+	 *            the last position (exclusive) of the part to shuffle
+	 * @param random
+	 *            the random number generator to use
+	 */
+	static void shuffle(final int[] array, 
+						 final int from, 
+						 final int to,
+						 final RandomGenerator random) {
+		for (int i = to - 1; i > from; i--) {
+			final int j = from + random.nextInt(i - from + 1);
+			final int temp = array[i];
+			array[i] = array[j];
+			array[j] = temp;
+		}
+	}
+
+}
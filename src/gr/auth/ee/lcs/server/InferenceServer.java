@@ -0,0 +1,563 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.server;
+
+import gr.auth.ee.lcs.AbstractLearningClassifierSystem;
+import gr.auth.ee.lcs.calibration.ExactProportionalCut;
+import gr.auth.ee.lcs.classifiers.ClassifierSet;
+import gr.auth.ee.lcs.classifiers.ClassifierSetBinaryFormat;
+import gr.auth.ee.lcs.classifiers.CompiledInferenceModel;
+import gr.auth.ee.lcs.classifiers.MatchMatrix;
+import gr.auth.ee.lcs.classifiers.VoteContributionPruning;
+import gr.auth.ee.lcs.data.representations.complex.ComplexRepresentation;
+import gr.auth.ee.lcs.utilities.ArffDataset;
+import gr.auth.ee.lcs.utilities.InstancesUtility;
+import gr.auth.ee.lcs.utilities.SettingsLoader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local inference server. Loads a rule population saved by saveRules()/saveClassifierSet(), 
+ * compiles it and answers classification requests over HTTP/JSON, micro-batching concurrent requests.
+ * 
+ * Endpoints:
+ * POST /classify with {"instance": [v1, v2, ...]} returns {"labels": [l1, l2, ...]}, 
+ * with {"instances": [[...], [...]]} returns {"labels": [[...], [...]]}.
+ * Instance vectors hold the attribute values in the order of the train file (nominal values as indices, 
+ * null for missing); label values, if present, are ignored. Vectors of another length are answered with 400.
+ * GET /stats returns the batching statistics and the latency percentiles (in microseconds).
+ * GET /model returns the description of the served model.
+ * 
+ * Runs fully offline: the representation is built from the local train file (setting filename).
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public final class InferenceServer {
+
+	/**
+	 * Serve with the best fitness classification mode.
+	 */
+	public static final int SERVER_MODE_BEST_FITNESS = 0;
+
+	/**
+	 * Serve with voting, using the threshold of the serverVoteThreshold setting.
+	 */
+	public static final int SERVER_MODE_VOTING_FIXED = 1;
+
+	/**
+	 * Serve with voting, using a threshold calibrated with pcut on the train file.
+	 */
+	public static final int SERVER_MODE_VOTING_PCUT = 2;
+
+	/**
+	 * The percentiles reported by /stats.
+	 */
+	private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+	/**
+	 * The names of the reported percentiles.
+	 */
+	private static final String[] PERCENTILE_NAMES = { "p50", "p90", "p99", "p99.9" };
+
+	/**
+	 * The micro-batching classifier answering the requests.
+	 */
+	private final MicroBatchingClassifier classifier;
+
+	/**
+	 * The HTTP server.
+	 */
+	private final HttpServer httpServer;
+
+	/**
+	 * The threads handling the HTTP requests.
+	 */
+	private final ExecutorService requestThreads;
+
+	/**
+	 * Constructor. The server is not started.
+	 * 
+	 * @param batchingClassifier
+	 *            the classifier answering the requests
+	 * @param host
+	 *            the (local) address to bind to
+	 * @param port
+	 *            the port to listen to
+	 * @param threads
+	 *            the number of threads handling requests. Requests block while their batch fills, so this 
+	 *            bounds the number of requests that can be batched together
+	 * @throws IOException
+	 *             if the server cannot bind
+	 */
+	public InferenceServer(final MicroBatchingClassifier batchingClassifier, 
+						   final String host, 
+						   final int port, 
+						   final int threads) throws IOException {
+		classifier = batchingClassifier;
+		httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getByName(host), port), 0);
+		requestThreads = Executors.newFixedThreadPool(Math.max(1, threads));
+		httpServer.setExecutor(requestThreads);
+		
+		httpServer.createContext("/classify", new HttpHandler() {
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				handleClassify(exchange);
+			}
+		});
+		httpServer.createContext("/stats", new HttpHandler() {
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				respond(exchange, 200, getStatistics());
+			}
+		});
+		httpServer.createContext("/model", new HttpHandler() {
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				respond(exchange, 200, getModelDescription());
+			}
+		});
+	}
+
+	/**
+	 * Start serving.
+	 */
+	public void start() {
+		httpServer.start();
+	}
+
+	/**
+	 * Stop serving, waiting at most the given time for the requests in progress.
+	 * 
+	 * @param delaySeconds
+	 *            the maximum time to wait
+	 */
+	public void stop(final int delaySeconds) {
+		httpServer.stop(delaySeconds);
+		classifier.shutdown();
+		requestThreads.shutdown();
+	}
+
+	/**
+	 * Returns the address the server listens to.
+	 * 
+	 * @return the address
+	 */
+	public InetSocketAddress getAddress() {
+		return httpServer.getAddress();
+	}
+
+	/**
+	 * Answer a classification request.
+	 * 
+	 * @param exchange
+	 *            the HTTP exchange
+	 * @throws IOException
+	 *             if the response cannot be sent
+	 */
+	private void handleClassify(final HttpExchange exchange) throws IOException {
+		if (!exchange.getRequestMethod().equals("POST")) {
+			respond(exchange, 405, "{\"error\": \"use POST\"}");
+			return;
+		}
+		
+		final String body = readBody(exchange.getRequestBody());
+		final boolean single = body.indexOf("\"instances\"") < 0 && body.indexOf("\"instance\"") >= 0;
+		final double[][] instances = parseInstances(body);
+		if (instances == null) {
+			respond(exchange, 400, "{\"error\": \"expected {\\\"instance\\\": [...]} or {\\\"instances\\\": [[...], ...]}\"}");
+			return;
+		}
+		
+		final CompiledInferenceModel model = classifier.getModel();
+		final int numberOfAttributes = model.getNumberOfAttributes();
+		for (int i = 0; i < instances.length; i++) {
+			if (instances[i].length != numberOfAttributes && instances[i].length != numberOfAttributes + model.getNumberOfLabels()) {
+				respond(exchange, 400, "{\"error\": \"instance " + i + " has " + instances[i].length + " values, expected " 
+						+ numberOfAttributes + " attribute values (optionally followed by the label values)\"}");
+				return;
+			}
+		}
+
+		final int[][] labels;
+		try {
+			labels = classifier.classify(instances);
+		} catch (RuntimeException e) {
+			// the details stay in the server log, the client gets a fixed message
+			e.printStackTrace();
+			respond(exchange, 500, "{\"error\": \"classification failed\"}");
+			return;
+		}
+		if (labels == null) {
+			respond(exchange, 503, "{\"error\": \"server shutting down\"}");
+			return;
+		}
+		
+		final StringBuilder response = new StringBuilder("{\"labels\": ");
+		if (single) {
+			appendArray(response, labels[0]);
+		} else {
+			response.append('[');
+			for (int i = 0; i < labels.length; i++) {
+				if (i > 0)
+					response.append(", ");
+				appendArray(response, labels[i]);
+			}
+			response.append(']');
+		}
+		response.append('}');
+		respond(exchange, 200, response.toString());
+	}
+
+	/**
+	 * Returns the batching statistics and latency percentiles as JSON.
+	 * 
+	 * @return the statistics
+	 */
+	public String getStatistics() {
+		final LatencyRecorder latencies = classifier.getLatencies();
+		final long[] values = latencies.getPercentiles(PERCENTILES);
+		
+		final StringBuilder stats = new StringBuilder();
+		stats.append("{\"instances\": ").append(classifier.getNumberOfInstances());
+		stats.append(", \"batches\": ").append(classifier.getNumberOfBatches());
+		stats.append(", \"meanBatchSize\": ").append(classifier.getMeanBatchSize());
+		stats.append(", \"latencyMicros\": {");
+		for (int i = 0; i < values.length; i++)
+			stats.append('"').append(PERCENTILE_NAMES[i]).append("\": ").append(values[i] / 1000.).append(", ");
+		stats.append("\"max\": ").append(latencies.getMax() / 1000.).append("}}");
+		return stats.toString();
+	}
+
+	/**
+	 * Returns the description of the served model as JSON.
+	 * 
+	 * @return the description
+	 */
+	public String getModelDescription() {
+		final CompiledInferenceModel model = classifier.getModel();
+		final boolean voting = model.getClassificationMode() == CompiledInferenceModel.CLASSIFICATION_MODE_VOTING;
+		return "{\"rules\": " + model.getNumberOfRules() 
+				+ ", \"labels\": " + model.getNumberOfLabels()
+				+ ", \"classificationMode\": \"" + (voting ? "voting" : "bestFitness") + "\""
+				+ (voting ? ", \"voteThreshold\": " + model.getVoteThreshold() : "") + "}";
+	}
+
+	/**
+	 * Send a JSON response.
+	 * 
+	 * @param exchange
+	 *            the HTTP exchange
+	 * @param status
+	 *            the HTTP status code
+	 * @param json
+	 *            the response body
+	 * @throws IOException
+	 *             if the response cannot be sent
+	 */
+	private static void respond(final HttpExchange exchange, final int status, final String json) throws IOException {
+		final byte[] bytes = json.getBytes("UTF-8");
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, bytes.length);
+		final OutputStream out = exchange.getResponseBody();
+		out.write(bytes);
+		out.close();
+	}
+
+	/**
+	 * Read a request body.
+	 * 
+	 * @param in
+	 *            the body stream
+	 * @return the body
+	 * @throws IOException
+	 *             if the body cannot be read
+	 */
+	private static String readBody(final InputStream in) throws IOException {
+		final ByteArrayOutputStream body = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) > 0)
+			body.write(buffer, 0, read);
+		in.close();
+		return body.toString("UTF-8");
+	}
+
+	/**
+	 * Append an array of labels as JSON.
+	 * 
+	 * @param json
+	 *            the JSON being built
+	 * @param labels
+	 *            the labels
+	 */
+	private static void appendArray(final StringBuilder json, final int[] labels) {
+		json.append('[');
+		for (int i = 0; i < labels.length; i++) {
+			if (i > 0)
+				json.append(", ");
+			json.append(labels[i]);
+		}
+		json.append(']');
+	}
+
+	/**
+	 * Parse the instance vectors of a classification request: the array of an "instance" 
+	 * key, the array of arrays of an "instances" key, or a bare array (of arrays).
+	 * 
+	 * @param body
+	 *            the request body
+	 * @return the instance vectors, or null if the body is malformed
+	 */
+	static double[][] parseInstances(final String body) {
+		int key = body.indexOf("\"instances\"");
+		if (key < 0)
+			key = body.indexOf("\"instance\"");
+		final int start = body.indexOf('[', Math.max(key, 0));
+		if (start < 0)
+			return null;
+
+		int next = start + 1;
+		while (next < body.length() && Character.isWhitespace(body.charAt(next)))
+			next++;
+		final boolean nested = next < body.length() && body.charAt(next) == '[';
+
+		final int[] position = { start };
+		if (!nested) {
+			final double[] instance = parseNumberArray(body, position);
+			return instance == null ? null : new double[][] { instance };
+		}
+
+		// array of arrays
+		final Vector<double[]> instances = new Vector<double[]>();
+		position[0]++;
+		while (true) {
+			skipWhitespace(body, position);
+			if (position[0] >= body.length())
+				return null;
+			final char c = body.charAt(position[0]);
+			if (c == ']')
+				break;
+			if (c == ',') {
+				position[0]++;
+				continue;
+			}
+			final double[] instance = parseNumberArray(body, position);
+			if (instance == null)
+				return null;
+			instances.add(instance);
+		}
+		return instances.toArray(new double[instances.size()][]);
+	}
+
+	/**
+	 * Parse an array of numbers (null for missing values) starting at the given position.
+	 * 
+	 * @param body
+	 *            the text
+	 * @param position
+	 *            the position of the opening bracket, moved after the closing bracket
+	 * @return the numbers, or null if malformed
+	 */
+	private static double[] parseNumberArray(final String body, final int[] position) {
+		skipWhitespace(body, position);
+		if (position[0] >= body.length() || body.charAt(position[0]) != '[')
+			return null;
+		position[0]++;
+
+		final Vector<Double> values = new Vector<Double>();
+		while (true) {
+			skipWhitespace(body, position);
+			if (position[0] >= body.length())
+				return null;
+			final char c = body.charAt(position[0]);
+			if (c == ']') {
+				position[0]++;
+				break;
+			}
+			if (c == ',') {
+				position[0]++;
+				continue;
+			}
+			if (body.startsWith("null", position[0])) {
+				values.add(Double.NaN);
+				position[0] += 4;
+				continue;
+			}
+			
+			final int begin = position[0];
+			while (position[0] < body.length() && "+-.0123456789eE".indexOf(body.charAt(position[0])) >= 0)
+				position[0]++;
+			if (begin == position[0])
+				return null;
+			try {
+				values.add(Double.parseDouble(body.substring(begin, position[0])));
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+
+		final double[] result = new double[values.size()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = values.get(i);
+		return result;
+	}
+
+	/**
+	 * Move the position after any whitespace.
+	 * 
+	 * @param body
+	 *            the text
+	 * @param position
+	 *            the position to move
+	 */
+	private static void skipWhitespace(final String body, final int[] position) {
+		while (position[0] < body.length() && Character.isWhitespace(body.charAt(position[0])))
+			position[0]++;
+	}
+
+	/**
+	 * Load a saved rule population and compile it, according to the settings 
+	 * (lcsType, filename, serverClassificationMode, serverVoteThreshold, serverPruneRules).
+	 * 
+	 * @param rulesFile
+	 *            the file written by saveRules()/saveClassifierSet()
+	 * @return the compiled model
+	 * @throws IllegalStateException
+	 *             if the rules cannot be loaded or compiled
+	 */
+	public static CompiledInferenceModel loadModel(final String rulesFile) {
+		final String lcsType = SettingsLoader.getStringSetting("lcsType", "");
+		final AbstractLearningClassifierSystem lcs;
+		try {
+			lcs = (AbstractLearningClassifierSystem) Class.forName(lcsType).getDeclaredConstructor().newInstance();
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Cannot create the LCS of type " + lcsType, e);
+		}
+
+		if (!(lcs.getClassifierTransformBridge() instanceof ComplexRepresentation))
+			throw new IllegalStateException("The representation of " + lcs.getClass().getName() + " cannot be compiled");
+		final ComplexRepresentation representation = (ComplexRepresentation) lcs.getClassifierTransformBridge();
+		
+		final int mode = (int) SettingsLoader.getNumericSetting("serverClassificationMode", SERVER_MODE_BEST_FITNESS);
+		final int compiledMode = (mode == SERVER_MODE_BEST_FITNESS) 
+				? CompiledInferenceModel.CLASSIFICATION_MODE_BEST_FITNESS : CompiledInferenceModel.CLASSIFICATION_MODE_VOTING;
+		final double threshold = (mode == SERVER_MODE_VOTING_FIXED) 
+				? SettingsLoader.getNumericSetting("serverVoteThreshold", 0.5) : 0;
+		
+		final CompiledInferenceModel model;
+		if (ClassifierSetBinaryFormat.isBinaryFile(rulesFile)) {
+			// compiled directly from the chromosome and weight columns, without constructing classifiers
+			model = ClassifierSetBinaryFormat.openModel(rulesFile, representation, compiledMode, threshold);
+		} else {
+			final ClassifierSet rules = ClassifierSet.openClassifierSet(rulesFile, 
+					lcs.getRulePopulation().getPopulationControlStrategy(), lcs);
+			model = (rules == null) ? null : representation.compile(rules, compiledMode, threshold);
+		}
+		if (model == null)
+			throw new IllegalStateException("Could not load a model from " + rulesFile);
+		
+		final boolean prune = SettingsLoader.getNumericSetting("serverPruneRules", 0) > 0;
+		if (mode != SERVER_MODE_VOTING_PCUT && !prune)
+			return model;
+		
+		// pcut and pruning replay the train file
+		final double[][] instances;
+		try {
+			instances = ArffDataset.load(SettingsLoader.getStringSetting("filename", "")).getInstances();
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not read the train file to calibrate or prune the model", e);
+		}
+		
+		CompiledInferenceModel served = model;
+		if (mode == SERVER_MODE_VOTING_PCUT) {
+			final float[][] confidences = model.getConfidences(new MatchMatrix(model, instances));
+			final float pcutThreshold = new ExactProportionalCut().calibrate(
+					(float) InstancesUtility.getLabelCardinality(instances), confidences);
+			System.out.println("Threshold (pcut) set to " + pcutThreshold);
+			served = model.withClassificationMode(CompiledInferenceModel.CLASSIFICATION_MODE_VOTING, pcutThreshold);
+		}
+		
+		if (!prune)
+			return served;
+		
+		final VoteContributionPruning pruning = new VoteContributionPruning(served, instances);
+		System.out.println("Pruned " + served.getNumberOfRules() + " rules to " + pruning.getNumberOfKeptRules());
+		return pruning.getPrunedModel();
+	}
+
+	/**
+	 * Start a server, as configured in the settings. The rules file is the first argument, 
+	 * or the serverRulesFile (or else loadRulesFile) setting.
+	 * 
+	 * @param args
+	 *            the optional rules file
+	 * @throws IOException
+	 *             if the server cannot bind
+	 * @throws IllegalStateException
+	 *             if the model cannot be loaded, in which case the server is not started
+	 */
+	public static void main(final String[] args) throws IOException {
+		final String rulesFile = (args.length > 0) ? args[0] 
+				: SettingsLoader.getStringSetting("serverRulesFile", SettingsLoader.getStringSetting("loadRulesFile", ""));
+		
+		final CompiledInferenceModel model = loadModel(rulesFile);
+
+		final MicroBatchingClassifier batchingClassifier = new MicroBatchingClassifier(model,
+				(int) SettingsLoader.getNumericSetting("serverMaxBatchSize", 64),
+				(long) SettingsLoader.getNumericSetting("serverMaxBatchDelayMicros", 2000),
+				(int) SettingsLoader.getNumericSetting("serverLatencyWindow", 100000),
+				(long) SettingsLoader.getNumericSetting("serverRequestTimeoutMillis", 30000));
+
+		final InferenceServer server = new InferenceServer(batchingClassifier,
+				SettingsLoader.getStringSetting("serverHost", "127.0.0.1"),
+				(int) SettingsLoader.getNumericSetting("serverPort", 8765),
+				(int) SettingsLoader.getNumericSetting("serverThreads", 64));
+		
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				server.stop(1);
+			}
+		});
+		
+		server.start();
+		System.out.println("Serving " + model.getNumberOfRules() + " rules on http://" 
+				+ server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/classify");
+	}
+}
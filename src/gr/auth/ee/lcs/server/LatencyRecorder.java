@@ -0,0 +1,121 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.server;
+
+import java.util.Arrays;
+
+/**
+ * Records the latencies of the most recent requests in a ring buffer and computes their percentiles.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public final class LatencyRecorder {
+
+	/**
+	 * The latencies (in nanoseconds) of the most recent requests.
+	 */
+	private final long[] latencies;
+
+	/**
+	 * The total number of latencies recorded.
+	 */
+	private long numberOfRecorded = 0;
+
+	/**
+	 * The largest latency ever recorded.
+	 */
+	private long maxLatency = 0;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param capacity
+	 *            the number of most recent latencies kept for the percentiles
+	 */
+	public LatencyRecorder(final int capacity) {
+		latencies = new long[Math.max(1, capacity)];
+	}
+
+	/**
+	 * Record the latency of a request.
+	 * 
+	 * @param nanos
+	 *            the latency in nanoseconds
+	 */
+	public synchronized void record(final long nanos) {
+		latencies[(int) (numberOfRecorded % latencies.length)] = nanos;
+		numberOfRecorded++;
+		if (nanos > maxLatency)
+			maxLatency = nanos;
+	}
+
+	/**
+	 * Returns the total number of latencies recorded.
+	 * 
+	 * @return the number of requests recorded
+	 */
+	public synchronized long getCount() {
+		return numberOfRecorded;
+	}
+
+	/**
+	 * Returns the largest latency ever recorded.
+	 * 
+	 * @return the maximum latency in nanoseconds
+	 */
+	public synchronized long getMax() {
+		return maxLatency;
+	}
+
+	/**
+	 * Computes percentiles over the most recent latencies (nearest rank).
+	 * 
+	 * @param percentiles
+	 *            the percentiles to compute, in [0, 100]
+	 * @return the latency (in nanoseconds) of each percentile, 0 if nothing was recorded
+	 */
+	public long[] getPercentiles(final double[] percentiles) {
+		final long[] sorted;
+		synchronized (this) {
+			sorted = Arrays.copyOf(latencies, (int) Math.min(numberOfRecorded, latencies.length));
+		}
+		Arrays.sort(sorted);
+
+		final long[] result = new long[percentiles.length];
+		if (sorted.length == 0)
+			return result;
+		
+		for (int i = 0; i < percentiles.length; i++) {
+			int rank = (int) Math.ceil(percentiles[i] / 100. * sorted.length) - 1;
+			if (rank < 0)
+				rank = 0;
+			if (rank >= sorted.length)
+				rank = sorted.length - 1;
+			result[i] = sorted[rank];
+		}
+		return result;
+	}
+}
@@ -0,0 +1,366 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.server;
+
+import gr.auth.ee.lcs.classifiers.CompiledInferenceModel;
+
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Classifies instances submitted concurrently by grouping them in micro-batches.
+ * A dispatcher thread collects pending instances until either the maximum batch size is reached 
+ * or the oldest pending instance has waited for the latency budget, and classifies the batch 
+ * through the batch classification path of the compiled model.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public final class MicroBatchingClassifier {
+
+	/**
+	 * An instance waiting to be classified.
+	 */
+	private static final class PendingInstance {
+
+		/**
+		 * The instance vector.
+		 */
+		private final double[] instance;
+
+		/**
+		 * Counted down when the instance (and the other instances of its request) are classified.
+		 */
+		private final CountDownLatch done;
+
+		/**
+		 * The time the instance was submitted.
+		 */
+		private final long submitted;
+
+		/**
+		 * The labels the instance is classified in.
+		 */
+		private int[] labels;
+
+		/**
+		 * The exception thrown when classifying the batch of the instance, if any.
+		 */
+		private RuntimeException failure;
+
+		private PendingInstance(final double[] instance, final CountDownLatch done) {
+			this.instance = instance;
+			this.done = done;
+			this.submitted = System.nanoTime();
+		}
+	}
+
+	/**
+	 * The compiled model used for classification.
+	 */
+	private final CompiledInferenceModel model;
+
+	/**
+	 * The maximum number of instances in a batch.
+	 */
+	private final int maxBatchSize;
+
+	/**
+	 * The longest time (in nanoseconds) an instance waits for other instances to join its batch.
+	 */
+	private final long maxBatchDelay;
+
+	/**
+	 * The longest time (in milliseconds) a request waits for its instances to be classified.
+	 */
+	private final long requestTimeout;
+
+	/**
+	 * The instances waiting to be classified.
+	 */
+	private final LinkedBlockingQueue<PendingInstance> queue = new LinkedBlockingQueue<PendingInstance>();
+
+	/**
+	 * The latencies of the classified instances, from submission to classification.
+	 */
+	private final LatencyRecorder latencies;
+
+	/**
+	 * The thread forming and classifying the batches.
+	 */
+	private final Thread dispatcher;
+
+	/**
+	 * The number of batches classified.
+	 */
+	private long numberOfBatches = 0;
+
+	/**
+	 * The number of instances classified.
+	 */
+	private long numberOfInstances = 0;
+
+	/**
+	 * Set when the classifier is shut down.
+	 */
+	private volatile boolean running = true;
+
+	/**
+	 * Constructor. Starts the dispatcher thread.
+	 * 
+	 * @param compiledModel
+	 *            the model to classify with
+	 * @param batchSize
+	 *            the maximum number of instances in a batch
+	 * @param batchDelayMicros
+	 *            the latency budget (in microseconds) an instance may wait for its batch to fill
+	 * @param latencyWindow
+	 *            the number of most recent latencies kept for the percentiles
+	 * @param requestTimeoutMillis
+	 *            the longest time (in milliseconds) a request waits for its instances to be classified
+	 */
+	public MicroBatchingClassifier(final CompiledInferenceModel compiledModel, 
+								   final int batchSize, 
+								   final long batchDelayMicros,
+								   final int latencyWindow,
+								   final long requestTimeoutMillis) {
+		model = compiledModel;
+		maxBatchSize = Math.max(1, batchSize);
+		maxBatchDelay = TimeUnit.MICROSECONDS.toNanos(Math.max(0, batchDelayMicros));
+		requestTimeout = Math.max(1, requestTimeoutMillis);
+		latencies = new LatencyRecorder(latencyWindow);
+		
+		dispatcher = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				dispatch();
+			}
+		}, "lcs-micro-batch-dispatcher");
+		dispatcher.setDaemon(true);
+		dispatcher.start();
+	}
+
+	/**
+	 * Classify a single instance. Blocks until the batch containing the instance is classified.
+	 * 
+	 * @param instance
+	 *            the instance vector
+	 * @return the labels the instance is classified in, or null if interrupted or shut down
+	 * @throws IllegalArgumentException
+	 *             if the instance vector is shorter than the number of attributes of the model
+	 * @throws IllegalStateException
+	 *             if the classification failed or timed out
+	 */
+	public int[] classify(final double[] instance) {
+		final int[][] labels = classify(new double[][] { instance });
+		return labels == null ? null : labels[0];
+	}
+
+	/**
+	 * Classify a group of instances, submitted together. Blocks until all of them are classified.
+	 * 
+	 * @param instances
+	 *            the instance vectors
+	 * @return the labels each instance is classified in, or null if interrupted or shut down
+	 * @throws IllegalArgumentException
+	 *             if an instance vector is shorter than the number of attributes of the model
+	 * @throws IllegalStateException
+	 *             if the classification failed or timed out
+	 */
+	public int[][] classify(final double[][] instances) {
+		if (!running)
+			return null;
+		
+		// checked here, so that a malformed instance does not fail the batch of other requests
+		for (int i = 0; i < instances.length; i++) {
+			if (instances[i] == null || instances[i].length < model.getNumberOfAttributes())
+				throw new IllegalArgumentException("Instance " + i + " does not hold the " 
+						+ model.getNumberOfAttributes() + " attribute values of the model");
+		}
+		
+		final CountDownLatch done = new CountDownLatch(instances.length);
+		final PendingInstance[] pending = new PendingInstance[instances.length];
+		for (int i = 0; i < instances.length; i++) {
+			pending[i] = new PendingInstance(instances[i], done);
+			queue.add(pending[i]);
+		}
+
+		try {
+			if (!done.await(requestTimeout, TimeUnit.MILLISECONDS))
+				throw new IllegalStateException("Classification timed out after " + requestTimeout + "ms");
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+			return null;
+		}
+
+		final int[][] result = new int[instances.length][];
+		for (int i = 0; i < instances.length; i++) {
+			if (pending[i].failure != null)
+				throw new IllegalStateException("Classification failed", pending[i].failure);
+			result[i] = pending[i].labels;
+		}
+		return result;
+	}
+
+	/**
+	 * Forms and classifies batches until shut down.
+	 */
+	private void dispatch() {
+		final Vector<PendingInstance> batch = new Vector<PendingInstance>(maxBatchSize);
+		
+		while (running) {
+			try {
+				final PendingInstance first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null)
+					continue;
+				batch.add(first);
+				
+				final long deadline = first.submitted + maxBatchDelay;
+				while (batch.size() < maxBatchSize) {
+					// take whatever is already waiting, then wait for more until the budget expires
+					final PendingInstance next = queue.poll();
+					if (next != null) {
+						batch.add(next);
+						continue;
+					}
+					final long remaining = deadline - System.nanoTime();
+					if (remaining <= 0)
+						break;
+					final PendingInstance late = queue.poll(remaining, TimeUnit.NANOSECONDS);
+					if (late == null)
+						break;
+					batch.add(late);
+				}
+			} catch (InterruptedException e) {
+				// shut down while waiting; classify what has been collected
+			}
+			
+			if (!batch.isEmpty()) {
+				classifyBatch(batch);
+				batch.clear();
+			}
+		}
+		
+		// release the requests still waiting
+		queue.drainTo(batch);
+		if (!batch.isEmpty())
+			classifyBatch(batch);
+	}
+
+	/**
+	 * Classify a batch and release the waiting requests. If the classification fails, 
+	 * the requests are released with the failure, and the dispatcher goes on.
+	 * 
+	 * @param batch
+	 *            the instances of the batch
+	 */
+	private void classifyBatch(final Vector<PendingInstance> batch) {
+		final double[][] instances = new double[batch.size()][];
+		for (int i = 0; i < instances.length; i++)
+			instances[i] = batch.get(i).instance;
+
+		final int[][] labels;
+		try {
+			labels = model.classifyInstances(instances);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			for (int i = 0; i < instances.length; i++) {
+				final PendingInstance pending = batch.get(i);
+				pending.failure = e;
+				pending.done.countDown();
+			}
+			return;
+		}
+
+		final long now = System.nanoTime();
+		for (int i = 0; i < instances.length; i++) {
+			final PendingInstance pending = batch.get(i);
+			pending.labels = labels[i];
+			latencies.record(now - pending.submitted);
+			pending.done.countDown();
+		}
+		
+		synchronized (this) {
+			numberOfBatches++;
+			numberOfInstances += instances.length;
+		}
+	}
+
+	/**
+	 * Returns the latency recorder of the classified instances.
+	 * 
+	 * @return the latency recorder
+	 */
+	public LatencyRecorder getLatencies() {
+		return latencies;
+	}
+
+	/**
+	 * Returns the compiled model used.
+	 * 
+	 * @return the model
+	 */
+	public CompiledInferenceModel getModel() {
+		return model;
+	}
+
+	/**
+	 * Returns the mean number of instances per batch.
+	 * 
+	 * @return the mean batch size
+	 */
+	public synchronized double getMeanBatchSize() {
+		return numberOfBatches == 0 ? 0 : ((double) numberOfInstances) / numberOfBatches;
+	}
+
+	/**
+	 * Returns the number of batches classified.
+	 * 
+	 * @return the number of batches
+	 */
+	public synchronized long getNumberOfBatches() {
+		return numberOfBatches;
+	}
+
+	/**
+	 * Returns the number of instances classified.
+	 * 
+	 * @return the number of instances
+	 */
+	public synchronized long getNumberOfInstances() {
+		return numberOfInstances;
+	}
+
+	/**
+	 * Stop the dispatcher. Instances already collected in a batch are classified; 
+	 * later submissions return null.
+	 */
+	public void shutdown() {
+		running = false;
+		dispatcher.interrupt();
+	}
+}
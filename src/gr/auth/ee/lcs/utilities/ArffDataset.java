@@ -0,0 +1,675 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.utilities;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * An .arff dataset read without Weka. The file is streamed once: the header gives the attribute
+ * schema used for building the representations and every data line is parsed straight into its
+ * row of a primitive matrix, laid out as the double[][] used by the LCS. Nominal values are stored
+ * as the index of the value in the attribute declaration and missing values as NaN, as in Weka.
+ * Sparse data lines are expanded to dense rows. Files too large for the heap can be streamed to a handler instead.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public final class ArffDataset {
+
+	/**
+	 * Receives the data lines of an .arff file as they are parsed, see stream().
+	 */
+	public interface IRowHandler {
+
+		/**
+		 * Handle a parsed instance.
+		 * 
+		 * @param row
+		 *            the instance values. The array is reused for the next instance
+		 * @throws IOException
+		 *             to abort streaming
+		 */
+		void handle(double[] row) throws IOException;
+	}
+
+	/**
+	 * Splits a line into comma or whitespace separated values, honouring quotes.
+	 * Unquoted values are returned as bounds into the line, so numbers are parsed without copies.
+	 */
+	private static final class LineTokenizer {
+
+		/**
+		 * The line being tokenized.
+		 */
+		private String line;
+
+		/**
+		 * The position after the last token read.
+		 */
+		private int position;
+
+		/**
+		 * The bounds of the current token in the line.
+		 */
+		private int start, end;
+
+		/**
+		 * The unescaped value of the current token, if quoted.
+		 */
+		private String quoted;
+
+		/**
+		 * Start tokenizing the given line.
+		 * 
+		 * @param text
+		 *            the line
+		 * @param from
+		 *            the position of the first character to tokenize
+		 */
+		void reset(final String text, final int from) {
+			line = text;
+			position = from;
+		}
+
+		/**
+		 * Advance to the next token.
+		 * 
+		 * @return false if the line has no more tokens
+		 * @throws IOException
+		 *             if a quote is not closed
+		 */
+		boolean next() throws IOException {
+			final int length = line.length();
+			while (position < length && isSeparator(line.charAt(position)))
+				position++;
+			if (position >= length)
+				return false;
+
+			final char first = line.charAt(position);
+			if (first == '\'' || first == '"') {
+				final StringBuilder value = new StringBuilder();
+				int i = position + 1;
+				while (i < length && line.charAt(i) != first) {
+					char c = line.charAt(i);
+					if (c == '\\' && i + 1 < length) {
+						i++;
+						c = line.charAt(i);
+						if (c == 'n')
+							c = '\n';
+						else if (c == 't')
+							c = '\t';
+						else if (c == 'r')
+							c = '\r';
+					}
+					value.append(c);
+					i++;
+				}
+				if (i >= length)
+					throw new IOException("Unterminated quote in line: " + line);
+				quoted = value.toString();
+				start = position;
+				end = i + 1;
+				position = i + 1;
+				return true;
+			}
+
+			quoted = null;
+			start = position;
+			while (position < length && !isSeparator(line.charAt(position)))
+				position++;
+			end = position;
+			return true;
+		}
+
+		/**
+		 * @return true if the current token is the unquoted missing value marker
+		 */
+		boolean isMissing() {
+			return quoted == null && end - start == 1 && line.charAt(start) == '?';
+		}
+
+		/**
+		 * @return the current token as a String
+		 */
+		String token() {
+			return (quoted != null) ? quoted : line.substring(start, end);
+		}
+
+		/**
+		 * Parse the current token as a number. Plain decimals of up to 15 digits are parsed in
+		 * place: both the digits and the power of ten are exact doubles, so the division is
+		 * correctly rounded and gives the same value as Double.parseDouble().
+		 * 
+		 * @return the numeric value of the token
+		 * @throws IOException
+		 *             if the token is not a number
+		 */
+		double number() throws IOException {
+			if (quoted == null && end - start <= 17) {
+				int i = start;
+				final boolean negative = line.charAt(i) == '-';
+				if (negative || line.charAt(i) == '+')
+					i++;
+				long digits = 0;
+				int count = 0;
+				int decimals = -1;
+				for (; i < end; i++) {
+					final char c = line.charAt(i);
+					if (c >= '0' && c <= '9') {
+						digits = digits * 10 + (c - '0');
+						count++;
+						if (decimals >= 0)
+							decimals++;
+					} else if (c == '.' && decimals < 0) {
+						decimals = 0;
+					} else {
+						break;
+					}
+				}
+				if (i == end && count > 0 && count <= 15) {
+					final double value = (decimals > 0) ? digits / POWERS_OF_TEN[decimals] : digits;
+					return negative ? -value : value;
+				}
+			}
+			try {
+				return Double.parseDouble(token());
+			} catch (NumberFormatException e) {
+				throw new IOException("Not a number: " + token());
+			}
+		}
+
+		/**
+		 * @return the index of the current single-character token, or -1 for longer tokens
+		 */
+		int singleChar() {
+			return (quoted == null && end - start == 1) ? line.charAt(start) : -1;
+		}
+
+		private static boolean isSeparator(final char c) {
+			return c == ',' || c == ' ' || c == '\t';
+		}
+	}
+
+	/**
+	 * The powers of ten that are exact doubles.
+	 */
+	private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8,
+		1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+	/**
+	 * The last dataset loaded, so that the representation, the loader and the evaluators
+	 * opening the same file share one copy. Softly referenced, so it never pins the heap.
+	 */
+	private static SoftReference<ArffDataset> lastLoaded;
+
+	/**
+	 * The key (path, size and modification time) of the last dataset loaded.
+	 */
+	private static String lastLoadedKey;
+
+	/**
+	 * The name of the relation.
+	 */
+	private final String relationName;
+
+	/**
+	 * The attribute names.
+	 */
+	private final String[] attributeNames;
+
+	/**
+	 * The values of each nominal attribute, in declaration order. Null for numeric attributes.
+	 */
+	private final String[][] nominalValues;
+
+	/**
+	 * The minimum and maximum value of each numeric attribute, computed while reading.
+	 */
+	private final float[] minValues, maxValues;
+
+	/**
+	 * The data, one row per instance.
+	 */
+	private final double[][] instances;
+
+	/**
+	 * Constructor. Use load() or loadHeader().
+	 */
+	ArffDataset(final String relation,
+						final String[] names,
+						final String[][] nominal,
+						final float[] min,
+						final float[] max,
+						final double[][] data) {
+		relationName = relation;
+		attributeNames = names;
+		nominalValues = nominal;
+		minValues = min;
+		maxValues = max;
+		instances = data;
+	}
+
+	/**
+	 * Load an .arff file. Loading the same unchanged file again returns the same dataset
+	 * while it is still referenced elsewhere. Otherwise the file is parsed, or opened from
+	 * the DatasetCache when enabled.
+	 * 
+	 * @param filename
+	 *            the .arff file
+	 * @return the dataset
+	 * @throws IOException
+	 *             if the file cannot be read or parsed
+	 */
+	public static ArffDataset load(final String filename) throws IOException {
+		final File file = new File(filename);
+		final String key = file.getCanonicalPath() + ":" + file.length() + ":" + file.lastModified();
+
+		synchronized (ArffDataset.class) {
+			final ArffDataset cached = (lastLoaded == null) ? null : lastLoaded.get();
+			if (cached != null && key.equals(lastLoadedKey))
+				return cached;
+		}
+
+		// parse the file unless a preprocessed copy is cached
+		final String cacheKey = DatasetCache.getKey(filename);
+		ArffDataset dataset = DatasetCache.open(cacheKey);
+		if (dataset == null) {
+			dataset = read(filename, false);
+			DatasetCache.save(dataset, cacheKey);
+		}
+
+		synchronized (ArffDataset.class) {
+			lastLoaded = new SoftReference<ArffDataset>(dataset);
+			lastLoadedKey = key;
+		}
+		return dataset;
+	}
+
+	/**
+	 * Load the attribute schema and the numeric ranges of an .arff file, all that building a
+	 * representation needs. When the train set is memory-mapped (see DatasetCache.isMappingEnabled()), 
+	 * they are read from the header of the cached dataset, which is first built by streaming the file
+	 * if needed, and the returned dataset has no instances. Otherwise the file is loaded.
+	 * 
+	 * @param filename
+	 *            the .arff file
+	 * @return the dataset, with or without its instances
+	 * @throws IOException
+	 *             if the file cannot be read or parsed
+	 */
+	public static ArffDataset loadSchema(final String filename) throws IOException {
+		if (!DatasetCache.isMappingEnabled())
+			return load(filename);
+
+		final String cacheKey = DatasetCache.getKey(filename);
+		final ArffDataset schema = DatasetCache.openSchema(cacheKey);
+		return (schema != null) ? schema : DatasetCache.build(filename, cacheKey);
+	}
+
+	/**
+	 * Stream the instances of an .arff file to a handler, without keeping them.
+	 * 
+	 * @param filename
+	 *            the .arff file
+	 * @param handler
+	 *            the handler of the instances, in file order
+	 * @return the dataset schema and numeric ranges, without instances
+	 * @throws IOException
+	 *             if the file cannot be read or parsed, or the handler fails
+	 */
+	public static ArffDataset stream(final String filename, final IRowHandler handler) throws IOException {
+		final BufferedReader reader = new BufferedReader(new FileReader(filename), 1 << 16);
+		try {
+			return read(reader, false, handler);
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Read only the header of an .arff file. The returned dataset has no instances and no
+	 * numeric ranges.
+	 * 
+	 * @param filename
+	 *            the .arff file
+	 * @return the dataset schema
+	 * @throws IOException
+	 *             if the file cannot be read or parsed
+	 */
+	public static ArffDataset loadHeader(final String filename) throws IOException {
+		return read(filename, true);
+	}
+
+	/**
+	 * Stream an .arff file.
+	 * 
+	 * @param filename
+	 *            the .arff file
+	 * @param headerOnly
+	 *            true to stop at the data section
+	 * @return the dataset
+	 * @throws IOException
+	 *             if the file cannot be read or parsed
+	 */
+	private static ArffDataset read(final String filename, final boolean headerOnly) throws IOException {
+		final BufferedReader reader = new BufferedReader(new FileReader(filename), 1 << 16);
+		try {
+			return read(reader, headerOnly, null);
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Stream an .arff source.
+	 * 
+	 * @param reader
+	 *            the source
+	 * @param headerOnly
+	 *            true to stop at the data section
+	 * @param handler
+	 *            the handler to pass the instances to, or null to keep them
+	 * @return the dataset, without instances if streamed to a handler
+	 * @throws IOException
+	 *             if the source cannot be read or parsed
+	 */
+	private static ArffDataset read(final BufferedReader reader, 
+									final boolean headerOnly, 
+									final IRowHandler handler) throws IOException {
+		final LineTokenizer tokenizer = new LineTokenizer();
+		final ArrayList<String> names = new ArrayList<String>();
+		final ArrayList<String[]> nominal = new ArrayList<String[]>();
+		String relation = "";
+
+		// header
+		String line;
+		boolean data = false;
+		while (!data && (line = reader.readLine()) != null) {
+			line = line.trim();
+			if (line.isEmpty() || line.charAt(0) == '%')
+				continue;
+
+			final String lower = line.toLowerCase();
+			if (lower.startsWith("@relation")) {
+				tokenizer.reset(line, "@relation".length());
+				if (tokenizer.next())
+					relation = tokenizer.token();
+			} else if (lower.startsWith("@attribute")) {
+				tokenizer.reset(line, "@attribute".length());
+				if (!tokenizer.next())
+					throw new IOException("Attribute without a name: " + line);
+				names.add(tokenizer.token());
+				nominal.add(parseType(line, tokenizer.position));
+			} else if (lower.startsWith("@data")) {
+				data = true;
+			} else {
+				throw new IOException("Unexpected line in .arff header: " + line);
+			}
+		}
+		if (!data)
+			throw new IOException("No @data section found");
+
+		final int numberOfAttributes = names.size();
+		final String[][] nominalValues = nominal.toArray(new String[numberOfAttributes][]);
+		final float[] min = new float[numberOfAttributes];
+		final float[] max = new float[numberOfAttributes];
+		Arrays.fill(min, Float.NaN);
+		Arrays.fill(max, Float.NaN);
+
+		if (headerOnly)
+			return new ArffDataset(relation, names.toArray(new String[numberOfAttributes]), 
+									nominalValues, min, max, new double[0][]);
+
+		// nominal value lookups, with a table for single character values such as {0,1}
+		final HashMap<String, Integer>[] valueIndices = newMapArray(numberOfAttributes);
+		final int[][] singleCharIndices = new int[numberOfAttributes][];
+		for (int i = 0; i < numberOfAttributes; i++) {
+			if (nominalValues[i] == null)
+				continue;
+			valueIndices[i] = new HashMap<String, Integer>();
+			singleCharIndices[i] = new int[128];
+			Arrays.fill(singleCharIndices[i], -1);
+			for (int v = 0; v < nominalValues[i].length; v++) {
+				final String value = nominalValues[i][v];
+				valueIndices[i].put(value, v);
+				if (value.length() == 1 && value.charAt(0) < 128)
+					singleCharIndices[i][value.charAt(0)] = v;
+			}
+		}
+
+		// data
+		final ArrayList<double[]> rows = new ArrayList<double[]>();
+		final double[] reused = (handler == null) ? null : new double[numberOfAttributes];
+		int numberOfRows = 0;
+		while ((line = reader.readLine()) != null) {
+			final int first = firstNonBlank(line);
+			if (first < 0 || line.charAt(first) == '%')
+				continue;
+
+			final double[] row;
+			if (reused == null) {
+				row = new double[numberOfAttributes];
+			} else {
+				row = reused;
+				Arrays.fill(row, 0);
+			}
+			if (line.charAt(first) == '{') {
+				final int close = line.lastIndexOf('}');
+				if (close < first)
+					throw new IOException("Unterminated sparse instance: " + line);
+				tokenizer.reset(line.substring(first + 1, close), 0);
+				while (tokenizer.next()) {
+					final int attribute = (int) tokenizer.number();
+					if (attribute < 0 || attribute >= numberOfAttributes || !tokenizer.next())
+						throw new IOException("Malformed sparse instance: " + line);
+					row[attribute] = parseValue(tokenizer, nominalValues[attribute], 
+												valueIndices[attribute], singleCharIndices[attribute]);
+				}
+			} else {
+				tokenizer.reset(line, first);
+				for (int attribute = 0; attribute < numberOfAttributes; attribute++) {
+					if (!tokenizer.next())
+						throw new IOException("Instance " + numberOfRows + " has " + attribute 
+												+ " values instead of " + numberOfAttributes);
+					row[attribute] = parseValue(tokenizer, nominalValues[attribute], 
+												valueIndices[attribute], singleCharIndices[attribute]);
+				}
+			}
+
+			// numeric ranges, seeded by the first instance
+			for (int attribute = 0; attribute < numberOfAttributes; attribute++) {
+				if (nominalValues[attribute] != null)
+					continue;
+				final float value = (float) row[attribute];
+				if (numberOfRows == 0) {
+					min[attribute] = value;
+					max[attribute] = value;
+				} else {
+					if (value > max[attribute])
+						max[attribute] = value;
+					if (value < min[attribute])
+						min[attribute] = value;
+				}
+			}
+			if (handler == null)
+				rows.add(row);
+			else
+				handler.handle(row);
+			numberOfRows++;
+		}
+
+		return new ArffDataset(relation, names.toArray(new String[numberOfAttributes]), 
+								nominalValues, min, max, rows.toArray(new double[rows.size()][]));
+	}
+
+	/**
+	 * Parse the type of an attribute declaration.
+	 * 
+	 * @param line
+	 *            the declaration
+	 * @param from
+	 *            the position after the attribute name
+	 * @return the nominal values, or null for numeric attributes
+	 * @throws IOException
+	 *             for unsupported attribute types
+	 */
+	private static String[] parseType(final String line, final int from) throws IOException {
+		final String type = line.substring(from).trim();
+		if (type.startsWith("{")) {
+			final int close = type.lastIndexOf('}');
+			if (close < 0)
+				throw new IOException("Unterminated nominal declaration: " + line);
+			final LineTokenizer values = new LineTokenizer();
+			values.reset(type.substring(1, close), 0);
+			final ArrayList<String> result = new ArrayList<String>();
+			while (values.next())
+				result.add(values.token());
+			return result.toArray(new String[result.size()]);
+		}
+
+		final String lower = type.toLowerCase();
+		if (lower.startsWith("numeric") || lower.startsWith("real") || lower.startsWith("integer"))
+			return null;
+		throw new IOException("Unsupported attribute type: " + line);
+	}
+
+	/**
+	 * Parse the current token as a value of an attribute.
+	 */
+	private static double parseValue(final LineTokenizer tokenizer,
+									 final String[] values,
+									 final HashMap<String, Integer> valueIndices,
+									 final int[] singleCharIndices) throws IOException {
+		if (tokenizer.isMissing())
+			return Double.NaN;
+		if (values == null)
+			return tokenizer.number();
+
+		final int c = tokenizer.singleChar();
+		if (c >= 0 && c < 128 && singleCharIndices[c] >= 0)
+			return singleCharIndices[c];
+		final Integer index = valueIndices.get(tokenizer.token());
+		if (index == null)
+			throw new IOException("Undeclared nominal value: " + tokenizer.token());
+		return index;
+	}
+
+	private static int firstNonBlank(final String line) {
+		for (int i = 0; i < line.length(); i++) {
+			if (!Character.isWhitespace(line.charAt(i)))
+				return i;
+		}
+		return -1;
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static HashMap<String, Integer>[] newMapArray(final int size) {
+		return new HashMap[size];
+	}
+
+	/**
+	 * @return the name of the relation
+	 */
+	public String getRelationName() {
+		return relationName;
+	}
+
+	/**
+	 * @return the number of attributes, labels included
+	 */
+	public int getNumberOfAttributes() {
+		return attributeNames.length;
+	}
+
+	/**
+	 * @return the number of instances
+	 */
+	public int getNumberOfInstances() {
+		return instances.length;
+	}
+
+	/**
+	 * @param attribute
+	 *            the attribute index
+	 * @return the name of the attribute
+	 */
+	public String getAttributeName(final int attribute) {
+		return attributeNames[attribute];
+	}
+
+	/**
+	 * @param attribute
+	 *            the attribute index
+	 * @return true if the attribute is nominal
+	 */
+	public boolean isNominal(final int attribute) {
+		return nominalValues[attribute] != null;
+	}
+
+	/**
+	 * @param attribute
+	 *            the attribute index
+	 * @return the declared values of a nominal attribute
+	 */
+	public String[] getNominalValues(final int attribute) {
+		return nominalValues[attribute].clone();
+	}
+
+	/**
+	 * @param attribute
+	 *            the attribute index
+	 * @return the minimum value of a numeric attribute over the instances
+	 */
+	public float getMinValue(final int attribute) {
+		return minValues[attribute];
+	}
+
+	/**
+	 * @param attribute
+	 *            the attribute index
+	 * @return the maximum value of a numeric attribute over the instances
+	 */
+	public float getMaxValue(final int attribute) {
+		return maxValues[attribute];
+	}
+
+	/**
+	 * Returns the instances. The array is shared by everyone loading the same file and must
+	 * not be modified; clone the outer array to reorder it.
+	 * 
+	 * @return the instances, one row per instance
+	 */
+	public double[][] getInstances() {
+		return instances;
+	}
+
+}
@@ -0,0 +1,711 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.utilities;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * A cache of preprocessed datasets, so that repeated runs on the same .arff file skip parsing.
+ * 
+ * Entries live in the directory given by the datasetCacheDirectory setting (caching is disabled 
+ * when it is empty) and are keyed by the SHA-1 hash of the source file's contents, so an edited 
+ * source never hits a stale entry. The dataset file holds a header (magic number, format version 
+ * and a block with the dimensions and the attribute schema) followed by the row-major double 
+ * matrix of values, and is memory-mapped on reading. Fold assignments (the test fold of every instance) are kept next to it, 
+ * one small file per number of folds.
+ * 
+ * With the memoryMappedTrainSet setting, the train set is not loaded but read from the mapped 
+ * values (see map()), and missing entries are built by streaming the source, so that sets larger 
+ * than the heap can be trained on.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public final class DatasetCache {
+
+	/**
+	 * The magic number starting every cached dataset ("LCSD").
+	 */
+	public static final int MAGIC = 0x4C435344;
+
+	/**
+	 * The magic number starting every fold assignments file ("LCSF").
+	 */
+	public static final int FOLDS_MAGIC = 0x4C435346;
+
+	/**
+	 * The current format version.
+	 */
+	public static final int VERSION = 1;
+
+	/**
+	 * The maximum number of bytes mapped at once.
+	 */
+	private static final int MAX_MAPPING = 1 << 30;
+
+	/**
+	 * Static utility class.
+	 */
+	private DatasetCache() {
+	}
+
+	/**
+	 * Returns the cache key of a source file.
+	 * 
+	 * @param filename
+	 *            the source file
+	 * @return the hex SHA-1 hash of the file, or null if caching is disabled or the file cannot be read
+	 */
+	public static String getKey(final String filename) {
+		if (getDirectory() == null)
+			return null;
+
+		InputStream in = null;
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			in = new FileInputStream(filename);
+			final byte[] chunk = new byte[1 << 16];
+			int read;
+			while ((read = in.read(chunk)) > 0)
+				digest.update(chunk, 0, read);
+
+			final StringBuilder key = new StringBuilder();
+			for (final byte b : digest.digest())
+				key.append(String.format("%02x", b));
+			return key.toString();
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		} catch (NoSuchAlgorithmException e) {
+			e.printStackTrace();
+			return null;
+		} finally {
+			close(in);
+		}
+	}
+
+	/**
+	 * The header of a cached dataset.
+	 */
+	private static final class Header {
+
+		/**
+		 * The relation name.
+		 */
+		private final String relation;
+
+		/**
+		 * The attribute names.
+		 */
+		private final String[] names;
+
+		/**
+		 * The nominal values of each attribute, null for numeric ones.
+		 */
+		private final String[][] nominalValues;
+
+		/**
+		 * The numeric ranges of the attributes.
+		 */
+		private final float[] min, max;
+
+		/**
+		 * The number of instances.
+		 */
+		private final int numberOfInstances;
+
+		/**
+		 * The position of the values in the file.
+		 */
+		private final long valuesOffset;
+
+		private Header(final String relation, 
+					   final String[] names, 
+					   final String[][] nominalValues, 
+					   final float[] min, 
+					   final float[] max,
+					   final int numberOfInstances, 
+					   final long valuesOffset) {
+			this.relation = relation;
+			this.names = names;
+			this.nominalValues = nominalValues;
+			this.min = min;
+			this.max = max;
+			this.numberOfInstances = numberOfInstances;
+			this.valuesOffset = valuesOffset;
+		}
+
+		/**
+		 * @param instances
+		 *            the instances
+		 * @return the dataset of this header with the given instances
+		 */
+		private ArffDataset getDataset(final double[][] instances) {
+			return new ArffDataset(relation, names, nominalValues, min, max, instances);
+		}
+	}
+
+	/**
+	 * @return true if the train set should be memory-mapped from the cache instead of loaded in the heap
+	 * 		   (the memoryMappedTrainSet setting, which needs the cache to be enabled)
+	 */
+	public static boolean isMappingEnabled() {
+		if (!SettingsLoader.getStringSetting("memoryMappedTrainSet", "false").equals("true"))
+			return false;
+		if (getDirectory() == null) {
+			System.out.println("memoryMappedTrainSet needs a datasetCacheDirectory, loading the train set in the heap");
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Open a cached dataset.
+	 * 
+	 * @param key
+	 *            the cache key of the source file
+	 * @return the dataset, or null if it is not cached (or the entry cannot be read)
+	 */
+	public static ArffDataset open(final String key) {
+		final File file = getDataFile(key);
+		if (file == null)
+			return null;
+
+		RandomAccessFile input = null;
+		try {
+			input = new RandomAccessFile(file, "r");
+			final FileChannel channel = input.getChannel();
+			final Header header = readHeader(channel, file);
+			if (header == null)
+				return null;
+
+			// the values: mapped in windows of whole rows
+			final int numberOfAttributes = header.names.length;
+			final double[][] instances = new double[header.numberOfInstances][numberOfAttributes];
+			final int rowsPerWindow = getRowsPerWindow(numberOfAttributes);
+			final DoubleBuffer[] windows = mapValues(channel, header, rowsPerWindow);
+			for (int i = 0; i < instances.length; i++) {
+				final DoubleBuffer window = windows[i / rowsPerWindow];
+				window.position((i % rowsPerWindow) * numberOfAttributes);
+				window.get(instances[i]);
+			}
+
+			return header.getDataset(instances);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		} finally {
+			close(input);
+		}
+	}
+
+	/**
+	 * Open the schema and the numeric ranges of a cached dataset, without its instances.
+	 * 
+	 * @param key
+	 *            the cache key of the source file
+	 * @return the dataset schema, or null if it is not cached (or the entry cannot be read)
+	 */
+	public static ArffDataset openSchema(final String key) {
+		final File file = getDataFile(key);
+		if (file == null)
+			return null;
+
+		RandomAccessFile input = null;
+		try {
+			input = new RandomAccessFile(file, "r");
+			final Header header = readHeader(input.getChannel(), file);
+			return (header == null) ? null : header.getDataset(new double[0][]);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		} finally {
+			close(input);
+		}
+	}
+
+	/**
+	 * Map the values of a cached dataset into a flat dataset, without loading them in the heap. 
+	 * The mapping stays valid after the file is closed.
+	 * 
+	 * @param key
+	 *            the cache key of the source file
+	 * @param numberOfLabels
+	 *            the number of labels at the end of each instance
+	 * @return the mapped dataset, in the order of the source file, or null if it is not cached 
+	 * 		   (or the entry cannot be read)
+	 */
+	public static FlatDataset map(final String key, final int numberOfLabels) {
+		final File file = getDataFile(key);
+		if (file == null)
+			return null;
+
+		RandomAccessFile input = null;
+		try {
+			input = new RandomAccessFile(file, "r");
+			final FileChannel channel = input.getChannel();
+			final Header header = readHeader(channel, file);
+			if (header == null)
+				return null;
+
+			final int numberOfAttributes = header.names.length;
+			final int rowsPerWindow = getRowsPerWindow(numberOfAttributes);
+			return FlatDataset.map(mapValues(channel, header, rowsPerWindow), rowsPerWindow, 
+								   header.numberOfInstances, numberOfAttributes, numberOfLabels);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		} finally {
+			close(input);
+		}
+	}
+
+	/**
+	 * Store a dataset in the cache. The entry is written to a temporary file and renamed, so
+	 * concurrent runs never see a partial entry.
+	 * 
+	 * @param dataset
+	 *            the dataset
+	 * @param key
+	 *            the cache key of its source file
+	 * @return true if the dataset was stored
+	 */
+	public static boolean save(final ArffDataset dataset, final String key) {
+		if (key == null || !createDirectory())
+			return false;
+
+		final int numberOfAttributes = dataset.getNumberOfAttributes();
+		final File file = new File(getDirectory(), key + ".data");
+		DataOutputStream out = null;
+		File temporary = null;
+		try {
+			temporary = File.createTempFile(key, ".tmp", getDirectory());
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary), 1 << 16));
+			writeHeader(out, dataset, dataset.getNumberOfInstances());
+
+			final double[][] instances = dataset.getInstances();
+			for (int i = 0; i < instances.length; i++)
+				for (int a = 0; a < numberOfAttributes; a++)
+					out.writeDouble(instances[i][a]);
+			out.close();
+			out = null;
+
+			if (!rename(temporary, file))
+				return false;
+			temporary = null;
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		} finally {
+			close(out);
+			if (temporary != null)
+				temporary.delete();
+		}
+	}
+
+	/**
+	 * Build the cache entry of an .arff file by streaming it, without loading its instances in the heap.
+	 * The header is written with placeholder dimensions and ranges, which are filled in once the file
+	 * has been streamed (they do not change its size).
+	 * 
+	 * @param filename
+	 *            the .arff file
+	 * @param key
+	 *            the cache key of the file
+	 * @return the dataset schema and numeric ranges, without instances
+	 * @throws IOException
+	 *             if the file cannot be read or parsed, or the entry cannot be written
+	 */
+	public static ArffDataset build(final String filename, final String key) throws IOException {
+		if (key == null || !createDirectory())
+			throw new IOException("The dataset cache is disabled or cannot be created");
+
+		final ArffDataset header = ArffDataset.loadHeader(filename);
+		final File file = new File(getDirectory(), key + ".data");
+		final File temporary = File.createTempFile(key, ".tmp", getDirectory());
+		DataOutputStream out = null;
+		RandomAccessFile patch = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary), 1 << 16));
+			final int headerSize = writeHeader(out, header, 0);
+
+			final DataOutputStream values = out;
+			final int[] numberOfInstances = new int[1];
+			final ArffDataset schema = ArffDataset.stream(filename, new ArffDataset.IRowHandler() {
+				@Override
+				public void handle(final double[] row) throws IOException {
+					for (int a = 0; a < row.length; a++)
+						values.writeDouble(row[a]);
+					numberOfInstances[0]++;
+				}
+			});
+			out.close();
+			out = null;
+
+			final ByteArrayOutputStream completeHeader = new ByteArrayOutputStream(headerSize);
+			if (writeHeader(new DataOutputStream(completeHeader), schema, numberOfInstances[0]) != headerSize)
+				throw new IOException("The schema of " + filename + " changed while streaming it");
+			patch = new RandomAccessFile(temporary, "rw");
+			patch.write(completeHeader.toByteArray());
+			patch.close();
+			patch = null;
+
+			if (!rename(temporary, file))
+				throw new IOException("Cannot store the cached dataset " + file);
+			return schema;
+		} finally {
+			close(out);
+			close(patch);
+			temporary.delete();
+		}
+	}
+
+	/**
+	 * Open the cached fold assignments of a dataset.
+	 * 
+	 * @param key
+	 *            the cache key of the source file
+	 * @param numberOfFolds
+	 *            the number of folds
+	 * @return the test fold of every instance, or null if not cached
+	 */
+	public static int[] openFolds(final String key, final int numberOfFolds) {
+		return (key == null) ? null : readFolds(getFoldsFile(key, numberOfFolds), numberOfFolds);
+	}
+
+	/**
+	 * Store the fold assignments of a dataset in the cache.
+	 * 
+	 * @param key
+	 *            the cache key of the source file
+	 * @param numberOfFolds
+	 *            the number of folds
+	 * @param folds
+	 *            the test fold of every instance, in the order of the source file
+	 * @return true if the assignments were stored
+	 */
+	public static boolean saveFolds(final String key, final int numberOfFolds, final int[] folds) {
+		if (key == null || !createDirectory())
+			return false;
+		return writeFolds(getFoldsFile(key, numberOfFolds), numberOfFolds, folds);
+	}
+
+	/**
+	 * Read a fold assignments file.
+	 * 
+	 * @param file
+	 *            the file
+	 * @param numberOfFolds
+	 *            the number of folds
+	 * @return the test fold of every instance, or null if the file does not exist or does not match
+	 */
+	public static int[] readFolds(final File file, final int numberOfFolds) {
+		if (!file.isFile())
+			return null;
+
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if (in.readInt() != FOLDS_MAGIC || in.readInt() != VERSION || in.readInt() != numberOfFolds) {
+				System.out.println(file + " is not a fold assignments file of version " + VERSION 
+									+ " for " + numberOfFolds + " folds");
+				return null;
+			}
+			final int[] folds = new int[in.readInt()];
+			for (int i = 0; i < folds.length; i++)
+				folds[i] = in.readInt();
+			return folds;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		} finally {
+			close(in);
+		}
+	}
+
+	/**
+	 * Write a fold assignments file.
+	 * 
+	 * @param file
+	 *            the file
+	 * @param numberOfFolds
+	 *            the number of folds
+	 * @param folds
+	 *            the test fold of every instance
+	 * @return true if the file was written
+	 */
+	public static boolean writeFolds(final File file, final int numberOfFolds, final int[] folds) {
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			out.writeInt(FOLDS_MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(numberOfFolds);
+			out.writeInt(folds.length);
+			for (int i = 0; i < folds.length; i++)
+				out.writeInt(folds[i]);
+			return true;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		} finally {
+			close(out);
+		}
+	}
+
+	/**
+	 * Write the header of a cached dataset: magic number, version, length of the schema block, 
+	 * the schema block and the padding aligning the values.
+	 * 
+	 * @param out
+	 *            the stream to write to
+	 * @param schema
+	 *            the dataset schema and numeric ranges
+	 * @param numberOfInstances
+	 *            the number of instances
+	 * @return the number of bytes written
+	 * @throws IOException
+	 *             if the stream fails
+	 */
+	private static int writeHeader(final DataOutputStream out, 
+								   final ArffDataset schema, 
+								   final int numberOfInstances) throws IOException {
+		final int numberOfAttributes = schema.getNumberOfAttributes();
+		final ByteArrayOutputStream schemaBytes = new ByteArrayOutputStream();
+		final DataOutputStream block = new DataOutputStream(schemaBytes);
+		block.writeInt(numberOfInstances);
+		block.writeInt(numberOfAttributes);
+		block.writeUTF(schema.getRelationName());
+		for (int a = 0; a < numberOfAttributes; a++) {
+			block.writeUTF(schema.getAttributeName(a));
+			if (schema.isNominal(a)) {
+				final String[] values = schema.getNominalValues(a);
+				block.writeInt(values.length);
+				for (final String value : values)
+					block.writeUTF(value);
+			} else {
+				block.writeInt(-1);
+			}
+			block.writeFloat(schema.getMinValue(a));
+			block.writeFloat(schema.getMaxValue(a));
+		}
+		block.close();
+
+		final int start = out.size();
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(schemaBytes.size());
+		schemaBytes.writeTo(out);
+		while (out.size() % 8 != 0)
+			out.writeByte(0);
+		return out.size() - start;
+	}
+
+	/**
+	 * Read the header of a cached dataset.
+	 * 
+	 * @param channel
+	 *            the channel of the file
+	 * @param file
+	 *            the file, for messages
+	 * @return the header, or null if the file is not a cached dataset of the current version
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	private static Header readHeader(final FileChannel channel, final File file) throws IOException {
+		// the header: magic number, version, length of the schema block and the schema block
+		final ByteBuffer start = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(12, channel.size()));
+		if (start.remaining() < 12 || start.getInt() != MAGIC || start.getInt() != VERSION) {
+			System.out.println(file + " is not a cached dataset of version " + VERSION);
+			return null;
+		}
+		final byte[] schema = new byte[start.getInt()];
+		channel.position(12);
+		channel.read(ByteBuffer.wrap(schema));
+
+		final DataInputStream header = new DataInputStream(new ByteArrayInputStream(schema));
+		final int numberOfInstances = header.readInt();
+		final int numberOfAttributes = header.readInt();
+		final String relation = header.readUTF();
+		final String[] names = new String[numberOfAttributes];
+		final String[][] nominalValues = new String[numberOfAttributes][];
+		final float[] min = new float[numberOfAttributes];
+		final float[] max = new float[numberOfAttributes];
+		for (int a = 0; a < numberOfAttributes; a++) {
+			names[a] = header.readUTF();
+			final int numberOfValues = header.readInt();
+			if (numberOfValues >= 0) {
+				nominalValues[a] = new String[numberOfValues];
+				for (int v = 0; v < numberOfValues; v++)
+					nominalValues[a][v] = header.readUTF();
+			}
+			min[a] = header.readFloat();
+			max[a] = header.readFloat();
+		}
+
+		return new Header(relation, names, nominalValues, min, max, numberOfInstances, align(12 + schema.length));
+	}
+
+	/**
+	 * Map the values of a cached dataset, in windows of whole rows.
+	 * 
+	 * @param channel
+	 *            the channel of the file
+	 * @param header
+	 *            the header of the file
+	 * @param rowsPerWindow
+	 *            the number of rows of each window
+	 * @return the windows
+	 * @throws IOException
+	 *             if the file cannot be mapped
+	 */
+	private static DoubleBuffer[] mapValues(final FileChannel channel, 
+											final Header header, 
+											final int rowsPerWindow) throws IOException {
+		final int rowSize = header.names.length * 8;
+		final DoubleBuffer[] windows = new DoubleBuffer[(header.numberOfInstances + rowsPerWindow - 1) / rowsPerWindow];
+		for (int w = 0; w < windows.length; w++) {
+			final long first = (long) w * rowsPerWindow;
+			final int rows = (int) Math.min(rowsPerWindow, header.numberOfInstances - first);
+			windows[w] = channel.map(FileChannel.MapMode.READ_ONLY, 
+					header.valuesOffset + first * rowSize, (long) rows * rowSize).asDoubleBuffer();
+		}
+		return windows;
+	}
+
+	/**
+	 * @param numberOfAttributes
+	 *            the number of attributes per instance
+	 * @return the number of rows mapped at once
+	 */
+	private static int getRowsPerWindow(final int numberOfAttributes) {
+		return Math.max(1, MAX_MAPPING / Math.max(1, numberOfAttributes * 8));
+	}
+
+	/**
+	 * @param key
+	 *            the cache key of a source file
+	 * @return the cached dataset file of the source, or null if it is not cached
+	 */
+	private static File getDataFile(final String key) {
+		if (key == null)
+			return null;
+		final File file = new File(getDirectory(), key + ".data");
+		return file.isFile() ? file : null;
+	}
+
+	/**
+	 * Create the cache directory if needed.
+	 * 
+	 * @return false if the directory cannot be created
+	 */
+	private static boolean createDirectory() {
+		final File directory = getDirectory();
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			System.out.println("Cannot create the dataset cache directory " + directory);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Rename a temporary file to its final name, replacing an existing file.
+	 * 
+	 * @param temporary
+	 *            the temporary file
+	 * @param file
+	 *            the final file
+	 * @return true if the file was renamed
+	 */
+	private static boolean rename(final File temporary, final File file) {
+		if (temporary.renameTo(file))
+			return true;
+		file.delete();
+		if (temporary.renameTo(file))
+			return true;
+		System.out.println("Cannot store the cached dataset " + file);
+		return false;
+	}
+
+	/**
+	 * @return the cache directory, or null if caching is disabled
+	 */
+	private static File getDirectory() {
+		final String directory = SettingsLoader.getStringSetting("datasetCacheDirectory", "");
+		return directory.isEmpty() ? null : new File(directory);
+	}
+
+	/**
+	 * @return the fold assignments file of a dataset
+	 */
+	private static File getFoldsFile(final String key, final int numberOfFolds) {
+		return new File(getDirectory(), key + "." + numberOfFolds + ".folds");
+	}
+
+	/**
+	 * Round a size up to a multiple of 8 bytes.
+	 * 
+	 * @param size
+	 *            the size
+	 * @return the aligned size
+	 */
+	private static long align(final long size) {
+		return (size + 7) & ~7L;
+	}
+
+	/**
+	 * Close a stream, reporting failures.
+	 * 
+	 * @param stream
+	 *            the stream, possibly null
+	 */
+	private static void close(final Closeable stream) {
+		try {
+			if (stream != null)
+				stream.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+}
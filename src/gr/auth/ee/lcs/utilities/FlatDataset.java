@@ -0,0 +1,637 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.utilities;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * A read-only instance set stored in one contiguous row-major float[], with the active labels 
+ * of each instance precomputed as a bitset. Attribute values are compared as floats by the 
+ * representations, so matching against this copy is exact. Shared between the LCS, the 
+ * evaluators and the calibrators through AbstractLearningClassifierSystem.getDataset().
+ * 
+ * Sets whose fraction of non-zero values does not exceed the sparseDatasetDensity setting are
+ * stored sparse instead: the non-zero values of each instance, in ascending attribute order.
+ * Absent attributes are zero. Matching then only looks up the attributes a rule is specific on.
+ * 
+ * A dataset can also be mapped from a cached dataset file (see DatasetCache.map()): the values are 
+ * then read from the mapped file on every access, through getMappedValues(), and only the label 
+ * bitsets are kept in the heap. Mapped datasets are always dense, and may be views ordering (or 
+ * selecting) the rows of the file through a row index.
+ * 
+ * The owner of the instance vectors a dataset was built from may release them (see 
+ * releaseInstanceVectors()), leaving the flat copy as the only storage of the instances.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public final class FlatDataset {
+
+	/**
+	 * The instance vectors this dataset was built from. Their vectors are null once released, 
+	 * and always for mapped sets.
+	 */
+	private final double[][] source;
+
+	/**
+	 * True if the vectors of the source have been released.
+	 */
+	private volatile boolean released;
+
+	/**
+	 * The hash code of the instance vectors, taken when they were released.
+	 */
+	private int releasedHashCode;
+
+	/**
+	 * The number of values in a page of a mapped file.
+	 */
+	private static final int VALUES_PER_PAGE = 4096 / 8;
+
+	/**
+	 * The maximum fraction of non-zero values for a set to be stored sparse.
+	 */
+	private static final double SPARSE_DENSITY = SettingsLoader.getNumericSetting("sparseDatasetDensity", 0.1);
+
+	/**
+	 * The attribute values, row-major. Null if the set is sparse.
+	 */
+	private final float[] values;
+
+	/**
+	 * The position of each instance's first non-zero value, followed by the total number of
+	 * non-zero values. Null if the set is dense.
+	 */
+	private final int[] rowStart;
+
+	/**
+	 * The attributes of the non-zero values, ascending within each instance. Null if the set is dense.
+	 */
+	private final int[] nonZeroAttributes;
+
+	/**
+	 * The non-zero values. Null if the set is dense.
+	 */
+	private final float[] nonZeroValues;
+
+	/**
+	 * The mapped values of a mapped set, windows of rowsPerWindow whole rows in file order. 
+	 * Null if the set is in the heap.
+	 */
+	private final DoubleBuffer[] windows;
+
+	/**
+	 * The number of rows of each mapped window.
+	 */
+	private final int rowsPerWindow;
+
+	/**
+	 * The row of the file each instance of a mapped set is read from, or null for file order.
+	 */
+	private final int[] rows;
+
+	/**
+	 * A sink for the values read by touch(), so that the reads are not optimized away.
+	 */
+	private volatile double touched;
+
+	/**
+	 * The number of instances.
+	 */
+	private final int numberOfInstances;
+
+	/**
+	 * The number of attributes per instance, labels included.
+	 */
+	private final int numberOfAttributes;
+
+	/**
+	 * The number of labels, being the last attributes of each instance.
+	 */
+	private final int numberOfLabels;
+
+	/**
+	 * The number of words of each instance's label bitset.
+	 */
+	private final int labelWords;
+
+	/**
+	 * The active (equal to 1) labels of each instance, instance-major.
+	 */
+	private final long[] labelBits;
+
+	/**
+	 * The number of active labels of each instance.
+	 */
+	private final int[] activeLabels;
+
+	/**
+	 * Build a dataset from instance vectors.
+	 * 
+	 * @param instances
+	 *            the instance vectors, all of the same length
+	 * @param labels
+	 *            the number of labels at the end of each vector
+	 */
+	public FlatDataset(final double[][] instances, final int labels) {
+		source = instances;
+		windows = null;
+		rowsPerWindow = 0;
+		rows = null;
+		numberOfInstances = instances.length;
+		numberOfAttributes = (numberOfInstances == 0) ? 0 : instances[0].length;
+		numberOfLabels = labels;
+		labelWords = (labels + Long.SIZE - 1) / Long.SIZE;
+		labelBits = new long[numberOfInstances * labelWords];
+		activeLabels = new int[numberOfInstances];
+
+		int nonZero = 0;
+		for (int i = 0; i < numberOfInstances; i++) {
+			for (int a = 0; a < numberOfAttributes; a++)
+				if (instances[i][a] != 0)
+					nonZero++;
+		}
+		final boolean sparse = numberOfAttributes > 0 
+				&& nonZero <= SPARSE_DENSITY * numberOfInstances * numberOfAttributes;
+
+		values = sparse ? null : new float[numberOfInstances * numberOfAttributes];
+		rowStart = sparse ? new int[numberOfInstances + 1] : null;
+		nonZeroAttributes = sparse ? new int[nonZero] : null;
+		nonZeroValues = sparse ? new float[nonZero] : null;
+
+		final int firstLabel = numberOfAttributes - numberOfLabels;
+		int position = 0;
+		for (int i = 0; i < numberOfInstances; i++) {
+			final double[] instance = instances[i];
+			if (sparse) {
+				rowStart[i] = position;
+				for (int a = 0; a < numberOfAttributes; a++) {
+					if (instance[a] != 0) {
+						nonZeroAttributes[position] = a;
+						nonZeroValues[position++] = (float) instance[a];
+					}
+				}
+			} else {
+				final int offset = i * numberOfAttributes;
+				for (int a = 0; a < numberOfAttributes; a++)
+					values[offset + a] = (float) instance[a];
+			}
+
+			for (int l = 0; l < numberOfLabels; l++) {
+				if (instance[firstLabel + l] == 1) {
+					labelBits[i * labelWords + (l >>> 6)] |= 1L << (l & 63);
+					activeLabels[i]++;
+				}
+			}
+		}
+		if (sparse)
+			rowStart[numberOfInstances] = position;
+	}
+
+	/**
+	 * Build a mapped dataset.
+	 * 
+	 * @param mappedWindows
+	 *            the mapped values, in windows of whole rows
+	 * @param windowRows
+	 *            the number of rows of each window
+	 * @param rowIndex
+	 *            the row of each instance, or null for all rows in file order
+	 * @param instances
+	 *            the number of instances
+	 * @param attributes
+	 *            the number of attributes per instance, labels included
+	 * @param labels
+	 *            the number of labels at the end of each instance
+	 * @param bits
+	 *            the label bitsets of the instances
+	 * @param active
+	 *            the number of active labels of the instances
+	 */
+	private FlatDataset(final DoubleBuffer[] mappedWindows,
+						final int windowRows,
+						final int[] rowIndex,
+						final int instances,
+						final int attributes,
+						final int labels,
+						final long[] bits,
+						final int[] active) {
+		source = new double[instances][];
+		windows = mappedWindows;
+		rowsPerWindow = windowRows;
+		rows = rowIndex;
+		numberOfInstances = instances;
+		numberOfAttributes = attributes;
+		numberOfLabels = labels;
+		labelWords = (labels + Long.SIZE - 1) / Long.SIZE;
+		labelBits = bits;
+		activeLabels = active;
+		values = null;
+		rowStart = null;
+		nonZeroAttributes = null;
+		nonZeroValues = null;
+	}
+
+	/**
+	 * Build a dataset reading its values from a mapped file. The labels are read once, 
+	 * to build the label bitsets.
+	 * 
+	 * @param windows
+	 *            the mapped values, row-major, in windows of whole rows
+	 * @param rowsPerWindow
+	 *            the number of rows of each window (all but the last are full)
+	 * @param instances
+	 *            the number of instances
+	 * @param attributes
+	 *            the number of attributes per instance, labels included
+	 * @param labels
+	 *            the number of labels at the end of each instance
+	 * @return the mapped dataset, in file order
+	 */
+	static FlatDataset map(final DoubleBuffer[] windows,
+						   final int rowsPerWindow,
+						   final int instances,
+						   final int attributes,
+						   final int labels) {
+		final int labelWords = (labels + Long.SIZE - 1) / Long.SIZE;
+		final long[] labelBits = new long[instances * labelWords];
+		final int[] activeLabels = new int[instances];
+		final int firstLabel = attributes - labels;
+		for (int i = 0; i < instances; i++) {
+			final DoubleBuffer window = windows[i / rowsPerWindow];
+			final int offset = (i % rowsPerWindow) * attributes + firstLabel;
+			for (int l = 0; l < labels; l++) {
+				if (window.get(offset + l) == 1) {
+					labelBits[i * labelWords + (l >>> 6)] |= 1L << (l & 63);
+					activeLabels[i]++;
+				}
+			}
+		}
+		return new FlatDataset(windows, rowsPerWindow, null, instances, attributes, labels, labelBits, activeLabels);
+	}
+
+	/**
+	 * Returns a dataset of some of the instances of this one. The instances of a mapped set are not 
+	 * copied: the returned set reads the same mapped values through its own row index.
+	 * 
+	 * @param selected
+	 *            the indices of the instances to select, in the order of the new set
+	 * @return the new dataset
+	 */
+	public FlatDataset select(final int[] selected) {
+		if (windows == null && !released)
+			return new FlatDataset(InstancesUtility.selectInstances(source, selected), numberOfLabels);
+		if (windows == null) {
+			final double[][] vectors = new double[selected.length][];
+			for (int i = 0; i < selected.length; i++)
+				vectors[i] = getInstance(selected[i]);
+			return new FlatDataset(vectors, numberOfLabels);
+		}
+
+		final int[] rowIndex = new int[selected.length];
+		final long[] bits = new long[selected.length * labelWords];
+		final int[] active = new int[selected.length];
+		for (int i = 0; i < selected.length; i++) {
+			rowIndex[i] = getRow(selected[i]);
+			System.arraycopy(labelBits, selected[i] * labelWords, bits, i * labelWords, labelWords);
+			active[i] = activeLabels[selected[i]];
+		}
+		return new FlatDataset(windows, rowsPerWindow, rowIndex, selected.length, 
+							   numberOfAttributes, numberOfLabels, bits, active);
+	}
+
+	/**
+	 * Returns the instance vectors this dataset was built from. The rows of a mapped set are not
+	 * in the heap: its vectors are all null, standing in for the instances where a double[][] is 
+	 * expected, and the instances have to be read through getInstance(). The same holds once the
+	 * vectors have been released.
+	 * 
+	 * @return the instance vectors
+	 */
+	public double[][] getInstanceVectors() {
+		return source;
+	}
+
+	/**
+	 * @return true if the instances are only held by this dataset, the source vectors being null
+	 */
+	public boolean isOnlyStorage() {
+		return windows != null || released;
+	}
+
+	/**
+	 * Release the instance vectors this dataset was built from: they are set to null in the source
+	 * array, which keeps standing in for the instances, and read back from the flat copy from then on.
+	 * The values are read back as the floats the representations compare, widened to doubles.
+	 * Only the owner of the source array may release it, before sharing the dataset.
+	 */
+	public void releaseInstanceVectors() {
+		if (isOnlyStorage())
+			return;
+		releasedHashCode = Arrays.deepHashCode(source);
+		Arrays.fill(source, null);
+		released = true;
+	}
+
+	/**
+	 * @param instances
+	 *            some instance vectors
+	 * @return true if this dataset was built from the given instance vectors
+	 */
+	public boolean isBuiltFrom(final double[][] instances) {
+		return source == instances;
+	}
+
+	/**
+	 * @return the number of instances
+	 */
+	public int getNumberOfInstances() {
+		return numberOfInstances;
+	}
+
+	/**
+	 * @return the number of attributes per instance, labels included
+	 */
+	public int getNumberOfAttributes() {
+		return numberOfAttributes;
+	}
+
+	/**
+	 * @return the number of labels
+	 */
+	public int getNumberOfLabels() {
+		return numberOfLabels;
+	}
+
+	/**
+	 * @return true if only the non-zero values are stored
+	 */
+	public boolean isSparse() {
+		return rowStart != null;
+	}
+
+	/**
+	 * @return true if the values are read from a mapped file
+	 */
+	public boolean isMapped() {
+		return windows != null;
+	}
+
+	/**
+	 * Returns the mapped window holding the values of an instance of a mapped set. 
+	 * The instance starts at getMappedOffset(instance). Only absolute reads may be used,
+	 * the window is shared by all threads.
+	 * 
+	 * @param instance
+	 *            the instance index
+	 * @return the mapped values, or null if the set is in the heap
+	 */
+	public DoubleBuffer getMappedValues(final int instance) {
+		return (windows == null) ? null : windows[getRow(instance) / rowsPerWindow];
+	}
+
+	/**
+	 * @param instance
+	 *            the instance index
+	 * @return the position of the instance's first value in getMappedValues(instance)
+	 */
+	public int getMappedOffset(final int instance) {
+		return (getRow(instance) % rowsPerWindow) * numberOfAttributes;
+	}
+
+	/**
+	 * @param instance
+	 *            the instance index
+	 * @return the row of the file the instance of a mapped set is read from
+	 */
+	private int getRow(final int instance) {
+		return (rows == null) ? instance : rows[instance];
+	}
+
+	/**
+	 * Returns the backing array of values of a dense set. Instance i starts at getOffset(i). 
+	 * Must not be modified.
+	 * 
+	 * @return the attribute values, row-major, or null if the set is sparse
+	 */
+	public float[] getValues() {
+		return values;
+	}
+
+	/**
+	 * @param instance
+	 *            the instance index
+	 * @return the position of the instance's first value in getValues()
+	 */
+	public int getOffset(final int instance) {
+		return instance * numberOfAttributes;
+	}
+
+	/**
+	 * Returns the attributes of the non-zero values of a sparse set. The non-zero values of 
+	 * instance i are at positions [getRowStart(i), getRowStart(i + 1)). Must not be modified.
+	 * 
+	 * @return the attributes, ascending within each instance, or null if the set is dense
+	 */
+	public int[] getNonZeroAttributes() {
+		return nonZeroAttributes;
+	}
+
+	/**
+	 * Returns the non-zero values of a sparse set, aligned with getNonZeroAttributes(). 
+	 * Must not be modified.
+	 * 
+	 * @return the non-zero values, or null if the set is dense
+	 */
+	public float[] getNonZeroValues() {
+		return nonZeroValues;
+	}
+
+	/**
+	 * @param instance
+	 *            the instance index, or the number of instances for the end of the last one
+	 * @return the position of the instance's first non-zero value
+	 */
+	public int getRowStart(final int instance) {
+		return rowStart[instance];
+	}
+
+	/**
+	 * @param instance
+	 *            the instance index
+	 * @param attribute
+	 *            the attribute index
+	 * @return the value of the attribute for the instance
+	 */
+	public float getValue(final int instance, final int attribute) {
+		if (values != null)
+			return values[instance * numberOfAttributes + attribute];
+		if (windows != null)
+			return (float) getMappedValues(instance).get(getMappedOffset(instance) + attribute);
+
+		final int position = Arrays.binarySearch(nonZeroAttributes, rowStart[instance], 
+												 rowStart[instance + 1], attribute);
+		return (position >= 0) ? nonZeroValues[position] : 0;
+	}
+
+	/**
+	 * Returns the vector of an instance, as it was built from, the vector itself while it is in
+	 * the heap and a new copy otherwise (see getInstance(int, double[]) to reuse a buffer).
+	 * 
+	 * @param instance
+	 *            the instance index
+	 * @return the instance vector, labels included. Must not be modified
+	 */
+	public double[] getInstance(final int instance) {
+		final double[] vector = source[instance];
+		return (vector != null) ? vector : getInstance(instance, new double[numberOfAttributes]);
+	}
+
+	/**
+	 * Returns the vector of an instance, the vector itself while it is in the heap, or else 
+	 * read into the given buffer.
+	 * 
+	 * @param instance
+	 *            the instance index
+	 * @param buffer
+	 *            a vector of getNumberOfAttributes() values, overwritten if the instance is read
+	 * @return the instance vector, labels included, or the buffer holding it. Must not be modified
+	 */
+	public double[] getInstance(final int instance, final double[] buffer) {
+		final double[] vector = source[instance];
+		if (vector != null)
+			return vector;
+
+		if (windows != null) {
+			final DoubleBuffer window = getMappedValues(instance);
+			final int offset = getMappedOffset(instance);
+			for (int a = 0; a < numberOfAttributes; a++)
+				buffer[a] = window.get(offset + a);
+		} else if (values != null) {
+			final int offset = instance * numberOfAttributes;
+			for (int a = 0; a < numberOfAttributes; a++)
+				buffer[a] = values[offset + a];
+		} else {
+			Arrays.fill(buffer, 0, numberOfAttributes, 0);
+			for (int position = rowStart[instance]; position < rowStart[instance + 1]; position++)
+				buffer[nonZeroAttributes[position]] = nonZeroValues[position];
+		}
+		return buffer;
+	}
+
+	/**
+	 * Touch every page of an instance of a mapped set, so that it is in memory when needed.
+	 * 
+	 * @param instance
+	 *            the instance index
+	 */
+	public void touch(final int instance) {
+		if (windows == null)
+			return;
+		final DoubleBuffer window = getMappedValues(instance);
+		final int offset = getMappedOffset(instance);
+		double sum = 0;
+		for (int a = 0; a < numberOfAttributes; a += VALUES_PER_PAGE)
+			sum += window.get(offset + a);
+		if (numberOfAttributes > 0)
+			sum += window.get(offset + numberOfAttributes - 1);
+		touched = sum;
+	}
+
+	/**
+	 * Returns the hash code of the instance vectors, in order, as Arrays.deepHashCode() does 
+	 * for the vectors in the heap (or did, before they were released).
+	 * 
+	 * @return the hash code of the instances
+	 */
+	public int getInstancesHashCode() {
+		if (released)
+			return releasedHashCode;
+		if (windows == null)
+			return Arrays.deepHashCode(source);
+
+		int result = 1;
+		for (int i = 0; i < numberOfInstances; i++) {
+			final DoubleBuffer window = getMappedValues(i);
+			final int offset = getMappedOffset(i);
+			int rowHash = 1;
+			for (int a = 0; a < numberOfAttributes; a++) {
+				final long bits = Double.doubleToLongBits(window.get(offset + a));
+				rowHash = 31 * rowHash + (int) (bits ^ (bits >>> 32));
+			}
+			result = 31 * result + rowHash;
+		}
+		return result;
+	}
+
+	/**
+	 * @param instance
+	 *            the instance index
+	 * @param label
+	 *            the label index
+	 * @return true if the label is active in the instance
+	 */
+	public boolean isLabelActive(final int instance, final int label) {
+		return (labelBits[instance * labelWords + (label >>> 6)] & (1L << (label & 63))) != 0;
+	}
+
+	/**
+	 * @param instance
+	 *            the instance index
+	 * @return the number of active labels of the instance
+	 */
+	public int getNumberOfActiveLabels(final int instance) {
+		return activeLabels[instance];
+	}
+
+	/**
+	 * @param instance
+	 *            the instance index
+	 * @return the active labels of the instance, in ascending order
+	 */
+	public int[] getActiveLabels(final int instance) {
+		final int[] result = new int[activeLabels[instance]];
+		int index = 0;
+		for (int l = 0; l < numberOfLabels; l++) {
+			if (isLabelActive(instance, l))
+				result[index++] = l;
+		}
+		return result;
+	}
+
+	/**
+	 * @return the mean number of active labels per instance
+	 */
+	public double getLabelCardinality() {
+		if (numberOfInstances == 0)
+			return 0;
+		double sumOfLabels = 0;
+		for (int i = 0; i < numberOfInstances; i++)
+			sumOfLabels += activeLabels[i];
+		return sumOfLabels / numberOfInstances;
+	}
+
+}
@@ -0,0 +1,237 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.utilities;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Custom Java Flight Recorder events of the training and evaluation phases, so that 
+ * the allocations and latencies of a recording can be attributed to them.
+ * 
+ * The event types are defined at runtime through jdk.jfr.EventFactory, found by reflection, 
+ * so that the code still builds and runs on JVMs without the jdk.jfr module. Events are 
+ * emitted when the flightRecorderEvents setting is enabled and the JVM supports them; they 
+ * are recorded only when a recording has the event types enabled (as the default and 
+ * profile settings do). When disabled, begin() returns null on a static final flag.
+ * 
+ * A phase is recorded as
+ * <pre>
+ * final Object event = FlightRecorderEvents.begin(FlightRecorderEvents.COVERING);
+ * ...
+ * if (event != null)
+ *     FlightRecorderEvents.commit(event, instanceIndex);
+ * </pre>
+ * with the field values in the order of their definition.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public final class FlightRecorderEvents {
+
+	/**
+	 * A training epoch. Fields: epoch, evolve, instances, macroclassifiers, numerosity, covers.
+	 */
+	public static final int EPOCH = 0;
+
+	/**
+	 * A GA invocation on a correct set. Fields: label, setSize, offspring, subsumptions.
+	 */
+	public static final int GA_INVOCATION = 1;
+
+	/**
+	 * A batch of deletions bringing the population back to its size. Fields: deletions, numerosity.
+	 */
+	public static final int DELETION = 2;
+
+	/**
+	 * The covering of a training instance. Fields: instance.
+	 */
+	public static final int COVERING = 3;
+
+	/**
+	 * The calibration of the voting threshold. Fields: method, threshold.
+	 */
+	public static final int CALIBRATION = 4;
+
+	/**
+	 * An evaluation pass over a test set. Fields: mode, instances, accuracy, exactMatch.
+	 */
+	public static final int EVALUATION = 5;
+
+	/**
+	 * The names of the event types, prefixed by gr.auth.ee.lcs.
+	 */
+	private static final String[] NAMES = { "Epoch", "GeneticAlgorithm", "Deletion", "Covering", "Calibration", "Evaluation" };
+
+	/**
+	 * The labels of the event types.
+	 */
+	private static final String[] LABELS = { "LCS Epoch", "LCS GA Invocation", "LCS Deletion Batch", "LCS Covering", 
+		"LCS Calibration", "LCS Evaluation Pass" };
+
+	/**
+	 * The categories of the event types, under LCS.
+	 */
+	private static final String[] CATEGORIES = { "Training", "Training", "Training", "Training", "Evaluation", "Evaluation" };
+
+	/**
+	 * The field names of each event type.
+	 */
+	private static final String[][] FIELD_NAMES = {
+		{ "epoch", "evolve", "instances", "macroclassifiers", "numerosity", "covers" },
+		{ "label", "setSize", "offspring", "subsumptions" },
+		{ "deletions", "numerosity" },
+		{ "instance" },
+		{ "method", "threshold" },
+		{ "mode", "instances", "accuracy", "exactMatch" } };
+
+	/**
+	 * The field types of each event type.
+	 */
+	private static final Class<?>[][] FIELD_TYPES = {
+		{ int.class, boolean.class, int.class, int.class, int.class, int.class },
+		{ int.class, int.class, int.class, int.class },
+		{ int.class, int.class },
+		{ int.class },
+		{ String.class, double.class },
+		{ String.class, int.class, double.class, double.class } };
+
+	/**
+	 * True when events are emitted.
+	 */
+	public static final boolean ENABLED;
+
+	/**
+	 * The jdk.jfr.EventFactory of each event type.
+	 */
+	private static final Object[] FACTORIES = new Object[NAMES.length];
+
+	/**
+	 * The reflected methods of jdk.jfr.EventFactory and jdk.jfr.Event.
+	 */
+	private static Method newEvent, begin, end, shouldCommit, set, commit;
+
+	static {
+		boolean enabled = false;
+		if (SettingsLoader.getStringSetting("flightRecorderEvents", "false").equals("true")) {
+			try {
+				defineEvents();
+				enabled = true;
+			} catch (Exception e) {
+				System.out.println("Flight recorder events are not supported by this JVM: " + e);
+			}
+		}
+		ENABLED = enabled;
+	}
+
+	/**
+	 * Private constructor, all methods are static.
+	 */
+	private FlightRecorderEvents() {
+	}
+
+	/**
+	 * Create the event factories.
+	 * 
+	 * @throws Exception
+	 *             when jdk.jfr is not available
+	 */
+	private static void defineEvents() throws Exception {
+		final Class<?> factoryClass = Class.forName("jdk.jfr.EventFactory");
+		final Class<?> eventClass = Class.forName("jdk.jfr.Event");
+		final Constructor<?> annotation = Class.forName("jdk.jfr.AnnotationElement").getConstructor(Class.class, Object.class);
+		final Constructor<?> field = Class.forName("jdk.jfr.ValueDescriptor").getConstructor(Class.class, String.class);
+		final Class<?> name = Class.forName("jdk.jfr.Name");
+		final Class<?> label = Class.forName("jdk.jfr.Label");
+		final Class<?> category = Class.forName("jdk.jfr.Category");
+		final Method create = factoryClass.getMethod("create", List.class, List.class);
+
+		for (int type = 0; type < NAMES.length; type++) {
+			final List<Object> annotations = new ArrayList<Object>();
+			annotations.add(annotation.newInstance(name, "gr.auth.ee.lcs." + NAMES[type]));
+			annotations.add(annotation.newInstance(label, LABELS[type]));
+			annotations.add(annotation.newInstance(category, new String[] { "LCS", CATEGORIES[type] }));
+
+			final List<Object> fields = new ArrayList<Object>();
+			for (int i = 0; i < FIELD_NAMES[type].length; i++)
+				fields.add(field.newInstance(FIELD_TYPES[type][i], FIELD_NAMES[type][i]));
+
+			FACTORIES[type] = create.invoke(null, annotations, fields);
+		}
+
+		newEvent = factoryClass.getMethod("newEvent");
+		begin = eventClass.getMethod("begin");
+		end = eventClass.getMethod("end");
+		shouldCommit = eventClass.getMethod("shouldCommit");
+		set = eventClass.getMethod("set", int.class, Object.class);
+		commit = eventClass.getMethod("commit");
+	}
+
+	/**
+	 * Start timing an event.
+	 * 
+	 * @param type
+	 *            the event type
+	 * @return the event, or null when events are not emitted
+	 */
+	public static Object begin(final int type) {
+		if (!ENABLED)
+			return null;
+		try {
+			final Object event = newEvent.invoke(FACTORIES[type]);
+			begin.invoke(event);
+			return event;
+		} catch (Exception e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * End an event and commit it, if it is recorded.
+	 * 
+	 * @param event
+	 *            the event returned by begin()
+	 * @param values
+	 *            the values of the fields of the event type, in order
+	 */
+	public static void commit(final Object event, final Object... values) {
+		try {
+			end.invoke(event);
+			if (!((Boolean) shouldCommit.invoke(event)))
+				return;
+			for (int i = 0; i < values.length; i++)
+				set.invoke(event, i, values[i]);
+			commit.invoke(event);
+		} catch (Exception e) {
+			System.out.println("Cannot commit flight recorder event " + Arrays.toString(values) + ": " + e);
+		}
+	}
+
+}
@@ -0,0 +1,155 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.utilities;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reads ahead the instances of a memory-mapped train set in the order of the current epoch, so that
+ * the pages of the next instances are already in memory when the LCS trains with them. A daemon thread
+ * touches the instances up to a fixed distance ahead of the trainer and parks when it has caught up.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public final class InstancePrefetcher implements Runnable {
+
+	/**
+	 * The number of instances read ahead of the trainer.
+	 */
+	private static final int DISTANCE = Math.max(1, (int) SettingsLoader.getNumericSetting("mappedPrefetchInstances", 256));
+
+	/**
+	 * The maximum time to park for, in nanoseconds, in case a wake up is missed.
+	 */
+	private static final long PARK_NANOS = 1000000;
+
+	/**
+	 * The mapped set to read ahead.
+	 */
+	private final FlatDataset dataset;
+
+	/**
+	 * The reading thread.
+	 */
+	private final Thread thread;
+
+	/**
+	 * The instance order of the current epoch.
+	 */
+	private volatile int[] order = new int[0];
+
+	/**
+	 * Incremented when a new epoch starts, after the order is set.
+	 */
+	private volatile int epoch = 0;
+
+	/**
+	 * The position of the trainer in the current epoch.
+	 */
+	private volatile int position = 0;
+
+	/**
+	 * Set to stop the reading thread.
+	 */
+	private volatile boolean stopped = false;
+
+	/**
+	 * Constructor. Starts the reading thread.
+	 * 
+	 * @param dataset
+	 *            the mapped set to read ahead
+	 */
+	public InstancePrefetcher(final FlatDataset dataset) {
+		this.dataset = dataset;
+		thread = new Thread(this, "lcs-instance-prefetcher");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Start reading ahead the instances of a new epoch.
+	 * 
+	 * @param epochOrder
+	 *            the order the instances will be presented in
+	 */
+	public void startEpoch(final int[] epochOrder) {
+		position = 0;
+		order = epochOrder;
+		epoch++;
+		LockSupport.unpark(thread);
+	}
+
+	/**
+	 * Inform the prefetcher of the position of the trainer in the current epoch.
+	 * 
+	 * @param current
+	 *            the position in the epoch order of the instance being trained with
+	 */
+	public void advance(final int current) {
+		position = current;
+		if (current % Math.max(1, DISTANCE / 4) == 0)
+			LockSupport.unpark(thread);
+	}
+
+	/**
+	 * Stop the reading thread.
+	 */
+	public void stop() {
+		stopped = true;
+		LockSupport.unpark(thread);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run() {
+		int currentEpoch = -1;
+		int[] currentOrder = null;
+		int next = 0;
+		while (!stopped) {
+			final int latestEpoch = epoch;
+			if (latestEpoch != currentEpoch) {
+				currentEpoch = latestEpoch;
+				currentOrder = order;
+				next = 0;
+			}
+			
+			final int limit = Math.min(currentOrder.length, position + DISTANCE);
+			if (next < position)
+				next = position;
+			if (next >= limit) {
+				LockSupport.parkNanos(this, PARK_NANOS);
+				continue;
+			}
+			
+			while (next < limit && epoch == currentEpoch && !stopped)
+				dataset.touch(currentOrder[next++]);
+		}
+	}
+}
@@ -30,6 +30,8 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Random;
 import java.util.Vector;
 
 import weka.core.Instance;
@@ -116,6 +118,29 @@ public final class InstancesUtility {
 		return 0;
 	}
 	
+	/**
+	 * Returns the label cardinality of the specified instances.
+	 * 
+	 */
+	public static double getLabelCardinality (final double[][] instances) { 
+		if (instances == null) return -1;
+		
+		int numberOfLabels = (int) SettingsLoader.getNumericSetting("numberOfLabels", 1);
+		double sumOfLabels = 0;
+
+		for (int i = 0; i < instances.length; i++) {
+			for (int j = instances[i].length - numberOfLabels; j < instances[i].length; j++) {
+				sumOfLabels += instances[i][j];
+			}
+		}
+		
+		if (instances.length != 0) {
+
+			return sumOfLabels / instances.length; 
+		}
+		return 0;
+	}
+	
 	/**
 	 * The number of instances are multiple of the number of folds.
 	 * From a se t of instances, it returns a chunk whose length is instances.numInstances / numberOfFolds
@@ -297,6 +322,127 @@ public final class InstancesUtility {
 	
 
 	
+	/**
+	 * Assigns every instance of a set to the test set of one of numberOfFolds folds, stratified by label
+	 * combination as splitDatasetIntoFolds() does, but only as indices: no instances are copied.
+	 * 
+	 * The instances are visited in a random order and grouped by label combination. Each group is split
+	 * into numberOfFolds equal contiguous segments, one per fold. The leftovers of each group are then 
+	 * spread over the folds in a random order, never exceeding ceil(numInstances / numberOfFolds) test 
+	 * instances per fold.
+	 * 
+	 * @param instances
+	 *            the instances
+	 * @param numberOfLabels
+	 *            the number of labels at the end of each instance
+	 * @param numberOfFolds
+	 *            the number of folds
+	 * @param random
+	 *            the source of randomness
+	 * @return the test fold of every instance, in the order of the instances
+	 */
+	public static int[] assignStratifiedFolds(final double[][] instances,
+											  final int numberOfLabels,
+											  final int numberOfFolds,
+											  final Random random) {
+		
+		final int numberOfInstances = instances.length;
+		final ArrayList<Integer> order = new ArrayList<Integer>(numberOfInstances);
+		for (int i = 0; i < numberOfInstances; i++)
+			order.add(i);
+		Collections.shuffle(order, random);
+		
+		// partition by label combination, in order of first appearance
+		final LinkedHashMap<String, Vector<Integer>> partitions = new LinkedHashMap<String, Vector<Integer>>();
+		for (final int i : order) {
+			final StringBuilder combination = new StringBuilder(numberOfLabels);
+			for (int j = instances[i].length - numberOfLabels; j < instances[i].length; j++)
+				combination.append((int) instances[i][j]);
+			Vector<Integer> partition = partitions.get(combination.toString());
+			if (partition == null) {
+				partition = new Vector<Integer>();
+				partitions.put(combination.toString(), partition);
+			}
+			partition.add(i);
+		}
+		
+		final int[] folds = new int[numberOfInstances];
+		final int[] numberOfTestInstancesPerFold = new int[numberOfFolds];
+		final int upperBound = (int) Math.ceil((double) numberOfInstances / (double) numberOfFolds);
+		
+		// contiguous segments of equal size
+		for (final Vector<Integer> partition : partitions.values()) {
+			final int segment = partition.size() / numberOfFolds;
+			for (int fold = 0; fold < numberOfFolds; fold++) {
+				for (int k = 0; k < segment; k++)
+					folds[partition.elementAt(fold * segment + k)] = fold;
+				numberOfTestInstancesPerFold[fold] += segment;
+			}
+		}
+		
+		// leftovers, starting from the end of each partition
+		final ArrayList<Integer> foldOrder = new ArrayList<Integer>(numberOfFolds);
+		for (int fold = 0; fold < numberOfFolds; fold++)
+			foldOrder.add(fold);
+		for (final Vector<Integer> partition : partitions.values()) {
+			final int numberOfLeftoverInstances = partition.size() % numberOfFolds;
+			Collections.shuffle(foldOrder, random);
+			
+			int j = 0;
+			for (int k = partition.size() - 1; k >= partition.size() - numberOfLeftoverInstances; ) {
+				final int fold = foldOrder.get(j);
+				if (numberOfTestInstancesPerFold[fold] < upperBound) {
+					folds[partition.elementAt(k)] = fold;
+					numberOfTestInstancesPerFold[fold]++;
+					k--;
+				}
+				j = (j + 1) % numberOfFolds;
+			}
+		}
+		return folds;
+	}
+	
+	/**
+	 * Returns the indices of the instances in the train or the test set of a fold.
+	 * 
+	 * @param folds
+	 *            the test fold of every instance
+	 * @param fold
+	 *            the fold
+	 * @param test
+	 *            true for the test set, false for the train set
+	 * @return the indices, ascending
+	 */
+	public static int[] getFoldIndices(final int[] folds, final int fold, final boolean test) {
+		int size = 0;
+		for (int i = 0; i < folds.length; i++)
+			if ((folds[i] == fold) == test)
+				size++;
+		
+		final int[] indices = new int[size];
+		int index = 0;
+		for (int i = 0; i < folds.length; i++)
+			if ((folds[i] == fold) == test)
+				indices[index++] = i;
+		return indices;
+	}
+	
+	/**
+	 * Returns a view of some instances of a set. The instance vectors are shared, not copied.
+	 * 
+	 * @param instances
+	 *            the set
+	 * @param indices
+	 *            the indices of the instances to include
+	 * @return the instances at the given indices
+	 */
+	public static double[][] selectInstances(final double[][] instances, final int[] indices) {
+		final double[][] selected = new double[indices.length][];
+		for (int i = 0; i < indices.length; i++)
+			selected[i] = instances[indices[i]];
+		return selected;
+	}
+	
 	public static void splitDatasetIntoFolds (final AbstractLearningClassifierSystem lcs, 
 												final Instances dataset,
 												final int numberOfFolds) throws Exception {
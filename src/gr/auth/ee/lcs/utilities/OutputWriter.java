@@ -0,0 +1,370 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.utilities;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A shared output subsystem writing metric and log records to files from a background thread.
+ * Training threads only enqueue records into a bounded queue, blocking only when the writer falls 
+ * behind. The writer keeps a buffered channel open per file and flushes them when asked to (at the 
+ * callbacks, without waiting, and at the end of training) and at shutdown.
+ * 
+ * Records for the same file are written in the order they were enqueued.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public final class OutputWriter {
+
+	/**
+	 * A request to the writer thread.
+	 */
+	private static final class Record {
+		
+		/**
+		 * The file to write to, or null for a flush of all files.
+		 */
+		private final String file;
+		
+		/**
+		 * The text to append, or null to truncate the file.
+		 */
+		private final String text;
+		
+		/**
+		 * Counted down when a flush has completed.
+		 */
+		private final CountDownLatch done;
+
+		private Record(final String file, final String text, final CountDownLatch done) {
+			this.file = file;
+			this.text = text;
+			this.done = done;
+		}
+	}
+
+	/**
+	 * A writer appending to a file through the queue, in chunks of CHUNK_SIZE characters.
+	 */
+	private static final class ChunkWriter extends Writer {
+
+		/**
+		 * The file to append to.
+		 */
+		private final String file;
+
+		/**
+		 * The characters not yet enqueued.
+		 */
+		private final StringBuilder chunk = new StringBuilder(CHUNK_SIZE);
+
+		private ChunkWriter(final String file) {
+			this.file = file;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.io.Writer#write(char[], int, int)
+		 */
+		@Override
+		public void write(final char[] cbuf, final int off, final int len) {
+			chunk.append(cbuf, off, len);
+			if (chunk.length() >= CHUNK_SIZE)
+				flush();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.io.Writer#write(java.lang.String, int, int)
+		 */
+		@Override
+		public void write(final String str, final int off, final int len) {
+			chunk.append(str, off, off + len);
+			if (chunk.length() >= CHUNK_SIZE)
+				flush();
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.io.Writer#append(java.lang.CharSequence)
+		 */
+		@Override
+		public Writer append(final CharSequence csq) {
+			chunk.append(csq);
+			if (chunk.length() >= CHUNK_SIZE)
+				flush();
+			return this;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.io.Writer#flush()
+		 */
+		@Override
+		public void flush() {
+			if (chunk.length() == 0)
+				return;
+			OutputWriter.append(file, chunk.toString());
+			chunk.setLength(0);
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.io.Writer#close()
+		 */
+		@Override
+		public void close() {
+			flush();
+		}
+	}
+
+	/**
+	 * The capacity of the record queue.
+	 */
+	private static final int QUEUE_CAPACITY = Math.max(1, (int) SettingsLoader.getNumericSetting("outputQueueCapacity", 4096));
+
+	/**
+	 * The maximum number of files kept open. The least recently written ones are closed first.
+	 */
+	private static final int MAX_OPEN_FILES = Math.max(1, (int) SettingsLoader.getNumericSetting("outputMaxOpenFiles", 64));
+
+	/**
+	 * The size of the buffer of each file.
+	 */
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * The number of characters a writer returned by getWriter() collects before enqueuing them.
+	 */
+	private static final int CHUNK_SIZE = 1 << 15;
+
+	/**
+	 * The records waiting to be written.
+	 */
+	private static final BlockingQueue<Record> queue = new ArrayBlockingQueue<Record>(QUEUE_CAPACITY);
+
+	/**
+	 * The open files, in least recently used order. Only accessed by the writer thread.
+	 */
+	private static final LinkedHashMap<String, Writer> channels = new LinkedHashMap<String, Writer>(16, 0.75f, true) {
+
+		private static final long serialVersionUID = 1L;
+
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see java.util.LinkedHashMap#removeEldestEntry(java.util.Map.Entry)
+		 */
+		@Override
+		protected boolean removeEldestEntry(final Map.Entry<String, Writer> eldest) {
+			if (size() <= MAX_OPEN_FILES)
+				return false;
+			close(eldest.getValue());
+			return true;
+		}
+	};
+
+	/**
+	 * The writer thread, started on first use.
+	 */
+	private static Thread writer;
+
+	/**
+	 * Private constructor, only static methods are provided.
+	 */
+	private OutputWriter() {
+	}
+
+	/**
+	 * Append a record to a file, creating the file if needed.
+	 * 
+	 * @param file
+	 *            the filename
+	 * @param text
+	 *            the text to append
+	 */
+	public static void append(final String file, final String text) {
+		enqueue(new Record(file, text, null));
+	}
+
+	/**
+	 * Returns a writer appending to a file through the writer thread. Text is enqueued in chunks,
+	 * so large outputs can be streamed without being built in memory first. The text written
+	 * reaches the queue when the writer is flushed or closed, at the latest.
+	 * 
+	 * @param file
+	 *            the filename
+	 * @return the writer
+	 */
+	public static Writer getWriter(final String file) {
+		return new ChunkWriter(file);
+	}
+
+	/**
+	 * Empty a file, creating it if needed. Records enqueued later are appended to the emptied file.
+	 * 
+	 * @param file
+	 *            the filename
+	 */
+	public static void truncate(final String file) {
+		enqueue(new Record(file, null, null));
+	}
+
+	/**
+	 * Ask the writer to flush all files once the records enqueued so far have been written. 
+	 * Does not wait for the flush to happen.
+	 */
+	public static void flush() {
+		enqueue(new Record(null, null, null));
+	}
+
+	/**
+	 * Wait until all records enqueued so far have been written and flushed to their files.
+	 */
+	public static void sync() {
+		final CountDownLatch done = new CountDownLatch(1);
+		enqueue(new Record(null, null, done));
+		try {
+			done.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Enqueue a record, starting the writer thread if needed.
+	 * 
+	 * @param record
+	 *            the record
+	 */
+	private static void enqueue(final Record record) {
+		start();
+		try {
+			queue.put(record);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			System.out.println("Output record for " + record.file + " lost: interrupted");
+		}
+	}
+
+	/**
+	 * Start the writer thread and register the shutdown hook flushing it, if not done already.
+	 */
+	private static synchronized void start() {
+		if (writer != null)
+			return;
+
+		writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				while (true) {
+					try {
+						write(queue.take());
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+			}
+		}, "lcs-output-writer");
+		writer.setDaemon(true);
+		writer.start();
+
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				sync();
+			}
+		});
+	}
+
+	/**
+	 * Process a record on the writer thread.
+	 * 
+	 * @param record
+	 *            the record
+	 */
+	private static void write(final Record record) {
+		if (record.file == null) {
+			for (final Iterator<Writer> it = channels.values().iterator(); it.hasNext();) {
+				try {
+					it.next().flush();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+			if (record.done != null)
+				record.done.countDown();
+			return;
+		}
+
+		try {
+			if (record.text == null) {
+				close(channels.remove(record.file));
+				channels.put(record.file, new BufferedWriter(new FileWriter(record.file, false), BUFFER_SIZE));
+				return;
+			}
+
+			Writer channel = channels.get(record.file);
+			if (channel == null) {
+				channel = new BufferedWriter(new FileWriter(record.file, true), BUFFER_SIZE);
+				channels.put(record.file, channel);
+			}
+			channel.write(record.text);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Close a channel, ignoring null ones.
+	 * 
+	 * @param channel
+	 *            the channel
+	 */
+	private static void close(final Writer channel) {
+		if (channel == null)
+			return;
+		try {
+			channel.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,180 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.utilities;
+
+import java.util.Vector;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A shared pool splitting index ranges into contiguous chunks that are processed in parallel.
+ * Used for read-only work over the rule population, such as classifying a batch of instances.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public final class ParallelChunkExecutor {
+
+	/**
+	 * A piece of work over the index range [from, to).
+	 * 
+	 * @author F. Tzima and M. Allamanis
+	 * 
+	 */
+	public interface IChunkTask {
+
+		/**
+		 * Process the indices from (inclusive) to (exclusive).
+		 * 
+		 * @param from
+		 *            the first index of the chunk
+		 * @param to
+		 *            the index after the last one of the chunk
+		 */
+		void run(int from, int to);
+	}
+
+	/**
+	 * The threads of the shared pool. Used to run nested calls inline instead of deadlocking.
+	 */
+	private static final class WorkerThread extends Thread {
+
+		private WorkerThread(final Runnable target, final int index) {
+			super(target, "lcs-chunk-worker-" + index);
+			setDaemon(true);
+		}
+	}
+
+	/**
+	 * The number of threads used. A value of 1 disables parallel execution.
+	 */
+	public static final int THREADS = Math.max(1, (int) SettingsLoader.getNumericSetting("classificationThreads", 
+													Runtime.getRuntime().availableProcessors()));
+
+	/**
+	 * The number of chunks created per thread, to balance uneven chunk costs.
+	 */
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	/**
+	 * The shared pool, created on first use.
+	 */
+	private static ExecutorService pool;
+
+	/**
+	 * Process all indices [0, size) in chunks of at least minChunkSize indices.
+	 * Returns when all chunks have been processed. The caller thread processes a chunk itself.
+	 * 
+	 * @param size
+	 *            the number of indices
+	 * @param minChunkSize
+	 *            the minimum number of indices in a chunk, so that small batches run sequentially
+	 * @param task
+	 *            the task to run on each chunk
+	 * @throws RuntimeException
+	 *             if a chunk failed, once all chunks have finished. The exception of a chunk run by the pool 
+	 *             is wrapped, that of the caller's chunk is rethrown as is
+	 */
+	public static void forEachChunk(final int size, final int minChunkSize, final IChunkTask task) {
+		if (size <= 0)
+			return;
+		
+		int numberOfChunks = Math.min(THREADS * CHUNKS_PER_THREAD, (size + minChunkSize - 1) / Math.max(1, minChunkSize));
+		if (THREADS == 1 || numberOfChunks <= 1 || Thread.currentThread() instanceof WorkerThread) {
+			task.run(0, size);
+			return;
+		}
+
+		final ExecutorService executor = getPool();
+		final int chunkSize = (size + numberOfChunks - 1) / numberOfChunks;
+		numberOfChunks = (size + chunkSize - 1) / chunkSize;
+		
+		final Vector<Future<?>> futures = new Vector<Future<?>>();
+		for (int chunk = 1; chunk < numberOfChunks; chunk++) {
+			final int from = chunk * chunkSize;
+			final int to = Math.min(size, from + chunkSize);
+			futures.add(executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					task.run(from, to);
+				}
+			}));
+		}
+		
+		// The other chunks still use the caller's data, so they are waited for even if a chunk fails
+		RuntimeException failure = null;
+		try {
+			task.run(0, Math.min(size, chunkSize));
+		} catch (RuntimeException e) {
+			failure = e;
+		}
+		
+		boolean interrupted = false;
+		for (int i = 0; i < futures.size(); i++) {
+			try {
+				futures.get(i).get();
+			} catch (InterruptedException e) {
+				interrupted = true;
+				i--;
+			} catch (ExecutionException e) {
+				if (failure == null)
+					failure = new RuntimeException("A chunk failed", e.getCause());
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		
+		if (failure != null)
+			throw failure;
+	}
+
+	/**
+	 * Returns the shared pool, creating it if needed.
+	 * 
+	 * @return the pool
+	 */
+	private static synchronized ExecutorService getPool() {
+		if (pool == null) {
+			pool = Executors.newFixedThreadPool(THREADS, new ThreadFactory() {
+				private int created = 0;
+				
+				@Override
+				public Thread newThread(final Runnable r) {
+					return new WorkerThread(r, created++);
+				}
+			});
+		}
+		return pool;
+	}
+
+	/**
+	 * Private constructor to avoid instantiation.
+	 */
+	private ParallelChunkExecutor() {
+	}
+}
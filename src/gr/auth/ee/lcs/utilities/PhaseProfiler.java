@@ -0,0 +1,370 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.utilities;
+
+import java.util.Arrays;
+
+/**
+ * A per-phase profiler of the training loop. Every LCS owns a profiler, bound to the thread training it 
+ * for the duration of trainSet(), that accumulates the nanoseconds spent in, and the number of calls of, 
+ * every phase of an epoch, along with a log2 histogram of the call durations. Phases started on a 
+ * thread with no profiler bound are not profiled. Phases may nest (e.g. deletions during covering); a phase is only 
+ * charged its exclusive time, so that the phases of an epoch add up to the time profiled.
+ * 
+ * Profiling is enabled by the profilePhases setting. When disabled, start() and stop() return 
+ * on a static final flag and are removed by the JIT.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public final class PhaseProfiler {
+
+	/**
+	 * The generation of the match set.
+	 */
+	public static final int MATCH_SET = 0;
+
+	/**
+	 * The generation of the correct sets.
+	 */
+	public static final int CORRECT_SETS = 1;
+
+	/**
+	 * The update of the classifiers' parameters and fitness.
+	 */
+	public static final int FITNESS_UPDATE = 2;
+
+	/**
+	 * The selection of the parents in the GA.
+	 */
+	public static final int GA_SELECTION = 3;
+
+	/**
+	 * The crossover and mutation of the parents in the GA.
+	 */
+	public static final int GA_OPERATORS = 4;
+
+	/**
+	 * The check that an offspring matches the instance it was generated for.
+	 */
+	public static final int VIABILITY_CHECK = 5;
+
+	/**
+	 * The subsumption of the offspring and their insertion in the population.
+	 */
+	public static final int SUBSUMPTION = 6;
+
+	/**
+	 * The deletion of classifiers from the population.
+	 */
+	public static final int DELETION = 7;
+
+	/**
+	 * The covering of instances.
+	 */
+	public static final int COVERING = 8;
+
+	/**
+	 * The evaluation callbacks executed between epochs.
+	 */
+	public static final int CALLBACKS = 9;
+
+	/**
+	 * The names of the phases, as written in the profile files.
+	 */
+	public static final String[] PHASE_NAMES = { "matchSet", "correctSets", "fitnessUpdate", 
+		"gaSelection", "crossoverMutation", "viabilityCheck", "subsumption", "deletion", 
+		"covering", "callbacks" };
+
+	/**
+	 * True when phases are profiled.
+	 */
+	public static final boolean ENABLED = SettingsLoader.getStringSetting("profilePhases", "false").equals("true");
+
+	/**
+	 * The number of histogram buckets. Bucket b counts the durations in [2^b, 2^(b+1)) ns.
+	 */
+	private static final int BUCKETS = 48;
+
+	/**
+	 * The maximum nesting depth of the phases.
+	 */
+	private static final int MAX_DEPTH = 16;
+
+	/**
+	 * The profiler bound to each training thread, if any.
+	 */
+	private static final ThreadLocal<PhaseProfiler> PROFILERS = new ThreadLocal<PhaseProfiler>();
+
+	/**
+	 * The start time of each open phase.
+	 */
+	private final long[] startTimes = new long[MAX_DEPTH];
+
+	/**
+	 * The time spent in the phases nested in each open phase.
+	 */
+	private final long[] nestedTimes = new long[MAX_DEPTH];
+
+	/**
+	 * The number of open phases.
+	 */
+	private int depth = 0;
+
+	/**
+	 * The calls of each phase in the current epoch.
+	 */
+	private final long[] counts = new long[PHASE_NAMES.length];
+
+	/**
+	 * The exclusive nanoseconds of each phase in the current epoch.
+	 */
+	private final long[] totals = new long[PHASE_NAMES.length];
+
+	/**
+	 * The longest call of each phase in the current epoch.
+	 */
+	private final long[] maxima = new long[PHASE_NAMES.length];
+
+	/**
+	 * The histogram of the call durations of each phase in the current epoch.
+	 */
+	private final long[][] histograms = new long[PHASE_NAMES.length][BUCKETS];
+
+	/**
+	 * The JSON objects of the epochs written so far.
+	 */
+	private final StringBuilder epochs = new StringBuilder();
+
+	/**
+	 * The CSV file started by this profiler, if any.
+	 */
+	private String csvFile = null;
+
+	/**
+	 * Constructor. The profiler records nothing until bound to a thread.
+	 */
+	public PhaseProfiler() {
+	}
+
+	/**
+	 * Bind a profiler to the current thread, so that the phases started by the thread are recorded by it.
+	 * 
+	 * @param profiler
+	 *            the profiler, or null to stop profiling the thread
+	 */
+	public static void bind(final PhaseProfiler profiler) {
+		if (!ENABLED)
+			return;
+		if (profiler == null)
+			PROFILERS.remove();
+		else
+			PROFILERS.set(profiler);
+	}
+
+	/**
+	 * Mark the start of a phase. Must be followed by a call to stop() in the same thread.
+	 */
+	public static void start() {
+		if (!ENABLED)
+			return;
+		final PhaseProfiler profiler = PROFILERS.get();
+		if (profiler == null)
+			return;
+		if (profiler.depth < MAX_DEPTH) {
+			profiler.startTimes[profiler.depth] = System.nanoTime();
+			profiler.nestedTimes[profiler.depth] = 0;
+		}
+		profiler.depth++;
+	}
+
+	/**
+	 * Mark the end of the phase last started.
+	 * 
+	 * @param phase
+	 *            the phase ended
+	 */
+	public static void stop(final int phase) {
+		if (!ENABLED)
+			return;
+		final PhaseProfiler profiler = PROFILERS.get();
+		if (profiler == null)
+			return;
+		profiler.depth--;
+		if (profiler.depth < 0) {
+			profiler.depth = 0;
+			return;
+		}
+		if (profiler.depth >= MAX_DEPTH)
+			return;
+		final long elapsed = System.nanoTime() - profiler.startTimes[profiler.depth];
+		if (profiler.depth > 0)
+			profiler.nestedTimes[profiler.depth - 1] += elapsed;
+		profiler.record(phase, elapsed - profiler.nestedTimes[profiler.depth]);
+	}
+
+	/**
+	 * Close the current epoch of the profiler bound to this thread, appending its profile to profile.csv 
+	 * in the given directory, and start a new one.
+	 * 
+	 * @param directory
+	 *            the directory of the output files, or null for the working directory
+	 * @param epoch
+	 *            the number of the epoch closed
+	 */
+	public static void endEpoch(final String directory, final int epoch) {
+		if (!ENABLED)
+			return;
+		final PhaseProfiler profiler = PROFILERS.get();
+		if (profiler != null)
+			profiler.writeEpoch(getFile(directory, "profile.csv"), epoch);
+	}
+
+	/**
+	 * Write the profiles of all the epochs closed so far by the profiler bound to this thread 
+	 * to profile.json in the given directory.
+	 * 
+	 * @param directory
+	 *            the directory of the output files, or null for the working directory
+	 */
+	public static void writeJson(final String directory) {
+		if (!ENABLED)
+			return;
+		final PhaseProfiler profiler = PROFILERS.get();
+		if (profiler == null)
+			return;
+		final String file = getFile(directory, "profile.json");
+		OutputWriter.truncate(file);
+		OutputWriter.append(file, "[\n" + profiler.epochs + "\n]\n");
+	}
+
+	/**
+	 * Get the path of an output file.
+	 * 
+	 * @param directory
+	 *            the directory, or null for the working directory
+	 * @param name
+	 *            the file name
+	 * @return the path
+	 */
+	private static String getFile(final String directory, final String name) {
+		return (directory == null) ? name : directory + "/" + name;
+	}
+
+	/**
+	 * Record a call of a phase.
+	 * 
+	 * @param phase
+	 *            the phase
+	 * @param nanos
+	 *            the exclusive duration of the call
+	 */
+	private void record(final int phase, final long nanos) {
+		counts[phase]++;
+		totals[phase] += nanos;
+		if (nanos > maxima[phase])
+			maxima[phase] = nanos;
+		final int bucket = (nanos <= 0) ? 0 : 63 - Long.numberOfLeadingZeros(nanos);
+		histograms[phase][Math.min(bucket, BUCKETS - 1)]++;
+	}
+
+	/**
+	 * Get the upper bound of the bucket where a percentile of the calls of a phase falls.
+	 * 
+	 * @param phase
+	 *            the phase
+	 * @param percentile
+	 *            the percentile, in [0, 1]
+	 * @return the upper bound of the bucket in nanoseconds, at most the longest call
+	 */
+	private long getPercentile(final int phase, final double percentile) {
+		final long rank = (long) Math.ceil(percentile * counts[phase]);
+		long seen = 0;
+		for (int b = 0; b < BUCKETS; b++) {
+			seen += histograms[phase][b];
+			if (seen >= rank)
+				return Math.min((1L << (b + 1)) - 1, maxima[phase]);
+		}
+		return maxima[phase];
+	}
+
+	/**
+	 * Write the profile of the current epoch and reset the counters.
+	 * 
+	 * @param file
+	 *            the CSV file
+	 * @param epoch
+	 *            the number of the epoch
+	 */
+	private void writeEpoch(final String file, final int epoch) {
+		if (!file.equals(csvFile)) {
+			csvFile = file;
+			OutputWriter.truncate(file);
+			OutputWriter.append(file, "epoch,phase,count,totalNanos,meanNanos,maxNanos,p50Nanos,p90Nanos,p99Nanos\n");
+		}
+
+		final StringBuilder csv = new StringBuilder();
+		if (epochs.length() > 0)
+			epochs.append(",\n");
+		epochs.append("  {\"epoch\": ").append(epoch).append(", \"phases\": {");
+
+		boolean first = true;
+		for (int phase = 0; phase < PHASE_NAMES.length; phase++) {
+			if (counts[phase] == 0)
+				continue;
+			csv.append(epoch).append(',').append(PHASE_NAMES[phase])
+				.append(',').append(counts[phase])
+				.append(',').append(totals[phase])
+				.append(',').append(totals[phase] / counts[phase])
+				.append(',').append(maxima[phase])
+				.append(',').append(getPercentile(phase, .5))
+				.append(',').append(getPercentile(phase, .9))
+				.append(',').append(getPercentile(phase, .99))
+				.append('\n');
+
+			int lastBucket = BUCKETS - 1;
+			while (histograms[phase][lastBucket] == 0)
+				lastBucket--;
+			epochs.append(first ? "\n" : ",\n");
+			epochs.append("    \"").append(PHASE_NAMES[phase]).append("\": {\"count\": ").append(counts[phase])
+				.append(", \"totalNanos\": ").append(totals[phase])
+				.append(", \"maxNanos\": ").append(maxima[phase])
+				.append(", \"log2Histogram\": [");
+			for (int b = 0; b <= lastBucket; b++)
+				epochs.append(b == 0 ? "" : ", ").append(histograms[phase][b]);
+			epochs.append("]}");
+			first = false;
+
+			counts[phase] = 0;
+			totals[phase] = 0;
+			maxima[phase] = 0;
+			Arrays.fill(histograms[phase], 0);
+		}
+		epochs.append(first ? "}}" : "\n  }}");
+
+		OutputWriter.append(file, csv.toString());
+	}
+
+}
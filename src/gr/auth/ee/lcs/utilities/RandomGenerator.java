@@ -0,0 +1,123 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.utilities;
+
+import java.io.Serializable;
+import java.util.Random;
+
+/**
+ * The random number generator of an LCS, drawn from by its evolutionary components in place of Math.random().
+ * Every LCS owns one, so that LCSs trained in parallel (e.g. the folds of a FoldEvaluator) neither share nor 
+ * disturb each other's random sequence. Unlike the generator of Math.random(), it can be seeded, and its state 
+ * can be saved and restored, so that a checkpointed training run continues with the same random sequence.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public final class RandomGenerator implements Serializable {
+
+	/**
+	 * Serialization id for versioning.
+	 */
+	private static final long serialVersionUID = -6095185640398575241L;
+
+	/**
+	 * The generator drawn from. java.util.Random is serializable with its full state.
+	 */
+	private Random random;
+
+	/**
+	 * Constructor. The generator is seeded by the randomSeed setting, or randomly if it is 0.
+	 */
+	public RandomGenerator() {
+		final long seed = (long) SettingsLoader.getNumericSetting("randomSeed", 0);
+		random = (seed == 0) ? new Random() : new Random(seed);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param seed
+	 *            the seed of the generator
+	 */
+	public RandomGenerator(final long seed) {
+		random = new Random(seed);
+	}
+
+	/**
+	 * Returns the next pseudorandom double, uniformly distributed in [0, 1).
+	 * 
+	 * @return the next random number
+	 */
+	public double nextDouble() {
+		return random.nextDouble();
+	}
+
+	/**
+	 * Returns the next pseudorandom int, uniformly distributed in [0, n).
+	 * 
+	 * @param n
+	 *            the bound of the number, positive
+	 * @return the next random number
+	 */
+	public int nextInt(final int n) {
+		return random.nextInt(n);
+	}
+
+	/**
+	 * Fisher-Yates shuffle of an index array.
+	 * 
+	 * @param array
+	 *            the array to shuffle
+	 */
+	public void shuffle(final int[] array) {
+		for (int i = array.length - 1; i > 0; i--) {
+			final int j = random.nextInt(i + 1);
+			final int temp = array[i];
+			array[i] = array[j];
+			array[j] = temp;
+		}
+	}
+
+	/**
+	 * Returns the generator drawn from, for methods expecting a java.util.Random (e.g. shuffles).
+	 * It is replaced by restore(), so it must not be kept.
+	 * 
+	 * @return the generator
+	 */
+	public Random getRandom() {
+		return random;
+	}
+
+	/**
+	 * Continue with the random sequence of a saved generator, e.g. when resuming training from a checkpoint.
+	 * 
+	 * @param saved
+	 *            the saved generator
+	 */
+	public void restore(final RandomGenerator saved) {
+		random = saved.random;
+	}
+}
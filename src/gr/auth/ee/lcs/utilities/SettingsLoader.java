@@ -28,6 +28,7 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.Properties;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -54,6 +55,11 @@ public final class SettingsLoader {
 	 */
 	private static SettingsLoader instance;
 
+	/**
+	 * The settings overridden in memory, applied over every loaded file.
+	 */
+	private static final Properties overrides = new Properties();
+
 	/**
 	 * Static getter for the singleton instance.
 	 * 
@@ -73,8 +79,9 @@ public final class SettingsLoader {
 				e.printStackTrace();
 			}
 		final double value = instance.getNumericProperty(propertyName, defaultValue);
-		final String output = "Parameter " + propertyName + " set to " + value;
-		CLASS_LOGGER.config(output);
+		// numeric settings are also read in hot paths (e.g. on every classifier construction)
+		if (CLASS_LOGGER.isLoggable(Level.CONFIG))
+			CLASS_LOGGER.config("Parameter " + propertyName + " set to " + value);
 		return value;
 	}
 
@@ -124,6 +131,22 @@ public final class SettingsLoader {
 		instance = new SettingsLoader(filename);
 	}
 
+	/**
+	 * Override a setting in memory only, unlike setSetting() which also stores it in the .properties 
+	 * file, e.g. to run the same LCS with different parameters in one process. Overrides are kept 
+	 * when the settings are reloaded and only affect values read afterwards.
+	 *
+	 * @param propertyName
+	 *            the name of the property
+	 * @param value
+	 *            the new value
+	 */
+	public static void overrideSetting(final String propertyName, final String value) {
+		overrides.setProperty(propertyName, value);
+		if (instance != null)
+			instance.lcsProperties.setProperty(propertyName, value);
+	}
+
 	/**
 	 * Constructor, loads defaultLcs.properties file.
 	 * 
@@ -199,6 +222,7 @@ public final class SettingsLoader {
 				//"defaultLcs.properties"); miltos had this hardcoded
 				filename);
 		lcsProperties.load(input);
+		lcsProperties.putAll(overrides);
 		CLASS_LOGGER.fine("Loaded properties file " + filename);
 		input.close();
 	}
@@ -0,0 +1,568 @@
+/*
+ *	Copyright (C) 2011 by F. Tzima, M. Allamanis and A. Filotheou
+ *
+ *	Permission is hereby granted, free of charge, to any person obtaining a copy
+ *	of this software and associated documentation files (the "Software"), to deal
+ *	in the Software without restriction, including without limitation the rights
+ *	to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ *	copies of the Software, and to permit persons to whom the Software is
+ *	furnished to do so, subject to the following conditions:
+ *
+ *	The above copyright notice and this permission notice shall be included in
+ *	all copies or substantial portions of the Software.
+ *
+ *	THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ *	IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ *	FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ *	AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ *	LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ *	OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ *	THE SOFTWARE.
+ */
+/**
+ * 
+ */
+package gr.auth.ee.lcs.utilities;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Vector;
+
+/**
+ * A generator of synthetic multi-label datasets with planted rules, for testing the LCS at scale.
+ * 
+ * The condition attributes are Boolean, nominal and numeric (in [0,1], with three decimals), drawn 
+ * uniformly. The labels are split into families of a few labels each. Every family is decided by a 
+ * random decision tree over up to ruleOrder attributes of its own, and each leaf of the tree is a 
+ * planted rule setting the labels of the family, e.g. the families of toy6x4 
+ * <pre>
+ * 00#### => 11##     ####00 => ##00
+ * 01#### => 10##     ####01 => ##01
+ * 1##### => 01##     ...
+ * </pre>
+ * The label values of the leaves are drawn so that the expected label cardinality is the one requested, 
+ * and every label of an instance is flipped with probability noise.
+ * 
+ * The planted rules are the best action maps (BAM) of the dataset. They are written in the natural language 
+ * form of the rules of the complex representations, one family per block, to a .bam file next to the 
+ * dataset; the bamRulesFile setting makes the LCS report the percentage of them discovered in bam.txt. 
+ * The form of Boolean and nominal conditions is exact; numeric intervals are only found when the 
+ * evolved bounds coincide with the planted ones.
+ * 
+ * @author F. Tzima and M. Allamanis
+ * 
+ */
+public final class SyntheticDatasetGenerator {
+
+	/**
+	 * A node of the decision tree of a label family.
+	 */
+	private static final class Node {
+
+		/**
+		 * The attribute tested, or -1 for a leaf.
+		 */
+		private int attribute = -1;
+
+		/**
+		 * The threshold of a numeric attribute: values below it go to the first child.
+		 */
+		private double threshold;
+
+		/**
+		 * The children, one per value of the attribute (two for numeric attributes).
+		 */
+		private Node[] children;
+
+		/**
+		 * The values of the labels of the family at a leaf.
+		 */
+		private boolean[] labelValues;
+	}
+
+	/**
+	 * The number of instances.
+	 */
+	private final int numberOfInstances;
+
+	/**
+	 * The number of Boolean attributes, the first ones.
+	 */
+	private final int booleanAttributes;
+
+	/**
+	 * The number of nominal attributes, following the Boolean ones.
+	 */
+	private final int nominalAttributes;
+
+	/**
+	 * The number of values of each nominal attribute.
+	 */
+	private final int nominalValues;
+
+	/**
+	 * The number of condition attributes. The numeric attributes are the last ones.
+	 */
+	private final int numberOfAttributes;
+
+	/**
+	 * The number of labels.
+	 */
+	private final int numberOfLabels;
+
+	/**
+	 * The probability of flipping each label.
+	 */
+	private final double noise;
+
+	/**
+	 * The seed of the instances.
+	 */
+	private final long seed;
+
+	/**
+	 * The labels of each family.
+	 */
+	private final int[][] families;
+
+	/**
+	 * The decision tree of each family.
+	 */
+	private final Node[] trees;
+
+	/**
+	 * Constructor, plants the rules.
+	 * 
+	 * @param instances
+	 *            the number of instances
+	 * @param booleanAttributes
+	 *            the number of Boolean attributes
+	 * @param nominalAttributes
+	 *            the number of nominal attributes
+	 * @param nominalValues
+	 *            the number of values of each nominal attribute (at least 3, fewer are Boolean)
+	 * @param numericAttributes
+	 *            the number of numeric attributes
+	 * @param labels
+	 *            the number of labels
+	 * @param labelCardinality
+	 *            the expected number of labels of an instance
+	 * @param labelsPerFamily
+	 *            the number of labels decided by the same rules
+	 * @param ruleOrder
+	 *            the maximum number of conditions of a planted rule
+	 * @param noise
+	 *            the probability of flipping each label of an instance
+	 * @param seed
+	 *            the seed of the random generator
+	 */
+	public SyntheticDatasetGenerator(final int instances,
+									 final int booleanAttributes,
+									 final int nominalAttributes,
+									 final int nominalValues,
+									 final int numericAttributes,
+									 final int labels,
+									 final double labelCardinality,
+									 final int labelsPerFamily,
+									 final int ruleOrder,
+									 final double noise,
+									 final long seed) {
+		this.numberOfInstances = instances;
+		this.booleanAttributes = booleanAttributes;
+		this.nominalAttributes = nominalAttributes;
+		this.nominalValues = Math.max(3, nominalValues);
+		this.numberOfAttributes = booleanAttributes + nominalAttributes + numericAttributes;
+		this.numberOfLabels = labels;
+		this.noise = noise;
+		this.seed = seed;
+
+		final Random random = new Random(seed);
+		final double labelProbability = Math.min(1, Math.max(0, labelCardinality / labels));
+		final int perFamily = Math.max(1, labelsPerFamily);
+
+		families = new int[(labels + perFamily - 1) / perFamily][];
+		trees = new Node[families.length];
+		for (int f = 0; f < families.length; f++) {
+			families[f] = new int[Math.min(perFamily, labels - f * perFamily)];
+			for (int l = 0; l < families[f].length; l++)
+				families[f][l] = f * perFamily + l;
+
+			// the attributes of the family, in the order they are tested
+			final int[] attributes = new int[numberOfAttributes];
+			for (int a = 0; a < numberOfAttributes; a++)
+				attributes[a] = a;
+			final int order = Math.min(ruleOrder, numberOfAttributes);
+			for (int a = 0; a < order; a++) {
+				final int swap = a + random.nextInt(numberOfAttributes - a);
+				final int attribute = attributes[swap];
+				attributes[swap] = attributes[a];
+				attributes[a] = attribute;
+			}
+
+			trees[f] = plant(attributes, 0, order, families[f].length, labelProbability, random);
+		}
+	}
+
+	/**
+	 * Create a generator from the synthetic* settings.
+	 * 
+	 * @return the generator
+	 */
+	public static SyntheticDatasetGenerator fromSettings() {
+		return new SyntheticDatasetGenerator(
+				(int) SettingsLoader.getNumericSetting("syntheticInstances", 10000),
+				(int) SettingsLoader.getNumericSetting("syntheticBooleanAttributes", 10),
+				(int) SettingsLoader.getNumericSetting("syntheticNominalAttributes", 0),
+				(int) SettingsLoader.getNumericSetting("syntheticNominalValues", 4),
+				(int) SettingsLoader.getNumericSetting("syntheticNumericAttributes", 0),
+				(int) SettingsLoader.getNumericSetting("syntheticLabels", 6),
+				SettingsLoader.getNumericSetting("syntheticLabelCardinality", 2),
+				(int) SettingsLoader.getNumericSetting("syntheticLabelsPerFamily", 2),
+				(int) SettingsLoader.getNumericSetting("syntheticRuleOrder", 3),
+				SettingsLoader.getNumericSetting("syntheticNoise", 0),
+				(long) SettingsLoader.getNumericSetting("syntheticSeed", 7));
+	}
+
+	/**
+	 * Plant the decision tree of a family.
+	 * 
+	 * @param attributes
+	 *            the attributes of the family, in the order they are tested
+	 * @param depth
+	 *            the depth of the node
+	 * @param order
+	 *            the maximum depth
+	 * @param labels
+	 *            the number of labels of the family
+	 * @param labelProbability
+	 *            the probability of each label being set at a leaf
+	 * @param random
+	 *            the random generator
+	 * @return the node
+	 */
+	private Node plant(final int[] attributes, 
+					   final int depth, 
+					   final int order, 
+					   final int labels, 
+					   final double labelProbability, 
+					   final Random random) {
+		final Node node = new Node();
+
+		// the root is always split, deeper nodes with decreasing probability
+		if (depth < order && (depth == 0 || random.nextDouble() < 1 - (double) depth / (order + 1))) {
+			node.attribute = attributes[depth];
+			final int children = isNominal(node.attribute) ? nominalValues : 2;
+			if (!isBoolean(node.attribute) && !isNominal(node.attribute))
+				node.threshold = Math.round(200 + 600 * random.nextDouble()) / 1000.0;
+			node.children = new Node[children];
+			for (int c = 0; c < children; c++)
+				node.children[c] = plant(attributes, depth + 1, order, labels, labelProbability, random);
+
+			// a split whose leaves all set the same labels is not part of the maximally general rules
+			for (int c = 0; c < children; c++)
+				if (node.children[c].attribute >= 0 || !Arrays.equals(node.children[c].labelValues, node.children[0].labelValues))
+					return node;
+			node.attribute = -1;
+			node.labelValues = node.children[0].labelValues;
+			node.children = null;
+			return node;
+		}
+
+		node.labelValues = new boolean[labels];
+		for (int l = 0; l < labels; l++)
+			node.labelValues[l] = random.nextDouble() < labelProbability;
+		return node;
+	}
+
+	/**
+	 * @param attribute
+	 *            the attribute
+	 * @return true if the attribute is Boolean
+	 */
+	private boolean isBoolean(final int attribute) {
+		return attribute < booleanAttributes;
+	}
+
+	/**
+	 * @param attribute
+	 *            the attribute
+	 * @return true if the attribute is nominal, with more than two values
+	 */
+	private boolean isNominal(final int attribute) {
+		return attribute >= booleanAttributes && attribute < booleanAttributes + nominalAttributes;
+	}
+
+	/**
+	 * @return the number of condition attributes
+	 */
+	public int getNumberOfAttributes() {
+		return numberOfAttributes;
+	}
+
+	/**
+	 * @return the number of labels
+	 */
+	public int getNumberOfLabels() {
+		return numberOfLabels;
+	}
+
+	/**
+	 * Write the dataset to an .arff file. The instances are streamed, so their number is not 
+	 * limited by the heap.
+	 * 
+	 * @param filename
+	 *            the .arff file
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public void writeArff(final String filename) throws IOException {
+		final Random random = new Random(seed ^ 0x5DEECE66DL);
+		final double[] values = new double[numberOfAttributes];
+		final boolean[] labels = new boolean[numberOfLabels];
+		final StringBuilder line = new StringBuilder();
+
+		final BufferedWriter out = new BufferedWriter(new FileWriter(filename), 1 << 16);
+		try {
+			out.write("@relation synthetic" + numberOfAttributes + "x" + numberOfLabels + "\n\n");
+			for (int a = 0; a < numberOfAttributes; a++) {
+				out.write("@attribute attr" + a);
+				if (isBoolean(a)) {
+					out.write(" {0,1}\n");
+				} else if (isNominal(a)) {
+					out.write(" {");
+					for (int v = 0; v < nominalValues; v++)
+						out.write((v == 0 ? "v" : ",v") + v);
+					out.write("}\n");
+				} else {
+					out.write(" numeric\n");
+				}
+			}
+			for (int l = 0; l < numberOfLabels; l++)
+				out.write("@attribute label" + l + " {0,1}\n");
+			out.write("\n@data\n");
+
+			for (int i = 0; i < numberOfInstances; i++) {
+				line.setLength(0);
+				for (int a = 0; a < numberOfAttributes; a++) {
+					if (isBoolean(a)) {
+						values[a] = random.nextInt(2);
+						line.append((int) values[a]);
+					} else if (isNominal(a)) {
+						values[a] = random.nextInt(nominalValues);
+						line.append('v').append((int) values[a]);
+					} else {
+						// three decimals, so that the planted thresholds hold on the written values
+						final int thousandths = random.nextInt(1001);
+						values[a] = thousandths / 1000.0;
+						line.append(thousandths / 1000).append('.');
+						final int fraction = thousandths % 1000;
+						if (fraction < 100)
+							line.append('0');
+						if (fraction < 10)
+							line.append('0');
+						line.append(fraction);
+					}
+					line.append(',');
+				}
+
+				for (int f = 0; f < families.length; f++) {
+					Node node = trees[f];
+					while (node.attribute >= 0) {
+						final double value = values[node.attribute];
+						if (isBoolean(node.attribute) || isNominal(node.attribute))
+							node = node.children[(int) value];
+						else
+							node = node.children[value < node.threshold ? 0 : 1];
+					}
+					for (int l = 0; l < families[f].length; l++)
+						labels[families[f][l]] = node.labelValues[l] ^ (noise > 0 && random.nextDouble() < noise);
+				}
+				for (int l = 0; l < numberOfLabels; l++)
+					line.append(labels[l] ? '1' : '0').append(l < numberOfLabels - 1 ? ',' : '\n');
+
+				out.write(line.toString());
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Get the planted rules, in the natural language form of the complex representations.
+	 * 
+	 * @return the rules of each family
+	 */
+	public String[][] getPlantedRules() {
+		final String[][] rules = new String[families.length][];
+		for (int f = 0; f < families.length; f++) {
+			final Vector<String> familyRules = new Vector<String>();
+			final String[] conditions = new String[numberOfAttributes];
+			for (int a = 0; a < numberOfAttributes; a++)
+				conditions[a] = isBoolean(a) ? "#" : "attr" + a + ":#";
+			appendRules(trees[f], f, conditions, familyRules);
+			rules[f] = familyRules.toArray(new String[familyRules.size()]);
+		}
+		return rules;
+	}
+
+	/**
+	 * Append the rules of the leaves under a node.
+	 * 
+	 * @param node
+	 *            the node
+	 * @param family
+	 *            the family of the tree
+	 * @param conditions
+	 *            the conditions of the path to the node
+	 * @param rules
+	 *            the rules
+	 */
+	private void appendRules(final Node node, 
+							 final int family, 
+							 final String[] conditions, 
+							 final Vector<String> rules) {
+		if (node.attribute < 0) {
+			final StringBuilder rule = new StringBuilder();
+			for (final String condition : conditions)
+				rule.append(condition);
+			rule.append(" => ");
+			final char[] labels = new char[numberOfLabels];
+			Arrays.fill(labels, '#');
+			for (int l = 0; l < families[family].length; l++)
+				labels[families[family][l]] = node.labelValues[l] ? '1' : '0';
+			rules.add(rule.append(labels).toString());
+			return;
+		}
+
+		final int attribute = node.attribute;
+		final String previous = conditions[attribute];
+		for (int c = 0; c < node.children.length; c++) {
+			if (isBoolean(attribute)) {
+				conditions[attribute] = Integer.toString(c);
+			} else if (isNominal(attribute)) {
+				// the values leading to leaves setting the same labels make a single rule
+				final Node child = node.children[c];
+				boolean grouped = false;
+				for (int v = 0; v < c && child.attribute < 0; v++)
+					grouped |= node.children[v].attribute < 0 && Arrays.equals(node.children[v].labelValues, child.labelValues);
+				if (grouped)
+					continue;
+				final StringBuilder values = new StringBuilder("attr").append(attribute).append(" in [");
+				for (int v = c; v < node.children.length; v++)
+					if (v == c || (child.attribute < 0 && node.children[v].attribute < 0 
+							&& Arrays.equals(node.children[v].labelValues, child.labelValues)))
+						values.append('v').append(v).append(", ");
+				conditions[attribute] = values.append(']').toString();
+			} else {
+				// an attribute is tested once on a path, so the other bound is the bound of the values
+				conditions[attribute] = "attr" + attribute + " in [" 
+						+ String.format("%.3f", c == 0 ? 0.0 : node.threshold) + "," 
+						+ String.format("%.3f", c == 0 ? node.threshold : 1.0) + "]";
+			}
+			appendRules(node.children[c], family, conditions, rules);
+		}
+		conditions[attribute] = previous;
+	}
+
+	/**
+	 * Write the planted rules to a file, one family per block of lines.
+	 * 
+	 * @param filename
+	 *            the file
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public void writeBamRules(final String filename) throws IOException {
+		final BufferedWriter out = new BufferedWriter(new FileWriter(filename));
+		try {
+			final String[][] rules = getPlantedRules();
+			for (int f = 0; f < rules.length; f++) {
+				if (f > 0)
+					out.write("\n");
+				for (final String rule : rules[f])
+					out.write(rule + "\n");
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Read rule families written by writeBamRules().
+	 * 
+	 * @param filename
+	 *            the file
+	 * @return the rules of each family
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static String[][] readBamRules(final String filename) throws IOException {
+		final Vector<String[]> families = new Vector<String[]>();
+		final Vector<String> family = new Vector<String>();
+		final BufferedReader in = new BufferedReader(new FileReader(filename));
+		try {
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.trim().isEmpty()) {
+					if (!family.isEmpty())
+						families.add(family.toArray(new String[family.size()]));
+					family.clear();
+				} else {
+					family.add(line);
+				}
+			}
+			if (!family.isEmpty())
+				families.add(family.toArray(new String[family.size()]));
+		} finally {
+			in.close();
+		}
+		return families.toArray(new String[families.size()][]);
+	}
+
+	/**
+	 * Generate the dataset of the synthetic* settings: the .arff file syntheticOutputFile and its 
+	 * planted rules in a .bam file next to it. With syntheticFormat = binary, the entry of the 
+	 * dataset in the dataset cache (see DatasetCache) is also built, so that runs on it skip parsing.
+	 * 
+	 * @param args
+	 *            an optional output file, overriding the setting
+	 * @throws IOException
+	 *             if the files cannot be written
+	 */
+	public static void main(final String[] args) throws IOException {
+		final String filename = (args.length > 0) ? args[0] : SettingsLoader.getStringSetting("syntheticOutputFile", "synthetic.arff");
+		final SyntheticDatasetGenerator generator = fromSettings();
+
+		final long start = System.currentTimeMillis();
+		generator.writeArff(filename);
+		generator.writeBamRules(getBamFile(filename));
+		System.out.println("Dataset written to " + filename + " in " + (System.currentTimeMillis() - start) + " ms");
+
+		if (SettingsLoader.getStringSetting("syntheticFormat", "arff").equals("binary")) {
+			final String key = DatasetCache.getKey(filename);
+			if (key == null) {
+				System.out.println("The dataset cache is disabled, set datasetCacheDirectory to write the binary dataset");
+				return;
+			}
+			DatasetCache.build(filename, key);
+			System.out.println("Binary dataset written to the dataset cache as " + key);
+		}
+	}
+
+	/**
+	 * Get the file of the planted rules of a dataset.
+	 * 
+	 * @param filename
+	 *            the .arff file
+	 * @return the .bam file
+	 */
+	public static String getBamFile(final String filename) {
+		return (filename.endsWith(".arff") ? filename.substring(0, filename.length() - 5) : filename) + ".bam";
+	}
+
+}